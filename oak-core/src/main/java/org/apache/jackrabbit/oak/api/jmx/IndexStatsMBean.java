@@ -207,4 +207,10 @@ public interface IndexStatsMBean {
      */
     String getLatestErrorTime();
 
+    /**
+     * @return the progress of each partition of the current or latest
+     *         parallel reindex, empty if parallel reindexing is disabled
+     */
+    String[] getReindexPartitionStats();
+
 }
@@ -15,7 +15,7 @@
  * limitations under the License.
  */
 
-@Version("4.1.0")
+@Version("4.2.0")
 @Export(optional = "provide:=true")
 package org.apache.jackrabbit.oak.api.jmx;
 
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The delay between two runs of a background operation. With adaptive
+ * tuning disabled, the delay is the configured {@code asyncDelay}. Otherwise
+ * the delay is adjusted after each run based on the backlog the run had to
+ * process, e.g. the number of external changes or the number of unsaved
+ * modifications:
+ * <ul>
+ *     <li>A backlog of at least {@link #BUSY_THRESHOLD} halves the delay.</li>
+ *     <li>An empty backlog increases the delay by half.</li>
+ *     <li>Any other backlog moves the delay half way back to the
+ *     {@code asyncDelay}.</li>
+ * </ul>
+ * The delay is always kept within the configured bounds. An
+ * {@code asyncDelay} of zero disables the background operation and is never
+ * adjusted.
+ */
+final class AdaptiveDelay {
+
+    /**
+     * The backlog at which a background operation is considered busy.
+     */
+    static final long BUSY_THRESHOLD =
+            Long.getLong("oak.documentMK.adaptiveDelayBusyThreshold", 1000);
+
+    private final int minDelay;
+
+    private final int maxDelay;
+
+    /**
+     * The current delay or -1 if not yet initialized.
+     */
+    private volatile int delay = -1;
+
+    private volatile long lastBacklog;
+
+    /**
+     * Creates a new delay, which is adaptive if {@code maxDelay} is
+     * greater than zero.
+     *
+     * @param minDelay the minimum delay in milliseconds.
+     * @param maxDelay the maximum delay in milliseconds or zero to
+     *                 disable adaptive tuning.
+     */
+    AdaptiveDelay(int minDelay, int maxDelay) {
+        checkArgument(maxDelay == 0 || (minDelay > 0 && minDelay <= maxDelay),
+                "Invalid bounds: [%s, %s]", minDelay, maxDelay);
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    boolean isAdaptive() {
+        return maxDelay > 0;
+    }
+
+    /**
+     * @param asyncDelay the configured delay in milliseconds.
+     * @return the current delay in milliseconds.
+     */
+    int getDelay(int asyncDelay) {
+        if (asyncDelay == 0 || !isAdaptive()) {
+            return asyncDelay;
+        }
+        int d = delay;
+        return d < 0 ? clamp(asyncDelay) : d;
+    }
+
+    /**
+     * @return the backlog of the most recent run.
+     */
+    long getLastBacklog() {
+        return lastBacklog;
+    }
+
+    /**
+     * Adjusts the delay after a run of the background operation.
+     *
+     * @param asyncDelay the configured delay in milliseconds.
+     * @param backlog the backlog processed by the run.
+     */
+    synchronized void update(int asyncDelay, long backlog) {
+        lastBacklog = backlog;
+        if (asyncDelay == 0 || !isAdaptive()) {
+            return;
+        }
+        int d = getDelay(asyncDelay);
+        if (backlog >= BUSY_THRESHOLD) {
+            d = d / 2;
+        } else if (backlog == 0) {
+            d = d + Math.max(d / 2, 1);
+        } else {
+            d = (d + clamp(asyncDelay)) / 2;
+        }
+        delay = clamp(d);
+    }
+
+    private int clamp(int d) {
+        return Math.min(maxDelay, Math.max(minDelay, d));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Asynchronous variant of some of the {@link DocumentStore} operations. The
+ * methods have the same semantics as the corresponding methods on the
+ * {@link DocumentStore}, but return immediately with a future for the result.
+ * A {@link DocumentStoreException} thrown by an operation is reported as the
+ * cause of the {@link java.util.concurrent.ExecutionException} of the future.
+ * <p>
+ * Operations issued concurrently are not ordered with respect to each other.
+ * A caller must wait for the result of an operation before it issues
+ * another operation that depends on it.
+ */
+public interface AsyncDocumentStore {
+
+    /**
+     * @see DocumentStore#find(Collection, String)
+     */
+    @Nonnull
+    <T extends Document> ListenableFuture<T> findAsync(Collection<T> collection,
+                                                       String key);
+
+    /**
+     * @see DocumentStore#find(Collection, String, int)
+     */
+    @Nonnull
+    <T extends Document> ListenableFuture<T> findAsync(Collection<T> collection,
+                                                       String key,
+                                                       int maxCacheAge);
+
+    /**
+     * @see DocumentStore#query(Collection, String, String, int)
+     */
+    @Nonnull
+    <T extends Document> ListenableFuture<List<T>> queryAsync(Collection<T> collection,
+                                                              String fromKey,
+                                                              String toKey,
+                                                              int limit);
+
+    /**
+     * @see DocumentStore#createOrUpdate(Collection, UpdateOp)
+     */
+    @Nonnull
+    <T extends Document> ListenableFuture<T> createOrUpdateAsync(Collection<T> collection,
+                                                                 UpdateOp update);
+
+    /**
+     * @see DocumentStore#createOrUpdate(Collection, List)
+     */
+    @Nonnull
+    <T extends Document> ListenableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                       List<UpdateOp> updateOps);
+}
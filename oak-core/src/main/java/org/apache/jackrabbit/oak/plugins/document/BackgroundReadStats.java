@@ -24,7 +24,9 @@ import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
 class BackgroundReadStats {
     CacheInvalidationStats cacheStats;
     long readHead;
+    long sortExternalChanges;
     long cacheInvalidationTime;
+    long prepareDiffCache;
     long populateDiffCache;
     long lock;
     long dispatchChanges;
@@ -40,7 +42,9 @@ class BackgroundReadStats {
         return  "ReadStats{" +
                 "cacheStats:" + cacheStatsMsg +
                 ", head:" + readHead +
+                ", sort:" + sortExternalChanges +
                 ", cache:" + cacheInvalidationTime +
+                ", prepareDiff:" + prepareDiffCache +
                 ", diff: " + populateDiffCache +
                 ", lock:" + lock +
                 ", dispatch:" + dispatchChanges +
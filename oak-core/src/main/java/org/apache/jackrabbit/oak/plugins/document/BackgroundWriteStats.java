@@ -24,8 +24,11 @@ class BackgroundWriteStats {
     long clean;
     long split;
     long lock;
+    long lockHeld;
     long write;
     long num;
+    long stripes;
+    long batches;
     long totalWriteTime;
 
     @Override
@@ -33,8 +36,11 @@ class BackgroundWriteStats {
         return "clean:" + clean +
                 ", split:" + split+
                 ", lock:" + lock +
+                ", lockHeld:" + lockHeld +
                 ", write:" + write +
                 ", num:" + num +
+                ", stripes:" + stripes +
+                ", batches:" + batches +
                 ", totalWriteTime:" + totalWriteTime;
     }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.Lists;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A {@link DiffCache.Entry} that collects changes before the revision range
+ * of the diff is known. The pipelined background read uses it to prepare the
+ * diff cache entry for external changes while the document cache is being
+ * invalidated, and then replays the changes into the real entry once the
+ * new head revision is set.
+ */
+final class BufferedDiffCacheEntry implements DiffCache.Entry {
+
+    private final List<String> paths = Lists.newArrayList();
+
+    private final List<String> changes = Lists.newArrayList();
+
+    private boolean done;
+
+    @Override
+    public void append(@Nonnull String path, @Nonnull String changes) {
+        checkState(!done, "Entry is already done");
+        this.paths.add(checkNotNull(path));
+        this.changes.add(checkNotNull(changes));
+    }
+
+    @Override
+    public boolean done() {
+        done = true;
+        return true;
+    }
+
+    /**
+     * @return the number of paths with changes in this entry.
+     */
+    int size() {
+        return paths.size();
+    }
+
+    /**
+     * Appends all buffered changes to the given entry and marks it as done.
+     *
+     * @param entry the target diff cache entry.
+     * @return the result of {@link DiffCache.Entry#done()} on the target.
+     * @throws IllegalStateException if this entry is not done yet.
+     */
+    boolean replayTo(@Nonnull DiffCache.Entry entry) {
+        checkState(done, "Entry is not done yet");
+        for (int i = 0; i < paths.size(); i++) {
+            entry.append(paths.get(i), changes.get(i));
+        }
+        return entry.done();
+    }
+}
@@ -24,6 +24,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -31,8 +32,12 @@ import javax.annotation.Nullable;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
@@ -58,6 +63,12 @@ public class Commit {
 
     private static final Logger LOG = LoggerFactory.getLogger(Commit.class);
 
+    /**
+     * The minimum number of update operations applied as one batch when the
+     * updates of a commit are applied concurrently.
+     */
+    private static final int MIN_PARALLEL_UPDATE_BATCH_SIZE = 10;
+
     protected final DocumentNodeStore nodeStore;
     private final RevisionVector baseRevision;
     private final Revision revision;
@@ -299,7 +310,7 @@ public class Commit {
         boolean success = false;
         try {
             opLog.addAll(changedNodes);
-            List<NodeDocument> oldDocs = store.createOrUpdate(NODES, changedNodes);
+            List<NodeDocument> oldDocs = createOrUpdateNodes(store, changedNodes);
             checkConflicts(oldDocs, changedNodes);
             checkSplitCandidate(oldDocs);
 
@@ -409,6 +420,56 @@ public class Commit {
         store.findAndUpdate(NODES, removeCollision);
     }
 
+    /**
+     * Applies the given update operations to the store. With update
+     * coalescing enabled, the operations are written together with those of
+     * concurrent commits. Otherwise, if the node store has more than one
+     * commit update thread, the operations are split into batches, which are
+     * applied concurrently. This method only returns when all batches are
+     * done.
+     *
+     * @param store the document store.
+     * @param ops the update operations.
+     * @return the documents before the update, in the order of the
+     *          update operations.
+     * @throws DocumentStoreException if one of the batches failed.
+     */
+    private List<NodeDocument> createOrUpdateNodes(DocumentStore store,
+                                                   List<UpdateOp> ops) {
+        UpdateCoalescingQueue coalescingQueue = nodeStore.getUpdateCoalescingQueue();
+        if (coalescingQueue != null) {
+            return coalescingQueue.createOrUpdate(ops);
+        }
+        AsyncDocumentStore asyncStore = nodeStore.getAsyncDocumentStore();
+        int batchSize = Math.max(MIN_PARALLEL_UPDATE_BATCH_SIZE,
+                (ops.size() + nodeStore.getCommitUpdateThreads() - 1)
+                        / nodeStore.getCommitUpdateThreads());
+        if (asyncStore == null || ops.size() <= batchSize) {
+            return store.createOrUpdate(NODES, ops);
+        }
+        List<ListenableFuture<List<NodeDocument>>> futures = Lists.newArrayList();
+        for (List<UpdateOp> batch : Lists.partition(ops, batchSize)) {
+            futures.add(asyncStore.createOrUpdateAsync(NODES, batch));
+        }
+        try {
+            // wait for all batches, even if one of them fails. otherwise
+            // a rollback may run concurrently with an update in flight
+            Uninterruptibles.getUninterruptibly(Futures.successfulAsList(futures));
+        } catch (ExecutionException e) {
+            // does not happen with successfulAsList
+            throw DocumentStoreException.convert(e.getCause());
+        }
+        List<NodeDocument> oldDocs = Lists.newArrayListWithCapacity(ops.size());
+        for (ListenableFuture<List<NodeDocument>> f : futures) {
+            try {
+                oldDocs.addAll(Uninterruptibles.getUninterruptibly(f));
+            } catch (ExecutionException e) {
+                throw DocumentStoreException.convert(e.getCause());
+            }
+        }
+        return oldDocs;
+    }
+
     /**
      * Try to create or update the node. If there was a conflict, this method
      * throws an exception, even though the change is still applied.
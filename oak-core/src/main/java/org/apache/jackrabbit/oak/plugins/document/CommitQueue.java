@@ -16,33 +16,28 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 
-import com.google.common.collect.Maps;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * <code>CommitQueue</code> ensures a sequence of commits consistent with the
  * commit revision even if commits did not complete in this sequence.
+ * <p>
+ * There are two implementations: the {@link DefaultCommitQueue}, which
+ * coordinates commits with monitors, and the {@link LockFreeCommitQueue},
+ * which keeps commits in a lock-free ordered structure and parks waiting
+ * threads individually. See
+ * {@link DocumentMK.Builder#setLockFreeCommitQueue(boolean)}.
  */
-final class CommitQueue {
+abstract class CommitQueue {
 
     static final Logger LOG = LoggerFactory.getLogger(CommitQueue.class);
 
@@ -51,16 +46,9 @@ final class CommitQueue {
      */
     static final long DEFAULT_SUSPEND_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
 
-    private final SortedMap<Revision, Entry> commits = new TreeMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
-
-    /**
-     * Map of currently suspended commits until a given Revision is visible.
-     */
-    private final Map<Semaphore, SuspendedCommit> suspendedCommits = Maps.newIdentityHashMap();
+    final RevisionContext context;
 
-    private final RevisionContext context;
-
-    private long suspendTimeout = Long.getLong("oak.documentMK.suspendTimeoutMillis", DEFAULT_SUSPEND_TIMEOUT);
+    long suspendTimeout = Long.getLong("oak.documentMK.suspendTimeoutMillis", DEFAULT_SUSPEND_TIMEOUT);
 
     CommitQueue(@Nonnull RevisionContext context) {
         this.context = checkNotNull(context);
@@ -71,37 +59,33 @@ final class CommitQueue {
         return createRevisions(1).first();
     }
 
+    /**
+     * Creates {@code num} new revisions and puts the most recent one into
+     * the commit queue.
+     *
+     * @param num the number of revisions to create.
+     * @return the created revisions.
+     */
     @Nonnull
-    SortedSet<Revision> createRevisions(int num) {
-        checkArgument(num > 0);
-        SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
-        Revision rev = null;
-        synchronized (this) {
-            for (int i = 0; i < num; i++) {
-                rev = context.newRevision();
-                revs.add(rev);
-            }
-            commits.put(rev, new Entry(rev));
-        }
-        LOG.debug("created commit {}", rev);
-        return revs;
-    }
+    abstract SortedSet<Revision> createRevisions(int num);
 
-    void done(@Nonnull Revision revision, @Nonnull Callback c) {
-        checkNotNull(revision);
-        waitUntilHeadOfQueue(revision, c);
-    }
+    /**
+     * Waits until the commit with the given revision is at the head of the
+     * queue, calls the callback and then removes the commit from the queue.
+     *
+     * @param revision the revision of the commit.
+     * @param c the callback to invoke when the commit is at the head.
+     */
+    abstract void done(@Nonnull Revision revision, @Nonnull Callback c);
 
-    void canceled(@Nonnull Revision rev) {
-        removeCommit(rev);
-        notifySuspendedCommits(rev);
-    }
+    /**
+     * Removes the commit with the given revision from the queue.
+     *
+     * @param rev the revision of the canceled commit.
+     */
+    abstract void canceled(@Nonnull Revision rev);
 
-    boolean contains(@Nonnull Revision revision) {
-        synchronized (this) {
-            return commits.containsKey(checkNotNull(revision));
-        }
-    }
+    abstract boolean contains(@Nonnull Revision revision);
 
     /**
      * Suspends until for each of given revisions one of the following happens:
@@ -114,49 +98,18 @@ final class CommitQueue {
      *
      * @param conflictRevisions the revisions to become visible.
      */
-    void suspendUntilAll(@Nonnull Set<Revision> conflictRevisions) {
-        Semaphore s;
-        int addedRevisions;
-        synchronized (suspendedCommits) {
-            RevisionVector headRevision = context.getHeadRevision();
-            Set<Revision> afterHead = new HashSet<Revision>(conflictRevisions.size());
-            for (Revision r : conflictRevisions) {
-                if (headRevision.isRevisionNewer(r)) {
-                    afterHead.add(r);
-                }
-            }
-
-            s = new Semaphore(0);
-            suspendedCommits.put(s, new SuspendedCommit(s, afterHead));
-            addedRevisions = afterHead.size();
-        }
-        try {
-            s.tryAcquire(addedRevisions, suspendTimeout, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            LOG.debug("The suspended thread has been interrupted", e);
-        } finally {
-            synchronized (suspendedCommits) {
-                suspendedCommits.remove(s);
-            }
-        }
-    }
+    abstract void suspendUntilAll(@Nonnull Set<Revision> conflictRevisions);
 
     /**
      * Called when the head revision accessible via the {@link RevisionContext}
      * passed to constructor changed.
      */
-    void headRevisionChanged() {
-        notifySuspendedCommits();
-    }
+    abstract void headRevisionChanged();
 
     /**
      * @return the number of suspended threads on this commit queue.
      */
-    int numSuspendedThreads() {
-        synchronized (suspendedCommits) {
-            return suspendedCommits.size();
-        }
-    }
+    abstract int numSuspendedThreads();
 
     /**
      * Sets the suspend timeout in milliseconds.
@@ -172,160 +125,4 @@ final class CommitQueue {
 
         void headOfQueue(@Nonnull Revision revision);
     }
-
-    //------------------------< internal >--------------------------------------
-
-    private void notifySuspendedCommits() {
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            RevisionVector headRevision = context.getHeadRevision();
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevisionsVisibleFrom(headRevision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
-            }
-        }
-    }
-
-    private void notifySuspendedCommits(@Nonnull Revision revision) {
-        checkNotNull(revision);
-        synchronized (suspendedCommits) {
-            if (suspendedCommits.isEmpty()) {
-                return;
-            }
-            Iterator<SuspendedCommit> it = suspendedCommits.values().iterator();
-            while (it.hasNext()) {
-                SuspendedCommit suspended = it.next();
-                if (suspended.removeRevision(revision) && suspended.revisions.isEmpty()) {
-                    it.remove();
-                }
-            }
-        }
-    }
-
-    private void removeCommit(@Nonnull Revision rev) {
-        // simply remove and notify next head if any
-        synchronized (this) {
-            boolean wasHead = commits.firstKey().equals(rev);
-            commits.remove(rev);
-            LOG.debug("removed commit {}, wasHead={}", rev, wasHead);
-            if (wasHead) {
-                notifyHead();
-            }
-        }
-    }
-
-    private void waitUntilHeadOfQueue(@Nonnull Revision rev,
-                                      @Nonnull Callback c) {
-        assert !commits.isEmpty();
-
-        boolean isHead;
-        Entry commitEntry;
-        synchronized (this) {
-            isHead = commits.firstKey().equals(rev);
-            commitEntry = commits.get(rev);
-        }
-        if (!isHead) {
-            LOG.debug("not head: {}, waiting...", rev);
-            commitEntry.await();
-        }
-        c.headOfQueue(rev);
-        synchronized (this) {
-            commits.remove(rev);
-            try {
-                LOG.debug("removed {}, head is now {}", rev, commits.isEmpty() ? null : commits.firstKey());
-            } finally {
-                // notify next if there is any
-                notifyHead();
-            }
-        }
-    }
-
-    private void notifyHead() {
-        if (!commits.isEmpty()) {
-            LOG.debug("release {}", commits.firstKey());
-            commits.get(commits.firstKey()).release();
-        }
-    }
-
-    /**
-     * An entry in the commit queue.
-     */
-    private static final class Entry {
-
-        /**
-         * The revision of the commit (used for debugging).
-         */
-        private final Revision revision;
-
-        /**
-         * The latch. Initially set to 1, so that release() needs to be called
-         * once for await() to continue.
-         */
-        private final CountDownLatch latch = new CountDownLatch(1);
-
-        Entry(Revision revision) {
-            this.revision = revision;
-        }
-
-        /**
-         * Release all threads that are waiting.
-         */
-        void release() {
-            latch.countDown();
-        }
-
-        /**
-         * Wait for the latch to be released.
-         */
-        void await() {
-            for (;;) {
-                try {
-                    LOG.debug("awaiting {}", revision);
-                    latch.await();
-                    break;
-                } catch (InterruptedException e) {
-                    // retry
-                }
-            }
-        }
-    }
-
-    private class SuspendedCommit {
-
-        private final Semaphore semaphore;
-
-        private final Set<Revision> revisions;
-
-        private SuspendedCommit(Semaphore semaphore, Set<Revision> revisions) {
-            this.semaphore = semaphore;
-            this.revisions = revisions;
-        }
-
-        private boolean removeRevisionsVisibleFrom(RevisionVector revision) {
-            Iterator<Revision> it = revisions.iterator();
-            boolean removed = false;
-            while (it.hasNext()) {
-                if (!revision.isRevisionNewer(it.next())) {
-                    it.remove();
-                    semaphore.release();
-                    removed = true;
-                }
-            }
-            return removed;
-        }
-
-        private boolean removeRevision(Revision r) {
-            if (revisions.remove(r)) {
-                semaphore.release();
-                return true;
-            } else {
-                return false;
-            }
-        }
-    }
-}
\ No newline at end of file
+}
@@ -63,6 +63,8 @@ import org.apache.jackrabbit.oak.plugins.blob.CachingBlobStore;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState.Children;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
+import org.apache.jackrabbit.oak.plugins.document.cache.OffHeapCache;
+import org.apache.jackrabbit.oak.plugins.document.cache.OffHeapTieredCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoBlobReferenceIterator;
@@ -553,6 +555,8 @@ public class DocumentMK {
         private BlobStore blobStore;
         private int clusterId  = Integer.getInteger("oak.documentMK.clusterId", 0);
         private int asyncDelay = 1000;
+        private int adaptiveMinDelay = Integer.getInteger("oak.documentMK.adaptiveMinDelay", 0);
+        private int adaptiveMaxDelay = Integer.getInteger("oak.documentMK.adaptiveMaxDelay", 0);
         private boolean timing;
         private boolean logging;
         private boolean leaseCheck = true; // OAK-2739 is enabled by default also for non-osgi
@@ -563,12 +567,21 @@ public class DocumentMK {
         private int prevDocCachePercentage = DEFAULT_PREV_DOC_CACHE_PERCENTAGE;
         private int childrenCachePercentage = DEFAULT_CHILDREN_CACHE_PERCENTAGE;
         private int diffCachePercentage = DEFAULT_DIFF_CACHE_PERCENTAGE;
+        private long offHeapCacheSize;
         private int cacheSegmentCount = DEFAULT_CACHE_SEGMENT_COUNT;
         private int cacheStackMoveDistance = DEFAULT_CACHE_STACK_MOVE_DISTANCE;
         private boolean useSimpleRevision;
         private long maxReplicationLagMillis = TimeUnit.HOURS.toMillis(6);
         private boolean disableBranches;
         private boolean prefetchExternalChanges;
+        private boolean pipelinedBackgroundRead;
+        private boolean lockFreeCommitQueue = Boolean.getBoolean("oak.documentMK.lockFreeCommitQueue");
+        private boolean incrementalLastRevPersist = Boolean.getBoolean("oak.documentMK.incrementalLastRevPersist");
+        private boolean asyncSplit = Boolean.getBoolean("oak.documentMK.asyncSplit");
+        private int commitUpdateThreads = Integer.getInteger("oak.documentMK.commitUpdateThreads", 0);
+        private boolean updateCoalescing = Boolean.getBoolean("oak.documentMK.updateCoalescing");
+        private long updateCoalescingMaxDelayMillis = Long.getLong("oak.documentMK.updateCoalescingMaxDelayMillis", 0);
+        private int updateCoalescingMaxSize = Integer.getInteger("oak.documentMK.updateCoalescingMaxSize", 1000);
         private Clock clock = Clock.SIMPLE;
         private Executor executor;
         private String persistentCacheURI = DEFAULT_PERSISTENT_CACHE_URI;
@@ -583,6 +596,8 @@ public class DocumentMK {
         private DocumentNodeStoreStatsCollector nodeStoreStatsCollector;
         private Map<CacheType, PersistentCacheStats> persistentCacheStats =
                 new EnumMap<CacheType, PersistentCacheStats>(CacheType.class);
+        private Map<CacheType, OffHeapCache<?>> offHeapCaches =
+                new EnumMap<CacheType, OffHeapCache<?>>(CacheType.class);
         private boolean bundlingDisabled;
 
         public Builder() {
@@ -874,6 +889,34 @@ public class DocumentMK {
             return asyncDelay;
         }
 
+        /**
+         * Enables adaptive delays for the background read and update
+         * operations. The delay of an operation is shortened when it has a
+         * large backlog of external changes or unsaved modifications and is
+         * extended when it is idle, but always stays within the given bounds.
+         * By default the background operations run every
+         * {@link #setAsyncDelay(int) asyncDelay} milliseconds.
+         *
+         * @param minDelay the minimum delay in milliseconds.
+         * @param maxDelay the maximum delay in milliseconds.
+         * @return this
+         */
+        public Builder setAdaptiveAsyncDelay(int minDelay, int maxDelay) {
+            checkArgument(minDelay > 0 && minDelay <= maxDelay,
+                    "Invalid bounds: [%s, %s]", minDelay, maxDelay);
+            this.adaptiveMinDelay = minDelay;
+            this.adaptiveMaxDelay = maxDelay;
+            return this;
+        }
+
+        public int getAdaptiveMinDelay() {
+            return adaptiveMinDelay;
+        }
+
+        public int getAdaptiveMaxDelay() {
+            return adaptiveMaxDelay;
+        }
+
         public Weigher<CacheValue, CacheValue> getWeigher() {
             return weigher;
         }
@@ -905,6 +948,28 @@ public class DocumentMK {
             return this;
         }
 
+        /**
+         * Sets the size in bytes of the off-heap tier for the document and
+         * previous document caches. Documents evicted from these caches are
+         * kept serialized outside of the Java heap until they are either
+         * read again or evicted from the off-heap tier. The size is split
+         * between the two caches in the proportion of their memory cache
+         * size. The off-heap tier requires the LIRS cache and is disabled
+         * by default (size 0).
+         *
+         * @param offHeapCacheSize the size of the off-heap tier in bytes.
+         * @return this
+         */
+        public Builder setOffHeapCacheSize(long offHeapCacheSize) {
+            checkArgument(offHeapCacheSize >= 0);
+            this.offHeapCacheSize = offHeapCacheSize;
+            return this;
+        }
+
+        public long getOffHeapCacheSize() {
+            return offHeapCacheSize;
+        }
+
         public long getNodeCacheSize() {
             return memoryCacheSize * nodeCachePercentage / 100;
         }
@@ -1047,6 +1112,146 @@ public class DocumentMK {
             return prefetchExternalChanges;
         }
 
+        /**
+         * Enables the pipelined background read. In this mode the journal
+         * of each cluster node with external changes is read in parallel
+         * on the {@link #getExecutor() executor} and the diff cache entry
+         * for the external changes is prepared concurrently with the
+         * invalidation of the document cache.
+         *
+         * @param b whether to enable the pipelined background read.
+         * @return this builder.
+         */
+        public Builder setPipelinedBackgroundRead(boolean b) {
+            pipelinedBackgroundRead = b;
+            return this;
+        }
+
+        public boolean isPipelinedBackgroundRead() {
+            return pipelinedBackgroundRead;
+        }
+
+        /**
+         * Enables a commit queue implementation, which orders commits in a
+         * lock-free structure and parks waiting commits individually instead
+         * of coordinating them with monitors. This may reduce contention
+         * with many concurrent writers.
+         *
+         * @param b whether to use the lock-free commit queue.
+         * @return this builder.
+         */
+        public Builder setLockFreeCommitQueue(boolean b) {
+            lockFreeCommitQueue = b;
+            return this;
+        }
+
+        public boolean isLockFreeCommitQueue() {
+            return lockFreeCommitQueue;
+        }
+
+        /**
+         * Enables the incremental persist of pending _lastRev updates in the
+         * background write. In this mode the background operation lock is
+         * only held while the pending updates are copied and the updates are
+         * written in bounded batches striped by path depth, deepest first.
+         *
+         * @param b whether to persist _lastRev updates incrementally.
+         * @return this builder.
+         */
+        public Builder setIncrementalLastRevPersist(boolean b) {
+            incrementalLastRevPersist = b;
+            return this;
+        }
+
+        public boolean isIncrementalLastRevPersist() {
+            return incrementalLastRevPersist;
+        }
+
+        /**
+         * Enables asynchronous document splits. In this mode the background
+         * update thread hands split candidates over to a dedicated split
+         * thread and continues with the _lastRev write back without waiting
+         * for the splits to complete.
+         *
+         * @param b whether to split documents asynchronously.
+         * @return this builder.
+         */
+        public Builder setAsyncSplit(boolean b) {
+            asyncSplit = b;
+            return this;
+        }
+
+        public boolean isAsyncSplit() {
+            return asyncSplit;
+        }
+
+        /**
+         * Sets the number of threads used to apply the changes of a commit to
+         * the document store. With more than one thread, a commit with many
+         * changed documents splits the updates into batches and keeps several
+         * of them in flight using an {@link AsyncDocumentStore}. The default
+         * is zero, which applies all updates on the committing thread.
+         *
+         * @param threads the number of threads.
+         * @return this builder.
+         */
+        public Builder setCommitUpdateThreads(int threads) {
+            checkArgument(threads >= 0, "threads must not be negative");
+            commitUpdateThreads = threads;
+            return this;
+        }
+
+        public int getCommitUpdateThreads() {
+            return commitUpdateThreads;
+        }
+
+        /**
+         * Enables coalescing of document updates. In this mode the updates
+         * of concurrent commits on different documents are written with a
+         * single bulk call to the document store. A batch is written as soon
+         * as the previous batch is done, or after the maximum delay set with
+         * {@link #setUpdateCoalescingWindow(long, int)}.
+         *
+         * @param b whether to coalesce document updates of concurrent commits.
+         * @return this builder.
+         */
+        public Builder setUpdateCoalescing(boolean b) {
+            updateCoalescing = b;
+            return this;
+        }
+
+        public boolean isUpdateCoalescing() {
+            return updateCoalescing;
+        }
+
+        /**
+         * Sets the window for coalescing of document updates. A batch waits
+         * at most {@code maxDelayMillis} for more updates, but is written
+         * immediately when it has {@code maxSize} update operations. The
+         * defaults are 0 ms, which does not add latency to commits, and
+         * 1000 operations.
+         *
+         * @param maxDelayMillis the maximum time in milliseconds a batch
+         *                       waits for more updates.
+         * @param maxSize the maximum number of update operations in a batch.
+         * @return this builder.
+         */
+        public Builder setUpdateCoalescingWindow(long maxDelayMillis, int maxSize) {
+            checkArgument(maxDelayMillis >= 0, "maxDelayMillis must not be negative");
+            checkArgument(maxSize > 0, "maxSize must be positive");
+            updateCoalescingMaxDelayMillis = maxDelayMillis;
+            updateCoalescingMaxSize = maxSize;
+            return this;
+        }
+
+        public long getUpdateCoalescingMaxDelayMillis() {
+            return updateCoalescingMaxDelayMillis;
+        }
+
+        public int getUpdateCoalescingMaxSize() {
+            return updateCoalescingMaxSize;
+        }
+
         VersionGCSupport createVersionGCSupport() {
             DocumentStore store = getDocumentStore();
             if (store instanceof MongoDocumentStore) {
@@ -1120,7 +1325,22 @@ public class DocumentMK {
             Cache<StringValue, NodeDocument> prevDocumentsCache = buildPrevDocumentsCache(docStore);
             CacheStats prevDocumentsCacheStats = new CacheStats(prevDocumentsCache, "Document-PrevDocuments", getWeigher(), getPrevDocumentCacheSize());
 
-            return new NodeDocumentCache(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache, prevDocumentsCacheStats, locks);
+            List<CacheStats> offHeapCacheStats = Lists.newArrayList();
+            for (OffHeapCache<?> offHeapCache : offHeapCaches.values()) {
+                offHeapCacheStats.add(offHeapCache.getCacheStats());
+            }
+
+            return new NodeDocumentCache(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache, prevDocumentsCacheStats,
+                    offHeapCacheStats, locks);
+        }
+
+        private long getOffHeapDocumentCacheSize() {
+            long docCacheSize = getDocumentCacheSize();
+            long prevDocCacheSize = getPrevDocumentCacheSize();
+            if (docCacheSize + prevDocCacheSize == 0) {
+                return 0;
+            }
+            return (long) (offHeapCacheSize * ((double) docCacheSize / (docCacheSize + prevDocCacheSize)));
         }
 
         @SuppressWarnings("unchecked")
@@ -1132,6 +1352,10 @@ public class DocumentMK {
                 ) {
             Set<EvictionListener<K, V>> listeners = new CopyOnWriteArraySet<EvictionListener<K,V>>();
             Cache<K, V> cache = buildCache(cacheType.name(), maxWeight, listeners);
+            if (cacheType == CacheType.DOCUMENT || cacheType == CacheType.PREV_DOCUMENT) {
+                cache = (Cache<K, V>) wrapOffHeapCache((Cache<K, NodeDocument>) cache, cacheType,
+                        docStore, (Set<EvictionListener<K, NodeDocument>>) (Set<?>) listeners);
+            }
             PersistentCache p = null;
             if (cacheType == CacheType.DIFF || cacheType == CacheType.LOCAL_DIFF) {
                 // use separate journal cache if configured
@@ -1154,6 +1378,38 @@ public class DocumentMK {
             return cache;
         }
 
+        /**
+         * Adds an off-heap tier to the given document cache if configured.
+         * The tier is only added to a LIRS cache.
+         */
+        private <K extends CacheValue> Cache<K, NodeDocument> wrapOffHeapCache(
+                Cache<K, NodeDocument> cache,
+                CacheType cacheType,
+                DocumentStore docStore,
+                Set<EvictionListener<K, NodeDocument>> listeners) {
+            long size;
+            String name;
+            if (cacheType == CacheType.DOCUMENT) {
+                size = getOffHeapDocumentCacheSize();
+                name = "Document-Documents-OffHeap";
+            } else {
+                size = offHeapCacheSize - getOffHeapDocumentCacheSize();
+                name = "Document-PrevDocuments-OffHeap";
+            }
+            if (size <= 0 || docStore == null) {
+                return cache;
+            }
+            if (!(cache instanceof CacheLIRS)) {
+                LOG.warn("Off-heap cache for {} requires the LIRS cache and is disabled", cacheType);
+                return cache;
+            }
+            OffHeapCache<K> offHeapCache = new OffHeapCache<K>(docStore, size, name);
+            OffHeapTieredCache<K> tieredCache = new OffHeapTieredCache<K>(cache, offHeapCache);
+            listeners.add(tieredCache);
+            offHeapCaches.put(cacheType, offHeapCache);
+            return tieredCache;
+        }
+
         public PersistentCache getPersistentCache() {
             if (persistentCacheURI == null) {
                 return null;
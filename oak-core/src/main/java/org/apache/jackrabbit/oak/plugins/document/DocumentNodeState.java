@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -44,6 +45,7 @@ import org.apache.jackrabbit.oak.json.JsonSerializer;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.BundlorUtils;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.DocumentBundlor;
 import org.apache.jackrabbit.oak.plugins.document.bundlor.Matcher;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.BinaryCodec;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
@@ -51,6 +53,8 @@ import org.apache.jackrabbit.oak.spi.state.AbstractChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
@@ -439,6 +443,16 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
         return size;
     }
 
+    /**
+     * Reads the documents of the child nodes changed compared to the given
+     * base state into the document cache with bulk reads.
+     *
+     * @param base the base state.
+     */
+    void prefetchChangedChildren(@Nonnull AbstractDocumentNodeState base) {
+        store.prefetchChangedChildren(this, base);
+    }
+
     //------------------------------< internal >--------------------------------
 
     @CheckForNull
@@ -583,6 +597,58 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
         return new DocumentNodeState(store, path, rootRev, props, hasChildren, lastRev);
     }
 
+    /**
+     * Writes the binary representation of this node state as used by the
+     * persistent cache.
+     *
+     * @param buffer the buffer to write to.
+     */
+    public void writeTo(@Nonnull WriteBuffer buffer) {
+        BinaryCodec.writeString(buffer, path);
+        BinaryCodec.writeRevisionVector(buffer, rootRevision);
+        if (lastRevision != null) {
+            buffer.put((byte) 1);
+            BinaryCodec.writeRevisionVector(buffer, lastRevision);
+        } else {
+            buffer.put((byte) 0);
+        }
+        buffer.put((byte) (hasChildren ? 1 : 0));
+        Map<String, PropertyState> props = properties.isEmpty()
+                ? Collections.<String, PropertyState>emptyMap()
+                : bundlingContext.getAllProperties();
+        buffer.putVarInt(props.size());
+        for (Map.Entry<String, PropertyState> e : props.entrySet()) {
+            BinaryCodec.writeName(buffer, e.getKey());
+            BinaryCodec.writeString(buffer, asString(e.getValue()));
+        }
+    }
+
+    /**
+     * Reads a node state from its binary representation as written by
+     * {@link #writeTo(WriteBuffer)}.
+     *
+     * @param store the node store.
+     * @param buffer the buffer to read from.
+     * @return the node state.
+     */
+    public static DocumentNodeState readFrom(DocumentNodeStore store,
+                                             ByteBuffer buffer) {
+        String path = BinaryCodec.readString(buffer);
+        RevisionVector rootRev = BinaryCodec.readRevisionVector(buffer);
+        RevisionVector lastRev = null;
+        if (buffer.get() != 0) {
+            lastRev = BinaryCodec.readRevisionVector(buffer);
+        }
+        boolean hasChildren = buffer.get() != 0;
+        int numProps = DataUtils.readVarInt(buffer);
+        List<PropertyState> props = Lists.newArrayListWithCapacity(numProps);
+        for (int i = 0; i < numProps; i++) {
+            String name = BinaryCodec.readName(buffer);
+            props.add(store.createPropertyState(name, BinaryCodec.readString(buffer)));
+        }
+        return new DocumentNodeState(store, path, rootRev, props, hasChildren, lastRev);
+    }
+
     /**
      * A list of children for a node.
      */
@@ -659,7 +725,38 @@ public class DocumentNodeState extends AbstractDocumentNodeState implements Cach
             }
             return children;            
         }
-        
+
+        /**
+         * Writes the binary representation of this list of children as
+         * used by the persistent cache.
+         *
+         * @param buffer the buffer to write to.
+         */
+        public void writeTo(@Nonnull WriteBuffer buffer) {
+            buffer.put((byte) (hasMore ? 1 : 0));
+            buffer.putVarInt(children.size());
+            for (String c : children) {
+                BinaryCodec.writeString(buffer, c);
+            }
+        }
+
+        /**
+         * Reads a list of children from its binary representation as written
+         * by {@link #writeTo(WriteBuffer)}.
+         *
+         * @param buffer the buffer to read from.
+         * @return the list of children.
+         */
+        public static Children readFrom(ByteBuffer buffer) {
+            Children children = new Children();
+            children.hasMore = buffer.get() != 0;
+            int size = DataUtils.readVarInt(buffer);
+            children.children.ensureCapacity(size);
+            for (int i = 0; i < size; i++) {
+                children.children.add(BinaryCodec.readString(buffer));
+            }
+            return children;
+        }
     }
 
     private class ChildNodeEntryIterator implements Iterator<ChildNodeEntry> {
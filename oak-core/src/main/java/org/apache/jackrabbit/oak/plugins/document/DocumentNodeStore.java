@@ -54,6 +54,11 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -74,12 +79,15 @@ import com.google.common.base.Suppliers;
 import com.google.common.cache.Cache;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.apache.jackrabbit.api.stats.TimeSeries;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.commons.IOUtils;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector;
@@ -137,6 +145,17 @@ public final class DocumentNodeStore
      */
     static final int NUM_CHILDREN_CACHE_LIMIT = Integer.getInteger("oak.documentMK.childrenCacheLimit", 16 * 1024);
 
+    /**
+     * The maximum number of split candidates processed with one bulk update.
+     */
+    static final int SPLIT_BATCH_SIZE = Integer.getInteger("oak.documentMK.splitBatchSize", 100);
+
+    /**
+     * The maximum number of documents read at once when child nodes are
+     * prefetched.
+     */
+    static final int PREFETCH_BATCH_SIZE = 100;
+
     /**
      * Feature flag to enable concurrent add/remove operations of hidden empty
      * nodes. See OAK-2673.
@@ -194,6 +213,16 @@ public final class DocumentNodeStore
      */
     protected int asyncDelay = 1000;
 
+    /**
+     * The delay between two background read operations.
+     */
+    private final AdaptiveDelay backgroundReadDelay;
+
+    /**
+     * The delay between two background update operations.
+     */
+    private final AdaptiveDelay backgroundUpdateDelay;
+
     /**
      * The maximum back off time in milliseconds when merges are retried. The
      * default value is twice the {@link #asyncDelay}.
@@ -246,6 +275,43 @@ public final class DocumentNodeStore
      */
     private final Map<String, String> splitCandidates = Maps.newConcurrentMap();
 
+    /**
+     * Executor for asynchronous document splits or {@code null} if documents
+     * are split by the background update thread.
+     */
+    private final ExecutorService splitExecutor;
+
+    /**
+     * Whether a split task is currently scheduled on the
+     * {@link #splitExecutor}.
+     */
+    private final AtomicBoolean splitScheduled = new AtomicBoolean();
+
+    /**
+     * Executor for the document updates of a commit or {@code null} if
+     * updates are applied on the committing thread or the store implements
+     * {@link AsyncDocumentStore} itself.
+     */
+    private final ExecutorService commitUpdateExecutor;
+
+    /**
+     * Asynchronous access to the {@link #store} or {@code null} if updates
+     * of a commit are applied on the committing thread.
+     */
+    private final AsyncDocumentStore asyncStore;
+
+    /**
+     * The number of batches of a commit kept in flight on the
+     * {@link #asyncStore}.
+     */
+    private final int commitUpdateThreads;
+
+    /**
+     * Coalesces the document updates of concurrent commits or {@code null}
+     * if each commit writes its updates on its own.
+     */
+    private final UpdateCoalescingQueue updateCoalescingQueue;
+
     /**
      * Summary of changes done by this cluster node to persist by the background
      * update thread.
@@ -399,6 +465,20 @@ public final class DocumentNodeStore
     
     private final Executor executor;
 
+    /**
+     * Whether the background read reads the journal of each cluster node
+     * in parallel and prepares the diff cache entry for external changes
+     * concurrently with the invalidation of the document cache.
+     */
+    private final boolean pipelinedBackgroundRead;
+
+    /**
+     * Whether the background write persists pending _lastRev updates in
+     * batches striped by path depth and only holds the background operation
+     * lock while the pending updates are copied.
+     */
+    private final boolean incrementalLastRevPersist;
+
     private final LastRevRecoveryAgent lastRevRecoveryAgent;
 
     private final boolean disableBranches;
@@ -440,6 +520,8 @@ public final class DocumentNodeStore
             readOnlyMode = false;
         }
         this.executor = builder.getExecutor();
+        this.pipelinedBackgroundRead = builder.isPipelinedBackgroundRead();
+        this.incrementalLastRevPersist = builder.isIncrementalLastRevPersist();
         this.clock = builder.getClock();
 
         int cid = builder.getClusterId();
@@ -462,10 +544,41 @@ public final class DocumentNodeStore
         }
 
         this.store = s;
+        if (builder.getCommitUpdateThreads() > 1 && !readOnlyMode) {
+            commitUpdateThreads = builder.getCommitUpdateThreads();
+            AsyncDocumentStore nativeAsyncStore = getNativeAsyncStore(store);
+            if (nativeAsyncStore != null) {
+                // the store runs asynchronous operations on its own threads
+                commitUpdateExecutor = null;
+                asyncStore = nativeAsyncStore;
+            } else {
+                commitUpdateExecutor = Executors.newFixedThreadPool(commitUpdateThreads,
+                        new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+                                "DocumentNodeStore commit update thread (" + cid + ")-%d").build());
+                asyncStore = new ExecutorAsyncDocumentStore(store, commitUpdateExecutor);
+            }
+        } else {
+            commitUpdateThreads = 1;
+            commitUpdateExecutor = null;
+            asyncStore = null;
+        }
+        if (builder.isUpdateCoalescing() && !readOnlyMode) {
+            updateCoalescingQueue = new UpdateCoalescingQueue(store,
+                    builder.getNodeStoreStatsCollector(),
+                    builder.getUpdateCoalescingMaxDelayMillis(),
+                    builder.getUpdateCoalescingMaxSize());
+        } else {
+            updateCoalescingQueue = null;
+        }
+
         this.changes = newJournalEntry();
         this.clusterId = cid;
         this.branches = new UnmergedBranches();
         this.asyncDelay = builder.getAsyncDelay();
+        this.backgroundReadDelay = new AdaptiveDelay(
+                builder.getAdaptiveMinDelay(), builder.getAdaptiveMaxDelay());
+        this.backgroundUpdateDelay = new AdaptiveDelay(
+                builder.getAdaptiveMinDelay(), builder.getAdaptiveMaxDelay());
         this.versionGarbageCollector = new VersionGarbageCollector(
                 this, builder.createVersionGCSupport());
         this.journalGarbageCollector = new JournalGarbageCollector(this);
@@ -536,9 +649,18 @@ public final class DocumentNodeStore
         dispatcher = builder.isPrefetchExternalChanges() ?
                 new PrefetchDispatcher(getRoot(), executor) :
                 new ChangeDispatcher(getRoot());
-        commitQueue = new CommitQueue(this);
+        commitQueue = builder.isLockFreeCommitQueue() ?
+                new LockFreeCommitQueue(this) :
+                new DefaultCommitQueue(this);
         String threadNamePostfix = "(" + clusterId + ")";
         batchCommitQueue = new BatchCommitQueue(store);
+        if (builder.isAsyncSplit() && !readOnlyMode) {
+            splitExecutor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat(
+                            "DocumentNodeStore split thread " + threadNamePostfix).build());
+        } else {
+            splitExecutor = null;
+        }
         backgroundReadThread = new Thread(
                 new BackgroundReadOperation(this, isDisposed),
                 "DocumentNodeStore background read thread " + threadNamePostfix);
@@ -634,6 +756,10 @@ public final class DocumentNodeStore
         } catch (InterruptedException e) {
             // ignore
         }
+        // wait for a running split task. the final round of
+        // background operations splits remaining documents
+        new ExecutorCloser(splitExecutor, 1, TimeUnit.MINUTES).close();
+        new ExecutorCloser(commitUpdateExecutor).close();
 
         // do a final round of background operations after
         // the background thread stopped
@@ -692,6 +818,50 @@ public final class DocumentNodeStore
         return store;
     }
 
+    /**
+     * @return asynchronous access to the document store for the updates of
+     *          a commit or {@code null} if updates are applied on the
+     *          committing thread.
+     */
+    @CheckForNull
+    AsyncDocumentStore getAsyncDocumentStore() {
+        return asyncStore;
+    }
+
+    /**
+     * Returns the {@link AsyncDocumentStore} implemented by the given store,
+     * also when it is wrapped for the lease check.
+     *
+     * @param store the document store.
+     * @return the asynchronous store or {@code null} if the store does not
+     *          implement {@link AsyncDocumentStore}.
+     */
+    @CheckForNull
+    private static AsyncDocumentStore getNativeAsyncStore(DocumentStore store) {
+        if (store instanceof AsyncDocumentStore) {
+            return (AsyncDocumentStore) store;
+        } else if (store instanceof LeaseCheckDocumentStoreWrapper) {
+            return ((LeaseCheckDocumentStoreWrapper) store).getAsyncDocumentStore();
+        }
+        return null;
+    }
+
+    /**
+     * @return the queue coalescing document updates of concurrent commits
+     *          or {@code null} if each commit writes its updates on its own.
+     */
+    @CheckForNull
+    UpdateCoalescingQueue getUpdateCoalescingQueue() {
+        return updateCoalescingQueue;
+    }
+
+    /**
+     * @return the number of threads applying the updates of a commit.
+     */
+    int getCommitUpdateThreads() {
+        return commitUpdateThreads;
+    }
+
     /**
      * Creates a new commit. The caller must acknowledge the commit either with
      * {@link #done(Commit, boolean, CommitInfo)} or {@link #canceled(Commit)},
@@ -803,6 +973,22 @@ public final class DocumentNodeStore
         return asyncDelay;
     }
 
+    /**
+     * @return the current delay in milliseconds between two background
+     *          read operations.
+     */
+    int getBackgroundReadDelay() {
+        return backgroundReadDelay.getDelay(asyncDelay);
+    }
+
+    /**
+     * @return the current delay in milliseconds between two background
+     *          update operations.
+     */
+    int getBackgroundUpdateDelay() {
+        return backgroundUpdateDelay.getDelay(asyncDelay);
+    }
+
     public void setMaxBackOffMillis(int time) {
         maxBackOffMillis = time;
     }
@@ -1074,7 +1260,7 @@ public final class DocumentNodeStore
         }
 
         final RevisionVector readRevision = parent.getLastRevision();
-        return transform(getChildren(parent, name, limit).children, new Function<String, DocumentNodeState>() {
+        final Function<String, DocumentNodeState> toChildNode = new Function<String, DocumentNodeState>() {
             @Override
             public DocumentNodeState apply(String input) {
                 String p = concat(parent.getPath(), input);
@@ -1102,7 +1288,82 @@ public final class DocumentNodeStore
                 }
                 return result;
             }
+        };
+        List<String> children = getChildren(parent, name, limit).children;
+        if (children.size() < 2) {
+            return transform(children, toChildNode);
+        }
+        // read the documents of child nodes not yet in the node cache
+        // with a bulk read per batch of child nodes
+        return Iterables.concat(transform(Iterables.partition(children, PREFETCH_BATCH_SIZE),
+                new Function<List<String>, Iterable<DocumentNodeState>>() {
+            @Override
+            public Iterable<DocumentNodeState> apply(List<String> names) {
+                prefetchDocuments(parent.getPath(), readRevision, names);
+                return transform(names, toChildNode);
+            }
+        }));
+    }
+
+    /**
+     * Reads the documents of the child nodes changed between {@code base}
+     * and {@code node} into the document cache with bulk reads. Only
+     * changes already present in the diff cache are considered.
+     *
+     * @param node the node state.
+     * @param base the base node state.
+     */
+    void prefetchChangedChildren(@Nonnull AbstractDocumentNodeState node,
+                                 @Nonnull AbstractDocumentNodeState base) {
+        String changes = diffCache.getChanges(base.getRootRevision(),
+                node.getRootRevision(), node.getPath(), null);
+        if (changes == null) {
+            return;
+        }
+        final List<String> names = newArrayList();
+        DiffCache.parseJsopDiff(changes, new DiffCache.Diff() {
+            @Override
+            public boolean childNodeAdded(String name) {
+                return names.add(name);
+            }
+
+            @Override
+            public boolean childNodeChanged(String name) {
+                return names.add(name);
+            }
+
+            @Override
+            public boolean childNodeDeleted(String name) {
+                return names.add(name);
+            }
         });
+        for (List<String> batch : Iterables.partition(names, PREFETCH_BATCH_SIZE)) {
+            prefetchDocuments(node.getPath(), node.getLastRevision(), batch);
+        }
+    }
+
+    /**
+     * Reads the documents of the child nodes with the given names with a
+     * single bulk read, unless the node state at the given revision is
+     * already cached. Nothing is read if less than two documents are missing.
+     *
+     * @param path the path of the parent node.
+     * @param readRevision the read revision of the child nodes.
+     * @param names the names of the child nodes.
+     */
+    private void prefetchDocuments(@Nonnull String path,
+                                   @Nonnull RevisionVector readRevision,
+                                   @Nonnull List<String> names) {
+        List<String> ids = newArrayList();
+        for (String name : names) {
+            String p = concat(path, name);
+            if (nodeCache.getIfPresent(new PathRev(p, readRevision)) == null) {
+                ids.add(Utils.getIdFromPath(p));
+            }
+        }
+        if (ids.size() > 1) {
+            store.find(Collection.NODES, ids, Integer.MAX_VALUE);
+        }
     }
 
     @CheckForNull
@@ -1793,6 +2054,7 @@ public final class DocumentNodeStore
                 LOG.debug(msg, stats);
             }
         }
+        backgroundUpdateDelay.update(asyncDelay, stats.num);
         //Push stats outside of sync block
         nodeStoreStatsCollector.doneBackgroundUpdate(stats);
     }
@@ -1831,6 +2093,7 @@ public final class DocumentNodeStore
                 LOG.debug(msg, readStats.totalReadTime, readStats);
             }
         }
+        backgroundReadDelay.update(asyncDelay, readStats.numExternalChanges);
         nodeStoreStatsCollector.doneBackgroundRead(readStats);
     }
 
@@ -1906,7 +2169,14 @@ public final class DocumentNodeStore
         }
         alignWithExternalRevisions(doc);
 
-        StringSort externalSort = JournalEntry.newSorter();
+        // sorted external changes, one StringSort per cluster node in
+        // pipelined mode, otherwise a single StringSort for all changes.
+        // null if reading the external changes failed
+        List<StringSort> externalSorts = newArrayList();
+        if (!pipelinedBackgroundRead) {
+            externalSorts.add(JournalEntry.newSorter());
+        }
+        List<Future<StringSort>> journalReads = newArrayList();
 
         Map<Integer, Revision> lastRevMap = doc.getLastRev();
         try {
@@ -1930,32 +2200,53 @@ public final class DocumentNodeStore
                     // the revision changed for the machineId
                     externalChanges.add(r);
                     // collect external changes
-                    if (externalSort != null) {
+                    if (pipelinedBackgroundRead) {
+                        // read journal of this clusterId concurrently
+                        journalReads.add(readExternalChanges(last, r));
+                    } else if (externalSorts != null) {
                         // add changes for this particular clusterId to the externalSort
                         try {
-                            fillExternalChanges(externalSort, last, r, store);
+                            fillExternalChanges(externalSorts.get(0), last, r, store);
                         } catch (IOException e1) {
                             LOG.error("backgroundRead: Exception while reading external changes from journal: " + e1, e1);
-                            IOUtils.closeQuietly(externalSort);
-                            externalSort = null;
+                            closeQuietly(externalSorts);
+                            externalSorts = null;
                         }
                     }
                 }
             }
+            if (pipelinedBackgroundRead) {
+                externalSorts = collectExternalChanges(journalReads);
+            }
 
             stats.readHead = clock.getTime() - time;
             time = clock.getTime();
 
             if (!externalChanges.isEmpty()) {
+                Future<BufferedDiffCacheEntry> preparedDiff = null;
                 // invalidate caches
-                if (externalSort == null) {
+                if (externalSorts == null) {
                     // if no externalSort available, then invalidate the classic way: everything
                     stats.cacheStats = store.invalidateCache();
                 } else {
                     try {
-                        externalSort.sort();
-                        stats.numExternalChanges = externalSort.getSize();
-                        stats.cacheStats = store.invalidateCache(pathToId(externalSort));
+                        if (!pipelinedBackgroundRead) {
+                            // pipelined journal reads already sorted
+                            externalSorts.get(0).sort();
+                        }
+                        for (StringSort sort : externalSorts) {
+                            stats.numExternalChanges += sort.getSize();
+                        }
+                        stats.sortExternalChanges = clock.getTime() - time;
+                        time = clock.getTime();
+                        Iterable<String> changedPaths = mergeSorted(externalSorts);
+                        if (pipelinedBackgroundRead) {
+                            // prepare diff cache entry while the cache
+                            // is invalidated
+                            preparedDiff = prepareDiffCacheEntry(
+                                    changedPaths.iterator(), stats);
+                        }
+                        stats.cacheStats = store.invalidateCache(pathToId(changedPaths));
                     } catch (Exception ioe) {
                         LOG.error("backgroundRead: got IOException during external sorting/cache invalidation (as a result, invalidating entire cache): "+ioe, ioe);
                         stats.cacheStats = store.invalidateCache();
@@ -1964,6 +2255,12 @@ public final class DocumentNodeStore
                 stats.cacheInvalidationTime = clock.getTime() - time;
                 time = clock.getTime();
 
+                BufferedDiffCacheEntry diffEntry = null;
+                if (preparedDiff != null) {
+                    diffEntry = getPreparedDiffCacheEntry(preparedDiff);
+                    time = clock.getTime();
+                }
+
                 // make sure no local commit is in progress
                 backgroundOperationLock.writeLock().lock();
                 try {
@@ -1977,11 +2274,14 @@ public final class DocumentNodeStore
                     setRoot(newHead);
                     commitQueue.headRevisionChanged();
                     time = clock.getTime();
-                    if (externalSort != null) {
+                    if (diffEntry != null) {
+                        // prepared by the pipelined background read
+                        diffEntry.replayTo(diffCache.newEntry(oldHead, newHead, false));
+                    } else if (externalSorts != null && !pipelinedBackgroundRead) {
                         // then there were external changes and reading them
                         // was successful -> apply them to the diff cache
                         try {
-                            JournalEntry.applyTo(externalSort, diffCache, oldHead, newHead);
+                            JournalEntry.applyTo(externalSorts.get(0), diffCache, oldHead, newHead);
                         } catch (Exception e1) {
                             LOG.error("backgroundRead: Exception while processing external changes from journal: {}", e1, e1);
                         }
@@ -1996,12 +2296,128 @@ public final class DocumentNodeStore
                 stats.dispatchChanges = clock.getTime() - time;
             }
         } finally {
-            IOUtils.closeQuietly(externalSort);
+            closeQuietly(externalSorts);
         }
 
         return stats;
     }
 
+    /**
+     * Reads the external changes of a cluster node from the journal on the
+     * {@link #executor}.
+     *
+     * @param from the lower bound of the revision range (exclusive).
+     * @param to the upper bound of the revision range (inclusive).
+     * @return a future with the sorted paths of the external changes.
+     */
+    private Future<StringSort> readExternalChanges(final Revision from,
+                                                   final Revision to) {
+        FutureTask<StringSort> task = new FutureTask<StringSort>(new Callable<StringSort>() {
+            @Override
+            public StringSort call() throws Exception {
+                StringSort sort = JournalEntry.newSorter();
+                boolean success = false;
+                try {
+                    fillExternalChanges(sort, from, to, store);
+                    sort.sort();
+                    success = true;
+                } finally {
+                    if (!success) {
+                        IOUtils.closeQuietly(sort);
+                    }
+                }
+                return sort;
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Waits for the journal reads started by
+     * {@link #readExternalChanges(Revision, Revision)}.
+     *
+     * @param journalReads the pending journal reads.
+     * @return the sorted external changes or {@code null} if any of the
+     *          journal reads failed.
+     */
+    @CheckForNull
+    private List<StringSort> collectExternalChanges(List<Future<StringSort>> journalReads) {
+        List<StringSort> sorts = newArrayList();
+        Exception failure = null;
+        for (Future<StringSort> f : journalReads) {
+            try {
+                sorts.add(f.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            } catch (ExecutionException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            LOG.error("backgroundRead: Exception while reading external changes from journal: " + failure, failure);
+            closeQuietly(sorts);
+            return null;
+        }
+        return sorts;
+    }
+
+    /**
+     * Prepares the diff cache entry for the given sorted paths on the
+     * {@link #executor}.
+     *
+     * @param changedPaths the sorted paths of the external changes.
+     * @param stats the background read stats to update.
+     * @return a future with the prepared diff cache entry.
+     */
+    private Future<BufferedDiffCacheEntry> prepareDiffCacheEntry(
+            final Iterator<String> changedPaths,
+            final BackgroundReadStats stats) {
+        FutureTask<BufferedDiffCacheEntry> task = new FutureTask<BufferedDiffCacheEntry>(
+                new Callable<BufferedDiffCacheEntry>() {
+            @Override
+            public BufferedDiffCacheEntry call() {
+                long start = clock.getTime();
+                BufferedDiffCacheEntry entry = new BufferedDiffCacheEntry();
+                JournalEntry.applyTo(changedPaths, entry);
+                stats.prepareDiffCache = clock.getTime() - start;
+                return entry;
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    @CheckForNull
+    private static BufferedDiffCacheEntry getPreparedDiffCacheEntry(
+            Future<BufferedDiffCacheEntry> preparedDiff) {
+        try {
+            return preparedDiff.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("backgroundRead: Interrupted while preparing diff cache entry");
+        } catch (ExecutionException e) {
+            LOG.error("backgroundRead: Exception while processing external changes from journal: {}", e, e);
+        }
+        return null;
+    }
+
+    private static Iterable<String> mergeSorted(List<StringSort> sorts) {
+        if (sorts.size() == 1) {
+            return sorts.get(0);
+        }
+        return Iterables.mergeSorted(sorts, Ordering.<String>natural());
+    }
+
+    private static void closeQuietly(@Nullable List<StringSort> sorts) {
+        if (sorts != null) {
+            for (StringSort sort : sorts) {
+                IOUtils.closeQuietly(sort);
+            }
+        }
+    }
+
     private void cleanOrphanedBranches() {
         Branch b;
         while ((b = branches.pollOrphanedBranch()) != null) {
@@ -2044,33 +2460,72 @@ public final class DocumentNodeStore
     }
 
     private void backgroundSplit() {
-        RevisionVector head = getHeadRevision();
-        for (Iterator<String> it = splitCandidates.keySet().iterator(); it.hasNext();) {
-            String id = it.next();
-            NodeDocument doc = store.find(Collection.NODES, id);
-            if (doc == null) {
-                continue;
-            }
-            for (UpdateOp op : doc.split(this, head, isBinary)) {
-                NodeDocument before = null;
-                if (!op.isNew() ||
-                        !store.create(Collection.NODES, Collections.singletonList(op))) {
-                    before = store.createOrUpdate(Collection.NODES, op);
-                }
-                if (before != null) {
-                    if (LOG.isDebugEnabled()) {
-                        NodeDocument after = store.find(Collection.NODES, op.getId());
-                        if (after != null) {
-                            LOG.debug("Split operation on {}. Size before: {}, after: {}",
-                                    id, before.getMemory(), after.getMemory());
+        if (splitExecutor == null || isDisposed.get()) {
+            splitDocuments();
+        } else if (splitScheduled.compareAndSet(false, true)) {
+            try {
+                splitExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            splitDocuments();
+                        } catch (RuntimeException e) {
+                            LOG.warn("Background split failed (will be retried with next run): " + e.toString(), e);
+                        } finally {
+                            splitScheduled.set(false);
                         }
                     }
-                } else {
-                    LOG.debug("Split operation created {}", op.getId());
+                });
+            } catch (RejectedExecutionException e) {
+                splitScheduled.set(false);
+                LOG.debug("Split task rejected: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Splits the current split candidates in batches of
+     * {@link #SPLIT_BATCH_SIZE}. The split operations of a batch are applied
+     * with two bulk updates: the first one creates or updates previous and
+     * intermediate documents, the second one updates the main documents.
+     * This guarantees a main document is only updated after the documents
+     * it will reference were written.
+     */
+    private void splitDocuments() {
+        long time = clock.getTime();
+        int queueDepth = splitCandidates.size();
+        int numSplit = 0;
+        RevisionVector head = getHeadRevision();
+        Iterator<String> candidates = splitCandidates.keySet().iterator();
+        while (candidates.hasNext()) {
+            List<String> ids = newArrayList();
+            while (candidates.hasNext() && ids.size() < SPLIT_BATCH_SIZE) {
+                ids.add(candidates.next());
+            }
+            List<UpdateOp> docOps = newArrayList();
+            List<UpdateOp> mainOps = newArrayList();
+            for (NodeDocument doc : store.find(Collection.NODES, ids, Integer.MAX_VALUE)) {
+                for (UpdateOp op : doc.split(this, head, isBinary)) {
+                    if (op.getId().equals(doc.getId())) {
+                        mainOps.add(op);
+                    } else {
+                        docOps.add(op);
+                    }
                 }
             }
-            it.remove();
+            if (!docOps.isEmpty()) {
+                store.createOrUpdate(Collection.NODES, docOps);
+                LOG.debug("Split operations created or updated {} documents", docOps.size());
+            }
+            if (!mainOps.isEmpty()) {
+                store.createOrUpdate(Collection.NODES, mainOps);
+                LOG.debug("Split operations updated {} main documents", mainOps.size());
+            }
+            numSplit += mainOps.size();
+            splitCandidates.keySet().removeAll(ids);
         }
+        nodeStoreStatsCollector.doneBackgroundSplit(queueDepth, numSplit,
+                clock.getTime() - time);
     }
 
     @Nonnull
@@ -2079,7 +2534,7 @@ public final class DocumentNodeStore
     }
 
     BackgroundWriteStats backgroundWrite() {
-        return unsavedLastRevisions.persist(this, new UnsavedModifications.Snapshot() {
+        UnsavedModifications.Snapshot snapshot = new UnsavedModifications.Snapshot() {
             @Override
             public void acquiring(Revision mostRecent) {
                 if (store.create(JOURNAL, singletonList(changes.asUpdateOp(mostRecent)))) {
@@ -2091,7 +2546,15 @@ public final class DocumentNodeStore
                             + " bytes).");
                 }
             }
-        }, backgroundOperationLock.writeLock());
+        };
+        if (incrementalLastRevPersist) {
+            return unsavedLastRevisions.persistIncrementally(this, snapshot,
+                    backgroundOperationLock.writeLock(),
+                    UnsavedModifications.BACKGROUND_MULTI_UPDATE_LIMIT);
+        } else {
+            return unsavedLastRevisions.persist(this, snapshot,
+                    backgroundOperationLock.writeLock());
+        }
     }
 
     //-----------------------------< internal >---------------------------------
@@ -2608,6 +3071,26 @@ public final class DocumentNodeStore
                     "background update");
         }
 
+        @Override
+        public int getBackgroundReadDelay() {
+            return DocumentNodeStore.this.getBackgroundReadDelay();
+        }
+
+        @Override
+        public int getBackgroundUpdateDelay() {
+            return DocumentNodeStore.this.getBackgroundUpdateDelay();
+        }
+
+        @Override
+        public long getExternalChangeBacklog() {
+            return backgroundReadDelay.getLastBacklog();
+        }
+
+        @Override
+        public int getUnsavedModificationCount() {
+            return unsavedLastRevisions.getPaths().size();
+        }
+
         private CompositeData getTimeSeriesData(String name, String desc){
             return TimeSeriesStatsUtil.asCompositeData(getTimeSeries(name), desc);
         }
@@ -2633,7 +3116,7 @@ public final class DocumentNodeStore
                     @Override
                     public Integer get() {
                         DocumentNodeStore ns = ref.get();
-                        return ns != null ? ns.getAsyncDelay() : 0;
+                        return ns != null ? getDelay(ns) : 0;
                     }
                 };
             }
@@ -2647,6 +3130,13 @@ public final class DocumentNodeStore
 
         protected abstract void execute(@Nonnull DocumentNodeStore nodeStore);
 
+        /**
+         * @return the delay in milliseconds before the next execution.
+         */
+        protected int getDelay(@Nonnull DocumentNodeStore nodeStore) {
+            return nodeStore.getAsyncDelay();
+        }
+
         @Override
         public void run() {
             int delay = delaySupplier.get();
@@ -2694,6 +3184,11 @@ public final class DocumentNodeStore
         protected void execute(@Nonnull DocumentNodeStore nodeStore) {
             nodeStore.runBackgroundUpdateOperations();
         }
+
+        @Override
+        protected int getDelay(@Nonnull DocumentNodeStore nodeStore) {
+            return nodeStore.getBackgroundUpdateDelay();
+        }
     }
 
     /**
@@ -2710,6 +3205,11 @@ public final class DocumentNodeStore
         protected void execute(@Nonnull DocumentNodeStore nodeStore) {
             nodeStore.runBackgroundReadOperations();
         }
+
+        @Override
+        protected int getDelay(@Nonnull DocumentNodeStore nodeStore) {
+            return nodeStore.getBackgroundReadDelay();
+        }
     }
 
     static class BackgroundLeaseUpdate extends NodeStoreTask {
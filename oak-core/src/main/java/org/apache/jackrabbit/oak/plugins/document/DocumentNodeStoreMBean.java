@@ -60,4 +60,16 @@ public interface DocumentNodeStoreMBean {
     CompositeData getExternalChangeCountHistory();
 
     CompositeData getBackgroundUpdateCountHistory();
+
+    @Description("The current delay in milliseconds between two background read operations.")
+    int getBackgroundReadDelay();
+
+    @Description("The current delay in milliseconds between two background update operations.")
+    int getBackgroundUpdateDelay();
+
+    @Description("The number of external changes processed by the most recent background read.")
+    long getExternalChangeBacklog();
+
+    @Description("The number of nodes with modifications not yet written by the background update.")
+    int getUnsavedModificationCount();
 }
@@ -122,6 +122,7 @@ public class DocumentNodeStoreService {
     private static final String DEFAULT_JOURNAL_CACHE = "diff-cache";
     private static final int DEFAULT_CACHE_SEGMENT_COUNT = 16;
     private static final int DEFAULT_CACHE_STACK_MOVE_DISTANCE = 16;
+    private static final int DEFAULT_OFF_HEAP_CACHE = 0;
     private static final String PREFIX = "oak.documentstore.";
     private static final String DESCRIPTION = "oak.nodestore.description";
 
@@ -198,6 +199,13 @@ public class DocumentNodeStoreService {
     )
     private static final String PROP_CACHE_STACK_MOVE_DISTANCE = "cacheStackMoveDistance";
 
+    @Property(intValue = DEFAULT_OFF_HEAP_CACHE,
+            label = "Off-heap Document Cache Size (in MB)",
+            description = "Size in MB of the off-heap tier for the Document and PreviousDocument " +
+                    "caches. Requires the LIRS cache (default 0, disabled)"
+    )
+    private static final String PROP_OFF_HEAP_CACHE = "offHeapCache";
+
     @Property(intValue =  DEFAULT_BLOB_CACHE_SIZE,
             label = "Blob Cache Size (in MB)",
             description = "Cache size to store blobs in memory. Used only with default BlobStore " +
@@ -263,6 +271,15 @@ public class DocumentNodeStoreService {
     )
     public static final String PROP_PREFETCH_EXTERNAL_CHANGES = "prefetchExternalChanges";
 
+    @Property (boolValue = false,
+            label = "Pipelined background read",
+            description = "Boolean value indicating if the background read " +
+                    "should read the journal of each cluster node in parallel " +
+                    "and prepare the diff cache while the document cache is " +
+                    "invalidated."
+    )
+    public static final String PROP_PIPELINED_BACKGROUND_READ = "pipelinedBackgroundRead";
+
     private static final long MB = 1024 * 1024;
 
     private static enum DocumentStoreType {
@@ -440,8 +457,10 @@ public class DocumentNodeStoreService {
         String journalCache = getPath(PROP_JOURNAL_CACHE, DEFAULT_JOURNAL_CACHE);
         int cacheSegmentCount = toInteger(prop(PROP_CACHE_SEGMENT_COUNT), DEFAULT_CACHE_SEGMENT_COUNT);
         int cacheStackMoveDistance = toInteger(prop(PROP_CACHE_STACK_MOVE_DISTANCE), DEFAULT_CACHE_STACK_MOVE_DISTANCE);
+        int offHeapCacheSize = toInteger(prop(PROP_OFF_HEAP_CACHE), DEFAULT_OFF_HEAP_CACHE);
         boolean bundlingDisabled = toBoolean(prop(PROP_BUNDLING_DISABLED), DEFAULT_BUNDLING_DISABLED);
         boolean prefetchExternalChanges = toBoolean(prop(PROP_PREFETCH_EXTERNAL_CHANGES), false);
+        boolean pipelinedBackgroundRead = toBoolean(prop(PROP_PIPELINED_BACKGROUND_READ), false);
         DocumentMK.Builder mkBuilder =
                 new DocumentMK.Builder().
                 setStatisticsProvider(statisticsProvider).
@@ -453,6 +472,7 @@ public class DocumentNodeStoreService {
                         diffCachePercentage).
                 setCacheSegmentCount(cacheSegmentCount).
                 setCacheStackMoveDistance(cacheStackMoveDistance).
+                setOffHeapCacheSize(offHeapCacheSize * MB).
                 setBundlingDisabled(bundlingDisabled).
                 setLeaseCheck(true /* OAK-2739: enabled by default */).
                 setLeaseFailureHandler(new LeaseFailureHandler() {
@@ -476,7 +496,8 @@ public class DocumentNodeStoreService {
                         }
                     }
                 }).
-                setPrefetchExternalChanges(prefetchExternalChanges);
+                setPrefetchExternalChanges(prefetchExternalChanges).
+                setPipelinedBackgroundRead(pipelinedBackgroundRead);
 
         if (!Strings.isNullOrEmpty(persistentCache)) {
             mkBuilder.setPersistentCache(persistentCache);
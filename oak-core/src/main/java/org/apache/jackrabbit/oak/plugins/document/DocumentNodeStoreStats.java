@@ -29,7 +29,9 @@ import org.apache.jackrabbit.oak.stats.TimerStats;
 
 public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private static final String BGR_READ_HEAD = "DOCUMENT_NS_BGR_READ_HEAD";
+    private static final String BGR_SORT = "DOCUMENT_NS_BGR_SORT";
     private static final String BGR_CACHE_INVALIDATE = "DOCUMENT_NS_BGR_CACHE_INVALIDATE";
+    private static final String BGR_PREPARE_DIFF_CACHE = "DOCUMENT_NS_BGR_PREPARE_DIFF_CACHE";
     private static final String BGR_DIFF_CACHE = "DOCUMENT_NS_BGR_DIFF_CACHE";
     private static final String BGR_LOCK = "DOCUMENT_NS_BGR_LOCK";
     private static final String BGR_DISPATCH = "DOCUMENT_NS_BGR_DISPATCH";
@@ -40,10 +42,20 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private static final String BGW_CLEAN = "DOCUMENT_NS_BGW_CLEAN";
     private static final String BGW_SPLIT = "DOCUMENT_NS_BGW_SPLIT";
     private static final String BGW_WRITE = "DOCUMENT_NS_BGW_LOCK";
+    private static final String BGW_LOCK_HELD = "DOCUMENT_NS_BGW_LOCK_HELD";
+    private static final String BGW_BATCHES = "DOCUMENT_NS_BGW_BATCHES";
     static final String BGW_NUM = "DOCUMENT_NS_BGW_NUM";
     static final String BGW_NUM_WRITES_RATE = "DOCUMENT_NS_BGW_NUM_WRITE_RATE";
     private static final String BGW_TOTAL = "DOCUMENT_NS_BGW_TOTAL_TIME";
 
+    static final String BGS_QUEUE_DEPTH = "DOCUMENT_NS_BGS_QUEUE_DEPTH";
+    private static final String BGS_NUM_SPLIT = "DOCUMENT_NS_BGS_NUM_SPLIT";
+    private static final String BGS_TIME = "DOCUMENT_NS_BGS_TIME";
+
+    static final String COALESCE_COMMITS = "DOCUMENT_NS_COALESCE_COMMITS";
+    static final String COALESCE_OPS = "DOCUMENT_NS_COALESCE_OPS";
+    private static final String COALESCE_TIME = "DOCUMENT_NS_COALESCE_TIME";
+
     private static final String MERGE_SUCCESS_NUM_RETRY = "DOCUMENT_NS_MERGE_SUCCESS_RETRY";
     static final String MERGE_SUCCESS_COUNT = "DOCUMENT_NS_MERGE_SUCCESS_COUNT";
     private static final String MERGE_SUCCESS_TIME = "DOCUMENT_NS_MERGE_SUCCESS_TIME";
@@ -53,7 +65,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     static final String MERGE_FAILED_EXCLUSIVE = "DOCUMENT_NS_MERGE_FAILED_EXCLUSIVE";
 
     private final TimerStats readHead;
+    private final TimerStats readSort;
     private final TimerStats readCacheInvalidate;
+    private final TimerStats readPrepareDiffCache;
     private final TimerStats readDiffCache;
     private final TimerStats readLock;
     private final TimerStats readDispatch;
@@ -65,9 +79,19 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private final TimerStats writeSplit;
     private final HistogramStats writeNum;
     private final TimerStats writeWrite;
+    private final TimerStats writeLockHeld;
+    private final HistogramStats writeBatches;
     private final TimerStats writeTotal;
     private final MeterStats numWritesRate;
 
+    private final HistogramStats splitQueueDepth;
+    private final MeterStats splitNum;
+    private final TimerStats splitTime;
+
+    private final HistogramStats coalesceCommits;
+    private final HistogramStats coalesceOps;
+    private final TimerStats coalesceTime;
+
     private final HistogramStats mergeSuccessRetries;
     private final MeterStats mergeSuccessRate;
     private final TimerStats mergeSuccessTime;
@@ -79,7 +103,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
 
     public DocumentNodeStoreStats(StatisticsProvider sp) {
         readHead = sp.getTimer(BGR_READ_HEAD, StatsOptions.METRICS_ONLY);
+        readSort = sp.getTimer(BGR_SORT, StatsOptions.METRICS_ONLY);
         readCacheInvalidate = sp.getTimer(BGR_CACHE_INVALIDATE, StatsOptions.METRICS_ONLY);
+        readPrepareDiffCache = sp.getTimer(BGR_PREPARE_DIFF_CACHE, StatsOptions.METRICS_ONLY);
         readDiffCache = sp.getTimer(BGR_DIFF_CACHE, StatsOptions.METRICS_ONLY);
         readLock = sp.getTimer(BGR_LOCK, StatsOptions.METRICS_ONLY);
         readDispatch = sp.getTimer(BGR_DISPATCH, StatsOptions.METRICS_ONLY);
@@ -90,10 +116,20 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         writeClean = sp.getTimer(BGW_CLEAN, StatsOptions.METRICS_ONLY);
         writeSplit = sp.getTimer(BGW_SPLIT, StatsOptions.METRICS_ONLY);
         writeWrite = sp.getTimer(BGW_WRITE, StatsOptions.METRICS_ONLY);
+        writeLockHeld = sp.getTimer(BGW_LOCK_HELD, StatsOptions.METRICS_ONLY);
+        writeBatches = sp.getHistogram(BGW_BATCHES, StatsOptions.METRICS_ONLY);
         writeTotal = sp.getTimer(BGW_TOTAL, StatsOptions.METRICS_ONLY);
         writeNum = sp.getHistogram(BGW_NUM, StatsOptions.METRICS_ONLY);
         numWritesRate = sp.getMeter(BGW_NUM_WRITES_RATE, StatsOptions.DEFAULT); //Enable time series
 
+        splitQueueDepth = sp.getHistogram(BGS_QUEUE_DEPTH, StatsOptions.METRICS_ONLY);
+        splitNum = sp.getMeter(BGS_NUM_SPLIT, StatsOptions.METRICS_ONLY);
+        splitTime = sp.getTimer(BGS_TIME, StatsOptions.METRICS_ONLY);
+
+        coalesceCommits = sp.getHistogram(COALESCE_COMMITS, StatsOptions.METRICS_ONLY);
+        coalesceOps = sp.getHistogram(COALESCE_OPS, StatsOptions.METRICS_ONLY);
+        coalesceTime = sp.getTimer(COALESCE_TIME, StatsOptions.METRICS_ONLY);
+
         mergeSuccessRetries = sp.getHistogram(MERGE_SUCCESS_NUM_RETRY, StatsOptions.METRICS_ONLY);
         mergeSuccessRate = sp.getMeter(MERGE_SUCCESS_COUNT, StatsOptions.DEFAULT); //Enable time series
         mergeSuccessTime = sp.getTimer(MERGE_SUCCESS_TIME, StatsOptions.METRICS_ONLY);
@@ -106,7 +142,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     @Override
     public void doneBackgroundRead(BackgroundReadStats stats) {
         readHead.update(stats.readHead, TimeUnit.MILLISECONDS);
+        readSort.update(stats.sortExternalChanges, TimeUnit.MILLISECONDS);
         readCacheInvalidate.update(stats.cacheInvalidationTime, TimeUnit.MILLISECONDS);
+        readPrepareDiffCache.update(stats.prepareDiffCache, TimeUnit.MILLISECONDS);
         readDiffCache.update(stats.populateDiffCache, TimeUnit.MILLISECONDS);
         readLock.update(stats.lock, TimeUnit.MILLISECONDS);
         readDispatch.update(stats.dispatchChanges, TimeUnit.MILLISECONDS);
@@ -122,14 +160,30 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         writeClean.update(stats.clean, TimeUnit.MILLISECONDS);
         writeSplit.update(stats.split, TimeUnit.MILLISECONDS);
         writeWrite.update(stats.write, TimeUnit.MILLISECONDS);
+        writeLockHeld.update(stats.lockHeld, TimeUnit.MILLISECONDS);
         writeTotal.update(stats.totalWriteTime, TimeUnit.MILLISECONDS);
 
         writeNum.update(stats.num);
+        writeBatches.update(stats.batches);
 
         //Record rate of num of bg writes pushed per second
         numWritesRate.mark(stats.num);
     }
 
+    @Override
+    public void doneBackgroundSplit(int queueDepth, int numSplit, long timeTaken) {
+        splitQueueDepth.update(queueDepth);
+        splitNum.mark(numSplit);
+        splitTime.update(timeTaken, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void doneCoalescedUpdate(int numCommits, int numOps, long timeTaken) {
+        coalesceCommits.update(numCommits);
+        coalesceOps.update(numOps);
+        coalesceTime.update(timeTaken, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void doneMerge(int numRetries, long timeTaken, boolean suspended, boolean exclusive) {
         mergeSuccessRate.mark();
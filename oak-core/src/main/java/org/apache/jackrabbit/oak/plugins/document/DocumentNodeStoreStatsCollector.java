@@ -24,6 +24,25 @@ public interface DocumentNodeStoreStatsCollector {
 
     void doneBackgroundUpdate(BackgroundWriteStats stats);
 
+    /**
+     * Called when a run of document splits finished.
+     *
+     * @param queueDepth the number of split candidates when the run started.
+     * @param numSplit the number of documents split.
+     * @param timeTaken the time in milliseconds it took to split documents.
+     */
+    void doneBackgroundSplit(int queueDepth, int numSplit, long timeTaken);
+
+    /**
+     * Called when the coalesced document updates of concurrent commits
+     * were written to the document store.
+     *
+     * @param numCommits the number of commits in the batch.
+     * @param numOps the number of update operations in the batch.
+     * @param timeTaken the time in milliseconds it took to write the batch.
+     */
+    void doneCoalescedUpdate(int numCommits, int numOps, long timeTaken);
+
     void doneMerge(int numRetries, long timeTaken, boolean suspended, boolean exclusive);
 
     void failedMerge(int numRetries, long time, boolean suspended, boolean exclusive);
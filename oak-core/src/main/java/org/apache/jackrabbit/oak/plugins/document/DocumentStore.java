@@ -83,6 +83,31 @@ public interface DocumentStore {
     <T extends Document> T find(Collection<T> collection, String key, int maxCacheAge)
             throws DocumentStoreException;
 
+    /**
+     * Get the documents with the given {@code keys}. This is the bulk variant
+     * of {@link #find(Collection, String, int)} and the same rules apply to
+     * cached documents. An implementation should read the documents not
+     * served from the cache with as few calls to the underlying storage as
+     * possible.
+     * <p>
+     * The returned list contains the existing documents in the order of the
+     * given keys. Keys without a document are skipped. The returned documents
+     * are immutable.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param keys the keys
+     * @param maxCacheAge the maximum age of the cached documents (in ms)
+     * @return the list of existing documents (possibly empty)
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    @Nonnull
+    <T extends Document> List<T> find(Collection<T> collection,
+                                      List<String> keys,
+                                      int maxCacheAge)
+            throws DocumentStoreException;
+
     /**
      * Get a list of documents where the key is greater than a start value and
      * less than an end value.
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An {@link AsyncDocumentStore} running the blocking operations of a
+ * {@link DocumentStore} on an {@link Executor}. The number of operations in
+ * flight is limited by the number of threads of the executor.
+ */
+public class ExecutorAsyncDocumentStore implements AsyncDocumentStore {
+
+    private final DocumentStore store;
+
+    private final Executor executor;
+
+    public ExecutorAsyncDocumentStore(@Nonnull DocumentStore store,
+                                      @Nonnull Executor executor) {
+        this.store = checkNotNull(store);
+        this.executor = checkNotNull(executor);
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<T> findAsync(final Collection<T> collection,
+                                                              final String key) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return store.find(collection, key);
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<T> findAsync(final Collection<T> collection,
+                                                              final String key,
+                                                              final int maxCacheAge) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return store.find(collection, key, maxCacheAge);
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<List<T>> queryAsync(final Collection<T> collection,
+                                                                     final String fromKey,
+                                                                     final String toKey,
+                                                                     final int limit) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                return store.query(collection, fromKey, toKey, limit);
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<T> createOrUpdateAsync(final Collection<T> collection,
+                                                                        final UpdateOp update) {
+        return submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return store.createOrUpdate(collection, update);
+            }
+        });
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<List<T>> createOrUpdateAsync(final Collection<T> collection,
+                                                                              final List<UpdateOp> updateOps) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                return store.createOrUpdate(collection, updateOps);
+            }
+        });
+    }
+
+    private <V> ListenableFuture<V> submit(Callable<V> callable) {
+        ListenableFutureTask<V> task = ListenableFutureTask.create(callable);
+        executor.execute(task);
+        return task;
+    }
+}
@@ -107,9 +107,20 @@ public final class JournalEntry extends Document {
         // note that it is not de-duplicated yet
         LOG.debug("applyTo: sorting done.");
 
-        final DiffCache.Entry entry = checkNotNull(diffCache).newEntry(from, to, false);
+        applyTo(externalSort.getIds(),
+                checkNotNull(diffCache).newEntry(from, to, false));
+    }
 
-        final Iterator<String> it = externalSort.getIds();
+    /**
+     * Appends the changes for the given sorted (but not necessarily
+     * de-duplicated) paths to the diff cache entry and marks the entry as
+     * done.
+     *
+     * @param it the sorted paths of the changed nodes.
+     * @param entry the diff cache entry to populate.
+     */
+    static void applyTo(@Nonnull Iterator<String> it,
+                        @Nonnull DiffCache.Entry entry) {
         if (!it.hasNext()) {
             // nothing at all? that's quite unusual..
 
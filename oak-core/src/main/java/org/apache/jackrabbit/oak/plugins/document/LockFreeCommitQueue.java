@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * A {@link CommitQueue} without a global monitor. Commits are kept in a
+ * {@link ConcurrentSkipListMap} ordered by revision and a thread waiting
+ * for its commit to become the head of the queue is parked until the
+ * preceding commit releases it.
+ * <p>
+ * Revisions are created and enqueued without a lock. A commit may only
+ * proceed as head of the queue after it raised the {@link #headMark} to at
+ * least its own revision and then found itself at the head of the queue. A
+ * newly created revision that is not newer than the mark after it was
+ * enqueued may have lost the race against a more recent commit that already
+ * proceeded. In this case the revision is discarded and a new one is
+ * created.
+ */
+final class LockFreeCommitQueue extends CommitQueue {
+
+    private final ConcurrentSkipListMap<Revision, Entry> commits =
+            new ConcurrentSkipListMap<Revision, Entry>(StableRevisionComparator.INSTANCE);
+
+    /**
+     * The most recent revision of a commit that checked whether it is at the
+     * head of the queue. The mark only ever moves forward.
+     */
+    private final AtomicReference<Revision> headMark = new AtomicReference<Revision>();
+
+    /**
+     * Currently suspended commits.
+     */
+    private final ConcurrentMap<SuspendedCommit, Boolean> suspendedCommits = Maps.newConcurrentMap();
+
+    LockFreeCommitQueue(@Nonnull RevisionContext context) {
+        super(context);
+    }
+
+    @Nonnull
+    @Override
+    SortedSet<Revision> createRevisions(int num) {
+        checkArgument(num > 0);
+        for (;;) {
+            SortedSet<Revision> revs = new TreeSet<Revision>(StableRevisionComparator.INSTANCE);
+            for (int i = 0; i < num; i++) {
+                revs.add(context.newRevision());
+            }
+            Revision rev = revs.last();
+            commits.put(rev, new Entry(rev));
+            if (!isBeforeHeadMark(rev)) {
+                LOG.debug("created commit {}", rev);
+                return revs;
+            }
+            // a more recent commit may already have passed the
+            // head of the queue, retry with new revisions
+            LOG.debug("discarding commit {}, head mark is {}", rev, headMark.get());
+            commits.remove(rev);
+            notifyHead();
+        }
+    }
+
+    @Override
+    void done(@Nonnull Revision revision, @Nonnull Callback c) {
+        checkNotNull(revision);
+        Entry entry = commits.get(revision);
+        checkArgument(entry != null, "Unknown commit: %s", revision);
+        while (!isHead(revision)) {
+            LOG.debug("not head: {}, waiting...", revision);
+            entry.await();
+        }
+        try {
+            c.headOfQueue(revision);
+        } finally {
+            commits.remove(revision);
+            LOG.debug("removed {}", revision);
+            // notify next if there is any
+            notifyHead();
+        }
+    }
+
+    @Override
+    void canceled(@Nonnull Revision rev) {
+        commits.remove(rev);
+        LOG.debug("removed commit {}", rev);
+        notifyHead();
+        notifySuspendedCommits(rev);
+    }
+
+    @Override
+    boolean contains(@Nonnull Revision revision) {
+        return commits.containsKey(checkNotNull(revision));
+    }
+
+    @Override
+    void suspendUntilAll(@Nonnull Set<Revision> conflictRevisions) {
+        SuspendedCommit suspended = new SuspendedCommit(conflictRevisions);
+        suspendedCommits.put(suspended, Boolean.TRUE);
+        try {
+            // check the head revision after the commit was registered,
+            // otherwise a concurrent change of the head revision may
+            // go unnoticed
+            if (!suspended.removeRevisionsVisibleFrom(context.getHeadRevision())) {
+                suspended.await(suspendTimeout);
+            }
+        } finally {
+            suspendedCommits.remove(suspended);
+        }
+    }
+
+    @Override
+    void headRevisionChanged() {
+        if (suspendedCommits.isEmpty()) {
+            return;
+        }
+        RevisionVector headRevision = context.getHeadRevision();
+        for (SuspendedCommit suspended : suspendedCommits.keySet()) {
+            if (suspended.removeRevisionsVisibleFrom(headRevision)) {
+                suspendedCommits.remove(suspended);
+            }
+        }
+    }
+
+    @Override
+    int numSuspendedThreads() {
+        return suspendedCommits.size();
+    }
+
+    //------------------------< internal >--------------------------------------
+
+    /**
+     * Raises the head mark to the given revision and then checks whether the
+     * commit with the given revision is at the head of the queue.
+     *
+     * @param rev the revision of a commit.
+     * @return {@code true} if the commit is at the head of the queue and
+     *          may proceed.
+     */
+    private boolean isHead(@Nonnull Revision rev) {
+        for (;;) {
+            Revision mark = headMark.get();
+            if (mark != null && StableRevisionComparator.INSTANCE.compare(mark, rev) >= 0) {
+                break;
+            }
+            if (headMark.compareAndSet(mark, rev)) {
+                break;
+            }
+        }
+        Map.Entry<Revision, Entry> first = commits.firstEntry();
+        return first != null && first.getKey().equals(rev);
+    }
+
+    private boolean isBeforeHeadMark(@Nonnull Revision rev) {
+        Revision mark = headMark.get();
+        return mark != null && StableRevisionComparator.INSTANCE.compare(mark, rev) > 0;
+    }
+
+    private void notifyHead() {
+        Map.Entry<Revision, Entry> first = commits.firstEntry();
+        if (first != null) {
+            LOG.debug("release {}", first.getKey());
+            first.getValue().release();
+        }
+    }
+
+    private void notifySuspendedCommits(@Nonnull Revision revision) {
+        checkNotNull(revision);
+        for (SuspendedCommit suspended : suspendedCommits.keySet()) {
+            if (suspended.removeRevision(revision)) {
+                suspendedCommits.remove(suspended);
+            }
+        }
+    }
+
+    /**
+     * An entry in the commit queue.
+     */
+    private static final class Entry {
+
+        /**
+         * The revision of the commit (used for debugging).
+         */
+        private final Revision revision;
+
+        /**
+         * The thread waiting for this entry to become the head of the queue.
+         */
+        private volatile Thread waiter;
+
+        /**
+         * Set when the entry is released and reset when the waiting thread
+         * consumed the release.
+         */
+        private volatile boolean released;
+
+        Entry(Revision revision) {
+            this.revision = revision;
+        }
+
+        /**
+         * Release the thread waiting on this entry, if any.
+         */
+        void release() {
+            released = true;
+            Thread t = waiter;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+
+        /**
+         * Wait until this entry is released. Interrupts are ignored, but
+         * the interrupt status of the thread is restored.
+         */
+        void await() {
+            boolean interrupted = false;
+            waiter = Thread.currentThread();
+            try {
+                LOG.debug("awaiting {}", revision);
+                while (!released) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        interrupted = true;
+                    }
+                }
+                released = false;
+            } finally {
+                waiter = null;
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * A commit suspended until a set of revisions becomes visible.
+     */
+    private static final class SuspendedCommit {
+
+        private final Thread thread = Thread.currentThread();
+
+        private final Set<Revision> revisions = Sets.newConcurrentHashSet();
+
+        SuspendedCommit(Set<Revision> revisions) {
+            this.revisions.addAll(revisions);
+        }
+
+        /**
+         * Removes the revisions visible from the given head revision.
+         *
+         * @param headRevision the current head revision.
+         * @return {@code true} if there are no more revisions to wait for.
+         */
+        boolean removeRevisionsVisibleFrom(RevisionVector headRevision) {
+            Iterator<Revision> it = revisions.iterator();
+            while (it.hasNext()) {
+                if (!headRevision.isRevisionNewer(it.next())) {
+                    it.remove();
+                }
+            }
+            return unparkIfDone();
+        }
+
+        /**
+         * Removes the given revision.
+         *
+         * @param r the revision to remove.
+         * @return {@code true} if the revision was removed and there are no
+         *          more revisions to wait for.
+         */
+        boolean removeRevision(Revision r) {
+            return revisions.remove(r) && unparkIfDone();
+        }
+
+        /**
+         * Parks the current thread until all revisions are removed, the
+         * timeout is reached or the thread is interrupted.
+         *
+         * @param timeoutMillis the timeout in milliseconds.
+         */
+        void await(long timeoutMillis) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!revisions.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.currentThread().isInterrupted()) {
+                    LOG.debug("The suspended thread has been interrupted");
+                    break;
+                }
+            }
+        }
+
+        private boolean unparkIfDone() {
+            if (revisions.isEmpty()) {
+                LockSupport.unpark(thread);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -2139,8 +2139,23 @@ public final class NodeDocument extends Document implements CachedNodeDocument{
     }
     
     public static NodeDocument fromString(DocumentStore store, String s) {
+        return fromString(store, Revision.getCurrentTimestamp(), s);
+    }
+
+    /**
+     * Creates a document from its string representation as returned by
+     * {@link #asString()}.
+     *
+     * @param store the document store.
+     * @param creationTime the creation time of the document.
+     * @param s the string representation of the document.
+     * @return the document.
+     */
+    public static NodeDocument fromString(DocumentStore store,
+                                          long creationTime,
+                                          String s) {
         JsopTokenizer json = new JsopTokenizer(s);
-        NodeDocument doc = new NodeDocument(store);
+        NodeDocument doc = new NodeDocument(store, creationTime);
         while (true) {
             if (json.matches(JsopReader.END)) {
                 break;
@@ -40,6 +40,16 @@ public final class PathRev implements CacheValue {
         this.revision = checkNotNull(revision);
     }
 
+    @Nonnull
+    public String getPath() {
+        return path;
+    }
+
+    @Nonnull
+    public RevisionVector getRevision() {
+        return revision;
+    }
+
     @Override
     public int getMemory() {
         return 24                                       // shallow size
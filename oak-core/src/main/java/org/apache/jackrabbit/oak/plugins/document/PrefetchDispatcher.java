@@ -34,7 +34,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * A change dispatcher that pre-fetches visible external changes in a background
- * task.
+ * task. The documents of changed child nodes are read with bulk reads.
  */
 class PrefetchDispatcher extends ChangeDispatcher {
 
@@ -73,6 +73,17 @@ class PrefetchDispatcher extends ChangeDispatcher {
 
         static final Editor INSTANCE = new TraversingEditor();
 
+        @Override
+        public void enter(NodeState before, NodeState after)
+                throws CommitFailedException {
+            // read the documents of changed child nodes in bulk
+            if (before instanceof AbstractDocumentNodeState
+                    && after instanceof DocumentNodeState) {
+                ((DocumentNodeState) after).prefetchChangedChildren(
+                        (AbstractDocumentNodeState) before);
+            }
+        }
+
         @Override
         public Editor childNodeAdded(String name, NodeState after)
                 throws CommitFailedException {
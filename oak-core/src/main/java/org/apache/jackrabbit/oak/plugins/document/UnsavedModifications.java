@@ -19,14 +19,20 @@ package org.apache.jackrabbit.oak.plugins.document;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.document.util.MapFactory;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.apache.jackrabbit.oak.stats.Clock;
@@ -37,9 +43,11 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
 
@@ -56,6 +64,12 @@ class UnsavedModifications {
      */
     static final int BACKGROUND_MULTI_UPDATE_LIMIT = 10000;
 
+    /**
+     * Interval in milliseconds for progress messages of a long running
+     * incremental persist.
+     */
+    private static final long PROGRESS_LOG_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
     private final ConcurrentMap<String, Revision> map = MapFactory.getInstance().create();
 
     /**
@@ -165,8 +179,8 @@ class UnsavedModifications {
         } finally {
             lock.unlock();
         }
+        stats.lockHeld = clock.getTime() - time;
         stats.num = pending.size();
-        UpdateOp updateOp = null;
         Revision lastRev = null;
         PeekingIterator<String> paths = Iterators.peekingIterator(
                 pending.keySet().iterator());
@@ -177,11 +191,7 @@ class UnsavedModifications {
             Revision r = pending.get(p);
 
             int size = pathList.size();
-            if (updateOp == null) {
-                // create UpdateOp
-                Commit commit = new Commit(store, r, null);
-                updateOp = commit.getUpdateOperationForNode(p);
-                NodeDocument.setLastRev(updateOp, r);
+            if (lastRev == null) {
                 lastRev = r;
                 pathList.add(p);
                 paths.next();
@@ -200,30 +210,122 @@ class UnsavedModifications {
             if (i + 2 > pending.size()
                     || size == pathList.size()
                     || pathList.size() >= BACKGROUND_MULTI_UPDATE_LIMIT) {
-                List<String> ids = new ArrayList<String>();
-                for (String path : pathList) {
-                    ids.add(Utils.getIdFromPath(path));
-                }
-                store.getDocumentStore().update(NODES, ids, updateOp);
-                LOG.debug("Updated _lastRev to {} on {}", lastRev, ids);
-                for (String path : pathList) {
-                    map.remove(path, lastRev);
-                }
+                updateLastRev(store, pathList, lastRev);
+                stats.batches++;
                 pathList.clear();
-                updateOp = null;
                 lastRev = null;
             }
         }
-        Revision writtenRootRev = pending.get("/");
-        if (writtenRootRev != null) {
-            int cid = writtenRootRev.getClusterId();
-            if (store.getDocumentStore().find(org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES, String.valueOf(cid)) != null) {
-                UpdateOp update = new UpdateOp(String.valueOf(cid), false);
-                update.equals(Document.ID, null, String.valueOf(cid));
-                update.set(ClusterNodeInfo.LAST_WRITTEN_ROOT_REV_KEY, writtenRootRev.toString());
-                store.getDocumentStore().findAndUpdate(org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES, update);
+        updateLastWrittenRootRev(store, pending.get("/"));
+
+        stats.write = clock.getTime() - time;
+        return stats;
+    }
+
+    /**
+     * Persist the pending changes to _lastRev to the given store in bounded
+     * batches. Like {@link #persist(DocumentNodeStore, Snapshot, Lock)}, this
+     * method acquires the passed lock to get a consistent snapshot of the
+     * pending revisions, but the lock is only held while the pending entries
+     * are copied. Sorting and grouping of the snapshot happens after the lock
+     * was released.
+     * <p>
+     * The snapshot is split into stripes by path depth. Stripes are persisted
+     * deepest first, which guarantees the _lastRev of a node is written
+     * before the _lastRev of its parent. Within a stripe, paths with the same
+     * revision are updated together with multi updates of at most
+     * {@code batchSize} documents, independent of the order of the paths. The
+     * root document is always updated last and individually.
+     *
+     * @param store the document node store.
+     * @param snapshot callback when the snapshot of the pending changes is
+     *                 acquired.
+     * @param lock the lock to acquire to get a consistent snapshot of the
+     *             revisions to write back.
+     * @param batchSize the maximum number of documents to update at once.
+     * @return stats about the write operation.
+     */
+    public BackgroundWriteStats persistIncrementally(@Nonnull DocumentNodeStore store,
+                                                     @Nonnull Snapshot snapshot,
+                                                     @Nonnull Lock lock,
+                                                     int batchSize) {
+        BackgroundWriteStats stats = new BackgroundWriteStats();
+        if (map.size() == 0) {
+            return stats;
+        }
+        checkNotNull(store);
+        checkNotNull(lock);
+        checkArgument(batchSize > 0, "batchSize must be positive: %s", batchSize);
+
+        Clock clock = store.getClock();
+
+        long time = clock.getTime();
+        // copy the entries of the map while holding the lock
+        lock.lock();
+        stats.lock = clock.getTime() - time;
+        time = clock.getTime();
+        List<Map.Entry<String, Revision>> pending;
+        try {
+            snapshot.acquiring(getMostRecentRevision());
+            pending = new ArrayList<Map.Entry<String, Revision>>(map.size());
+            for (Map.Entry<String, Revision> entry : map.entrySet()) {
+                pending.add(Maps.immutableEntry(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        stats.lockHeld = clock.getTime() - time;
+        stats.num = pending.size();
+
+        // stripes by path depth (deepest first), paths grouped by revision
+        SortedMap<Integer, Map<Revision, List<String>>> stripes =
+                new TreeMap<Integer, Map<Revision, List<String>>>(Collections.reverseOrder());
+        Revision writtenRootRev = null;
+        for (Map.Entry<String, Revision> entry : pending) {
+            String path = entry.getKey();
+            Revision r = entry.getValue();
+            if (PathUtils.denotesRoot(path)) {
+                writtenRootRev = r;
+                continue;
+            }
+            int depth = Utils.pathDepth(path);
+            Map<Revision, List<String>> stripe = stripes.get(depth);
+            if (stripe == null) {
+                stripe = new LinkedHashMap<Revision, List<String>>();
+                stripes.put(depth, stripe);
+            }
+            List<String> paths = stripe.get(r);
+            if (paths == null) {
+                paths = new ArrayList<String>();
+                stripe.put(r, paths);
             }
+            paths.add(path);
+        }
+        stats.stripes = stripes.size();
+
+        long persisted = 0;
+        long lastProgress = clock.getTime();
+        for (Map<Revision, List<String>> stripe : stripes.values()) {
+            for (Map.Entry<Revision, List<String>> entry : stripe.entrySet()) {
+                for (List<String> batch : Lists.partition(entry.getValue(), batchSize)) {
+                    updateLastRev(store, batch, entry.getKey());
+                    stats.batches++;
+                    persisted += batch.size();
+                    long now = clock.getTime();
+                    if (now - lastProgress > PROGRESS_LOG_INTERVAL) {
+                        LOG.info("Background write in progress: persisted {}/{} " +
+                                "_lastRev updates in {} batches", persisted,
+                                stats.num, stats.batches);
+                        lastProgress = now;
+                    }
+                }
+            }
+        }
+        if (writtenRootRev != null) {
+            updateLastRev(store, Collections.singletonList("/"), writtenRootRev);
+            stats.batches++;
         }
+        updateLastWrittenRootRev(store, writtenRootRev);
 
         stats.write = clock.getTime() - time;
         return stats;
@@ -234,6 +336,41 @@ class UnsavedModifications {
         return map.toString();
     }
 
+    /**
+     * Updates the _lastRev of the documents with the given paths to the
+     * given revision and removes the paths from the pending modifications,
+     * unless they were modified again in the meantime.
+     */
+    private void updateLastRev(@Nonnull DocumentNodeStore store,
+                               @Nonnull List<String> paths,
+                               @Nonnull Revision lastRev) {
+        Commit commit = new Commit(store, lastRev, null);
+        UpdateOp updateOp = commit.getUpdateOperationForNode(paths.get(0));
+        NodeDocument.setLastRev(updateOp, lastRev);
+        List<String> ids = new ArrayList<String>(paths.size());
+        for (String path : paths) {
+            ids.add(Utils.getIdFromPath(path));
+        }
+        store.getDocumentStore().update(NODES, ids, updateOp);
+        LOG.debug("Updated _lastRev to {} on {}", lastRev, ids);
+        for (String path : paths) {
+            map.remove(path, lastRev);
+        }
+    }
+
+    private static void updateLastWrittenRootRev(@Nonnull DocumentNodeStore store,
+                                                 @Nullable Revision writtenRootRev) {
+        if (writtenRootRev != null) {
+            int cid = writtenRootRev.getClusterId();
+            if (store.getDocumentStore().find(org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES, String.valueOf(cid)) != null) {
+                UpdateOp update = new UpdateOp(String.valueOf(cid), false);
+                update.equals(Document.ID, null, String.valueOf(cid));
+                update.set(ClusterNodeInfo.LAST_WRITTEN_ROOT_REV_KEY, writtenRootRev.toString());
+                store.getDocumentStore().findAndUpdate(org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES, update);
+            }
+        }
+    }
+
     private Revision getMostRecentRevision() {
         // use revision of root document
         Revision rev = map.get("/");
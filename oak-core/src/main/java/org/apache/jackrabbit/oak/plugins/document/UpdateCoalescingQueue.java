@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+
+/**
+ * Coalesces the document updates of concurrent commits into a single bulk
+ * {@link DocumentStore#createOrUpdate(Collection, List)} call. The first
+ * commit that finds no open batch becomes the leader of a new batch. The
+ * leader waits until the previous batch is done and, if configured, up to
+ * {@code maxDelayMillis} for more commits to join, but not longer than
+ * until the batch has {@code maxSize} operations. Then it executes the
+ * batch on behalf of all commits in it.
+ * <p>
+ * A batch never contains two operations on the same document. A commit that
+ * would add an operation on a document already in the open batch, or that
+ * would exceed the maximum size, updates the store directly. Each commit
+ * gets the documents before the update for its own operations, in the
+ * order of its operations. If the bulk call fails, all commits in the batch
+ * see the failure and roll back their changes as if they had called the
+ * store directly.
+ */
+final class UpdateCoalescingQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UpdateCoalescingQueue.class);
+
+    private final DocumentStore store;
+
+    private final DocumentNodeStoreStatsCollector stats;
+
+    private final long maxDelayMillis;
+
+    private final int maxSize;
+
+    /**
+     * The batch accepting operations or {@code null} if there is none.
+     */
+    private Batch open;
+
+    /**
+     * Whether a batch is currently executed.
+     */
+    private boolean executing;
+
+    UpdateCoalescingQueue(@Nonnull DocumentStore store,
+                          @Nonnull DocumentNodeStoreStatsCollector stats,
+                          long maxDelayMillis,
+                          int maxSize) {
+        this.store = checkNotNull(store);
+        this.stats = checkNotNull(stats);
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Applies the update operations of a commit, possibly together with
+     * the operations of other commits.
+     *
+     * @param ops the update operations of a commit.
+     * @return the documents before the update, in the order of the
+     *          update operations.
+     * @throws DocumentStoreException if the update failed.
+     */
+    @Nonnull
+    List<NodeDocument> createOrUpdate(@Nonnull List<UpdateOp> ops) {
+        Batch batch;
+        int offset;
+        boolean leader = false;
+        synchronized (this) {
+            if (open == null && ops.size() < maxSize) {
+                open = new Batch();
+                leader = true;
+            }
+            if (open != null && open.accepts(ops)) {
+                batch = open;
+                offset = batch.add(ops);
+                // wake up a leader waiting for more operations
+                notifyAll();
+            } else {
+                batch = null;
+                offset = -1;
+            }
+        }
+        if (batch == null) {
+            LOG.debug("Cannot coalesce {} operations", ops.size());
+            return store.createOrUpdate(NODES, ops);
+        }
+        if (leader) {
+            execute(batch);
+        }
+        return batch.getResults(offset, ops.size());
+    }
+
+    /**
+     * @return {@code true} if there is a batch accepting operations.
+     */
+    synchronized boolean hasOpenBatch() {
+        return open != null;
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private void execute(Batch batch) {
+        synchronized (this) {
+            boolean interrupted = false;
+            long deadline = System.currentTimeMillis() + maxDelayMillis;
+            try {
+                for (;;) {
+                    long timeout;
+                    if (executing) {
+                        timeout = 0;
+                    } else if (batch.size() >= maxSize) {
+                        break;
+                    } else {
+                        timeout = deadline - System.currentTimeMillis();
+                        if (timeout <= 0) {
+                            break;
+                        }
+                    }
+                    try {
+                        wait(timeout);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            open = null;
+            executing = true;
+        }
+        Stopwatch sw = Stopwatch.createStarted();
+        try {
+            LOG.debug("Executing batch with {} operations of {} commits",
+                    batch.size(), batch.getNumCommits());
+            batch.results.set(store.createOrUpdate(NODES, batch.ops));
+        } catch (Throwable t) {
+            batch.results.setException(t);
+        } finally {
+            synchronized (this) {
+                executing = false;
+                notifyAll();
+            }
+        }
+        stats.doneCoalescedUpdate(batch.getNumCommits(), batch.size(),
+                sw.elapsed(TimeUnit.MILLISECONDS));
+    }
+
+    private final class Batch {
+
+        private final List<UpdateOp> ops = Lists.newArrayList();
+
+        private final Set<String> ids = Sets.newHashSet();
+
+        private final SettableFuture<List<NodeDocument>> results = SettableFuture.create();
+
+        private int numCommits;
+
+        /**
+         * @return {@code true} if the operations can be added to this batch.
+         */
+        boolean accepts(List<UpdateOp> newOps) {
+            if (ops.size() + newOps.size() > maxSize) {
+                return false;
+            }
+            for (UpdateOp op : newOps) {
+                if (ids.contains(op.getId())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Adds the operations of a commit to this batch.
+         *
+         * @return the index of the first operation in the batch.
+         */
+        int add(List<UpdateOp> newOps) {
+            int offset = ops.size();
+            for (UpdateOp op : newOps) {
+                ops.add(op);
+                ids.add(op.getId());
+            }
+            numCommits++;
+            return offset;
+        }
+
+        int size() {
+            return ops.size();
+        }
+
+        int getNumCommits() {
+            return numCommits;
+        }
+
+        List<NodeDocument> getResults(int offset, int length) {
+            try {
+                List<NodeDocument> docs = Uninterruptibles.getUninterruptibly(results);
+                return Lists.newArrayList(docs.subList(offset, offset + length));
+            } catch (ExecutionException e) {
+                throw DocumentStoreException.convert(e.getCause());
+            }
+        }
+    }
+}
@@ -151,6 +151,22 @@ public class UpdateUtils {
         return true;
     }
 
+    /**
+     * Sets all entries of a revision map on the given {@link UpdateOp}, for
+     * example to restore a document from a dump.
+     *
+     * @param op the update operation.
+     * @param property the name of the map property.
+     * @param entries the revisions and values of the map.
+     */
+    public static void setMapEntries(@Nonnull UpdateOp op,
+                                     @Nonnull String property,
+                                     @Nonnull Map<Revision, String> entries) {
+        for (Entry<Revision, String> e : checkNotNull(entries).entrySet()) {
+            checkNotNull(op).setMapEntry(property, e.getKey(), e.getValue());
+        }
+    }
+
     /**
      * Ensures that the given {@link UpdateOp} is unconditional
      * @param up the update operation
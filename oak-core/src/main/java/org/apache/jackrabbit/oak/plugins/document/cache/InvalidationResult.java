@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+/**
+ * The {@link CacheInvalidationStats} reported by the document stores, which
+ * compare the modification stamps of the cached documents with those in the
+ * backend.
+ */
+public class InvalidationResult implements CacheInvalidationStats {
+
+    /**
+     * The number of documents removed from the cache.
+     */
+    public int invalidationCount;
+
+    /**
+     * The number of cached documents found to be up to date.
+     */
+    public int upToDateCount;
+
+    /**
+     * The number of cached documents checked.
+     */
+    public int cacheSize;
+
+    /**
+     * The number of queries for modification stamps sent to the backend.
+     */
+    public int queryCount;
+
+    /**
+     * The number of cache entries processed.
+     */
+    public int cacheEntriesProcessedCount;
+
+    @Override
+    public String toString() {
+        return "InvalidationResult{" +
+                "invalidationCount=" + invalidationCount +
+                ", upToDateCount=" + upToDateCount +
+                ", cacheSize=" + cacheSize +
+                ", queryCount=" + queryCount +
+                ", cacheEntriesProcessedCount=" + cacheEntriesProcessedCount +
+                '}';
+    }
+
+    @Override
+    public String summaryReport() {
+        return toString();
+    }
+}
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document.cache;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -67,6 +68,11 @@ public class NodeDocumentCache implements Closeable {
 
     private final NodeDocumentLocks locks;
 
+    /**
+     * Statistics of the off-heap tiers of the caches, if any.
+     */
+    private final List<CacheStats> offHeapCacheStats;
+
     private final List<CacheChangesTracker> changeTrackers;
 
     public NodeDocumentCache(@Nonnull Cache<CacheValue, NodeDocument> nodeDocumentsCache,
@@ -74,10 +80,21 @@ public class NodeDocumentCache implements Closeable {
                              @Nonnull Cache<StringValue, NodeDocument> prevDocumentsCache,
                              @Nonnull CacheStats prevDocumentsCacheStats,
                              @Nonnull NodeDocumentLocks locks) {
+        this(nodeDocumentsCache, nodeDocumentsCacheStats, prevDocumentsCache,
+                prevDocumentsCacheStats, Collections.<CacheStats>emptyList(), locks);
+    }
+
+    public NodeDocumentCache(@Nonnull Cache<CacheValue, NodeDocument> nodeDocumentsCache,
+                             @Nonnull CacheStats nodeDocumentsCacheStats,
+                             @Nonnull Cache<StringValue, NodeDocument> prevDocumentsCache,
+                             @Nonnull CacheStats prevDocumentsCacheStats,
+                             @Nonnull List<CacheStats> offHeapCacheStats,
+                             @Nonnull NodeDocumentLocks locks) {
         this.nodeDocumentsCache = nodeDocumentsCache;
         this.nodeDocumentsCacheStats = nodeDocumentsCacheStats;
         this.prevDocumentsCache = prevDocumentsCache;
         this.prevDocumentsCacheStats = prevDocumentsCacheStats;
+        this.offHeapCacheStats = Lists.newArrayList(offHeapCacheStats);
         this.locks = locks;
         this.changeTrackers = new CopyOnWriteArrayList<CacheChangesTracker>();
     }
@@ -130,7 +147,7 @@ public class NodeDocumentCache implements Closeable {
         for (Entry<String, ModificationStamp> e : modStamps.entrySet()) {
             String id = e.getKey();
             ModificationStamp stamp = e.getValue();
-            NodeDocument doc = getIfPresent(id);
+            NodeDocument doc = peek(id);
             if (doc == null) {
                 continue;
             }
@@ -158,6 +175,27 @@ public class NodeDocumentCache implements Closeable {
         }
     }
 
+    /**
+     * Return the cached value or null, like {@link #getIfPresent(String)},
+     * but without moving the document between the tiers of the in-memory
+     * cache. Use this method to check whether a document is cached.
+     *
+     * @param key document key
+     * @return cached value or null if there's no document with given key cached
+     */
+    @CheckForNull
+    public NodeDocument peek(@Nonnull String key) {
+        Cache<CacheValue, NodeDocument> cache = isLeafPreviousDocId(key)
+                ? prevDocumentsCache : nodeDocumentsCache;
+        StringValue k = new StringValue(key);
+        NodeDocument doc = cache.asMap().get(k);
+        if (doc == null) {
+            // not in memory, but a persistent cache may still have it
+            doc = cache.getIfPresent(k);
+        }
+        return doc;
+    }
+
     /**
      * Return the document matching given key, optionally loading it from an
      * external source.
@@ -339,7 +377,9 @@ public class NodeDocumentCache implements Closeable {
     }
 
     public Iterable<CacheStats> getCacheStats() {
-        return Lists.newArrayList(nodeDocumentsCacheStats, prevDocumentsCacheStats);
+        List<CacheStats> stats = Lists.newArrayList(nodeDocumentsCacheStats, prevDocumentsCacheStats);
+        stats.addAll(offHeapCacheStats);
+        return stats;
     }
 
     @Override
@@ -441,7 +481,7 @@ public class NodeDocumentCache implements Closeable {
             String id = d.getId();
             Lock lock = locks.acquire(id);
             try {
-                NodeDocument cachedDoc = getIfPresent(id);
+                NodeDocument cachedDoc = peek(id);
                 // if an old document is present in the cache, we can simply update it
                 if (cachedDoc != null && isNewer(cachedDoc, d)) {
                     putInternal(d);
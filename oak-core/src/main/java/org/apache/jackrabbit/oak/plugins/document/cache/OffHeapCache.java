@@ -0,0 +1,416 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.AbstractCache;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A cache for {@link NodeDocument}s, which keeps the serialized documents
+ * in direct memory outside of the Java heap. The memory is allocated in a few
+ * large slabs, which are divided into blocks of {@link #BLOCK_SIZE} bytes. A
+ * document occupies as many blocks as its serialized form needs. The blocks
+ * of removed documents are reused, so the cache does not allocate direct
+ * memory once its slabs are in use and does not depend on the garbage
+ * collector to release it. Only the keys and the block numbers of the
+ * documents remain on the heap. The direct memory available to the JVM (see
+ * {@code -XX:MaxDirectMemorySize}) must be large enough for the configured
+ * maximum size of the cache.
+ * <p>
+ * Entries are evicted in the order they were put into the cache when the
+ * maximum size is exceeded. The {@link NodeDocument#NULL} document cannot be
+ * put into this cache.
+ */
+public class OffHeapCache<K extends CacheValue> extends AbstractCache<K, NodeDocument> {
+
+    /**
+     * Size of the header with the creation and last check time of a document.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Size of the blocks the slabs are divided into.
+     */
+    static final int BLOCK_SIZE = 512;
+
+    /**
+     * Number of blocks in a slab. Slabs are 16 MB large, except for the last
+     * one, which may be smaller.
+     */
+    private static final int BLOCKS_PER_SLAB = 16 * 1024 * 1024 / BLOCK_SIZE;
+
+    private final DocumentStore store;
+
+    private final long maxMemory;
+
+    private final String name;
+
+    /**
+     * The slabs of direct memory. A slab is allocated when its first block is
+     * used and kept afterwards.
+     */
+    private final ByteBuffer[] slabs;
+
+    /**
+     * The total number of blocks in all slabs.
+     */
+    private final int numBlocks;
+
+    /**
+     * The blocks of the documents in insertion order.
+     */
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<K, Entry>();
+
+    private final StatsCounter statsCounter = new SimpleStatsCounter();
+
+    /**
+     * The first block of the list of free blocks or -1 if the list is empty.
+     * Each free block holds the number of the next free block in its first
+     * four bytes.
+     */
+    private int freeList = -1;
+
+    /**
+     * The number of blocks in the list of free blocks.
+     */
+    private int numFreeBlocks;
+
+    /**
+     * Blocks starting with this one have never been used.
+     */
+    private int nextUnusedBlock;
+
+    /**
+     * @param store the store the documents belong to.
+     * @param maxMemory the maximum number of bytes used by this cache.
+     * @param name the name of the cache.
+     */
+    public OffHeapCache(@Nonnull DocumentStore store,
+                        long maxMemory,
+                        @Nonnull String name) {
+        checkArgument(maxMemory >= BLOCK_SIZE, "maxMemory must be at least %s", BLOCK_SIZE);
+        this.store = checkNotNull(store);
+        this.maxMemory = maxMemory;
+        this.name = checkNotNull(name);
+        this.numBlocks = (int) Math.min(maxMemory / BLOCK_SIZE, Integer.MAX_VALUE);
+        this.slabs = new ByteBuffer[(numBlocks + BLOCKS_PER_SLAB - 1) / BLOCKS_PER_SLAB];
+    }
+
+    /**
+     * Removes the document with the given key from this cache and returns
+     * it, if present.
+     *
+     * @param key the key of the document.
+     * @return the document or {@code null} if not present.
+     */
+    @CheckForNull
+    public NodeDocument remove(@Nonnull Object key) {
+        byte[] data = null;
+        synchronized (this) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                data = readBlocks(entry);
+                freeBlocks(entry);
+            }
+        }
+        return read(data);
+    }
+
+    @CheckForNull
+    @Override
+    public NodeDocument getIfPresent(@Nonnull Object key) {
+        byte[] data = null;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                data = readBlocks(entry);
+            }
+        }
+        return read(data);
+    }
+
+    /**
+     * @param key the key of the document.
+     * @return {@code true} if this cache contains a document with the given
+     *      key.
+     */
+    public synchronized boolean containsKey(@Nonnull Object key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * @return a snapshot of the keys currently in this cache.
+     */
+    @Nonnull
+    public synchronized Set<K> keys() {
+        return ImmutableSet.copyOf(entries.keySet());
+    }
+
+    /**
+     * Returns the document with the given key, if present. Unlike
+     * {@link #getIfPresent(Object)}, reading the document is not recorded in
+     * the statistics of this cache.
+     *
+     * @param key the key of the document.
+     * @return the document or {@code null} if not present.
+     */
+    @CheckForNull
+    public NodeDocument peek(@Nonnull Object key) {
+        byte[] data;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            data = readBlocks(entry);
+        }
+        return decode(data);
+    }
+
+    /**
+     * Returns an iterator over the documents in this cache. The keys are
+     * taken from a snapshot when the iterator is created, but a document is
+     * only read when the iterator reaches it. Documents removed in the
+     * meantime are skipped. Reading the documents is not recorded in the
+     * statistics of this cache.
+     *
+     * @return an iterator over the keys and documents in this cache.
+     */
+    @Nonnull
+    public Iterator<Map.Entry<K, NodeDocument>> entryIterator() {
+        final Iterator<K> keys = keys().iterator();
+        return new AbstractIterator<Map.Entry<K, NodeDocument>>() {
+            @Override
+            protected Map.Entry<K, NodeDocument> computeNext() {
+                while (keys.hasNext()) {
+                    K key = keys.next();
+                    NodeDocument doc = peek(key);
+                    if (doc != null) {
+                        return Maps.immutableEntry(key, doc);
+                    }
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    @Override
+    public void put(@Nonnull K key, @Nonnull NodeDocument doc) {
+        checkArgument(doc != NodeDocument.NULL, "doc must not be NULL document");
+        byte[] json = doc.asString().getBytes(Charsets.UTF_8);
+        byte[] data = new byte[HEADER_SIZE + json.length];
+        ByteBuffer.wrap(data)
+                .putLong(doc.getCreated())
+                .putLong(doc.getLastCheckTime())
+                .put(json);
+        int blocks = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (blocks > numBlocks) {
+            invalidate(key);
+            return;
+        }
+        synchronized (this) {
+            removeEntry(key);
+            Iterator<Entry> it = entries.values().iterator();
+            while (getAvailableBlocks() < blocks && it.hasNext()) {
+                freeBlocks(it.next());
+                it.remove();
+                statsCounter.recordEviction();
+            }
+            Entry entry = new Entry(allocateBlocks(blocks), data.length);
+            writeBlocks(entry, data);
+            entries.put(key, entry);
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(@Nonnull Object key) {
+        removeEntry(key);
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        entries.clear();
+        freeList = -1;
+        numFreeBlocks = 0;
+        nextUnusedBlock = 0;
+    }
+
+    @Override
+    public synchronized long size() {
+        return entries.size();
+    }
+
+    @Override
+    public com.google.common.cache.CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * @return the number of bytes currently used by this cache.
+     */
+    public synchronized long getUsedMemory() {
+        return (long) (numBlocks - getAvailableBlocks()) * BLOCK_SIZE;
+    }
+
+    /**
+     * @return the statistics of this cache.
+     */
+    @Nonnull
+    public CacheStats getCacheStats() {
+        return new CacheStats(this, name, null, maxMemory) {
+            @Override
+            public long estimateCurrentWeight() {
+                return getUsedMemory();
+            }
+        };
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private void removeEntry(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            freeBlocks(entry);
+        }
+    }
+
+    private int getAvailableBlocks() {
+        return numFreeBlocks + numBlocks - nextUnusedBlock;
+    }
+
+    @Nonnull
+    private int[] allocateBlocks(int count) {
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (freeList >= 0) {
+                blocks[i] = freeList;
+                freeList = slab(freeList).getInt(offset(freeList));
+                numFreeBlocks--;
+            } else {
+                blocks[i] = nextUnusedBlock++;
+            }
+        }
+        return blocks;
+    }
+
+    private void freeBlocks(@Nonnull Entry entry) {
+        for (int block : entry.blocks) {
+            slab(block).putInt(offset(block), freeList);
+            freeList = block;
+            numFreeBlocks++;
+        }
+    }
+
+    private void writeBlocks(@Nonnull Entry entry, @Nonnull byte[] data) {
+        int pos = 0;
+        for (int block : entry.blocks) {
+            int len = Math.min(BLOCK_SIZE, data.length - pos);
+            ByteBuffer slab = slab(block);
+            slab.position(offset(block));
+            slab.put(data, pos, len);
+            pos += len;
+        }
+    }
+
+    @Nonnull
+    private byte[] readBlocks(@Nonnull Entry entry) {
+        byte[] data = new byte[entry.length];
+        int pos = 0;
+        for (int block : entry.blocks) {
+            int len = Math.min(BLOCK_SIZE, data.length - pos);
+            ByteBuffer slab = slab(block);
+            slab.position(offset(block));
+            slab.get(data, pos, len);
+            pos += len;
+        }
+        return data;
+    }
+
+    @Nonnull
+    private ByteBuffer slab(int block) {
+        int index = block / BLOCKS_PER_SLAB;
+        ByteBuffer slab = slabs[index];
+        if (slab == null) {
+            int blocks = Math.min(BLOCKS_PER_SLAB, numBlocks - index * BLOCKS_PER_SLAB);
+            slab = ByteBuffer.allocateDirect(blocks * BLOCK_SIZE);
+            slabs[index] = slab;
+        }
+        return slab;
+    }
+
+    private static int offset(int block) {
+        return (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+    }
+
+    @CheckForNull
+    private NodeDocument read(@CheckForNull byte[] data) {
+        if (data == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
+        long start = System.nanoTime();
+        NodeDocument doc = decode(data);
+        statsCounter.recordHits(1);
+        statsCounter.recordLoadSuccess(System.nanoTime() - start);
+        return doc;
+    }
+
+    @Nonnull
+    private NodeDocument decode(@Nonnull byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long created = buffer.getLong();
+        long lastCheckTime = buffer.getLong();
+        NodeDocument doc = NodeDocument.fromString(store, created,
+                new String(data, HEADER_SIZE, data.length - HEADER_SIZE, Charsets.UTF_8));
+        doc.markUpToDate(lastCheckTime);
+        return doc;
+    }
+
+    /**
+     * The blocks of a document and the length of its serialized form.
+     */
+    private static final class Entry {
+
+        final int[] blocks;
+
+        final int length;
+
+        Entry(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ForwardingConcurrentMap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.EvictionListener;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A two tier cache for {@link NodeDocument}s with an on-heap cache and an
+ * {@link OffHeapCache}. Documents evicted from the on-heap cache because of
+ * its size limit are moved to the off-heap cache. With a LIRS cache these
+ * are the cold entries. A document found in the off-heap cache is moved back
+ * to the on-heap cache, where it starts as a cold entry again.
+ * <p>
+ * This cache must be registered as {@link EvictionListener} of the on-heap
+ * cache. It can be wrapped by the persistent cache, which then acts as the
+ * third tier.
+ */
+public class OffHeapTieredCache<K extends CacheValue>
+        implements Cache<K, NodeDocument>, EvictionListener<K, NodeDocument>, Closeable {
+
+    private final Cache<K, NodeDocument> memCache;
+
+    private final OffHeapCache<K> offHeapCache;
+
+    /**
+     * Incremented before an entry of the on-heap cache is replaced or
+     * invalidated. A document moved back from the off-heap cache is only
+     * kept in the on-heap cache when there was no such change in the
+     * meantime.
+     */
+    private final AtomicLong modCount = new AtomicLong();
+
+    public OffHeapTieredCache(@Nonnull Cache<K, NodeDocument> memCache,
+                              @Nonnull OffHeapCache<K> offHeapCache) {
+        this.memCache = checkNotNull(memCache);
+        this.offHeapCache = checkNotNull(offHeapCache);
+    }
+
+    /**
+     * @return the off-heap tier of this cache.
+     */
+    @Nonnull
+    public OffHeapCache<K> getOffHeapCache() {
+        return offHeapCache;
+    }
+
+    @CheckForNull
+    @Override
+    public NodeDocument getIfPresent(Object key) {
+        NodeDocument doc = memCache.getIfPresent(key);
+        if (doc == null) {
+            doc = promote(key);
+        }
+        return doc;
+    }
+
+    /**
+     * Returns the document with the given key from either tier, if present.
+     * Unlike {@link #getIfPresent(Object)}, this method neither moves the
+     * document back to the on-heap cache nor records the access in the
+     * statistics.
+     *
+     * @param key the key of the document.
+     * @return the document or {@code null} if not present.
+     */
+    @CheckForNull
+    public NodeDocument peek(Object key) {
+        NodeDocument doc = memCache.asMap().get(key);
+        if (doc == null) {
+            doc = offHeapCache.peek(key);
+        }
+        return doc;
+    }
+
+    @Override
+    public NodeDocument get(K key, Callable<? extends NodeDocument> valueLoader)
+            throws ExecutionException {
+        NodeDocument doc = getIfPresent(key);
+        if (doc != null) {
+            return doc;
+        }
+        return memCache.get(key, valueLoader);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ImmutableMap<K, NodeDocument> getAllPresent(Iterable<?> keys) {
+        Map<K, NodeDocument> result = Maps.newLinkedHashMap();
+        for (Object key : keys) {
+            NodeDocument doc = getIfPresent(key);
+            if (doc != null) {
+                result.put((K) key, doc);
+            }
+        }
+        return ImmutableMap.copyOf(result);
+    }
+
+    @Override
+    public void put(K key, NodeDocument value) {
+        modCount.incrementAndGet();
+        memCache.put(key, value);
+        offHeapCache.invalidate(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends NodeDocument> m) {
+        modCount.incrementAndGet();
+        memCache.putAll(m);
+        offHeapCache.invalidateAll(m.keySet());
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        modCount.incrementAndGet();
+        memCache.invalidate(key);
+        offHeapCache.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll(Iterable<?> keys) {
+        modCount.incrementAndGet();
+        memCache.invalidateAll(keys);
+        offHeapCache.invalidateAll(keys);
+    }
+
+    @Override
+    public void invalidateAll() {
+        modCount.incrementAndGet();
+        memCache.invalidateAll();
+        offHeapCache.invalidateAll();
+    }
+
+    @Override
+    public long size() {
+        return memCache.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+        return memCache.stats();
+    }
+
+    /**
+     * Returns a view over both tiers of this cache. Like
+     * {@link #peek(Object)}, reading a document through
+     * {@link Map#get(Object)} does not move it back to the on-heap cache.
+     * The key, value and entry views are read-only. For the off-heap tier
+     * they iterate over the keys present when the iteration starts and only
+     * read a document when the iteration reaches it.
+     */
+    @Override
+    public ConcurrentMap<K, NodeDocument> asMap() {
+        return new TieredMap();
+    }
+
+    @Override
+    public void cleanUp() {
+        memCache.cleanUp();
+    }
+
+    /**
+     * Moves documents evicted from the on-heap cache because of its size
+     * limit to the off-heap cache. This method is called while the on-heap
+     * cache holds the lock for the evicted entry, which means a concurrent
+     * invalidation of the entry will also see the off-heap copy.
+     */
+    @Override
+    public void evicted(K key, NodeDocument value, RemovalCause cause) {
+        if (cause == RemovalCause.SIZE
+                && value != null && value != NodeDocument.NULL) {
+            offHeapCache.put(key, value);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        offHeapCache.invalidateAll();
+        if (memCache instanceof Closeable) {
+            ((Closeable) memCache).close();
+        }
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    private NodeDocument promote(Object key) {
+        long count = modCount.get();
+        NodeDocument doc = offHeapCache.remove(key);
+        if (doc != null) {
+            memCache.put((K) key, doc);
+            if (count != modCount.get()) {
+                // the entry may have been replaced or invalidated
+                // concurrently and the document is possibly outdated
+                memCache.invalidate(key);
+            }
+        }
+        return doc;
+    }
+
+    /**
+     * A map view over both tiers of this cache. Modifications are applied
+     * to both tiers.
+     */
+    private final class TieredMap
+            extends ForwardingConcurrentMap<K, NodeDocument> {
+
+        private final ConcurrentMap<K, NodeDocument> memMap = memCache.asMap();
+
+        @Override
+        protected ConcurrentMap<K, NodeDocument> delegate() {
+            return memMap;
+        }
+
+        @Override
+        public NodeDocument get(Object key) {
+            return peek(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return memMap.containsKey(key) || offHeapCache.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE,
+                    memMap.size() + offHeapCache.size());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return memMap.isEmpty() && offHeapCache.size() == 0;
+        }
+
+        @Override
+        public NodeDocument put(K key, NodeDocument value) {
+            modCount.incrementAndGet();
+            NodeDocument previous = memMap.put(key, value);
+            NodeDocument offHeap = offHeapCache.remove(key);
+            return previous != null ? previous : offHeap;
+        }
+
+        @Override
+        public NodeDocument putIfAbsent(K key, NodeDocument value) {
+            NodeDocument doc = getIfPresent(key);
+            if (doc != null) {
+                return doc;
+            }
+            modCount.incrementAndGet();
+            return memMap.putIfAbsent(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends K, ? extends NodeDocument> map) {
+            OffHeapTieredCache.this.putAll(map);
+        }
+
+        @Override
+        public NodeDocument replace(K key, NodeDocument value) {
+            // move an off-heap document back first, to replace it
+            getIfPresent(key);
+            modCount.incrementAndGet();
+            return memMap.replace(key, value);
+        }
+
+        @Override
+        public boolean replace(K key, NodeDocument oldValue, NodeDocument newValue) {
+            getIfPresent(key);
+            modCount.incrementAndGet();
+            return memMap.replace(key, oldValue, newValue);
+        }
+
+        @Override
+        public NodeDocument remove(Object key) {
+            modCount.incrementAndGet();
+            NodeDocument doc = memMap.remove(key);
+            NodeDocument offHeap = offHeapCache.remove(key);
+            return doc != null ? doc : offHeap;
+        }
+
+        @Override
+        public boolean remove(Object key, Object value) {
+            getIfPresent(key);
+            modCount.incrementAndGet();
+            return memMap.remove(key, value);
+        }
+
+        @Override
+        public void clear() {
+            invalidateAll();
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return Sets.union(memMap.keySet(), offHeapCache.keys());
+        }
+
+        @Override
+        public Collection<NodeDocument> values() {
+            return new AbstractCollection<NodeDocument>() {
+                @Override
+                public Iterator<NodeDocument> iterator() {
+                    return Iterators.concat(memMap.values().iterator(),
+                            Iterators.transform(offHeapCache.entryIterator(),
+                                    new Function<Map.Entry<K, NodeDocument>, NodeDocument>() {
+                                        @Override
+                                        public NodeDocument apply(Map.Entry<K, NodeDocument> input) {
+                                            return input.getValue();
+                                        }
+                                    }));
+                }
+
+                @Override
+                public int size() {
+                    return TieredMap.this.size();
+                }
+            };
+        }
+
+        @Override
+        public Set<Map.Entry<K, NodeDocument>> entrySet() {
+            return new AbstractSet<Map.Entry<K, NodeDocument>>() {
+                @Override
+                public Iterator<Map.Entry<K, NodeDocument>> iterator() {
+                    return Iterators.concat(memMap.entrySet().iterator(),
+                            offHeapCache.entryIterator());
+                }
+
+                @Override
+                public int size() {
+                    return TieredMap.this.size();
+                }
+            };
+        }
+    }
+}
@@ -111,6 +111,28 @@ public class MemoryDocumentStore implements DocumentStore {
         }
     }
 
+    @Override
+    @Nonnull
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys,
+                                             int maxCacheAge) {
+        Lock lock = rwLock.readLock();
+        lock.lock();
+        try {
+            ConcurrentSkipListMap<String, T> map = getMap(collection);
+            List<T> docs = new ArrayList<T>(keys.size());
+            for (String key : keys) {
+                T doc = map.get(key);
+                if (doc != null) {
+                    docs.add(doc);
+                }
+            }
+            return docs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     @Nonnull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -32,6 +33,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.regex.Matcher;
@@ -47,6 +50,8 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.mongodb.MongoClientURI;
 import com.mongodb.QueryOperators;
@@ -54,12 +59,15 @@ import com.mongodb.ReadPreference;
 
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStoreStatsCollector;
+import org.apache.jackrabbit.oak.plugins.document.ExecutorAsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.JournalEntry;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
@@ -73,6 +81,7 @@ import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
 import org.apache.jackrabbit.oak.plugins.document.UpdateUtils;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheChangesTracker;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
+import org.apache.jackrabbit.oak.plugins.document.cache.InvalidationResult;
 import org.apache.jackrabbit.oak.plugins.document.cache.ModificationStamp;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.mongo.replica.LocalChanges;
@@ -117,7 +126,7 @@ import static org.apache.jackrabbit.oak.plugins.document.mongo.MongoUtils.hasInd
 /**
  * A document store that uses MongoDB as the backend.
  */
-public class MongoDocumentStore implements DocumentStore, RevisionListener {
+public class MongoDocumentStore implements DocumentStore, AsyncDocumentStore, RevisionListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(MongoDocumentStore.class);
     private static final PerfLogger PERFLOG = new PerfLogger(
@@ -224,6 +233,23 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
     private int bulkRetries =
             Integer.getInteger("oak.mongo.bulkRetries", 0);
 
+    /**
+     * The maximum number of asynchronous operations in flight. The MongoDB
+     * Java driver used here only has a blocking API, therefore asynchronous
+     * operations are run on a pool with this number of threads.
+     * <p>
+     * Default is 8.
+     */
+    private final int asyncThreads =
+            Integer.getInteger("oak.mongo.asyncThreads", 8);
+
+    /**
+     * Runs the asynchronous operations. Lazily initialized on first use.
+     */
+    private ExecutorService asyncExecutor;
+
+    private AsyncDocumentStore asyncStore;
+
     private String lastReadWriteMode;
 
     private final Map<String, String> metadata;
@@ -368,7 +394,7 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
             final List<String> ids = new ArrayList<String>(IN_CLAUSE_BATCH_SIZE);
             while(it.hasNext() && ids.size() < IN_CLAUSE_BATCH_SIZE) {
                 final String id = it.next();
-                if (nodesCache.getIfPresent(id) != null) {
+                if (nodesCache.peek(id) != null) {
                     // only add those that we actually do have cached
                     ids.add(id);
                 }
@@ -422,6 +448,44 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
         return result;
     }
 
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys,
+                                             int maxCacheAge) {
+        final long start = PERFLOG.start();
+        Map<String, T> docs = new HashMap<String, T>();
+        Set<String> uncached = new LinkedHashSet<String>();
+        for (String key : keys) {
+            if (collection == Collection.NODES && maxCacheAge > 0) {
+                NodeDocument doc = nodesCache.getIfPresent(key);
+                if (doc != null && getTime() - doc.getCreated() < maxCacheAge) {
+                    stats.doneFindCached(collection, key);
+                    if (doc != NodeDocument.NULL) {
+                        docs.put(key, (T) doc);
+                    }
+                    continue;
+                }
+            }
+            uncached.add(key);
+        }
+        if (!uncached.isEmpty()) {
+            docs.putAll(findUncached(collection, uncached,
+                    getReadPreference(maxCacheAge)));
+        }
+        List<T> result = new ArrayList<T>(docs.size());
+        for (String key : keys) {
+            T doc = docs.get(key);
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+        PERFLOG.end(start, 1, "find: keys={}, uncached={}, maxCacheAge={}",
+                keys.size(), uncached.size(), maxCacheAge);
+        return result;
+    }
+
     @SuppressWarnings("unchecked")
     private <T extends Document> T find(final Collection<T> collection,
                                        final String key,
@@ -564,6 +628,71 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
         }
     }
 
+    /**
+     * Reads the documents with the given keys with {@code $in} queries of at
+     * most {@link #IN_CLAUSE_BATCH_SIZE} keys. Documents read from the
+     * NODES collection are put into the cache unless they were modified
+     * concurrently.
+     *
+     * @param collection the collection to read from.
+     * @param keys the keys of the documents to read.
+     * @param docReadPref the read preference.
+     * @param <T> the document type of the given collection.
+     * @return the existing documents by key.
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private <T extends Document> Map<String, T> findUncached(Collection<T> collection,
+                                                             Set<String> keys,
+                                                             DocumentReadPreference docReadPref) {
+        log("findUncached", keys, docReadPref);
+        DBCollection dbCollection = getDBCollection(collection);
+        final Stopwatch watch = startWatch();
+        boolean isSlaveOk = false;
+        int resultSize = 0;
+        CacheChangesTracker tracker = null;
+        if (collection == Collection.NODES) {
+            tracker = nodesCache.registerTracker(keys);
+        }
+        try {
+            ReadPreference readPreference = getMongoReadPreference(collection, null, null, docReadPref);
+            if (readPreference.isSlaveOk()) {
+                LOG.trace("Routing call to secondary for fetching {} documents", keys.size());
+                isSlaveOk = true;
+            }
+            Map<String, T> docs = new HashMap<String, T>();
+            for (List<String> partition : Iterables.partition(keys, IN_CLAUSE_BATCH_SIZE)) {
+                DBObject query = QueryBuilder.start(Document.ID).in(partition).get();
+                DBCursor cursor = dbCollection.find(query).setReadPreference(readPreference);
+                try {
+                    while (cursor.hasNext()) {
+                        T doc = convertFromDBObject(collection, cursor.next());
+                        if (doc != null) {
+                            doc.seal();
+                            docs.put(doc.getId(), doc);
+                        }
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+            if (tracker != null) {
+                nodesCache.putNonConflictingDocs(tracker, (java.util.Collection<NodeDocument>) docs.values());
+            }
+            resultSize = docs.size();
+            return docs;
+        } catch (MongoException e) {
+            throw DocumentStoreException.convert(e, "Failed to load documents " + keys);
+        } finally {
+            if (tracker != null) {
+                tracker.close();
+            }
+            stats.doneQuery(watch.elapsed(TimeUnit.NANOSECONDS), collection,
+                    Iterables.getFirst(keys, null), Iterables.getLast(keys, null),
+                    false, resultSize, -1, isSlaveOk);
+        }
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -1426,6 +1555,9 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
         if (replicaInfo != null) {
             replicaInfo.stop();
         }
+        synchronized (this) {
+            new ExecutorCloser(asyncExecutor).close();
+        }
         nodes.getDB().getMongo().close();
         try {
             nodesCache.close();
@@ -1439,6 +1571,56 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
         return nodesCache.getCacheStats();
     }
 
+    //-----------------------------< AsyncDocumentStore >-----------------------
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<T> findAsync(Collection<T> collection,
+                                                              String key) {
+        return getAsyncStore().findAsync(collection, key);
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<T> findAsync(Collection<T> collection,
+                                                              String key,
+                                                              int maxCacheAge) {
+        return getAsyncStore().findAsync(collection, key, maxCacheAge);
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<List<T>> queryAsync(Collection<T> collection,
+                                                                     String fromKey,
+                                                                     String toKey,
+                                                                     int limit) {
+        return getAsyncStore().queryAsync(collection, fromKey, toKey, limit);
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<T> createOrUpdateAsync(Collection<T> collection,
+                                                                        UpdateOp update) {
+        return getAsyncStore().createOrUpdateAsync(collection, update);
+    }
+
+    @Nonnull
+    @Override
+    public <T extends Document> ListenableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                              List<UpdateOp> updateOps) {
+        return getAsyncStore().createOrUpdateAsync(collection, updateOps);
+    }
+
+    private synchronized AsyncDocumentStore getAsyncStore() {
+        if (asyncStore == null) {
+            asyncExecutor = Executors.newFixedThreadPool(asyncThreads,
+                    new ThreadFactoryBuilder().setDaemon(true)
+                            .setNameFormat("MongoDocumentStore async-%d").build());
+            asyncStore = new ExecutorAsyncDocumentStore(this, asyncExecutor);
+        }
+        return asyncStore;
+    }
+
     @Override
     public Map<String, String> getMetadata() {
         return metadata;
@@ -1722,28 +1904,4 @@ public class MongoDocumentStore implements DocumentStore, RevisionListener {
             this.upserts = upserts;
         }
     }
-
-    private static class InvalidationResult implements CacheInvalidationStats {
-        int invalidationCount;
-        int upToDateCount;
-        int cacheSize;
-        int queryCount;
-        int cacheEntriesProcessedCount;
-
-        @Override
-        public String toString() {
-            return "InvalidationResult{" +
-                    "invalidationCount=" + invalidationCount +
-                    ", upToDateCount=" + upToDateCount +
-                    ", cacheSize=" + cacheSize +
-                    ", queryCount=" + queryCount +
-                    ", cacheEntriesProcessedCount=" + cacheEntriesProcessedCount +
-                    '}';
-        }
-
-        @Override
-        public String summaryReport() {
-            return toString();
-        }
-    }
 }
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.StringDataType;
+
+/**
+ * Utility methods for the binary format of keys and values in the
+ * persistent cache. Any change to the format, including the dictionary of
+ * property names, requires a new {@link #FORMAT_VERSION}. Cache files
+ * written with a different version are discarded when the persistent cache
+ * is opened.
+ */
+public final class BinaryCodec {
+
+    /**
+     * The version of the binary format.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    /**
+     * Dictionary of frequently used property names. A name in the
+     * dictionary is written as its index plus one, any other name as zero
+     * followed by the name.
+     */
+    private static final List<String> NAMES = ImmutableList.of(
+            "jcr:primaryType",
+            "jcr:mixinTypes",
+            "jcr:uuid",
+            "jcr:created",
+            "jcr:createdBy",
+            "jcr:lastModified",
+            "jcr:lastModifiedBy",
+            "jcr:data",
+            "jcr:mimeType",
+            "jcr:encoding",
+            "jcr:title",
+            "jcr:description",
+            "jcr:isCheckedOut",
+            "jcr:versionHistory",
+            "jcr:baseVersion",
+            "jcr:predecessors",
+            "jcr:frozenUuid",
+            "jcr:frozenPrimaryType",
+            "jcr:frozenMixinTypes",
+            "jcr:lockOwner",
+            "jcr:lockIsDeep",
+            ":childOrder",
+            "rep:principalName",
+            "rep:privileges",
+            "rep:authorizableId",
+            "rep:password",
+            "rep:members",
+            "sling:resourceType",
+            "type",
+            "async",
+            "reindex",
+            "reindexCount",
+            "propertyNames",
+            "declaringNodeTypes");
+
+    private static final Map<String, Integer> NAME_INDEX = Maps.newHashMap();
+
+    static {
+        for (int i = 0; i < NAMES.size(); i++) {
+            NAME_INDEX.put(NAMES.get(i), i + 1);
+        }
+    }
+
+    private BinaryCodec() {
+    }
+
+    public static void writeString(@Nonnull WriteBuffer buffer,
+                                   @Nonnull String s) {
+        StringDataType.INSTANCE.write(buffer, s);
+    }
+
+    @Nonnull
+    public static String readString(@Nonnull ByteBuffer buffer) {
+        return StringDataType.INSTANCE.read(buffer);
+    }
+
+    /**
+     * Writes a property name, using the dictionary if possible.
+     *
+     * @param buffer the buffer to write to.
+     * @param name the property name.
+     */
+    public static void writeName(@Nonnull WriteBuffer buffer,
+                                 @Nonnull String name) {
+        Integer idx = NAME_INDEX.get(name);
+        if (idx != null) {
+            buffer.putVarInt(idx);
+        } else {
+            buffer.putVarInt(0);
+            writeString(buffer, name);
+        }
+    }
+
+    @Nonnull
+    public static String readName(@Nonnull ByteBuffer buffer) {
+        int idx = DataUtils.readVarInt(buffer);
+        if (idx == 0) {
+            return readString(buffer);
+        }
+        return NAMES.get(idx - 1);
+    }
+
+    public static void writeRevision(@Nonnull WriteBuffer buffer,
+                                     @Nonnull Revision r) {
+        buffer.putVarLong(r.getTimestamp());
+        buffer.putVarInt(r.getCounter());
+        buffer.putVarInt(r.getClusterId() << 1 | (r.isBranch() ? 1 : 0));
+    }
+
+    @Nonnull
+    public static Revision readRevision(@Nonnull ByteBuffer buffer) {
+        long timestamp = DataUtils.readVarLong(buffer);
+        int counter = DataUtils.readVarInt(buffer);
+        int v = DataUtils.readVarInt(buffer);
+        return new Revision(timestamp, counter, v >>> 1, (v & 1) != 0);
+    }
+
+    public static void writeRevisionVector(@Nonnull WriteBuffer buffer,
+                                           @Nonnull RevisionVector rv) {
+        buffer.putVarInt(rv.getDimensions());
+        for (Revision r : rv) {
+            writeRevision(buffer, r);
+        }
+    }
+
+    @Nonnull
+    public static RevisionVector readRevisionVector(@Nonnull ByteBuffer buffer) {
+        int dimensions = DataUtils.readVarInt(buffer);
+        Revision[] revisions = new Revision[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            revisions[i] = readRevision(buffer);
+        }
+        return new RevisionVector(revisions);
+    }
+
+    public static void writePathRev(@Nonnull WriteBuffer buffer,
+                                    @Nonnull PathRev pathRev) {
+        writeString(buffer, pathRev.getPath());
+        writeRevisionVector(buffer, pathRev.getRevision());
+    }
+
+    @Nonnull
+    public static PathRev readPathRev(@Nonnull ByteBuffer buffer) {
+        String path = readString(buffer);
+        return new PathRev(path, readRevisionVector(buffer));
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.oak.plugins.document.persistentCache;
 
+import java.nio.ByteBuffer;
+
 import org.apache.jackrabbit.oak.plugins.document.LocalDiffCache;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
@@ -24,6 +26,7 @@ import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.PathRev;
 import org.apache.jackrabbit.oak.plugins.document.util.RevisionsKey;
 import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.h2.mvstore.WriteBuffer;
 
 public enum CacheType {
     
@@ -51,6 +54,25 @@ public enum CacheType {
                 DocumentNodeStore store, DocumentStore docStore, String value) {
             return (V) DocumentNodeState.fromString(store, value);
         }
+        @Override
+        public <K> void writeKey(WriteBuffer buffer, K key) {
+            BinaryCodec.writePathRev(buffer, (PathRev) key);
+        }
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K> K readKey(ByteBuffer buffer) {
+            return (K) BinaryCodec.readPathRev(buffer);
+        }
+        @Override
+        public <V> void writeValue(WriteBuffer buffer, V value) {
+            ((DocumentNodeState) value).writeTo(buffer);
+        }
+        @SuppressWarnings("unchecked")
+        @Override
+        public <V> V readValue(
+                DocumentNodeStore store, DocumentStore docStore, ByteBuffer buffer) {
+            return (V) DocumentNodeState.readFrom(store, buffer);
+        }
     },
     
     CHILDREN {
@@ -77,6 +99,25 @@ public enum CacheType {
                 DocumentNodeStore store, DocumentStore docStore, String value) {
             return (V) DocumentNodeState.Children.fromString(value);
         }
+        @Override
+        public <K> void writeKey(WriteBuffer buffer, K key) {
+            BinaryCodec.writePathRev(buffer, (PathRev) key);
+        }
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K> K readKey(ByteBuffer buffer) {
+            return (K) BinaryCodec.readPathRev(buffer);
+        }
+        @Override
+        public <V> void writeValue(WriteBuffer buffer, V value) {
+            ((DocumentNodeState.Children) value).writeTo(buffer);
+        }
+        @SuppressWarnings("unchecked")
+        @Override
+        public <V> V readValue(
+                DocumentNodeStore store, DocumentStore docStore, ByteBuffer buffer) {
+            return (V) DocumentNodeState.Children.readFrom(buffer);
+        }
     }, 
     
     DIFF {
@@ -103,6 +144,15 @@ public enum CacheType {
                 DocumentNodeStore store, DocumentStore docStore, String value) {
             return (V) StringValue.fromString(value);
         }
+        @Override
+        public <K> void writeKey(WriteBuffer buffer, K key) {
+            BinaryCodec.writePathRev(buffer, (PathRev) key);
+        }
+        @SuppressWarnings("unchecked")
+        @Override
+        public <K> K readKey(ByteBuffer buffer) {
+            return (K) BinaryCodec.readPathRev(buffer);
+        }
     },
 
     DOC_CHILDREN {
@@ -248,5 +298,30 @@ public enum CacheType {
     public abstract <V> V valueFromString(
             DocumentNodeStore store, DocumentStore docStore, String value);
 
+    /**
+     * Writes the binary representation of the key. By default the string
+     * representation is written.
+     */
+    public <K> void writeKey(WriteBuffer buffer, K key) {
+        BinaryCodec.writeString(buffer, keyToString(key));
+    }
+
+    public <K> K readKey(ByteBuffer buffer) {
+        return keyFromString(BinaryCodec.readString(buffer));
+    }
+
+    /**
+     * Writes the binary representation of the value. By default the string
+     * representation is written.
+     */
+    public <V> void writeValue(WriteBuffer buffer, V value) {
+        BinaryCodec.writeString(buffer, valueToString(value));
+    }
+
+    public <V> V readValue(
+            DocumentNodeStore store, DocumentStore docStore, ByteBuffer buffer) {
+        return valueFromString(store, docStore, BinaryCodec.readString(buffer));
+    }
+
 }
 
@@ -56,6 +56,12 @@ public class PersistentCache implements Broadcaster.Listener {
    
     private static final String FILE_PREFIX = "cache-";
     private static final String FILE_SUFFIX = ".data";
+
+    /**
+     * The name of the map with the format version of a cache file.
+     */
+    public static final String FORMAT_MAP = "format";
+    private static final String FORMAT_VERSION_KEY = "version";
     private static final AtomicInteger COUNTER = new AtomicInteger();
     
     private boolean cacheNodes = true;
@@ -178,6 +184,17 @@ public class PersistentCache implements Broadcaster.Listener {
                 }
             }
         }
+        for (Integer gen : new TreeSet<Integer>(generations)) {
+            File f = new File(getFileName(gen));
+            if (isOldFormat(f)) {
+                if (f.canWrite() && f.delete()) {
+                    LOG.info("Removed generation with old format " + f.getAbsolutePath());
+                    generations.remove(gen);
+                } else {
+                    LOG.info("Ignoring generation with old format " + f.getAbsolutePath());
+                }
+            }
+        }
         while (generations.size() > 2) {
             Integer oldest = generations.first();
             File oldFile = new File(getFileName(oldest));
@@ -203,6 +220,51 @@ public class PersistentCache implements Broadcaster.Listener {
         writeDispatcherThread.start();
     }
     
+    /**
+     * Checks whether the given cache file was written with a different
+     * format than {@link BinaryCodec#FORMAT_VERSION}. Files that cannot
+     * be opened and empty files are not considered old.
+     *
+     * @param f the cache file.
+     * @return {@code true} if the file has a different format.
+     */
+    private static boolean isOldFormat(File f) {
+        if (f.length() == 0) {
+            return false;
+        }
+        MVStore s;
+        try {
+            s = new MVStore.Builder().fileName(f.getPath()).readOnly().open();
+        } catch (Exception e) {
+            LOG.debug("Could not open the store " + f.getPath(), e);
+            return false;
+        }
+        try {
+            if (s.getMapNames().isEmpty()) {
+                return false;
+            }
+            if (!s.hasMap(FORMAT_MAP)) {
+                return true;
+            }
+            Map<String, String> format = s.openMap(FORMAT_MAP);
+            return !String.valueOf(BinaryCodec.FORMAT_VERSION).equals(
+                    format.get(FORMAT_VERSION_KEY));
+        } catch (Exception e) {
+            LOG.debug("Could not read the format of " + f.getPath(), e);
+            return false;
+        } finally {
+            s.closeImmediately();
+        }
+    }
+
+    private static void writeFormatVersion(MVStore store) {
+        Map<String, String> format = store.openMap(FORMAT_MAP);
+        String version = String.valueOf(BinaryCodec.FORMAT_VERSION);
+        if (!version.equals(format.get(FORMAT_VERSION_KEY))) {
+            format.put(FORMAT_VERSION_KEY, version);
+        }
+    }
+
     private void initBroadcast(String broadcast) {
         if (broadcast == null) {
             return;
@@ -273,6 +335,9 @@ public class PersistentCache implements Broadcaster.Listener {
                     if (appendOnly) {
                         store.setReuseSpace(false);
                     }
+                    if (!readOnly) {
+                        writeFormatVersion(store);
+                    }
                 } catch (Exception e) {
                     exceptionCount++;
                     LOG.warn("Could not open the store " + fileName, e);
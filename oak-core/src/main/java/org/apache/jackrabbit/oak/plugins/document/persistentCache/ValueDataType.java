@@ -23,7 +23,6 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
 import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.DataType;
-import org.h2.mvstore.type.StringDataType;
 
 public class ValueDataType implements DataType {
     
@@ -51,14 +50,12 @@ public class ValueDataType implements DataType {
 
     @Override
     public void write(WriteBuffer buff, Object obj) {
-        String s = type.valueToString(obj);
-        StringDataType.INSTANCE.write(buff, s);
+        type.writeValue(buff, obj);
     }
 
     @Override
     public Object read(ByteBuffer buff) {
-        String s = StringDataType.INSTANCE.read(buff);
-        return type.valueFromString(docNodeStore, docStore, s);
+        return type.readValue(docNodeStore, docStore, buff);
     }
 
     @Override
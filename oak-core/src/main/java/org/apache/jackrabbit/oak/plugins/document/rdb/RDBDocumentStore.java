@@ -43,6 +43,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -79,6 +80,8 @@ import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
 import org.apache.jackrabbit.oak.plugins.document.UpdateUtils;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheChangesTracker;
 import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
+import org.apache.jackrabbit.oak.plugins.document.cache.InvalidationResult;
+import org.apache.jackrabbit.oak.plugins.document.cache.ModificationStamp;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.locks.StripedNodeDocumentLocks;
@@ -231,6 +234,12 @@ public class RDBDocumentStore implements DocumentStore {
         return readDocumentCached(collection, id, maxCacheAge);
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection, List<String> keys, int maxCacheAge) {
+        return readDocumentsCached(collection, keys, maxCacheAge);
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection, String fromKey, String toKey, int limit) {
@@ -397,6 +406,59 @@ public class RDBDocumentStore implements DocumentStore {
         return documents;
     }
 
+    private <T extends Document> List<T> readDocumentsCached(Collection<T> collection, List<String> keys, int maxCacheAge) {
+        Map<String, T> documents = new HashMap<String, T>();
+        Set<String> documentsToRead = new LinkedHashSet<String>();
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            if (collection == Collection.NODES && maxCacheAge > 0) {
+                NodeDocument cached = nodesCache.getIfPresent(key);
+                if (cached != null) {
+                    long lastCheckTime = cached.getLastCheckTime();
+                    if (lastCheckTime != 0 && (maxCacheAge == Integer.MAX_VALUE || now - lastCheckTime < maxCacheAge)) {
+                        stats.doneFindCached(Collection.NODES, key);
+                        T doc = castAsT(unwrap(cached));
+                        if (doc != null) {
+                            documents.put(key, doc);
+                        }
+                        continue;
+                    }
+                }
+            }
+            documentsToRead.add(key);
+        }
+
+        if (!documentsToRead.isEmpty()) {
+            CacheChangesTracker tracker = null;
+            if (collection == Collection.NODES) {
+                tracker = nodesCache.registerTracker(documentsToRead);
+            }
+            try {
+                Map<String, T> readDocuments = readDocumentsUncached(collection, documentsToRead);
+                for (T doc : readDocuments.values()) {
+                    doc.seal();
+                }
+                if (collection == Collection.NODES) {
+                    nodesCache.putNonConflictingDocs(tracker, castAsNodeDocumentList(new ArrayList<T>(readDocuments.values())));
+                }
+                documents.putAll(readDocuments);
+            } finally {
+                if (tracker != null) {
+                    tracker.close();
+                }
+            }
+        }
+
+        List<T> result = new ArrayList<T>(documents.size());
+        for (String key : keys) {
+            T doc = documents.get(key);
+            if (doc != null) {
+                result.add(doc);
+            }
+        }
+        return result;
+    }
+
     private <T extends Document> Map<String, T> readDocumentsUncached(Collection<T> collection, Set<String> keys) {
         Map<String, T> result = new HashMap<String, T>();
 
@@ -493,18 +555,73 @@ public class RDBDocumentStore implements DocumentStore {
 
     @Override
     public CacheInvalidationStats invalidateCache() {
+        InvalidationResult result = new InvalidationResult();
         for (CacheValue key : nodesCache.keys()) {
+            result.invalidationCount++;
             invalidateCache(Collection.NODES, key.toString());
         }
-        return null;
+        return result;
     }
 
     @Override
     public CacheInvalidationStats invalidateCache(Iterable<String> keys) {
-        for (String key : keys) {
-            invalidateCache(Collection.NODES, key);
+        LOG.debug("invalidateCache: start");
+        InvalidationResult result = new InvalidationResult();
+        int size = 0;
+
+        Iterator<String> it = keys.iterator();
+        while (it.hasNext()) {
+            // check chunks of documents only
+            List<String> ids = new ArrayList<String>(RDBJDBCTools.MAX_IN_CLAUSE);
+            while (it.hasNext() && ids.size() < RDBJDBCTools.MAX_IN_CLAUSE) {
+                String id = it.next();
+                if (nodesCache.peek(id) != null) {
+                    // only add those that we actually do have cached
+                    ids.add(id);
+                }
+            }
+            if (ids.isEmpty()) {
+                continue;
+            }
+            size += ids.size();
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("invalidateCache: batch size: {} of total so far {}", ids.size(), size);
+            }
+
+            Map<String, ModificationStamp> modStamps = getModStamps(ids);
+            result.queryCount++;
+
+            int invalidated = nodesCache.invalidateOutdated(modStamps);
+            for (String id : ids) {
+                if (!modStamps.containsKey(id)) {
+                    // document was removed
+                    nodesCache.invalidate(id);
+                    invalidated++;
+                }
+            }
+            result.cacheEntriesProcessedCount += ids.size();
+            result.invalidationCount += invalidated;
+            result.upToDateCount += ids.size() - invalidated;
+        }
+
+        result.cacheSize = size;
+        LOG.trace("invalidateCache: end. total: {}", size);
+        return result;
+    }
+
+    private Map<String, ModificationStamp> getModStamps(List<String> ids) {
+        Connection connection = null;
+        RDBTableMetaData tmd = getTable(Collection.NODES);
+        try {
+            connection = this.ch.getROConnection();
+            Map<String, ModificationStamp> result = db.getModStamps(connection, tmd, ids);
+            connection.commit();
+            return result;
+        } catch (SQLException ex) {
+            throw new DocumentStoreException(ex);
+        } finally {
+            this.ch.closeConnection(connection);
         }
-        return null;
     }
 
     @Override
@@ -50,6 +50,7 @@ import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Condition;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
+import org.apache.jackrabbit.oak.plugins.document.cache.ModificationStamp;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.QueryCondition;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore.RDBTableMetaData;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStoreDB.FETCHFIRSTSYNTAX;
@@ -628,6 +629,45 @@ public class RDBDocumentStoreJDBC {
         return rows;
     }
 
+    /**
+     * Reads the modification stamps (MODCOUNT and MODIFIED) of the rows with
+     * the given ids, using chunked IN clauses. Ids without a row are not
+     * contained in the result.
+     */
+    @Nonnull
+    public Map<String, ModificationStamp> getModStamps(Connection connection, RDBTableMetaData tmd, Collection<String> allKeys)
+            throws SQLException {
+
+        Map<String, ModificationStamp> result = new HashMap<String, ModificationStamp>();
+
+        for (List<String> keys : Iterables.partition(allKeys, RDBJDBCTools.MAX_IN_CLAUSE)) {
+            PreparedStatementComponent inClause = RDBJDBCTools.createInStatement("ID", keys, tmd.isIdBinary());
+            StringBuilder query = new StringBuilder();
+            query.append("select ID, MODCOUNT, MODIFIED from ");
+            query.append(tmd.getName());
+            query.append(" where ").append(inClause.getStatementComponent());
+
+            PreparedStatement stmt = connection.prepareStatement(query.toString());
+            ResultSet rs = null;
+            stmt.setPoolable(false);
+            try {
+                inClause.setParameters(stmt, 1);
+                rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    String id = getIdFromRS(tmd, rs, 1);
+                    long modcount = readLongFromResultSet(rs, 2);
+                    long modified = readLongFromResultSet(rs, 3);
+                    result.put(id, new ModificationStamp(modcount, modified));
+                }
+            } finally {
+                closeResultSet(rs);
+                closeStatement(stmt);
+            }
+        }
+        return result;
+    }
+
     @CheckForNull
     public RDBRow read(Connection connection, RDBTableMetaData tmd, String id, long lastmodcount, long lastmodified) throws SQLException {
 
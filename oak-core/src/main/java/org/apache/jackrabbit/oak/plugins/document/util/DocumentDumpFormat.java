@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.apache.jackrabbit.oak.plugins.document.UpdateUtils;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
+
+/**
+ * The binary format of a document store dump, as written by the
+ * {@link DocumentStoreExporter} and read by the {@link DocumentStoreImporter}.
+ * A dump consists of one file per collection and {@code _id} range. A file
+ * starts with a header:
+ * <pre>
+ *     int magic, int version, string collection
+ * </pre>
+ * followed by any number of chunks and a terminating zero:
+ * <pre>
+ *     int numDocuments, int compressedLength, byte[compressedLength] data
+ * </pre>
+ * The data of a chunk is deflated and contains the documents one after the
+ * other. A document is written as the number of properties followed by the
+ * properties. A property is the name, a type and the value. Revision maps
+ * are written with their number of entries followed by revision and value
+ * of each entry. Strings are written as the length of the UTF-8 encoding
+ * followed by the encoded bytes, or -1 for {@code null}.
+ * <p>
+ * The modification counts of a document are not part of the dump. The
+ * target store maintains them on its own.
+ */
+final class DocumentDumpFormat {
+
+    static final int MAGIC = 0x4f414b44;
+
+    static final int VERSION = 1;
+
+    static final String FILE_SUFFIX = ".dump";
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+    private static final byte TYPE_MAP = 4;
+
+    private DocumentDumpFormat() {
+    }
+
+    /**
+     * @return the name of the file for the given collection and partition.
+     */
+    static String getFileName(Collection<?> collection, int partition) {
+        return String.format("%s-%04d%s", collection.toString(), partition, FILE_SUFFIX);
+    }
+
+    /**
+     * @return the dump files of the given collection in the directory,
+     *          ordered by partition.
+     */
+    static List<File> listFiles(File directory, Collection<?> collection) {
+        final String prefix = collection.toString() + "-";
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.endsWith(FILE_SUFFIX);
+            }
+        });
+        List<File> list = Lists.newArrayList();
+        if (files != null) {
+            list.addAll(Arrays.asList(files));
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    static void writeHeader(DataOutputStream out, Collection<?> collection)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, collection.toString());
+    }
+
+    static void readHeader(DataInputStream in, Collection<?> collection)
+            throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a document store dump");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported dump format version: " + version);
+        }
+        String name = readString(in);
+        if (!collection.toString().equals(name)) {
+            throw new IOException("Dump of collection " + name +
+                    " cannot be imported into " + collection);
+        }
+    }
+
+    /**
+     * Writes a chunk with the given documents.
+     */
+    static void writeChunk(DataOutputStream out, List<? extends Document> docs)
+            throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buffer);
+        for (Document doc : docs) {
+            writeDocument(data, doc);
+        }
+        data.flush();
+        byte[] compressed = deflate(buffer.toByteArray());
+        out.writeInt(docs.size());
+        out.writeInt(compressed.length);
+        out.write(compressed);
+    }
+
+    /**
+     * Writes the marker for the end of the dump file.
+     */
+    static void writeEnd(DataOutputStream out) throws IOException {
+        out.writeInt(0);
+    }
+
+    /**
+     * Reads the next chunk and returns the documents as update operations,
+     * which create the documents.
+     *
+     * @return the update operations or {@code null} at the end of the file.
+     */
+    @CheckForNull
+    static List<UpdateOp> readChunk(DataInputStream in) throws IOException {
+        int numDocs = in.readInt();
+        if (numDocs == 0) {
+            return null;
+        }
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        DataInputStream data = new DataInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(compressed)));
+        List<UpdateOp> ops = Lists.newArrayListWithCapacity(numDocs);
+        for (int i = 0; i < numDocs; i++) {
+            ops.add(readDocument(data));
+        }
+        return ops;
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private static void writeDocument(DataOutputStream out, Document doc)
+            throws IOException {
+        List<String> keys = Lists.newArrayList();
+        for (String key : doc.keySet()) {
+            if (!isManagedByStore(key)) {
+                keys.add(key);
+            }
+        }
+        writeString(out, doc.getId());
+        out.writeInt(keys.size());
+        for (String key : keys) {
+            writeString(out, key);
+            Object value = doc.get(key);
+            if (value == null) {
+                out.writeByte(TYPE_NULL);
+            } else if (value instanceof String) {
+                out.writeByte(TYPE_STRING);
+                writeString(out, (String) value);
+            } else if (value instanceof Long || value instanceof Integer) {
+                out.writeByte(TYPE_LONG);
+                out.writeLong(((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                out.writeByte(TYPE_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(TYPE_MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> e : map.entrySet()) {
+                    writeString(out, e.getKey().toString());
+                    Object v = e.getValue();
+                    writeString(out, v == null ? null : v.toString());
+                }
+            } else {
+                throw new IOException("Unsupported value type " +
+                        value.getClass().getName() + " of property " +
+                        key + " on document " + doc.getId());
+            }
+        }
+    }
+
+    private static UpdateOp readDocument(DataInputStream in) throws IOException {
+        String id = readString(in);
+        UpdateOp op = new UpdateOp(id, true);
+        op.set(Document.ID, id);
+        int numProperties = in.readInt();
+        for (int i = 0; i < numProperties; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    break;
+                case TYPE_STRING:
+                    op.set(key, readString(in));
+                    break;
+                case TYPE_LONG:
+                    op.set(key, in.readLong());
+                    break;
+                case TYPE_BOOLEAN:
+                    op.set(key, in.readBoolean());
+                    break;
+                case TYPE_MAP:
+                    int size = in.readInt();
+                    Map<Revision, String> entries = Maps.newHashMapWithExpectedSize(size);
+                    for (int j = 0; j < size; j++) {
+                        Revision r = Revision.fromString(readString(in));
+                        entries.put(r, readString(in));
+                    }
+                    UpdateUtils.setMapEntries(op, key, entries);
+                    break;
+                default:
+                    throw new IOException("Unknown value type " + type +
+                            " of property " + key + " on document " + op.getId());
+            }
+        }
+        return op;
+    }
+
+    private static boolean isManagedByStore(String key) {
+        return Document.ID.equals(key)
+                || Document.MOD_COUNT.equals(key)
+                || RDBDocumentStore.COLLISIONSMODCOUNT.equals(key);
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(Charsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 16);
+            DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater);
+            deflaterOut.write(data);
+            deflaterOut.finish();
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
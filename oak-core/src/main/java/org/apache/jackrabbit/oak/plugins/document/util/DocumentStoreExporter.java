@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Exports the documents of a {@link Collection} in the binary format
+ * described in {@link DocumentDumpFormat}. The {@code _id} space of the
+ * collection is split into ranges, which are exported in parallel, each
+ * range into a file of its own. The documents of a range are read in
+ * {@code _id} order with paged queries and written in compressed chunks of
+ * the page size. The dump can be loaded into another store with the
+ * {@link DocumentStoreImporter}.
+ */
+public class DocumentStoreExporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentStoreExporter.class);
+
+    /**
+     * The default split keys. Together they cover the ids of all collections
+     * with depth prefixed paths or hex encoded revisions as ids.
+     */
+    static final List<String> DEFAULT_SPLIT_KEYS;
+
+    static {
+        List<String> keys = Lists.newArrayList();
+        for (char c = '0'; c <= '9'; c++) {
+            keys.add(String.valueOf(c));
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            keys.add(String.valueOf(c));
+        }
+        DEFAULT_SPLIT_KEYS = ImmutableList.copyOf(keys);
+    }
+
+    private static final String MIN_KEY = "";
+
+    private static final String MAX_KEY = String.valueOf(Character.MAX_VALUE);
+
+    private final DocumentStore store;
+
+    private final File directory;
+
+    private int threads = 4;
+
+    private int chunkSize = 1000;
+
+    private List<String> splitKeys = DEFAULT_SPLIT_KEYS;
+
+    public DocumentStoreExporter(@Nonnull DocumentStore store,
+                                 @Nonnull File directory) {
+        this.store = checkNotNull(store);
+        this.directory = checkNotNull(directory);
+    }
+
+    /**
+     * @param threads the number of ranges exported in parallel.
+     * @return this exporter.
+     */
+    public DocumentStoreExporter setThreads(int threads) {
+        checkArgument(threads > 0, "threads must be positive");
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param chunkSize the number of documents read with one query and
+     *                  written as one chunk.
+     * @return this exporter.
+     */
+    public DocumentStoreExporter setChunkSize(int chunkSize) {
+        checkArgument(chunkSize > 0, "chunkSize must be positive");
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Sets the keys at which the {@code _id} space is split into ranges.
+     * Each range is written to a separate file.
+     *
+     * @param splitKeys the split keys.
+     * @return this exporter.
+     */
+    public DocumentStoreExporter setSplitKeys(@Nonnull List<String> splitKeys) {
+        checkArgument(!splitKeys.contains(MIN_KEY), "split key must not be empty");
+        this.splitKeys = ImmutableSortedSet.copyOf(splitKeys).asList();
+        return this;
+    }
+
+    /**
+     * Exports all documents of the given collection. Existing dump files
+     * of the collection in the target directory are replaced.
+     *
+     * @param collection the collection to export.
+     * @return the number of exported documents.
+     * @throws IOException if writing the dump fails.
+     * @throws DocumentStoreException if reading from the store fails.
+     */
+    public <T extends Document> long export(@Nonnull final Collection<T> collection)
+            throws IOException {
+        checkNotNull(collection);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        for (File f : DocumentDumpFormat.listFiles(directory, collection)) {
+            if (!f.delete()) {
+                throw new IOException("Cannot delete " + f);
+            }
+        }
+        Stopwatch sw = Stopwatch.createStarted();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("DocumentStoreExporter-%d").build());
+        try {
+            List<Future<Long>> futures = Lists.newArrayList();
+            List<String> bounds = Lists.newArrayList(MIN_KEY);
+            bounds.addAll(splitKeys);
+            bounds.add(MAX_KEY);
+            for (int i = 0; i < bounds.size() - 1; i++) {
+                final int partition = i;
+                final String from = bounds.get(i);
+                final String to = bounds.get(i + 1);
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return exportRange(collection, partition, from, to);
+                    }
+                }));
+            }
+            long count = 0;
+            for (Future<Long> f : futures) {
+                count += getUninterruptibly(f);
+            }
+            LOG.info("Exported {} documents of {} in {}", count, collection, sw);
+            return count;
+        } finally {
+            new ExecutorCloser(executor).close();
+        }
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private <T extends Document> long exportRange(Collection<T> collection,
+                                                  int partition,
+                                                  String from,
+                                                  String to)
+            throws IOException {
+        File f = new File(directory, DocumentDumpFormat.getFileName(collection, partition));
+        long count = 0;
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(f)));
+        try {
+            DocumentDumpFormat.writeHeader(out, collection);
+            // query() excludes the lower bound
+            T first = from.equals(MIN_KEY) ? null : store.find(collection, from);
+            if (first != null) {
+                DocumentDumpFormat.writeChunk(out, Collections.singletonList(first));
+                count++;
+            }
+            String fromKey = from;
+            for (;;) {
+                List<T> docs = store.query(collection, fromKey, to, chunkSize);
+                if (docs.isEmpty()) {
+                    break;
+                }
+                DocumentDumpFormat.writeChunk(out, docs);
+                count += docs.size();
+                fromKey = docs.get(docs.size() - 1).getId();
+            }
+            DocumentDumpFormat.writeEnd(out);
+        } finally {
+            out.close();
+        }
+        LOG.debug("Exported {} documents of {} with ids in ({}, {}) to {}",
+                count, collection, from, to, f);
+        return count;
+    }
+
+    /**
+     * Waits for the result of an export or import task and rethrows its
+     * failure.
+     */
+    static <V> V getUninterruptibly(Future<V> f) throws IOException {
+        try {
+            return Uninterruptibles.getUninterruptibly(f);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof IOException) {
+                throw (IOException) t;
+            }
+            throw DocumentStoreException.convert(t);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStoreException;
+import org.apache.jackrabbit.oak.plugins.document.UpdateOp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.plugins.document.util.DocumentStoreExporter.getUninterruptibly;
+
+/**
+ * Imports a dump written by the {@link DocumentStoreExporter} into a
+ * {@link DocumentStore}. The files of a collection are loaded in parallel.
+ * Each chunk of a file is written with a single bulk
+ * {@link DocumentStore#create(Collection, List)} call. The documents must
+ * not exist in the target store.
+ */
+public class DocumentStoreImporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DocumentStoreImporter.class);
+
+    private final DocumentStore store;
+
+    private final File directory;
+
+    private int threads = 4;
+
+    public DocumentStoreImporter(@Nonnull DocumentStore store,
+                                 @Nonnull File directory) {
+        this.store = checkNotNull(store);
+        this.directory = checkNotNull(directory);
+    }
+
+    /**
+     * @param threads the number of files imported in parallel.
+     * @return this importer.
+     */
+    public DocumentStoreImporter setThreads(int threads) {
+        checkArgument(threads > 0, "threads must be positive");
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Imports the dump of the given collection.
+     *
+     * @param collection the collection to import.
+     * @return the number of imported documents.
+     * @throws IOException if reading the dump fails.
+     * @throws DocumentStoreException if writing to the store fails or a
+     *          document already exists in the store.
+     */
+    public <T extends Document> long importCollection(@Nonnull final Collection<T> collection)
+            throws IOException {
+        checkNotNull(collection);
+        Stopwatch sw = Stopwatch.createStarted();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("DocumentStoreImporter-%d").build());
+        try {
+            List<Future<Long>> futures = Lists.newArrayList();
+            for (final File f : DocumentDumpFormat.listFiles(directory, collection)) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return importFile(collection, f);
+                    }
+                }));
+            }
+            long count = 0;
+            for (Future<Long> f : futures) {
+                count += getUninterruptibly(f);
+            }
+            LOG.info("Imported {} documents of {} in {}", count, collection, sw);
+            return count;
+        } finally {
+            new ExecutorCloser(executor).close();
+        }
+    }
+
+    //----------------------------< internal >----------------------------------
+
+    private <T extends Document> long importFile(Collection<T> collection, File f)
+            throws IOException {
+        long count = 0;
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f)));
+        try {
+            DocumentDumpFormat.readHeader(in, collection);
+            List<UpdateOp> ops;
+            while ((ops = DocumentDumpFormat.readChunk(in)) != null) {
+                if (!store.create(collection, ops)) {
+                    throw new DocumentStoreException("Cannot import chunk of " +
+                            ops.size() + " documents starting with " +
+                            ops.get(0).getId() + " from " + f +
+                            ", some documents already exist");
+                }
+                count += ops.size();
+            }
+        } finally {
+            in.close();
+        }
+        LOG.debug("Imported {} documents of {} from {}", count, collection, f);
+        return count;
+    }
+}
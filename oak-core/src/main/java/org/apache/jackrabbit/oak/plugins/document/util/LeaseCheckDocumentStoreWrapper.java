@@ -21,7 +21,12 @@ package org.apache.jackrabbit.oak.plugins.document.util;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.util.concurrent.ListenableFuture;
 import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.AsyncDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.ClusterNodeInfo;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
@@ -72,6 +77,13 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore, Revi
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    public final <T extends Document> List<T> find(Collection<T> collection,
+            List<String> keys, int maxCacheAge) {
+        performLeaseCheck();
+        return delegate.find(collection, keys, maxCacheAge);
+    }
+
     @Override
     public final <T extends Document> List<T> query(Collection<T> collection,
             String fromKey, String toKey, int limit) {
@@ -205,6 +217,66 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore, Revi
         return delegate.determineServerTimeDifferenceMillis();
     }
 
+    /**
+     * Returns asynchronous access to the wrapped store, which performs the
+     * same lease check when an operation is issued.
+     *
+     * @return the asynchronous store or {@code null} if the wrapped store
+     *          does not implement {@link AsyncDocumentStore}.
+     */
+    @CheckForNull
+    public AsyncDocumentStore getAsyncDocumentStore() {
+        if (!(delegate instanceof AsyncDocumentStore)) {
+            return null;
+        }
+        final AsyncDocumentStore asyncDelegate = (AsyncDocumentStore) delegate;
+        return new AsyncDocumentStore() {
+
+            @Nonnull
+            @Override
+            public <T extends Document> ListenableFuture<T> findAsync(Collection<T> collection,
+                                                                      String key) {
+                performLeaseCheck();
+                return asyncDelegate.findAsync(collection, key);
+            }
+
+            @Nonnull
+            @Override
+            public <T extends Document> ListenableFuture<T> findAsync(Collection<T> collection,
+                                                                      String key,
+                                                                      int maxCacheAge) {
+                performLeaseCheck();
+                return asyncDelegate.findAsync(collection, key, maxCacheAge);
+            }
+
+            @Nonnull
+            @Override
+            public <T extends Document> ListenableFuture<List<T>> queryAsync(Collection<T> collection,
+                                                                             String fromKey,
+                                                                             String toKey,
+                                                                             int limit) {
+                performLeaseCheck();
+                return asyncDelegate.queryAsync(collection, fromKey, toKey, limit);
+            }
+
+            @Nonnull
+            @Override
+            public <T extends Document> ListenableFuture<T> createOrUpdateAsync(Collection<T> collection,
+                                                                                UpdateOp update) {
+                performLeaseCheck();
+                return asyncDelegate.createOrUpdateAsync(collection, update);
+            }
+
+            @Nonnull
+            @Override
+            public <T extends Document> ListenableFuture<List<T>> createOrUpdateAsync(Collection<T> collection,
+                                                                                      List<UpdateOp> updateOps) {
+                performLeaseCheck();
+                return asyncDelegate.createOrUpdateAsync(collection, updateOps);
+            }
+        };
+    }
+
     @Override
     public void updateAccessedRevision(RevisionVector revision) {
         if (delegate instanceof RevisionListener) {
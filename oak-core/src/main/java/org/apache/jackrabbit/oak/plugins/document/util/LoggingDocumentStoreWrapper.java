@@ -91,6 +91,25 @@ public class LoggingDocumentStoreWrapper implements DocumentStore, RevisionListe
         }
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(final Collection<T> collection,
+                                             final List<String> keys,
+                                             final int maxCacheAge) {
+        try {
+            logMethod("find", collection, keys, maxCacheAge);
+            return logResult(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return store.find(collection, keys, maxCacheAge);
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(final Collection<T> collection,
@@ -52,6 +52,13 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore, Revisio
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    @Nonnull
+    public synchronized <T extends Document> List<T> find(final Collection<T> collection, final List<String> keys,
+            final int maxCacheAge) {
+        return store.find(collection, keys, maxCacheAge);
+    }
+
     @Override
     @Nonnull
     public synchronized <T extends Document> List<T> query(final Collection<T> collection, final String fromKey,
@@ -121,6 +121,24 @@ public class TimingDocumentStoreWrapper implements DocumentStore, RevisionListen
         }
     }
 
+    @Override
+    @Nonnull
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys,
+                                             int maxCacheAge) {
+        try {
+            long start = now();
+            List<T> result = base.find(collection, keys, maxCacheAge);
+            updateAndLogTimes("find3", start, 0, size(result));
+            if (logCommonCall()) {
+                logCommonCall(start, "find3 " + collection + " " + keys);
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     @Nonnull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -30,6 +30,7 @@ import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NO
 import java.io.Closeable;
 import java.util.Calendar;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
@@ -178,6 +179,14 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
      */
     private long lastCheckpointCleanUpTime;
 
+    /**
+     * Parallel reindex of the indexes supporting partitions, {@code null} to
+     * reindex in a single traversal. Configurable via the
+     * 'oak.async.parallelReindexThreads' system property.
+     */
+    private volatile ParallelReindex parallelReindex =
+            newParallelReindex(Integer.getInteger("oak.async.parallelReindexThreads", 0));
+
     public AsyncIndexUpdate(@Nonnull String name, @Nonnull NodeStore store,
             @Nonnull IndexEditorProvider provider, boolean switchOnSync) {
         this.name = checkNotNull(name);
@@ -601,7 +610,8 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
 
             IndexUpdate indexUpdate =
                     new IndexUpdate(provider, name, after, builder, callback)
-                    .withMissingProviderStrategy(missingStrategy);
+                    .withMissingProviderStrategy(missingStrategy)
+                    .withParallelReindex(parallelReindex);
             CommitFailedException exception =
                     EditorDiff.process(VisibleEditor.wrap(indexUpdate), before, after);
             if (exception != null) {
@@ -717,6 +727,19 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         return leaseTimeOut;
     }
 
+    /**
+     * Number of threads used for reindexing the indexes supporting
+     * partitions, {@code 0} to reindex in a single traversal.
+     */
+    public AsyncIndexUpdate setParallelReindexThreads(int threads) {
+        this.parallelReindex = newParallelReindex(threads);
+        return this;
+    }
+
+    private static ParallelReindex newParallelReindex(int threads) {
+        return threads > 0 ? new ParallelReindex(threads) : null;
+    }
+
     protected AsyncIndexUpdate setCloseTimeOut(int timeOutInSec) {
         this.softTimeOutSecs = timeOutInSec;
         return this;
@@ -969,6 +992,16 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
             execStats.resetConsolidatedStats();
         }
 
+        @Override
+        public String[] getReindexPartitionStats() {
+            ParallelReindex reindex = parallelReindex;
+            if (reindex == null) {
+                return new String[0];
+            }
+            List<String> stats = reindex.getPartitionStats();
+            return stats.toArray(new String[stats.size()]);
+        }
+
         @Override
         public String toString() {
             return "AsyncIndexStats [start=" + start + ", done=" + done
@@ -46,6 +46,7 @@ import java.util.Set;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterables;
@@ -160,10 +161,28 @@ public class IndexUpdate implements Editor {
         }
 
         // no-op when reindex is empty
-        CommitFailedException exception = process(
-                wrap(wrapProgress(compose(reindex.values()), "Reindexing")), MISSING_NODE, after);
-        if (exception != null) {
-            throw exception;
+        ParallelReindex.Reindex parallel = newParallelReindex();
+        try {
+            Editor reindexEditor = compose(reindex.values());
+            if (parallel != null) {
+                List<Editor> sequential = newArrayList();
+                for (Editor editor : reindex.values()) {
+                    if (!(editor instanceof PartitionableIndexEditor)) {
+                        sequential.add(editor);
+                    }
+                }
+                sequential.add(parallel.getEditor());
+                reindexEditor = compose(sequential);
+            }
+            CommitFailedException exception = process(
+                    wrap(wrapProgress(reindexEditor, "Reindexing")), MISSING_NODE, after);
+            if (exception != null) {
+                throw exception;
+            }
+        } finally {
+            if (parallel != null) {
+                parallel.close();
+            }
         }
 
         for (Editor editor : editors) {
@@ -171,6 +190,28 @@ public class IndexUpdate implements Editor {
         }
     }
 
+    /**
+     * Prepare the parallel reindex of the indexes supporting partitions, if
+     * enabled. Only done for the index definitions of the root node, as the
+     * definitions below the root apply only to a part of the content tree.
+     */
+    @CheckForNull
+    private ParallelReindex.Reindex newParallelReindex() {
+        if (parent != null || rootState.parallelReindex == null) {
+            return null;
+        }
+        List<PartitionableIndexEditor> partitionable = newArrayList();
+        for (Editor editor : reindex.values()) {
+            if (editor instanceof PartitionableIndexEditor) {
+                partitionable.add((PartitionableIndexEditor) editor);
+            }
+        }
+        if (partitionable.isEmpty()) {
+            return null;
+        }
+        return rootState.parallelReindex.newReindex(rootState.root, partitionable);
+    }
+
     public boolean isReindexingPerformed(){
         return !getReindexStats().isEmpty();
     }
@@ -428,6 +469,18 @@ public class IndexUpdate implements Editor {
         return this;
     }
 
+    /**
+     * Reindex the indexes supporting partitions in parallel, see
+     * {@link PartitionableIndexEditor}.
+     *
+     * @param parallelReindex the parallel reindex configuration, or
+     *                        {@code null} to reindex in a single traversal
+     */
+    public IndexUpdate withParallelReindex(@Nullable ParallelReindex parallelReindex) {
+        rootState.parallelReindex = parallelReindex;
+        return this;
+    }
+
     private static final class IndexUpdateRootState {
         final IndexEditorProvider provider;
         final String async;
@@ -439,6 +492,7 @@ public class IndexUpdate implements Editor {
         final IndexUpdateCallback updateCallback;
         final Set<String> reindexedIndexes = Sets.newHashSet();
         final Map<String, CountingCallback> callbacks = Maps.newHashMap();
+        ParallelReindex parallelReindex;
 
         private IndexUpdateRootState(IndexEditorProvider provider, String async, NodeState root,
                                      IndexUpdateCallback updateCallback, CommitInfo commitInfo) {
@@ -506,12 +560,15 @@ public class IndexUpdate implements Editor {
 
             @Override
             public void indexUpdate() throws CommitFailedException {
-                count++;
-                if (count % 10000 == 0){
-                    log.info("{} => Indexed {} nodes in {} ...", indexPath, count, watch);
-                    watch.reset().start();
+                // partitions of a parallel reindex share the callback
+                synchronized (IndexUpdateRootState.this) {
+                    count++;
+                    if (count % 10000 == 0){
+                        log.info("{} => Indexed {} nodes in {} ...", indexPath, count, watch);
+                        watch.reset().start();
+                    }
+                    updateCallback.indexUpdate();
                 }
-                updateCallback.indexUpdate();
             }
 
             @Override
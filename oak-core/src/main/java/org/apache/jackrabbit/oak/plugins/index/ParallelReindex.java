@@ -0,0 +1,588 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.sort;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.apache.jackrabbit.oak.commons.PathUtils.ROOT_PATH;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.denotesRoot;
+import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
+import static org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter.getEstimatedNodeCount;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.apache.jackrabbit.oak.spi.commit.CompositeEditor.compose;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reindexes {@link PartitionableIndexEditor}s in parallel.
+ * <p>
+ * The content tree is split into partitions by path. Starting with the
+ * children of the root, the subtree with the largest estimated number of
+ * nodes is repeatedly replaced by its children until there are enough
+ * partitions for the configured number of threads. The estimates come from
+ * the node counter index (see
+ * {@link org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter}).
+ * Without that index the partitions are the children of the root node.
+ * <p>
+ * Each thread writes into its own {@link PartitionableIndexEditor.Partition}
+ * of every index and takes the subtrees to traverse from a shared queue,
+ * largest first. The remaining nodes, i.e. the ancestors of the partitioned
+ * subtrees, are indexed by the thread running the reindex, which merges the
+ * partitions into the indexes before leaving the root node.
+ */
+public class ParallelReindex {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelReindex.class);
+
+    /**
+     * Subtrees with fewer estimated nodes are not split into smaller partitions.
+     */
+    static final long MIN_SPLIT_SIZE = Long.getLong("oak.indexUpdate.parallelReindex.minSplitSize", 10000);
+
+    /**
+     * Nodes with more children are not split, to keep the number of partitions bounded.
+     */
+    static final int MAX_SPLIT_CHILDREN = 1000;
+
+    /**
+     * Target number of partitions per thread, so that threads finishing early
+     * can take over the remaining work.
+     */
+    static final int PARTITIONS_PER_THREAD = 4;
+
+    private static final Comparator<PartitionStats> LARGEST_FIRST = new Comparator<PartitionStats>() {
+        @Override
+        public int compare(PartitionStats a, PartitionStats b) {
+            return Long.compare(b.estimate, a.estimate);
+        }
+    };
+
+    private final int threads;
+
+    /**
+     * Progress of the partitions of the current or latest reindex.
+     */
+    private volatile List<PartitionStats> partitions = emptyList();
+
+    /**
+     * @param threads number of threads reindexing partitions
+     */
+    public ParallelReindex(int threads) {
+        checkArgument(threads > 0, "threads must be positive");
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return one entry describing the progress of each partition of the
+     *         current or latest reindex
+     */
+    @Nonnull
+    public List<String> getPartitionStats() {
+        List<String> stats = newArrayList();
+        for (PartitionStats partition : partitions) {
+            stats.add(partition.toString());
+        }
+        return stats;
+    }
+
+    /**
+     * Prepare the parallel reindex of the content below {@code root}.
+     *
+     * @param root    the root node state to index
+     * @param editors the root editors of the indexes to reindex
+     * @return the reindex, or {@code null} if the content tree can not be
+     *         split into at least two partitions
+     */
+    @CheckForNull
+    Reindex newReindex(@Nonnull NodeState root, @Nonnull List<PartitionableIndexEditor> editors) {
+        List<PartitionStats> partitions = partition(root, threads * PARTITIONS_PER_THREAD);
+        if (partitions.size() < 2) {
+            return null;
+        }
+        this.partitions = partitions;
+        return new Reindex(root, editors, partitions);
+    }
+
+    /**
+     * Split the content tree into about {@code count} partitions.
+     *
+     * @return the partitions, largest first
+     */
+    @Nonnull
+    static List<PartitionStats> partition(@Nonnull NodeState root, int count) {
+        Queue<PartitionStats> queue = new PriorityQueue<PartitionStats>(11, LARGEST_FIRST);
+        List<PartitionStats> partitions = newArrayList();
+        addChildren(root, ROOT_PATH, root, queue);
+
+        if (getEstimatedNodeCount(root, ROOT_PATH, false) >= 0) {
+            while (!queue.isEmpty() && queue.size() + partitions.size() < count) {
+                PartitionStats largest = queue.poll();
+                if (largest.estimate < MIN_SPLIT_SIZE) {
+                    partitions.add(largest);
+                    break;
+                }
+                NodeState node = getNode(root, largest.path);
+                if (node.getChildNodeCount(MAX_SPLIT_CHILDREN + 1) > MAX_SPLIT_CHILDREN
+                        || !addChildren(root, largest.path, node, queue)) {
+                    partitions.add(largest);
+                }
+            }
+        }
+
+        partitions.addAll(queue);
+        sort(partitions, LARGEST_FIRST);
+        return partitions;
+    }
+
+    private static boolean addChildren(NodeState root, String path, NodeState node, Queue<PartitionStats> queue) {
+        boolean added = false;
+        for (String name : node.getChildNodeNames()) {
+            if (!NodeStateUtils.isHidden(name)) {
+                String child = concat(path, name);
+                queue.add(new PartitionStats(child, getEstimatedNodeCount(root, child, false)));
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    private static NodeState getNode(NodeState root, String path) {
+        NodeState node = root;
+        for (String name : elements(path)) {
+            node = node.getChildNode(name);
+        }
+        return node;
+    }
+
+    /**
+     * Progress of a single partition.
+     */
+    static class PartitionStats {
+
+        final String path;
+
+        /**
+         * Estimated number of nodes, {@code -1} if unknown.
+         */
+        final long estimate;
+
+        private final AtomicLong traversed = new AtomicLong();
+
+        private volatile String state = "queued";
+
+        PartitionStats(String path, long estimate) {
+            this.path = path;
+            this.estimate = estimate;
+        }
+
+        long getTraversed() {
+            return traversed.get();
+        }
+
+        String getState() {
+            return state;
+        }
+
+        @Override
+        public String toString() {
+            return path + " [" + state + "] traversed " + traversed.get()
+                    + " of " + (estimate < 0 ? "unknown" : "~" + estimate) + " nodes";
+        }
+    }
+
+    /**
+     * A single parallel reindex. The editor returned by {@link #getEditor()}
+     * must be used for traversing the whole content tree. It starts the
+     * partitions when entering the root node, skips the partitioned subtrees
+     * and merges the partitions when leaving the root node. {@link #close()}
+     * must be called after the traversal.
+     */
+    class Reindex implements Closeable {
+
+        private final NodeState root;
+
+        private final List<PartitionableIndexEditor> editors;
+
+        private final List<PartitionStats> stats;
+
+        private final Set<String> partitionPaths = newHashSet();
+
+        private final Set<String> ancestorPaths = newHashSet();
+
+        private final Queue<PartitionStats> queue;
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        /**
+         * The partitions of each thread, in the order of {@link #editors}.
+         */
+        private final List<List<PartitionableIndexEditor.Partition>> workerPartitions = newArrayList();
+
+        private final List<Future<Void>> workers = newArrayList();
+
+        private ExecutorService executor;
+
+        private Reindex(NodeState root, List<PartitionableIndexEditor> editors, List<PartitionStats> stats) {
+            this.root = root;
+            this.editors = editors;
+            this.stats = stats;
+            this.queue = new ConcurrentLinkedQueue<PartitionStats>(stats);
+            for (PartitionStats partition : stats) {
+                partitionPaths.add(partition.path);
+                String path = partition.path;
+                while (!denotesRoot(path)) {
+                    path = getParentPath(path);
+                    ancestorPaths.add(path);
+                }
+            }
+        }
+
+        @Nonnull
+        Editor getEditor() {
+            return new ExcludingEditor(compose(editors), ROOT_PATH);
+        }
+
+        private void start() throws CommitFailedException {
+            for (int i = 0; i < threads; i++) {
+                List<PartitionableIndexEditor.Partition> partitions = newArrayList();
+                workerPartitions.add(partitions);
+                for (PartitionableIndexEditor editor : editors) {
+                    PartitionableIndexEditor.Partition partition = editor.newPartition();
+                    if (partition == null) {
+                        log.info("Index editor {} does not support partitions, reindexing in a single traversal",
+                                editor);
+                        partitionPaths.clear();
+                        ancestorPaths.clear();
+                        ParallelReindex.this.partitions = emptyList();
+                        return;
+                    }
+                    partitions.add(partition);
+                }
+            }
+
+            log.info("Reindexing in {} partitions using {} threads", stats.size(), threads);
+            executor = newFixedThreadPool(threads, new ReindexThreadFactory());
+            for (List<PartitionableIndexEditor.Partition> partitions : workerPartitions) {
+                workers.add(executor.submit(new Worker(partitions)));
+            }
+        }
+
+        private void merge() throws CommitFailedException {
+            if (executor == null) {
+                return;
+            }
+            for (Future<Void> worker : workers) {
+                try {
+                    worker.get();
+                } catch (InterruptedException e) {
+                    cancelled.set(true);
+                    Thread.currentThread().interrupt();
+                    throw new CommitFailedException("IndexUpdate", 2,
+                            "Interrupted while waiting for the reindex of partitions", e);
+                } catch (ExecutionException e) {
+                    cancelled.set(true);
+                    if (e.getCause() instanceof CommitFailedException) {
+                        throw (CommitFailedException) e.getCause();
+                    }
+                    throw new CommitFailedException("IndexUpdate", 3,
+                            "Failed to reindex a partition", e.getCause());
+                }
+            }
+
+            for (int i = 0; i < editors.size(); i++) {
+                List<PartitionableIndexEditor.Partition> partitions = newArrayList();
+                for (List<PartitionableIndexEditor.Partition> worker : workerPartitions) {
+                    partitions.add(worker.get(i));
+                }
+                editors.get(i).mergePartitions(partitions);
+            }
+            log.info("Merged {} partitions of {} indexes", workerPartitions.size(), editors.size());
+        }
+
+        /**
+         * Stop all threads still reindexing and discard the partitions.
+         */
+        @Override
+        public void close() {
+            cancelled.set(true);
+            if (executor != null) {
+                executor.shutdown();
+                try {
+                    while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                        log.info("Waiting for the reindex of partitions to stop");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (List<PartitionableIndexEditor.Partition> partitions : workerPartitions) {
+                for (PartitionableIndexEditor.Partition partition : partitions) {
+                    partition.discard();
+                }
+            }
+        }
+
+        private class Worker implements Callable<Void> {
+
+            private final List<PartitionableIndexEditor.Partition> partitions;
+
+            Worker(List<PartitionableIndexEditor.Partition> partitions) {
+                this.partitions = partitions;
+            }
+
+            @Override
+            public Void call() throws CommitFailedException {
+                List<Editor> rootEditors = newArrayList();
+                for (PartitionableIndexEditor.Partition partition : partitions) {
+                    rootEditors.add(partition.getEditor());
+                }
+                Editor rootEditor = compose(rootEditors);
+
+                PartitionStats partition = queue.poll();
+                while (partition != null && !cancelled.get()) {
+                    partition.state = "running";
+                    try {
+                        traverse(rootEditor, partition);
+                    } catch (CommitFailedException e) {
+                        partition.state = "failed";
+                        throw e;
+                    } catch (RuntimeException e) {
+                        partition.state = "failed";
+                        throw e;
+                    }
+                    partition.state = "done";
+                    partition = queue.poll();
+                }
+
+                if (!cancelled.get()) {
+                    for (PartitionableIndexEditor.Partition p : partitions) {
+                        p.complete();
+                    }
+                }
+                return null;
+            }
+
+            private void traverse(Editor editor, PartitionStats partition) throws CommitFailedException {
+                NodeState node = root;
+                for (String name : elements(partition.path)) {
+                    node = node.getChildNode(name);
+                    if (editor != null) {
+                        editor = editor.childNodeAdded(name, node);
+                    }
+                }
+                if (editor != null) {
+                    CommitFailedException e = EditorDiff.process(
+                            VisibleEditor.wrap(new CountingEditor(editor, partition)), MISSING_NODE, node);
+                    if (e != null) {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Editor counting the nodes traversed in a partition. It aborts the
+         * traversal when the reindex was cancelled.
+         */
+        private class CountingEditor implements Editor {
+
+            private final Editor editor;
+
+            private final PartitionStats partition;
+
+            CountingEditor(Editor editor, PartitionStats partition) {
+                this.editor = editor;
+                this.partition = partition;
+            }
+
+            @Override
+            public void enter(NodeState before, NodeState after) throws CommitFailedException {
+                if (cancelled.get()) {
+                    throw new CommitFailedException("IndexUpdate", 4,
+                            "Reindex of partition " + partition.path + " cancelled");
+                }
+                partition.traversed.incrementAndGet();
+                editor.enter(before, after);
+            }
+
+            @Override
+            public void leave(NodeState before, NodeState after) throws CommitFailedException {
+                editor.leave(before, after);
+            }
+
+            @Override
+            public void propertyAdded(PropertyState after) throws CommitFailedException {
+                editor.propertyAdded(after);
+            }
+
+            @Override
+            public void propertyChanged(PropertyState before, PropertyState after) throws CommitFailedException {
+                editor.propertyChanged(before, after);
+            }
+
+            @Override
+            public void propertyDeleted(PropertyState before) throws CommitFailedException {
+                editor.propertyDeleted(before);
+            }
+
+            @Override
+            public Editor childNodeAdded(String name, NodeState after) throws CommitFailedException {
+                return wrap(editor.childNodeAdded(name, after));
+            }
+
+            @Override
+            public Editor childNodeChanged(String name, NodeState before, NodeState after)
+                    throws CommitFailedException {
+                return wrap(editor.childNodeChanged(name, before, after));
+            }
+
+            @Override
+            public Editor childNodeDeleted(String name, NodeState before) throws CommitFailedException {
+                return wrap(editor.childNodeDeleted(name, before));
+            }
+
+            private Editor wrap(Editor child) {
+                return child == null ? null : new CountingEditor(child, partition);
+            }
+        }
+
+        /**
+         * Editor for the thread running the reindex. It skips the partitioned
+         * subtrees, starts the partitions when entering the root node and
+         * merges them when leaving it.
+         */
+        private class ExcludingEditor implements Editor {
+
+            private final Editor editor;
+
+            private final String path;
+
+            ExcludingEditor(Editor editor, String path) {
+                this.editor = editor;
+                this.path = path;
+            }
+
+            @Override
+            public void enter(NodeState before, NodeState after) throws CommitFailedException {
+                editor.enter(before, after);
+                if (denotesRoot(path)) {
+                    start();
+                }
+            }
+
+            @Override
+            public void leave(NodeState before, NodeState after) throws CommitFailedException {
+                if (denotesRoot(path)) {
+                    merge();
+                }
+                editor.leave(before, after);
+            }
+
+            @Override
+            public void propertyAdded(PropertyState after) throws CommitFailedException {
+                editor.propertyAdded(after);
+            }
+
+            @Override
+            public void propertyChanged(PropertyState before, PropertyState after) throws CommitFailedException {
+                editor.propertyChanged(before, after);
+            }
+
+            @Override
+            public void propertyDeleted(PropertyState before) throws CommitFailedException {
+                editor.propertyDeleted(before);
+            }
+
+            @Override
+            public Editor childNodeAdded(String name, NodeState after) throws CommitFailedException {
+                String child = concat(path, name);
+                return partitionPaths.contains(child) ? null : wrap(editor.childNodeAdded(name, after), child);
+            }
+
+            @Override
+            public Editor childNodeChanged(String name, NodeState before, NodeState after)
+                    throws CommitFailedException {
+                String child = concat(path, name);
+                return partitionPaths.contains(child) ? null : wrap(editor.childNodeChanged(name, before, after), child);
+            }
+
+            @Override
+            public Editor childNodeDeleted(String name, NodeState before) throws CommitFailedException {
+                String child = concat(path, name);
+                return partitionPaths.contains(child) ? null : wrap(editor.childNodeDeleted(name, before), child);
+            }
+
+            private Editor wrap(Editor child, String childPath) {
+                if (child != null && ancestorPaths.contains(childPath)) {
+                    return new ExcludingEditor(child, childPath);
+                }
+                return child;
+            }
+        }
+    }
+
+    private static class ReindexThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Oak reindex partition thread " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * An {@link IndexEditor} that can reindex the content tree in partitions,
+ * which are written concurrently by separate threads and merged into the
+ * index afterwards. See {@link ParallelReindex}.
+ * <p>
+ * Partitions are only requested from the editor of the root node, after it
+ * has been {@link #enter(NodeState, NodeState) entered} for the reindex.
+ * All partitions are merged before {@link #leave(NodeState, NodeState)} is
+ * called for the root node.
+ */
+public interface PartitionableIndexEditor extends IndexEditor {
+
+    /**
+     * A partition of the index, written by a single thread.
+     */
+    interface Partition {
+
+        /**
+         * Editor for the root node writing into this partition. The
+         * ancestors of a subtree assigned to this partition are only passed
+         * to {@link Editor#childNodeAdded(String, NodeState)}; {@code enter}
+         * and {@code leave} are called for the root of the subtree and its
+         * descendants only.
+         *
+         * @return the root editor of this partition
+         */
+        @Nonnull
+        Editor getEditor();
+
+        /**
+         * Called by the thread writing this partition once all subtrees
+         * assigned to it have been traversed.
+         */
+        void complete() throws CommitFailedException;
+
+        /**
+         * Release the resources held by this partition. Called once the
+         * reindex finished, regardless of whether the partition was merged.
+         */
+        void discard();
+    }
+
+    /**
+     * Create a new partition of this index. Called on the thread running the
+     * reindex.
+     *
+     * @return a new partition, or {@code null} if this index can not be
+     *         reindexed in partitions, in which case it is reindexed by a
+     *         single traversal
+     */
+    @CheckForNull
+    Partition newPartition() throws CommitFailedException;
+
+    /**
+     * Merge the completed partitions into this index. Called on the thread
+     * running the reindex.
+     *
+     * @param partitions the partitions created by this editor
+     */
+    void mergePartitions(@Nonnull List<Partition> partitions) throws CommitFailedException;
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.AdaptiveDelay.BUSY_THRESHOLD;
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveDelayTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    @Test
+    public void fixed() {
+        AdaptiveDelay delay = new AdaptiveDelay(0, 0);
+        assertEquals(1000, delay.getDelay(1000));
+        delay.update(1000, BUSY_THRESHOLD);
+        assertEquals(1000, delay.getDelay(1000));
+        assertEquals(BUSY_THRESHOLD, delay.getLastBacklog());
+    }
+
+    @Test
+    public void adaptive() {
+        AdaptiveDelay delay = new AdaptiveDelay(100, 4000);
+        assertEquals(1000, delay.getDelay(1000));
+
+        // busy
+        delay.update(1000, BUSY_THRESHOLD);
+        assertEquals(500, delay.getDelay(1000));
+        for (int i = 0; i < 10; i++) {
+            delay.update(1000, BUSY_THRESHOLD * 2);
+        }
+        assertEquals(100, delay.getDelay(1000));
+
+        // moderate load moves back to asyncDelay
+        delay.update(1000, 1);
+        assertEquals(550, delay.getDelay(1000));
+
+        // idle
+        for (int i = 0; i < 20; i++) {
+            delay.update(1000, 0);
+        }
+        assertEquals(4000, delay.getDelay(1000));
+    }
+
+    @Test
+    public void asyncDelayOutsideBounds() {
+        AdaptiveDelay delay = new AdaptiveDelay(100, 500);
+        assertEquals(500, delay.getDelay(1000));
+        delay.update(1000, 1);
+        assertEquals(500, delay.getDelay(1000));
+    }
+
+    @Test
+    public void disabled() {
+        AdaptiveDelay delay = new AdaptiveDelay(100, 500);
+        delay.update(0, 0);
+        assertEquals(0, delay.getDelay(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBounds() {
+        new AdaptiveDelay(500, 100);
+    }
+
+    @Test
+    public void mbean() throws Exception {
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAdaptiveAsyncDelay(10, 2000)
+                .setAsyncDelay(0).getNodeStore();
+        // background threads are disabled with asyncDelay zero
+        ns.setAsyncDelay(1000);
+        DocumentNodeStoreMBean bean = ns.getMBean();
+        assertEquals(1000, bean.getBackgroundReadDelay());
+        assertEquals(1000, bean.getBackgroundUpdateDelay());
+
+        NodeBuilder builder = ns.getRoot().builder();
+        builder.child("foo").child("bar");
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        assertEquals(1, bean.getUnsavedModificationCount());
+
+        ns.runBackgroundOperations();
+        assertEquals(0, bean.getUnsavedModificationCount());
+        assertEquals(0, bean.getExternalChangeBacklog());
+        // idle read, moderate update
+        assertEquals(1500, bean.getBackgroundReadDelay());
+        assertEquals(1000, bean.getBackgroundUpdateDelay());
+    }
+}
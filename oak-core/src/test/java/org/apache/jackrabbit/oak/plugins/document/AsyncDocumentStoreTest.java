@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncDocumentStoreTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void after() {
+        new ExecutorCloser(executor).close();
+    }
+
+    @Test
+    public void executorAdapter() throws Exception {
+        DocumentStore store = new MemoryDocumentStore();
+        AsyncDocumentStore async = new ExecutorAsyncDocumentStore(store, executor);
+        List<ListenableFuture<NodeDocument>> futures = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            UpdateOp op = new UpdateOp(Utils.getIdFromPath("/node-" + i), true);
+            op.set("p", (long) i);
+            futures.add(async.createOrUpdateAsync(NODES, op));
+        }
+        for (ListenableFuture<NodeDocument> f : futures) {
+            // documents did not exist before
+            assertNull(f.get());
+        }
+        NodeDocument doc = async.findAsync(NODES, Utils.getIdFromPath("/node-3")).get();
+        assertNotNull(doc);
+        assertEquals(3L, doc.get("p"));
+
+        List<NodeDocument> docs = async.queryAsync(NODES,
+                Utils.getKeyLowerLimit("/"), Utils.getKeyUpperLimit("/"), 100).get();
+        assertEquals(10, docs.size());
+    }
+
+    @Test
+    public void exceptionReportedAsCause() throws Exception {
+        DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+            @Override
+            public <T extends Document> T find(Collection<T> collection, String key) {
+                throw new DocumentStoreException("failure");
+            }
+        };
+        AsyncDocumentStore async = new ExecutorAsyncDocumentStore(store, executor);
+        try {
+            async.findAsync(NODES, Utils.getIdFromPath("/")).get();
+            fail("ExecutionException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DocumentStoreException);
+        }
+    }
+
+    @Test
+    public void parallelCommitUpdates() throws Exception {
+        final Set<String> threads = Sets.newConcurrentHashSet();
+        DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+            @Override
+            public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                               List<UpdateOp> updateOps) {
+                if (collection == NODES) {
+                    threads.add(Thread.currentThread().getName());
+                }
+                return super.createOrUpdate(collection, updateOps);
+            }
+        };
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(store).setCommitUpdateThreads(4)
+                .setAsyncDelay(0).getNodeStore();
+
+        NodeBuilder builder = ns.getRoot().builder();
+        NodeBuilder test = builder.child("test");
+        for (int i = 0; i < 100; i++) {
+            test.child("node-" + i).setProperty("p", i);
+        }
+        threads.clear();
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        assertTrue("updates not applied concurrently: " + threads, threads.size() > 1);
+        NodeState root = ns.getRoot();
+        for (int i = 0; i < 100; i++) {
+            NodeState child = root.getChildNode("test").getChildNode("node-" + i);
+            assertTrue(child.exists());
+            assertEquals(i, child.getProperty("p").getValue(Type.LONG).intValue());
+        }
+    }
+}
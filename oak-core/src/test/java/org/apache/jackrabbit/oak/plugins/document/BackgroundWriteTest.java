@@ -18,10 +18,14 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -57,6 +61,75 @@ public class BackgroundWriteTest {
         mk.dispose();
     }
 
+    @Test
+    public void incrementalPersist() {
+        final List<List<String>> updates = new ArrayList<List<String>>();
+        MemoryDocumentStore store = new MemoryDocumentStore() {
+            @Override
+            public <T extends Document> void update(Collection<T> collection,
+                                                    List<String> keys,
+                                                    UpdateOp updateOp) {
+                assertTrue(keys.size() <= 10);
+                updates.add(new ArrayList<String>(keys));
+                super.update(collection, keys, updateOp);
+            }
+        };
+        DocumentMK mk = new DocumentMK.Builder().setDocumentStore(store)
+                .setAsyncDelay(0).open();
+        DocumentNodeStore ns = mk.getNodeStore();
+        List<String> paths = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            String child = "node-" + i;
+            sb.append("+\"").append(child).append("\":{}");
+            paths.add("/" + child);
+            for (int j = 0; j < 20; j++) {
+                String p = child + "/node-" + j;
+                paths.add("/" + p);
+                sb.append("+\"").append(p).append("\":{}");
+            }
+        }
+        mk.commit("/", sb.toString(), null, null);
+        ns.runBackgroundOperations();
+        updates.clear();
+
+        // two different revisions, interleaved
+        Revision r1 = ns.newRevision();
+        Revision r2 = ns.newRevision();
+        UnsavedModifications pending = ns.getPendingModifications();
+        pending.put("/", r2);
+        for (int i = 0; i < paths.size(); i++) {
+            pending.put(paths.get(i), i % 2 == 0 ? r1 : r2);
+        }
+        BackgroundWriteStats stats = pending.persistIncrementally(ns,
+                UnsavedModifications.Snapshot.IGNORE,
+                new ReentrantReadWriteLock().writeLock(), 10);
+
+        assertEquals(paths.size() + 1, stats.num);
+        assertEquals(2, stats.stripes);
+        assertEquals(updates.size(), stats.batches);
+        assertTrue(pending.getPaths().isEmpty());
+        // updates must be striped by depth, deepest first, root last
+        int depth = Integer.MAX_VALUE;
+        for (List<String> ids : updates) {
+            int d = Utils.getDepthFromId(ids.get(0));
+            for (String id : ids) {
+                assertEquals(d, Utils.getDepthFromId(id));
+            }
+            assertTrue(d <= depth);
+            depth = d;
+        }
+        assertEquals(0, depth);
+        for (int i = 0; i < paths.size(); i++) {
+            NodeDocument doc = store.find(Collection.NODES,
+                    Utils.getIdFromPath(paths.get(i)));
+            assertNotNull(doc);
+            assertEquals(i % 2 == 0 ? r1 : r2,
+                    doc.getLastRev().get(ns.getClusterId()));
+        }
+        mk.dispose();
+    }
+
     private static final class TestStore extends MemoryDocumentStore {
 
         @Override
@@ -673,6 +673,36 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         assertEquals("bar", d.get("foo").toString());
     }
 
+    @Test
+    public void testFindMultiple() {
+        String id = this.getClass().getName() + ".testFindMultiple";
+        List<String> ids = new ArrayList<String>();
+        List<UpdateOp> ops = new ArrayList<UpdateOp>();
+        for (int i = 0; i < 3; i++) {
+            String key = id + "-" + i;
+            super.ds.remove(Collection.NODES, key);
+            UpdateOp up = new UpdateOp(key, true);
+            up.set("_id", key);
+            ops.add(up);
+            ids.add(key);
+            removeMe.add(key);
+        }
+        assertTrue(super.ds.create(Collection.NODES, ops));
+
+        // one cached and one non-existing document
+        assertNotNull(super.ds.find(Collection.NODES, ids.get(1)));
+        List<String> keys = Lists.newArrayList(ids.get(2), id + "-" + UUID.randomUUID(), ids.get(0), ids.get(1));
+        List<NodeDocument> docs = super.ds.find(Collection.NODES, keys, Integer.MAX_VALUE);
+        assertEquals(3, docs.size());
+        assertEquals(ids.get(2), docs.get(0).getId());
+        assertEquals(ids.get(0), docs.get(1).getId());
+        assertEquals(ids.get(1), docs.get(2).getId());
+
+        // uncached read
+        docs = super.ds.find(Collection.NODES, keys, 0);
+        assertEquals(3, docs.size());
+    }
+
     @Test
     public void testUpdateModified() {
         String id = this.getClass().getName() + ".testUpdateModified";
@@ -66,7 +66,7 @@ public class CommitQueueTest {
 
     @Test
     public void concurrentCommits() throws Exception {
-        final DocumentNodeStore store = builderProvider.newBuilder().getNodeStore();
+        final DocumentNodeStore store = newBuilder().getNodeStore();
         AtomicBoolean running = new AtomicBoolean(true);
 
         Closeable observer = store.addObserver(new Observer() {
@@ -130,7 +130,7 @@ public class CommitQueueTest {
 
     @Test
     public void concurrentCommits2() throws Exception {
-        final CommitQueue queue = new CommitQueue(DummyRevisionContext.INSTANCE);
+        final CommitQueue queue = newCommitQueue(DummyRevisionContext.INSTANCE);
 
         final CommitQueue.Callback c = new CommitQueue.Callback() {
             private Revision before = Revision.newRevision(1);
@@ -187,7 +187,7 @@ public class CommitQueueTest {
     // OAK-2868
     @Test
     public void branchCommitMustNotBlockTrunkCommit() throws Exception {
-        final DocumentNodeStore ds = builderProvider.newBuilder().getNodeStore();
+        final DocumentNodeStore ds = newBuilder().getNodeStore();
 
         // simulate start of a branch commit
         Commit c = ds.newCommit(ds.getHeadRevision().asBranchRevision(ds.getClusterId()), null);
@@ -224,7 +224,7 @@ public class CommitQueueTest {
             }
         };
         headRevision.set(new RevisionVector(context.newRevision()));
-        final CommitQueue queue = new CommitQueue(context);
+        final CommitQueue queue = newCommitQueue(context);
 
         final Revision newHeadRev = context.newRevision();
         final Set<Revision> revisions = queue.createRevisions(10);
@@ -272,7 +272,7 @@ public class CommitQueueTest {
             }
         };
         headRevision.set(new RevisionVector(context.newRevision()));
-        final CommitQueue queue = new CommitQueue(context);
+        final CommitQueue queue = newCommitQueue(context);
         queue.setSuspendTimeoutMillis(0);
 
         final Revision r = context.newRevision();
@@ -303,7 +303,7 @@ public class CommitQueueTest {
         List<Thread> threads = new ArrayList<Thread>();
         List<Revision> allRevisions = new ArrayList<Revision>();
 
-        final CommitQueue queue = new CommitQueue(context);
+        final CommitQueue queue = newCommitQueue(context);
         for (int i = 0; i < 10; i++) { // threads count
             final Set<Revision> revisions = new HashSet<Revision>();
             for (int j = 0; j < 10; j++) { // revisions per thread
@@ -352,7 +352,7 @@ public class CommitQueueTest {
     @Test
     public void headOfQueueMustNotBlockNewRevision() throws Exception {
         RevisionContext context = new DummyRevisionContext();
-        final CommitQueue queue = new CommitQueue(context);
+        final CommitQueue queue = newCommitQueue(context);
         final Revision r1 = queue.createRevision();
         final Semaphore s1 = new Semaphore(0);
         final CommitQueue.Callback c = new CommitQueue.Callback() {
@@ -388,6 +388,14 @@ public class CommitQueueTest {
         }
     }
 
+    protected CommitQueue newCommitQueue(RevisionContext context) {
+        return new DefaultCommitQueue(context);
+    }
+
+    protected DocumentMK.Builder newBuilder() {
+        return builderProvider.newBuilder();
+    }
+
     private void assertNoExceptions() throws Exception {
         if (!exceptions.isEmpty()) {
             throw exceptions.get(0);
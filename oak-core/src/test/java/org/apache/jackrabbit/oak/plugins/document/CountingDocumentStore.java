@@ -99,6 +99,18 @@ public class CountingDocumentStore implements DocumentStore, RevisionListener {
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys,
+                                             int maxCacheAge) {
+        getStats(collection).numFindCalls++;
+        if (printStacks) {
+            new Exception("find [" + getStats(collection).numFindCalls + "] (" + collection + ") " + keys + " [max: " + maxCacheAge + "]").printStackTrace();
+        }
+        return delegate.find(collection, keys, maxCacheAge);
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
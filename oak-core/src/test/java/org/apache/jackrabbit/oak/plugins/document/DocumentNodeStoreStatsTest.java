@@ -23,6 +23,7 @@ import java.lang.management.ManagementFactory;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.plugins.metric.MetricStatisticsProvider;
@@ -60,6 +61,19 @@ public class DocumentNodeStoreStatsTest {
 
     }
 
+    @Test
+    public void coalescedUpdate() throws Exception{
+        stats.doneCoalescedUpdate(3, 12, 5);
+        stats.doneCoalescedUpdate(1, 4, 2);
+        assertEquals(2, getHistogram(DocumentNodeStoreStats.COALESCE_COMMITS).getCount());
+        assertEquals(3, getHistogram(DocumentNodeStoreStats.COALESCE_COMMITS).getSnapshot().getMax());
+        assertEquals(12, getHistogram(DocumentNodeStoreStats.COALESCE_OPS).getSnapshot().getMax());
+    }
+
+    private Histogram getHistogram(String name) {
+        return statsProvider.getRegistry().getHistograms().get(name);
+    }
+
     private Meter getMeter(String name) {
         return statsProvider.getRegistry().getMeters().get(name);
     }
@@ -34,6 +34,7 @@ import com.google.common.collect.Iterators;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Key;
 import org.apache.jackrabbit.oak.plugins.document.UpdateOp.Operation;
@@ -921,6 +922,41 @@ public class DocumentSplitTest extends BaseDocumentMKTest {
         assertEquals(9, prevDocs.size());
     }
 
+    @Test
+    public void asyncSplit() throws Exception {
+        DocumentMK mk = new DocumentMK.Builder().setAsyncSplit(true)
+                .setAsyncDelay(0).open();
+        try {
+            DocumentStore store = mk.getDocumentStore();
+            DocumentNodeStore ns = mk.getNodeStore();
+            int numNodes = DocumentNodeStore.SPLIT_BATCH_SIZE + 20;
+            for (int i = 0; i <= NUM_REVS_THRESHOLD; i++) {
+                NodeBuilder builder = ns.getRoot().builder();
+                for (int j = 0; j < numNodes; j++) {
+                    builder.child("node-" + j).setProperty("p", i);
+                }
+                merge(ns, builder);
+            }
+            ns.runBackgroundOperations();
+            long end = System.currentTimeMillis() + 10000;
+            while (!ns.getSplitCandidates().isEmpty()
+                    && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertTrue(ns.getSplitCandidates().isEmpty());
+            for (int j = 0; j < numNodes; j++) {
+                String path = "/node-" + j;
+                NodeDocument doc = store.find(NODES, Utils.getIdFromPath(path));
+                assertNotNull(doc);
+                assertFalse("Not split: " + path, doc.getPreviousRanges().isEmpty());
+                assertEquals(NUM_REVS_THRESHOLD, ns.getRoot().getChildNode(
+                        "node-" + j).getProperty("p").getValue(Type.LONG).intValue());
+            }
+        } finally {
+            mk.dispose();
+        }
+    }
+
     private static class TestRevisionContext implements RevisionContext {
 
         private final RevisionContext rc;
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.io.File;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.DocumentStoreExporter;
+import org.apache.jackrabbit.oak.plugins.document.util.DocumentStoreImporter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.SETTINGS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DocumentStoreDumpTest extends AbstractDocumentStoreTest {
+
+    private static final int NUM_NODES = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    public DocumentStoreDumpTest(DocumentStoreFixture dsf) {
+        super(dsf);
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        DocumentStore source = new MemoryDocumentStore();
+        List<UpdateOp> ops = Lists.newArrayList();
+        for (int i = 0; i < NUM_NODES; i++) {
+            String id = "1:/" + getClass().getSimpleName() + "-" + i;
+            UpdateOp op = new UpdateOp(id, true);
+            op.set(Document.ID, id);
+            op.set("_modified", 1234L + i);
+            op.set("_deletedOnce", i % 2 == 0);
+            op.set("s", "value-ä-" + i);
+            op.setMapEntry("_deleted", Revision.newRevision(1), "false");
+            op.setMapEntry("_revisions", Revision.newRevision(2), "c");
+            ops.add(op);
+            removeMe.add(id);
+        }
+        assertTrue(source.create(NODES, ops));
+        String settingsId = getClass().getSimpleName() + "-settings";
+        UpdateOp settings = new UpdateOp(settingsId, true);
+        settings.set(Document.ID, settingsId);
+        settings.setMapEntry("data", Revision.newRevision(1), "{\"expires\":\"42\"}");
+        assertTrue(source.create(SETTINGS, Lists.newArrayList(settings)));
+        removeMeSettings.add(settingsId);
+
+        // memory -> fixture
+        File dump = folder.newFolder("first");
+        DocumentStoreExporter exporter = new DocumentStoreExporter(source, dump)
+                .setChunkSize(7).setThreads(3);
+        assertEquals(NUM_NODES, exporter.export(NODES));
+        assertEquals(1, exporter.export(SETTINGS));
+        DocumentStoreImporter importer = new DocumentStoreImporter(ds, dump);
+        assertEquals(NUM_NODES, importer.importCollection(NODES));
+        assertEquals(1, importer.importCollection(SETTINGS));
+        assertDocuments(source, ds);
+
+        // fixture -> memory
+        File dump2 = folder.newFolder("second");
+        DocumentStore target = new MemoryDocumentStore();
+        new DocumentStoreExporter(ds, dump2).setChunkSize(11).export(NODES);
+        new DocumentStoreExporter(ds, dump2).export(SETTINGS);
+        new DocumentStoreImporter(target, dump2).importCollection(NODES);
+        new DocumentStoreImporter(target, dump2).importCollection(SETTINGS);
+        assertDocuments(source, target);
+    }
+
+    @Test
+    public void existingDocument() throws Exception {
+        DocumentStore source = new MemoryDocumentStore();
+        String id = "1:/" + getClass().getSimpleName() + "-existing";
+        UpdateOp op = new UpdateOp(id, true);
+        op.set(Document.ID, id);
+        op.set("p", "a");
+        assertTrue(source.create(NODES, Lists.newArrayList(op)));
+        assertTrue(ds.create(NODES, Lists.newArrayList(op)));
+        removeMe.add(id);
+
+        File dump = folder.newFolder();
+        new DocumentStoreExporter(source, dump).export(NODES);
+        try {
+            new DocumentStoreImporter(ds, dump).importCollection(NODES);
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+    }
+
+    private void assertDocuments(DocumentStore expected, DocumentStore actual) {
+        for (Collection<? extends Document> c : Lists.newArrayList(NODES, SETTINGS)) {
+            for (Document e : expected.query(c, "", String.valueOf(Character.MAX_VALUE), Integer.MAX_VALUE)) {
+                Document a = actual.find(c, e.getId());
+                assertNotNull(e.getId() + " missing in " + dsname, a);
+                for (String key : e.keySet()) {
+                    if (key.equals(Document.MOD_COUNT)
+                            || key.equals(RDBDocumentStore.COLLISIONSMODCOUNT)) {
+                        continue;
+                    }
+                    assertEquals(e.getId() + "." + key, e.get(key), a.get(key));
+                }
+            }
+        }
+    }
+}
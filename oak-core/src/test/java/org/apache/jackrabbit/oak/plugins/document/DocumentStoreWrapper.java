@@ -48,6 +48,14 @@ public class DocumentStoreWrapper implements DocumentStore, RevisionListener {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Nonnull
+    @Override
+    public <T extends Document> List<T> find(Collection<T> collection,
+                                             List<String> keys,
+                                             int maxCacheAge) {
+        return store.find(collection, keys, maxCacheAge);
+    }
+
     @Nonnull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -68,6 +68,31 @@ public class JournalEntryTest {
         sort.close();
     }
 
+    @Test
+    public void applyToBufferedEntry() throws Exception {
+        DiffCache cache = new MemoryDiffCache(new DocumentMK.Builder());
+        List<String> paths = Lists.newArrayList();
+        addRandomPaths(paths);
+        StringSort sort = JournalEntry.newSorter();
+        add(sort, paths);
+        RevisionVector from = new RevisionVector(new Revision(1, 0, 1));
+        RevisionVector to = new RevisionVector(new Revision(2, 0, 1));
+        sort.sort();
+        BufferedDiffCacheEntry entry = new BufferedDiffCacheEntry();
+        JournalEntry.applyTo(sort.getIds(), entry);
+        assertTrue(entry.size() > 0);
+        assertTrue(entry.replayTo(cache.newEntry(from, to, false)));
+
+        for (String p : paths) {
+            String changes = cache.getChanges(from, to, p, null);
+            assertNotNull("missing changes for " + p, changes);
+            for (String c : getChildren(changes)) {
+                assertTrue(paths.contains(PathUtils.concat(p, c)));
+            }
+        }
+        sort.close();
+    }
+
     //OAK-3494
     @Test
     public void useParentDiff() throws Exception {
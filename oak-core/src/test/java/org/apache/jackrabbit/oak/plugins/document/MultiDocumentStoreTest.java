@@ -33,6 +33,8 @@ import java.util.concurrent.CountDownLatch;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import org.apache.jackrabbit.oak.plugins.document.cache.CacheInvalidationStats;
+import org.apache.jackrabbit.oak.plugins.document.cache.InvalidationResult;
 import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.junit.Test;
@@ -150,6 +152,50 @@ public class MultiDocumentStoreTest extends AbstractMultiDocumentStoreTest {
         assertTrue(nd1.getLastCheckTime() > ds1checktime);
     }
 
+    @Test
+    public void testInvalidateCacheKeys() {
+        String base = "1:/" + this.getClass().getName() + ".testInvalidateCacheKeys";
+        List<String> ids = Lists.newArrayList();
+        List<UpdateOp> ops = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            String id = base + "-" + i;
+            super.ds1.remove(Collection.NODES, id);
+            ids.add(id);
+            UpdateOp up = new UpdateOp(id, true);
+            up.set("_id", id);
+            up.set(NodeDocument.MODIFIED_IN_SECS, 1L);
+            ops.add(up);
+        }
+        assertTrue(super.ds1.create(Collection.NODES, ops));
+        removeMe.addAll(ids);
+
+        // fill cache of ds2
+        for (String id : ids) {
+            assertNotNull(super.ds2.find(Collection.NODES, id));
+        }
+        long modCount = super.ds2.find(Collection.NODES, ids.get(0)).getModCount();
+
+        // update one and remove one document through ds1
+        UpdateOp up = new UpdateOp(ids.get(0), false);
+        up.set("_id", ids.get(0));
+        up.set("foo", "bar");
+        super.ds1.update(Collection.NODES, Collections.singletonList(ids.get(0)), up);
+        super.ds1.remove(Collection.NODES, ids.get(1));
+
+        CacheInvalidationStats stats = super.ds2.invalidateCache(ids);
+        assertTrue("unexpected invalidation stats: " + stats, stats instanceof InvalidationResult);
+        InvalidationResult result = (InvalidationResult) stats;
+        assertEquals(3, result.cacheSize);
+        assertEquals(2, result.invalidationCount);
+        assertEquals(1, result.upToDateCount);
+
+        NodeDocument nd = super.ds2.find(Collection.NODES, ids.get(0));
+        assertNotNull(nd);
+        assertEquals(modCount + 1, nd.getModCount().longValue());
+        assertNull(super.ds2.find(Collection.NODES, ids.get(1)));
+        assertNotNull(super.ds2.find(Collection.NODES, ids.get(2)));
+    }
+
     @Test
     public void testInterleavedBatchUpdate() {
         int amount = 10;
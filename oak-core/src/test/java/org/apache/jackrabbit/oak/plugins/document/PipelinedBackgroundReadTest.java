@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedBackgroundReadTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void externalChangesFromMultipleClusterNodes() throws Exception {
+        MemoryDocumentStore store = new MemoryDocumentStore();
+        DocumentNodeStore ns1 = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(1)
+                .setPipelinedBackgroundRead(true).setExecutor(executor)
+                .setAsyncDelay(0).getNodeStore();
+        DocumentNodeStore ns2 = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(2)
+                .setAsyncDelay(0).getNodeStore();
+        DocumentNodeStore ns3 = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(3)
+                .setAsyncDelay(0).getNodeStore();
+
+        NodeBuilder builder = ns2.getRoot().builder();
+        builder.child("a").child("b");
+        ns2.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns2.runBackgroundOperations();
+
+        builder = ns3.getRoot().builder();
+        builder.child("c").child("d");
+        builder.child("a-sibling");
+        ns3.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns3.runBackgroundOperations();
+
+        DocumentNodeState before = ns1.getRoot();
+        assertFalse(before.hasChildNode("a"));
+        assertFalse(before.hasChildNode("c"));
+
+        BackgroundReadStats stats = ns1.backgroundRead();
+        DocumentNodeState after = ns1.getRoot();
+        assertTrue(after.getChildNode("a").hasChildNode("b"));
+        assertTrue(after.getChildNode("c").hasChildNode("d"));
+        assertTrue(after.hasChildNode("a-sibling"));
+        assertTrue(stats.numExternalChanges > 0);
+
+        // diff cache must have been populated for the external changes
+        String changes = ns1.getDiffCache().getChanges(before.getRootRevision(),
+                after.getRootRevision(), "/", null);
+        assertNotNull(changes);
+        assertTrue(changes.contains("\"a\""));
+        assertTrue(changes.contains("\"c\""));
+        assertTrue(changes.contains("\"a-sibling\""));
+    }
+
+    @Test
+    public void sameResultAsSerialRead() throws Exception {
+        MemoryDocumentStore store = new MemoryDocumentStore();
+        DocumentNodeStore serial = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(1)
+                .setAsyncDelay(0).getNodeStore();
+        DocumentNodeStore pipelined = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(2)
+                .setPipelinedBackgroundRead(true).setExecutor(executor)
+                .setAsyncDelay(0).getNodeStore();
+        DocumentNodeStore writer = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(3)
+                .setAsyncDelay(0).getNodeStore();
+        // make sure all cluster nodes have seen each other
+        for (int i = 0; i < 2; i++) {
+            serial.runBackgroundOperations();
+            pipelined.runBackgroundOperations();
+            writer.runBackgroundOperations();
+        }
+
+        NodeBuilder builder = writer.getRoot().builder();
+        for (int i = 0; i < 100; i++) {
+            builder.child("node-" + i).child("child").setProperty("p", i);
+        }
+        writer.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        writer.runBackgroundOperations();
+
+        BackgroundReadStats serialStats = serial.backgroundRead();
+        BackgroundReadStats pipelinedStats = pipelined.backgroundRead();
+        assertEquals(serialStats.numExternalChanges, pipelinedStats.numExternalChanges);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, pipelined.getRoot().getChildNode("node-" + i)
+                    .getChildNode("child").getProperty("p").getValue(Type.LONG).intValue());
+        }
+    }
+}
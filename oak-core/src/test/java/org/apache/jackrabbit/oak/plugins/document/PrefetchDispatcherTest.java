@@ -79,4 +79,54 @@ public class PrefetchDispatcherTest {
         // expect two queries for children: below /foo and /foo/bar
         assertEquals(2, numQueries.get());
     }
+
+    @Test
+    public void prefetchChangedChildren() throws Exception {
+        final AtomicInteger numBulkReads = new AtomicInteger();
+        MemoryDocumentStore store = new MemoryDocumentStore() {
+            @Nonnull
+            @Override
+            public <T extends Document> List<T> find(Collection<T> collection,
+                                                     List<String> keys,
+                                                     int maxCacheAge) {
+                if (collection == Collection.NODES) {
+                    numBulkReads.incrementAndGet();
+                }
+                return super.find(collection, keys, maxCacheAge);
+            }
+        };
+        DocumentNodeStore ns1 = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(1)
+                .setPrefetchExternalChanges(false)
+                .setAsyncDelay(0).getNodeStore();
+        DocumentNodeStore ns2 = builderProvider.newBuilder()
+                .setDocumentStore(store).setClusterId(2)
+                .setPrefetchExternalChanges(false)
+                .setAsyncDelay(0).getNodeStore();
+
+        NodeBuilder builder = ns1.getRoot().builder();
+        builder.child("test");
+        ns1.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns1.runBackgroundOperations();
+        ns2.runBackgroundOperations();
+
+        builder = ns1.getRoot().builder();
+        NodeBuilder test = builder.child("test");
+        for (int i = 0; i < 10; i++) {
+            test.child("node-" + i);
+        }
+        ns1.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns1.runBackgroundOperations();
+
+        DocumentNodeState before = ns2.getRoot();
+        ns2.runBackgroundOperations();
+        DocumentNodeState after = ns2.getRoot().fromExternalChange();
+
+        PrefetchDispatcher dispatcher = new PrefetchDispatcher(
+                before, MoreExecutors.sameThreadExecutor());
+        numBulkReads.set(0);
+        dispatcher.contentChanged(after, null);
+        // expect one bulk read for the children of /test
+        assertEquals(1, numBulkReads.get());
+    }
 }
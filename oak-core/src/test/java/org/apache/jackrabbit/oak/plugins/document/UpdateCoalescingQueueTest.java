@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class UpdateCoalescingQueueTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private final List<Integer> batchSizes = Collections.synchronizedList(Lists.<Integer>newArrayList());
+
+    private final DocumentStore store = new DocumentStoreWrapper(new MemoryDocumentStore()) {
+        @Override
+        public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                           List<UpdateOp> updateOps) {
+            if (collection == NODES) {
+                batchSizes.add(updateOps.size());
+            }
+            return super.createOrUpdate(collection, updateOps);
+        }
+    };
+
+    private final DocumentNodeStoreStatsCollector stats = mock(DocumentNodeStoreStatsCollector.class);
+
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void after() {
+        new ExecutorCloser(executor).close();
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        final UpdateCoalescingQueue queue = new UpdateCoalescingQueue(
+                store, stats, TimeUnit.MINUTES.toMillis(1), 6);
+        store.create(NODES, Lists.newArrayList(newOp("/a", 0)));
+
+        List<Future<List<NodeDocument>>> futures = Lists.newArrayList();
+        for (final String name : new String[]{"a", "b", "c"}) {
+            futures.add(executor.submit(new Callable<List<NodeDocument>>() {
+                @Override
+                public List<NodeDocument> call() throws Exception {
+                    return queue.createOrUpdate(Lists.newArrayList(
+                            newOp("/" + name, 1), newOp("/" + name + "/x", 1)));
+                }
+            }));
+        }
+        // the batch is full after the third commit and must not wait
+        // for the maximum delay
+        for (Future<List<NodeDocument>> f : futures) {
+            assertEquals(2, f.get(10, TimeUnit.SECONDS).size());
+        }
+        assertEquals(Lists.newArrayList(6), batchSizes);
+        verify(stats).doneCoalescedUpdate(eq(3), eq(6), anyLong());
+
+        // each commit gets the documents before its own update
+        NodeDocument before = futures.get(0).get().get(0);
+        assertNotNull(before);
+        assertEquals(0L, before.get("p"));
+        assertNull(futures.get(0).get().get(1));
+        assertEquals(1L, store.find(NODES, Utils.getIdFromPath("/c/x")).get("p"));
+    }
+
+    @Test
+    public void duplicateIdNotCoalesced() throws Exception {
+        final UpdateCoalescingQueue queue = new UpdateCoalescingQueue(
+                store, stats, TimeUnit.MINUTES.toMillis(1), 2);
+
+        Future<List<NodeDocument>> leader = executor.submit(new Callable<List<NodeDocument>>() {
+            @Override
+            public List<NodeDocument> call() throws Exception {
+                return queue.createOrUpdate(Lists.newArrayList(newOp("/a", 1)));
+            }
+        });
+        waitForBatch(queue);
+
+        // operation on the same document goes directly to the store
+        queue.createOrUpdate(Lists.newArrayList(newOp("/a", 2)));
+        assertEquals(Lists.newArrayList(1), batchSizes);
+
+        // fills up the open batch
+        queue.createOrUpdate(Lists.newArrayList(newOp("/b", 1)));
+        leader.get(10, TimeUnit.SECONDS);
+        assertEquals(Lists.newArrayList(1, 2), batchSizes);
+    }
+
+    @Test
+    public void failureReportedToAllCommits() throws Exception {
+        DocumentStore failing = new DocumentStoreWrapper(store) {
+            @Override
+            public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                               List<UpdateOp> updateOps) {
+                throw new DocumentStoreException("failure");
+            }
+        };
+        final UpdateCoalescingQueue queue = new UpdateCoalescingQueue(
+                failing, stats, TimeUnit.MINUTES.toMillis(1), 2);
+        Future<List<NodeDocument>> leader = executor.submit(new Callable<List<NodeDocument>>() {
+            @Override
+            public List<NodeDocument> call() throws Exception {
+                return queue.createOrUpdate(Lists.newArrayList(newOp("/a", 1)));
+            }
+        });
+        waitForBatch(queue);
+        try {
+            queue.createOrUpdate(Lists.newArrayList(newOp("/b", 1)));
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            // expected
+        }
+        try {
+            leader.get(10, TimeUnit.SECONDS);
+            fail("DocumentStoreException expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DocumentStoreException);
+        }
+    }
+
+    @Test
+    public void concurrentMerges() throws Exception {
+        final DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(store).setUpdateCoalescing(true)
+                .setUpdateCoalescingWindow(10, 100)
+                .setAsyncDelay(0).getNodeStore();
+        assertNotNull(ns.getUpdateCoalescingQueue());
+
+        List<Future<Object>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            final String name = "t" + i;
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    for (int j = 0; j < 20; j++) {
+                        NodeBuilder builder = ns.getRoot().builder();
+                        builder.child(name).child("n" + j).setProperty("p", j);
+                        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Object> f : futures) {
+            f.get(1, TimeUnit.MINUTES);
+        }
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 20; j++) {
+                assertTrue(ns.getRoot().getChildNode("t" + i).getChildNode("n" + j).exists());
+            }
+        }
+    }
+
+    private static UpdateOp newOp(String path, long value) {
+        UpdateOp op = new UpdateOp(Utils.getIdFromPath(path), true);
+        op.set("p", value);
+        return op;
+    }
+
+    /**
+     * Waits until a leader waits for more operations on its batch.
+     */
+    private void waitForBatch(UpdateCoalescingQueue queue) throws Exception {
+        long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!queue.hasOpenBatch()) {
+            if (System.currentTimeMillis() > end) {
+                fail("no open batch");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.EvictionListener;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapTieredCacheTest {
+
+    private DocumentStore store;
+
+    private OffHeapTieredCache<StringValue> cache;
+
+    @Before
+    public void before() {
+        store = new MemoryDocumentStore();
+        final CopyOnWriteArrayList<EvictionListener<StringValue, NodeDocument>> listeners =
+                new CopyOnWriteArrayList<EvictionListener<StringValue, NodeDocument>>();
+        CacheLIRS<StringValue, NodeDocument> memCache = CacheLIRS.<StringValue, NodeDocument>newBuilder()
+                .maximumSize(10).recordStats()
+                .evictionCallback(new EvictionCallback<StringValue, NodeDocument>() {
+                    @Override
+                    public void evicted(StringValue key, NodeDocument value, RemovalCause cause) {
+                        for (EvictionListener<StringValue, NodeDocument> l : listeners) {
+                            l.evicted(key, value, cause);
+                        }
+                    }
+                }).build();
+        OffHeapCache<StringValue> offHeapCache = new OffHeapCache<StringValue>(
+                store, 1024 * 1024, "test");
+        cache = new OffHeapTieredCache<StringValue>(memCache, offHeapCache);
+        listeners.add(cache);
+    }
+
+    @Test
+    public void demoteAndPromote() {
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            doc.markUpToDate(i);
+            cache.put(new StringValue(doc.getId()), doc);
+        }
+        OffHeapCache<StringValue> offHeapCache = cache.getOffHeapCache();
+        assertTrue(offHeapCache.size() > 0);
+        assertEquals(100, cache.size() + offHeapCache.size());
+
+        for (int i = 0; i < 100; i++) {
+            String id = "1:/node-" + i;
+            NodeDocument doc = cache.getIfPresent(new StringValue(id));
+            assertNotNull(doc);
+            assertEquals(id, doc.getId());
+            assertEquals("bar", doc.get("foo"));
+            assertEquals(Long.valueOf(1), doc.getModCount());
+            assertEquals(i, doc.getLastCheckTime());
+        }
+        assertTrue(offHeapCache.stats().hitCount() > 0);
+    }
+
+    @Test
+    public void invalidate() {
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            cache.put(new StringValue(doc.getId()), doc);
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.invalidate(new StringValue("1:/node-" + i));
+        }
+        assertEquals(0, cache.getOffHeapCache().size());
+        assertEquals(0, cache.getOffHeapCache().getUsedMemory());
+        for (int i = 0; i < 100; i++) {
+            assertNull(cache.getIfPresent(new StringValue("1:/node-" + i)));
+        }
+    }
+
+    @Test
+    public void invalidateThroughMapView() {
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            cache.put(new StringValue(doc.getId()), doc);
+        }
+        OffHeapCache<StringValue> offHeapCache = cache.getOffHeapCache();
+        StringValue demoted = offHeapCache.keys().iterator().next();
+        assertTrue(cache.asMap().containsKey(demoted));
+        assertEquals(100, cache.asMap().keySet().size());
+        assertEquals(100, cache.asMap().values().size());
+
+        // invalidate all keys seen through the map view, like
+        // DocumentStore.invalidateCache() does
+        for (StringValue key : cache.asMap().keySet()) {
+            cache.invalidate(key);
+        }
+        assertEquals(0, offHeapCache.size());
+        assertNull(cache.getIfPresent(demoted));
+        for (int i = 0; i < 100; i++) {
+            assertNull(cache.getIfPresent(new StringValue("1:/node-" + i)));
+        }
+    }
+
+    @Test
+    public void iterateThroughMapView() {
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            cache.put(new StringValue(doc.getId()), doc);
+        }
+        OffHeapCache<StringValue> offHeapCache = cache.getOffHeapCache();
+        int offHeapSize = offHeapCache.size();
+        Set<String> ids = Sets.newHashSet();
+        for (Map.Entry<StringValue, NodeDocument> e : cache.asMap().entrySet()) {
+            assertEquals(e.getKey().toString(), e.getValue().getId());
+            ids.add(e.getValue().getId());
+        }
+        assertEquals(100, ids.size());
+        for (NodeDocument doc : cache.asMap().values()) {
+            assertEquals("bar", doc.get("foo"));
+        }
+        // iterating neither promotes documents nor counts as hits
+        assertEquals(offHeapSize, offHeapCache.size());
+        assertEquals(0, offHeapCache.stats().hitCount());
+    }
+
+    @Test
+    public void peekDoesNotPromote() {
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            cache.put(new StringValue(doc.getId()), doc);
+        }
+        OffHeapCache<StringValue> offHeapCache = cache.getOffHeapCache();
+        StringValue demoted = offHeapCache.keys().iterator().next();
+        int offHeapSize = offHeapCache.size();
+        assertNotNull(cache.peek(demoted));
+        assertNotNull(cache.asMap().get(demoted));
+        assertEquals(offHeapSize, offHeapCache.size());
+        assertEquals(0, offHeapCache.stats().hitCount());
+
+        // getAllPresent() reads from both tiers
+        assertEquals(1, cache.getAllPresent(ImmutableList.of(demoted)).size());
+        assertEquals(1, offHeapCache.stats().hitCount());
+    }
+
+    @Test
+    public void removeThroughMapView() {
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            cache.put(new StringValue(doc.getId()), doc);
+        }
+        StringValue demoted = cache.getOffHeapCache().keys().iterator().next();
+        assertNotNull(cache.asMap().remove(demoted));
+        assertFalse(cache.getOffHeapCache().containsKey(demoted));
+        assertNull(cache.getIfPresent(demoted));
+
+        cache.asMap().clear();
+        assertEquals(0, cache.getOffHeapCache().size());
+        assertTrue(cache.asMap().isEmpty());
+    }
+
+    @Test
+    public void maxMemory() {
+        OffHeapCache<StringValue> offHeapCache = new OffHeapCache<StringValue>(
+                store, 1024, "test");
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            offHeapCache.put(new StringValue(doc.getId()), doc);
+            assertTrue(offHeapCache.getUsedMemory() <= 1024);
+        }
+        assertTrue(offHeapCache.stats().evictionCount() > 0);
+        // most recently added document is still there
+        assertNotNull(offHeapCache.getIfPresent(new StringValue("1:/node-99")));
+    }
+
+    @Test
+    public void blocksAreReused() {
+        OffHeapCache<StringValue> offHeapCache = new OffHeapCache<StringValue>(
+                store, 16 * OffHeapCache.BLOCK_SIZE, "test");
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 3 * OffHeapCache.BLOCK_SIZE; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        for (int i = 0; i < 100; i++) {
+            NodeDocument doc = createDoc("1:/node-" + i);
+            doc.put("large", value.toString());
+            offHeapCache.put(new StringValue(doc.getId()), doc);
+            assertTrue(offHeapCache.getUsedMemory() <= 16 * OffHeapCache.BLOCK_SIZE);
+
+            NodeDocument read = offHeapCache.getIfPresent(new StringValue(doc.getId()));
+            assertNotNull(read);
+            assertEquals(value.toString(), read.get("large"));
+        }
+        assertTrue(offHeapCache.stats().evictionCount() > 0);
+
+        for (StringValue key : offHeapCache.keys()) {
+            NodeDocument doc = offHeapCache.remove(key);
+            assertNotNull(doc);
+            assertEquals(value.toString(), doc.get("large"));
+        }
+        assertEquals(0, offHeapCache.getUsedMemory());
+    }
+
+    private NodeDocument createDoc(String id) {
+        NodeDocument doc = Collection.NODES.newDocument(store);
+        doc.put("_id", id);
+        doc.put("_modCount", 1L);
+        doc.put("foo", "bar");
+        return doc;
+    }
+}
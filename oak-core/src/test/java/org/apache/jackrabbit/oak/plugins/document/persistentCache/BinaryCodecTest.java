@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.nio.ByteBuffer;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.h2.mvstore.WriteBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BinaryCodecTest {
+
+    private DocumentNodeStore ns;
+
+    @Before
+    public void before() {
+        ns = new DocumentMK.Builder().getNodeStore();
+    }
+
+    @After
+    public void after() {
+        ns.dispose();
+    }
+
+    @Test
+    public void pathRev() {
+        RevisionVector rv = new RevisionVector(
+                new Revision(System.currentTimeMillis(), 3, 1),
+                new Revision(System.currentTimeMillis(), 0, 2, true));
+        PathRev key = new PathRev("/foo/bar", rv);
+        for (CacheType type : asList(CacheType.NODE, CacheType.CHILDREN, CacheType.DIFF)) {
+            WriteBuffer buffer = new WriteBuffer();
+            type.writeKey(buffer, key);
+            assertEquals(key, type.readKey(flip(buffer)));
+        }
+    }
+
+    @Test
+    public void nodeState() throws Exception {
+        NodeBuilder builder = ns.getRoot().builder();
+        NodeBuilder test = builder.child("test");
+        test.setProperty("jcr:primaryType", "nt:unstructured", Type.NAME);
+        test.setProperty("name", "value");
+        test.setProperty("names", asList("a", "b"), Type.STRINGS);
+        test.setProperty("count", 42L);
+        test.child("child");
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        DocumentNodeState state = (DocumentNodeState) ns.getRoot().getChildNode("test");
+        WriteBuffer buffer = new WriteBuffer();
+        CacheType.NODE.writeValue(buffer, state);
+        DocumentNodeState read = CacheType.NODE.readValue(ns, null, flip(buffer));
+        assertEquals(state.asString(), read.asString());
+        assertEquals(state, read);
+        assertFalse(read.hasNoChildren());
+    }
+
+    @Test
+    public void children() {
+        DocumentNodeState.Children children = DocumentNodeState.Children.fromString(
+                "\"hasMore\":true,\"children\":[\"a\",\"b\",\"c\"]");
+        WriteBuffer buffer = new WriteBuffer();
+        CacheType.CHILDREN.writeValue(buffer, children);
+        DocumentNodeState.Children read = CacheType.CHILDREN.readValue(null, null, flip(buffer));
+        assertEquals(children.asString(), read.asString());
+    }
+
+    private static ByteBuffer flip(WriteBuffer buffer) {
+        ByteBuffer b = buffer.getBuffer();
+        b.flip();
+        return b;
+    }
+}
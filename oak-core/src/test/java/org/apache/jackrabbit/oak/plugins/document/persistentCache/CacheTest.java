@@ -36,6 +36,7 @@ import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.blob.MemoryBlobStore;
+import org.h2.mvstore.MVStore;
 import org.junit.Test;
 
 public class CacheTest {
@@ -95,6 +96,25 @@ public class CacheTest {
         assertTrue(new File("target/cacheTest/cache-3.data").exists());
     }
 
+    @Test
+    public void discardOldFormat() throws Exception {
+        FileUtils.deleteDirectory(new File("target/cacheTest"));
+        new File("target/cacheTest").mkdirs();
+        String fileName = "target/cacheTest/cache-0.data";
+        MVStore s = new MVStore.Builder().fileName(fileName).open();
+        s.<String, String>openMap("node").put("/:r1-0-1", "{}");
+        s.close();
+        PersistentCache cache = new PersistentCache("target/cacheTest");
+        cache.close();
+        s = new MVStore.Builder().fileName(fileName).readOnly().open();
+        try {
+            assertFalse(s.hasMap("node"));
+            assertTrue(s.hasMap(PersistentCache.FORMAT_MAP));
+        } finally {
+            s.close();
+        }
+    }
+
     @Test
     public void test() throws Exception {
         FileUtils.deleteDirectory(new File("target/cacheTest"));
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditorProvider;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.junit.Test;
+
+public class ParallelReindexTest {
+
+    private static final IndexUpdateCallback NOOP = new IndexUpdateCallback() {
+        @Override
+        public void indexUpdate() {
+        }
+    };
+
+    @Test
+    public void partitionWithoutCounter() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("a1");
+        builder.child("b");
+        builder.child(":hidden");
+
+        List<ParallelReindex.PartitionStats> partitions =
+                ParallelReindex.partition(builder.getNodeState(), 8);
+        assertEquals(ImmutableSet.of("/a", "/b"), paths(partitions));
+    }
+
+    @Test
+    public void partitionWithCounter() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder counter = builder.child(INDEX_DEFINITIONS_NAME).child("counter");
+        counter.setProperty(TYPE_PROPERTY_NAME, NodeCounterEditorProvider.TYPE);
+        counter.setProperty(NodeCounterEditorProvider.RESOLUTION, 100);
+        for (int i = 0; i < 4; i++) {
+            NodeBuilder large = builder.child("large").child("l" + i);
+            for (int j = 0; j < 10000; j++) {
+                large.child("n" + j);
+            }
+        }
+        builder.child("small").child("s");
+        NodeState root = index(new NodeCounterEditorProvider(), builder.getNodeState());
+
+        List<ParallelReindex.PartitionStats> partitions = ParallelReindex.partition(root, 8);
+        Set<String> paths = paths(partitions);
+        assertTrue(paths.contains("/small"));
+        assertTrue(paths.containsAll(ImmutableSet.of("/large/l0", "/large/l1", "/large/l2", "/large/l3")));
+        assertTrue(partitions.get(0).estimate >= partitions.get(partitions.size() - 1).estimate);
+    }
+
+    @Test
+    public void reindex() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "rootIndex", true, false,
+                ImmutableSet.of("foo"), null).setProperty(TYPE_PROPERTY_NAME, "recording");
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder child = builder.child("c" + i);
+            for (int j = 0; j < 20; j++) {
+                child.child("n" + j).child("leaf");
+            }
+        }
+        NodeState root = builder.getNodeState();
+
+        RecordingProvider provider = new RecordingProvider();
+        ParallelReindex parallelReindex = new ParallelReindex(2);
+        IndexUpdate update = new IndexUpdate(provider, null, root, root.builder(), NOOP)
+                .withParallelReindex(parallelReindex);
+        assertNull(EditorDiff.process(update, root, root));
+
+        Multiset<String> expected = ConcurrentHashMultiset.create();
+        collect(root, "/", expected);
+        assertEquals(expected, provider.entered);
+        assertTrue(provider.merged);
+        assertTrue(provider.left);
+        assertEquals(2, provider.partitions.size());
+        for (RecordingPartition partition : provider.partitions) {
+            assertTrue(partition.completed);
+            assertTrue(partition.discarded);
+        }
+        List<String> stats = parallelReindex.getPartitionStats();
+        assertEquals(11, stats.size());
+        for (String partition : stats) {
+            assertTrue(partition, partition.contains(" [done] traversed "));
+        }
+        assertTrue(stats.contains("/c0 [done] traversed 41 of unknown nodes"));
+    }
+
+    private static NodeState index(IndexEditorProvider provider, NodeState after) throws CommitFailedException {
+        NodeBuilder builder = after.builder();
+        IndexUpdate update = new IndexUpdate(provider, null, after, builder, NOOP);
+        assertNull(EditorDiff.process(update, MISSING_NODE, after));
+        return builder.getNodeState();
+    }
+
+    private static Set<String> paths(List<ParallelReindex.PartitionStats> partitions) {
+        Set<String> paths = Sets.newHashSet();
+        for (ParallelReindex.PartitionStats partition : partitions) {
+            paths.add(partition.path);
+        }
+        return paths;
+    }
+
+    private static void collect(NodeState state, String path, Multiset<String> paths) {
+        paths.add(path);
+        for (ChildNodeEntry entry : state.getChildNodeEntries()) {
+            if (!NodeStateUtils.isHidden(entry.getName())) {
+                collect(entry.getNodeState(), concat(path, entry.getName()), paths);
+            }
+        }
+    }
+
+    private static class RecordingEditor extends DefaultEditor {
+
+        final RecordingProvider provider;
+
+        final String path;
+
+        RecordingEditor(RecordingProvider provider, String path) {
+            this.provider = provider;
+            this.path = path;
+        }
+
+        @Override
+        public void enter(NodeState before, NodeState after) {
+            provider.entered.add(path);
+        }
+
+        @Override
+        public Editor childNodeAdded(String name, NodeState after) {
+            return new RecordingEditor(provider, concat(path, name));
+        }
+    }
+
+    private static class RecordingIndexEditor extends RecordingEditor implements PartitionableIndexEditor {
+
+        RecordingIndexEditor(RecordingProvider provider) {
+            super(provider, "/");
+        }
+
+        @Override
+        public void leave(NodeState before, NodeState after) {
+            assertTrue(provider.merged);
+            provider.left = true;
+        }
+
+        @Override
+        public Partition newPartition() {
+            RecordingPartition partition = new RecordingPartition(provider);
+            provider.partitions.add(partition);
+            return partition;
+        }
+
+        @Override
+        public void mergePartitions(@Nonnull List<Partition> partitions) {
+            for (Partition partition : partitions) {
+                assertTrue(((RecordingPartition) partition).completed);
+            }
+            provider.merged = true;
+        }
+    }
+
+    private static class RecordingPartition implements PartitionableIndexEditor.Partition {
+
+        final RecordingProvider provider;
+
+        volatile boolean completed;
+
+        volatile boolean discarded;
+
+        RecordingPartition(RecordingProvider provider) {
+            this.provider = provider;
+        }
+
+        @Nonnull
+        @Override
+        public Editor getEditor() {
+            return new RecordingEditor(provider, "/");
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public void discard() {
+            discarded = true;
+        }
+    }
+
+    private static class RecordingProvider implements IndexEditorProvider {
+
+        final Multiset<String> entered = ConcurrentHashMultiset.create();
+
+        final List<RecordingPartition> partitions = Lists.newArrayList();
+
+        volatile boolean merged;
+
+        volatile boolean left;
+
+        @Override
+        public Editor getIndexEditor(@Nonnull String type, @Nonnull NodeBuilder definition,
+                @Nonnull NodeState root, @Nonnull IndexUpdateCallback callback) {
+            if ("recording".equals(type)) {
+                return new RecordingIndexEditor(this);
+            }
+            return null;
+        }
+    }
+}
@@ -20,10 +20,22 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -50,6 +62,9 @@ class ExtractedTextCache {
     private final Cache<String, String> cache;
     private final CacheStats cacheStats;
     private final boolean alwaysUsePreExtractedCache;
+    private final ConcurrentMap<String, MimeTypeStats> mimeTypeStats = new ConcurrentHashMap<String, MimeTypeStats>();
+    private final AtomicLong asyncExtractionCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
 
     public ExtractedTextCache(long maxWeight, long expiryTimeInSecs){
         this(maxWeight, expiryTimeInSecs, false);
@@ -114,6 +129,14 @@ class ExtractedTextCache {
         return result;
     }
 
+    /**
+     * @return true if the text of the given blob is in the cache
+     */
+    boolean isCached(Blob blob) {
+        String id = blob.getContentIdentity();
+        return cache != null && id != null && cache.getIfPresent(id) != null;
+    }
+
     public void put(@Nonnull Blob blob, @Nonnull ExtractedText extractedText) {
         String id = blob.getContentIdentity();
         if (extractedText.getExtractionResult() == ExtractedText.ExtractionResult.SUCCESS
@@ -123,13 +146,46 @@ class ExtractedTextCache {
         }
     }
 
-    public void addStats(int count, long timeInMillis, long bytesRead, long textLength){
+    public synchronized void addStats(int count, long timeInMillis, long bytesRead, long textLength){
         this.textExtractionCount += count;
         this.totalTime += timeInMillis;
         this.totalBytesRead += bytesRead;
         this.totalTextSize += textLength;
     }
 
+    /**
+     * Records the time taken for extracting the text of a binary of the given
+     * media type.
+     */
+    void recordExtractionTime(String mimeType, long timeInMillis) {
+        getMimeTypeStats(mimeType).record(timeInMillis);
+    }
+
+    /**
+     * Records that the text of a binary of the given media type was not
+     * extracted in time by the {@link TextExtractionPrefetcher}.
+     */
+    void recordTimeout(String mimeType) {
+        getMimeTypeStats(mimeType).timeouts.incrementAndGet();
+        timeoutCount.incrementAndGet();
+    }
+
+    void recordAsyncExtraction() {
+        asyncExtractionCount.incrementAndGet();
+    }
+
+    private MimeTypeStats getMimeTypeStats(String mimeType) {
+        MimeTypeStats stats = mimeTypeStats.get(mimeType);
+        if (stats == null) {
+            MimeTypeStats newStats = new MimeTypeStats(mimeType);
+            stats = mimeTypeStats.putIfAbsent(mimeType, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
     public TextExtractionStatsMBean getStatsMBean(){
         return new TextExtractionStatsMBean() {
             @Override
@@ -166,6 +222,32 @@ class ExtractedTextCache {
             public boolean isAlwaysUsePreExtractedCache() {
                 return alwaysUsePreExtractedCache;
             }
+
+            @Override
+            public long getAsyncExtractionCount() {
+                return asyncExtractionCount.get();
+            }
+
+            @Override
+            public long getTimeoutCount() {
+                return timeoutCount.get();
+            }
+
+            @Override
+            public TabularData getExtractionTimeHistogram() {
+                TabularDataSupport tds;
+                try {
+                    TabularType tt = new TabularType(MimeTypeStats.class.getName(),
+                            "Text extraction time per media type", MimeTypeStats.TYPE, new String[]{"mimeType"});
+                    tds = new TabularDataSupport(tt);
+                    for (MimeTypeStats stats : mimeTypeStats.values()) {
+                        tds.put(stats.toCompositeData());
+                    }
+                } catch (OpenDataException e) {
+                    throw new IllegalStateException(e);
+                }
+                return tds;
+            }
         };
     }
 
@@ -192,6 +274,107 @@ class ExtractedTextCache {
         return alwaysUsePreExtractedCache;
     }
 
+    /**
+     * Histogram of the text extraction times of a media type.
+     */
+    private static class MimeTypeStats {
+        /**
+         * Upper bounds (exclusive) of the histogram buckets in milliseconds.
+         * The last bucket holds the remaining extractions.
+         */
+        static final long[] BUCKET_LIMITS = {10, 100, 1000, 10000, 60000};
+
+        static final String[] FIELD_NAMES = new String[]{
+                "mimeType",
+                "count",
+                "timeouts",
+                "maxTime",
+                "lessThan10ms",
+                "lessThan100ms",
+                "lessThan1s",
+                "lessThan10s",
+                "lessThan1min",
+                "moreThan1min",
+        };
+
+        static final String[] FIELD_DESCRIPTIONS = new String[]{
+                "Media type",
+                "Number of binaries for which text got extracted",
+                "Number of extractions not done in time",
+                "Longest extraction time in ms",
+                "Extractions taking less than 10 ms",
+                "Extractions taking less than 100 ms",
+                "Extractions taking less than 1 sec",
+                "Extractions taking less than 10 sec",
+                "Extractions taking less than 1 min",
+                "Extractions taking 1 min or more",
+        };
+
+        @SuppressWarnings("rawtypes")
+        static final OpenType[] FIELD_TYPES = new OpenType[]{
+                SimpleType.STRING,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.LONG,
+        };
+
+        static final CompositeType TYPE = createCompositeType();
+
+        static CompositeType createCompositeType() {
+            try {
+                return new CompositeType(
+                        MimeTypeStats.class.getName(),
+                        "Composite data type for text extraction time per media type",
+                        FIELD_NAMES,
+                        FIELD_DESCRIPTIONS,
+                        FIELD_TYPES);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private final String mimeType;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_LIMITS.length + 1);
+
+        MimeTypeStats(String mimeType) {
+            this.mimeType = mimeType;
+        }
+
+        void record(long timeInMillis) {
+            count.incrementAndGet();
+            int bucket = 0;
+            while (bucket < BUCKET_LIMITS.length && timeInMillis >= BUCKET_LIMITS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            long max = maxTime.get();
+            while (timeInMillis > max && !maxTime.compareAndSet(max, timeInMillis)) {
+                max = maxTime.get();
+            }
+        }
+
+        CompositeDataSupport toCompositeData() throws OpenDataException {
+            Object[] values = new Object[FIELD_NAMES.length];
+            values[0] = mimeType;
+            values[1] = count.get();
+            values[2] = timeouts.get();
+            values[3] = maxTime.get();
+            for (int i = 0; i < buckets.length(); i++) {
+                values[4 + i] = buckets.get(i);
+            }
+            return new CompositeDataSupport(TYPE, FIELD_NAMES, values);
+        }
+    }
+
     //Taken from DocumentNodeStore and cache packages as they are private
     private static class EmpiricalWeigher implements Weigher<String, String> {
         public static final EmpiricalWeigher INSTANCE = new EmpiricalWeigher();
@@ -231,6 +231,8 @@ public final class IndexDefinition implements Aggregate.AggregateMapper {
 
     private final boolean spellcheckEnabled;
 
+    private final boolean facetsEnabled;
+
     private final String indexPath;
 
     private final boolean nrtIndexMode;
@@ -308,6 +310,7 @@ public final class IndexDefinition implements Aggregate.AggregateMapper {
         this.secureFacets = defn.hasChildNode(FACETS) && getOptionalValue(defn.getChildNode(FACETS), PROP_SECURE_FACETS, true);
         this.suggestEnabled = evaluateSuggestionEnabled();
         this.spellcheckEnabled = evaluateSpellcheckEnabled();
+        this.facetsEnabled = evaluateFacetsEnabled();
         this.nrtIndexMode = supportsNRTIndexing(defn);
         this.syncIndexMode = supportsSyncIndexing(defn);
     }
@@ -699,6 +702,26 @@ public final class IndexDefinition implements Aggregate.AggregateMapper {
         return spellcheckEnabled;
     }
 
+    private boolean evaluateFacetsEnabled() {
+        for (IndexingRule indexingRule : definedRules) {
+            for (PropertyDefinition propertyDefinition : indexingRule.propConfigs.values()) {
+                if (propertyDefinition.facet) {
+                    return true;
+                }
+            }
+            for (NamePattern np : indexingRule.namePatterns) {
+                if (np.getConfig().facet) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean isFacetsEnabled() {
+        return facetsEnabled;
+    }
+
     public String getIndexPathFromConfig() {
         return checkNotNull(indexPath, "Index path property [%s] not found", IndexConstants.INDEX_PATH);
     }
@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.Nonnull;
+
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -36,11 +38,13 @@ import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.io.LazyInputStream;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
+import org.apache.jackrabbit.oak.plugins.index.PartitionableIndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.PathFilter;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
 import org.apache.jackrabbit.oak.plugins.index.lucene.Aggregate.Matcher;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.FunctionIndexProcessor;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexPartitionWriter;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
 import org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState;
 import org.apache.jackrabbit.oak.plugins.memory.StringPropertyState;
@@ -75,7 +79,7 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.util.ConfigUtil.get
  *
  * @see LuceneIndex
  */
-public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
+public class LuceneIndexEditor implements PartitionableIndexEditor, Aggregate.AggregateRoot {
 
     private static final Logger log =
             LoggerFactory.getLogger(LuceneIndexEditor.class);
@@ -149,6 +153,10 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             context.enableReindexMode();
         }
 
+        if (parent == null){
+            context.startTextExtraction(before, after);
+        }
+
         //Only check for indexing if the result is include.
         //In case like TRAVERSE nothing needs to be indexed for those
         //path
@@ -181,6 +189,7 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         }
 
         if (parent == null) {
+            context.stopTextExtraction();
             try {
                 context.closeWriter();
             } catch (IOException e) {
@@ -266,6 +275,72 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         return context;
     }
 
+    //~-------------------------------------------------------< PartitionableIndexEditor >
+
+    @Override
+    public Partition newPartition() throws CommitFailedException {
+        if (parent != null) {
+            return null;
+        }
+        try {
+            LuceneIndexEditorContext partitionContext = context.newPartitionContext();
+            return partitionContext != null ? new LucenePartition(partitionContext) : null;
+        } catch (IOException e) {
+            throw new CommitFailedException("Lucene", 7,
+                    "Failed to create a partition of the Lucene index", e);
+        }
+    }
+
+    @Override
+    public void mergePartitions(@Nonnull List<Partition> partitions) throws CommitFailedException {
+        List<LuceneIndexEditorContext> contexts = Lists.newArrayList();
+        for (Partition partition : partitions) {
+            contexts.add(((LucenePartition) partition).context);
+        }
+        try {
+            context.mergePartitions(contexts);
+        } catch (IOException e) {
+            throw new CommitFailedException("Lucene", 7,
+                    "Failed to merge the partitions of the Lucene index", e);
+        }
+    }
+
+    private static class LucenePartition implements Partition {
+
+        private final LuceneIndexEditorContext context;
+
+        private final IndexPartitionWriter writer;
+
+        private final LuceneIndexEditor editor;
+
+        LucenePartition(LuceneIndexEditorContext context) throws CommitFailedException, IOException {
+            this.context = context;
+            this.writer = (IndexPartitionWriter) context.getWriter();
+            this.editor = new LuceneIndexEditor(context);
+        }
+
+        @Nonnull
+        @Override
+        public Editor getEditor() {
+            return editor;
+        }
+
+        @Override
+        public void complete() throws CommitFailedException {
+            try {
+                writer.close(System.currentTimeMillis());
+            } catch (IOException e) {
+                throw new CommitFailedException("Lucene", 6,
+                        "Failed to close a partition of the Lucene index", e);
+            }
+        }
+
+        @Override
+        public void discard() {
+            writer.discard();
+        }
+    }
+
     private boolean addOrUpdate(String path, NodeState state, boolean isUpdate)
             throws CommitFailedException {
         try {
@@ -594,7 +669,6 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             return fields;
         }
 
-        metadata.set(Metadata.CONTENT_TYPE, type);
         if (JCR_DATA.equals(property.getName())) {
             String encoding = state.getString(JcrConstants.JCR_ENCODING);
             if (encoding != null) { // not mandatory
@@ -603,6 +677,8 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         }
 
         for (Blob v : property.getValue(Type.BINARIES)) {
+            // the parser replaces the declared type with the detected one
+            metadata.set(Metadata.CONTENT_TYPE, type);
             String value = parseStringValue(v, metadata, path, property.getName());
             if (value == null){
                 continue;
@@ -946,14 +1022,27 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             return null;
         }
         String text = context.getExtractedTextCache().get(path, propertyName, v, context.isReindex());
+        TextExtractionPrefetcher.Session textExtraction = context.getTextExtraction();
+        if (text == null && textExtraction != null){
+            text = textExtraction.getText(v);
+        }
         if (text == null){
-            text = parseStringValue0(v, metadata, path);
+            text = extractText(context, v, metadata, path);
         }
         return text;
     }
 
-    private String parseStringValue0(Blob v, Metadata metadata, String path) {
+    /**
+     * Extracts the text of the given binary and stores it in the
+     * {@link ExtractedTextCache}. Used by the editor and by the workers of
+     * the {@link TextExtractionPrefetcher}.
+     */
+    static String extractText(LuceneIndexEditorContext context, Blob v, Metadata metadata, String path) {
         WriteOutContentHandler handler = new WriteOutContentHandler(context.getDefinition().getMaxExtractLength());
+        // the declared jcr:mimeType, the parser may replace it with the
+        // detected type. The stats are recorded by the declared type, like
+        // the timeouts of the TextExtractionPrefetcher
+        String mimeType = metadata.get(Metadata.CONTENT_TYPE);
         long start = System.currentTimeMillis();
         long bytesRead = 0;
         long length = v.length();
@@ -988,7 +1077,7 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
                         + " This is a fairly common case, and nothing to"
                         + " worry about. The stack trace is included to"
                         + " help improve the text extraction feature.",
-                        getIndexName(), path, t);
+                        context.getDefinition().getIndexName(), path, t);
                 context.getExtractedTextCache().put(v, ExtractedText.ERROR);
                 return TEXT_EXTRACTION_ERROR;
             }
@@ -1002,6 +1091,7 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             long time = System.currentTimeMillis() - start;
             int len = result.length();
             context.recordTextExtractionStats(time, bytesRead, len);
+            context.getExtractedTextCache().recordExtractionTime(mimeType, time);
             if (log.isDebugEnabled()) {
                 log.debug("Extracting {} took {} ms, {} bytes read, {} text size", 
                         path, time, bytesRead, len);
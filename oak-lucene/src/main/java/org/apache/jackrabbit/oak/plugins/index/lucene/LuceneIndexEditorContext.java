@@ -20,16 +20,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.Lists;
 import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.FacetHelper;
+import org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexPartitionWriter;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriter;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.LuceneIndexWriterFactory;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -86,6 +89,10 @@ public class LuceneIndexEditorContext {
     private final NodeState root;
 
     private final boolean asyncIndexing;
+
+    private TextExtractionPrefetcher textExtractionPrefetcher;
+
+    private TextExtractionPrefetcher.Session textExtraction;
     /**
      * The media types supported by the parser used.
      */
@@ -133,6 +140,51 @@ public class LuceneIndexEditorContext {
         return writer;
     }
 
+    /**
+     * Creates the context for one partition of a parallel reindex. The
+     * documents of the partition are written by an {@link IndexPartitionWriter}
+     * and merged by {@link #mergePartitions(List)}.
+     *
+     * @return the partition context, or {@code null} if the index does not
+     *         support partitions
+     */
+    @Nullable
+    LuceneIndexEditorContext newPartitionContext() throws IOException {
+        //Facets configuration is written to the definition builder while
+        //indexing, which must not be done from several threads
+        if (!reindex || definition.isFacetsEnabled() || !IndexPartitionWriter.canMergeInto(getWriter())) {
+            return null;
+        }
+        final IndexPartitionWriter partitionWriter = new IndexPartitionWriter(definition);
+        LuceneIndexEditorContext partition = new LuceneIndexEditorContext(root, definitionBuilder, definition,
+                updateCallback, new LuceneIndexWriterFactory() {
+                    @Override
+                    public LuceneIndexWriter newInstance(IndexDefinition definition,
+                                                         NodeBuilder definitionBuilder, boolean reindex) {
+                        return partitionWriter;
+                    }
+                }, extractedTextCache, augmentorFactory, asyncIndexing);
+        partition.reindex = true;
+        partition.parser = getParser();
+        partition.textExtraction = textExtraction;
+        partition.writer = partitionWriter;
+        return partition;
+    }
+
+    /**
+     * Adds the documents indexed by the given partition contexts, whose
+     * writers must be closed, to the index of this context.
+     */
+    void mergePartitions(List<LuceneIndexEditorContext> partitions) throws IOException {
+        List<IndexPartitionWriter> writers = Lists.newArrayList();
+        for (LuceneIndexEditorContext partition : partitions) {
+            writers.add((IndexPartitionWriter) partition.writer);
+            indexedNodes += partition.indexedNodes;
+            textExtractionStats.add(partition.textExtractionStats);
+        }
+        IndexPartitionWriter.mergeInto(getWriter(), writers);
+    }
+
     /**
      * close writer if it's not null
      */
@@ -179,6 +231,33 @@ public class LuceneIndexEditorContext {
         definition = new IndexDefinition(root, definitionBuilder);
     }
 
+    void setTextExtractionPrefetcher(@Nullable TextExtractionPrefetcher textExtractionPrefetcher) {
+        this.textExtractionPrefetcher = textExtractionPrefetcher;
+    }
+
+    /**
+     * Starts extracting the text of the binaries changed between the given
+     * states ahead of the editor, if a {@link TextExtractionPrefetcher} is
+     * configured.
+     */
+    void startTextExtraction(NodeState before, NodeState after) {
+        if (textExtractionPrefetcher != null && asyncIndexing && textExtraction == null) {
+            textExtraction = textExtractionPrefetcher.newSession(this, before, after);
+        }
+    }
+
+    void stopTextExtraction() {
+        if (textExtraction != null) {
+            textExtraction.close();
+            textExtraction = null;
+        }
+    }
+
+    @Nullable
+    TextExtractionPrefetcher.Session getTextExtraction() {
+        return textExtraction;
+    }
+
     public long incIndexedNodes() {
         indexedNodes++;
         return indexedNodes;
@@ -311,14 +390,21 @@ public class LuceneIndexEditorContext {
         private long totalTime;
         private long totalTextLength;
 
-        public void addStats(long timeInMillis, long bytesRead, int textLength) {
+        public synchronized void addStats(long timeInMillis, long bytesRead, int textLength) {
             count++;
             totalBytesRead += bytesRead;
             totalTime += timeInMillis;
             totalTextLength += textLength;
         }
 
-        public void log(boolean reindex) {
+        public synchronized void add(TextExtractionStats stats) {
+            count += stats.count;
+            totalBytesRead += stats.totalBytesRead;
+            totalTime += stats.totalTime;
+            totalTextLength += stats.totalTextLength;
+        }
+
+        public synchronized void log(boolean reindex) {
             if (log.isDebugEnabled()) {
                 log.debug("Text extraction stats {}", this);
             } else if (anyParsingDone() && (reindex || isTakingLotsOfTime())) {
@@ -326,7 +412,7 @@ public class LuceneIndexEditorContext {
             }
         }
 
-        public void collectStats(ExtractedTextCache cache){
+        public synchronized void collectStats(ExtractedTextCache cache){
             cache.addStats(count, totalTime, totalBytesRead, totalTextLength);
         }
 
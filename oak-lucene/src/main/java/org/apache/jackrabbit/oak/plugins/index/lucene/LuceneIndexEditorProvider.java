@@ -65,6 +65,8 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
      */
     private int inMemoryDocsLimit = Integer.getInteger("oak.lucene.inMemoryDocsLimit", 500);
 
+    private TextExtractionPrefetcher textExtractionPrefetcher;
+
     public LuceneIndexEditorProvider() {
         this(null);
     }
@@ -152,6 +154,7 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
 
             LuceneIndexEditorContext context = new LuceneIndexEditorContext(root, definition, indexDefinition, callback,
                     writerFactory, extractedTextCache, augmentorFactory, asyncIndexing);
+            context.setTextExtractionPrefetcher(textExtractionPrefetcher);
             return new LuceneIndexEditor(context);
         }
         return null;
@@ -169,6 +172,16 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
         this.inMemoryDocsLimit = inMemoryDocsLimit;
     }
 
+    /**
+     * Enables the extraction of binary text ahead of the async index editors
+     *
+     * @param textExtractionPrefetcher prefetcher to use, or {@code null} to
+     *                                 extract the text in the editor only
+     */
+    void setTextExtractionPrefetcher(@Nullable TextExtractionPrefetcher textExtractionPrefetcher) {
+        this.textExtractionPrefetcher = textExtractionPrefetcher;
+    }
+
     private LuceneDocumentHolder getDocumentHolder(CommitContext commitContext){
         LuceneDocumentHolder holder = (LuceneDocumentHolder) commitContext.get(LuceneDocumentHolder.NAME);
         if (holder == null) {
@@ -187,6 +187,23 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_PRE_EXTRACTED_TEXT_ALWAYS_USE = "alwaysUsePreExtractedCache";
 
+    private static final int PROP_TEXT_EXTRACTION_THREADS_DEFAULT = 0;
+    @Property(
+            intValue = PROP_TEXT_EXTRACTION_THREADS_DEFAULT,
+            label = "Text extraction threads",
+            description = "Number of threads used to extract the text of binaries ahead of the async index " +
+                    "editors. When set to 0 then the text would be extracted by the editors themselves"
+    )
+    private static final String PROP_TEXT_EXTRACTION_THREADS = "textExtractionThreads";
+
+    @Property(
+            longValue = TextExtractionPrefetcher.DEFAULT_TIMEOUT_SECS_VALUE,
+            label = "Text extraction timeout (secs)",
+            description = "Time in seconds for which the index editor waits for the text of a binary extracted " +
+                    "ahead of it. If the extraction takes longer the binary is indexed as not extractable"
+    )
+    private static final String PROP_TEXT_EXTRACTION_TIMEOUT = "textExtractionTimeoutInSecs";
+
     private static final int PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT = 1024;
     @Property(
             intValue = PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT,
@@ -244,6 +261,8 @@ public class LuceneIndexProviderService {
 
     private ExtractedTextCache extractedTextCache;
 
+    private TextExtractionPrefetcher textExtractionPrefetcher;
+
     private boolean hybridIndex;
 
     private NRTIndexFactory nrtIndexFactory;
@@ -312,6 +331,11 @@ public class LuceneIndexProviderService {
             nrtIndexFactory.close();
         }
 
+        if (textExtractionPrefetcher != null){
+            textExtractionPrefetcher.close();
+            textExtractionPrefetcher = null;
+        }
+
         //Close the copier first i.e. before executorService
         if (indexCopier != null){
             indexCopier.close();
@@ -366,6 +390,17 @@ public class LuceneIndexProviderService {
             editorProvider = new LuceneIndexEditorProvider(null, tracker, extractedTextCache, augmentorFactory,
                     mountInfoProvider);
         }
+        int textExtractionThreads = PropertiesUtil.toInteger(config.get(PROP_TEXT_EXTRACTION_THREADS),
+                PROP_TEXT_EXTRACTION_THREADS_DEFAULT);
+        if (textExtractionThreads > 0) {
+            long timeoutInSecs = PropertiesUtil.toLong(config.get(PROP_TEXT_EXTRACTION_TIMEOUT),
+                    TextExtractionPrefetcher.DEFAULT_TIMEOUT_SECS);
+            textExtractionPrefetcher = new TextExtractionPrefetcher(textExtractionThreads, timeoutInSecs,
+                    extractedTextCache);
+            editorProvider.setTextExtractionPrefetcher(textExtractionPrefetcher);
+            log.info("Text extraction ahead of async indexing enabled with {} threads, timeout {} secs",
+                    textExtractionThreads, timeoutInSecs);
+        }
         regs.add(bundleContext.registerService(IndexEditorProvider.class.getName(), editorProvider, null));
         oakRegs.add(registerMBean(whiteboard,
                 TextExtractionStatsMBean.class,
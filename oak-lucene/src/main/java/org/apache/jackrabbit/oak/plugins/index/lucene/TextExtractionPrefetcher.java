@@ -0,0 +1,621 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.PathFilter;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
+import static org.apache.jackrabbit.oak.commons.PathUtils.ROOT_PATH;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+
+/**
+ * Extracts the text of binaries ahead of the {@link LuceneIndexEditor}, so
+ * that slow extractions do not stall the indexing and can use more than one
+ * core.
+ * <p>
+ * For each indexing cycle of an index a {@link Session} is started. It
+ * traverses the diff being indexed in a separate thread and submits the
+ * binaries of the changed nodes, which are likely to be indexed, to a pool
+ * of extraction threads. Extractions are shared by content identity between
+ * the sessions of all indexes. The editor takes the extracted text from the
+ * session when it reaches the binary. It waits at most for the configured
+ * timeout since the extraction started and extracts the text itself if the
+ * binary was not submitted or its extraction did not start yet. The
+ * extracted text is also stored in the {@link ExtractedTextCache}.
+ */
+class TextExtractionPrefetcher implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TextExtractionPrefetcher.class);
+
+    static final long DEFAULT_TIMEOUT_SECS_VALUE = 300;
+
+    static final long DEFAULT_TIMEOUT_SECS = Long.getLong("oak.lucene.textExtraction.timeoutSecs",
+            DEFAULT_TIMEOUT_SECS_VALUE);
+
+    /**
+     * Number of binaries per thread being extracted or queued for extraction
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+
+    /**
+     * Number of binaries per thread extracted ahead of the editor
+     */
+    private static final int PENDING_PER_THREAD = 16;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final ExtractedTextCache extractedTextCache;
+
+    private final int threads;
+
+    private final long timeoutMillis;
+
+    private final ThreadPoolExecutor extractors;
+
+    private final ThreadPoolExecutor scanners;
+
+    /**
+     * Extractions submitted by any session and not released by all of them
+     * yet, by content identity of the binary
+     */
+    private final ConcurrentMap<String, Extraction> extractions = new ConcurrentHashMap<String, Extraction>();
+
+    /**
+     * @param threads            number of threads extracting text
+     * @param timeoutSecs        time the editor waits for the text of a binary
+     *                           since its extraction started
+     * @param extractedTextCache cache for the extracted text and the statistics
+     */
+    TextExtractionPrefetcher(int threads, long timeoutSecs, ExtractedTextCache extractedTextCache) {
+        checkArgument(threads > 0, "threads must be positive");
+        this.threads = threads;
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSecs);
+        this.extractedTextCache = extractedTextCache;
+        this.extractors = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("oak-lucene-text-extraction-"));
+        this.extractors.allowCoreThreadTimeOut(true);
+        this.scanners = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new NamedThreadFactory("oak-lucene-text-extraction-scan-"));
+    }
+
+    /**
+     * Starts extracting the text of the binaries changed between the given
+     * states.
+     *
+     * @return the session, or {@code null} if no text needs to be extracted
+     *         for the index of the given context
+     */
+    @CheckForNull
+    Session newSession(LuceneIndexEditorContext context, NodeState before, NodeState after) {
+        IndexDefinition definition = context.getDefinition();
+        if (!definition.isFullTextEnabled()) {
+            return null;
+        }
+        if ((context.isReindex() || extractedTextCache.isAlwaysUsePreExtractedCache())
+                && extractedTextCache.getExtractedTextProvider() != null) {
+            //Pre extracted text takes precedence
+            return null;
+        }
+        Session session = new Session(context);
+        try {
+            session.scan = scanners.submit(session.newScan(before, after));
+        } catch (RejectedExecutionException e) {
+            log.debug("Text extraction ahead of the editor not possible, prefetcher closed");
+            return null;
+        }
+        return session;
+    }
+
+    @Override
+    public void close() {
+        // Don't interrupt the threads, as the blobs may be read from
+        // file channels which would be closed by an interrupt
+        scanners.shutdown();
+        extractors.shutdown();
+        try {
+            if (!extractors.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Text extraction threads did not stop within a minute");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Text extraction for a single indexing cycle of an index.
+     */
+    class Session implements Closeable {
+
+        private final LuceneIndexEditorContext context;
+
+        private final Set<MediaType> supportedMediaTypes;
+
+        /**
+         * Content identities of the extractions submitted or joined by this
+         * session and not taken by the editor yet
+         */
+        private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        private final Semaphore inFlight = new Semaphore(threads * IN_FLIGHT_PER_THREAD);
+
+        private volatile boolean closed;
+
+        private Future<?> scan;
+
+        private Session(LuceneIndexEditorContext context) {
+            this.context = context;
+            this.supportedMediaTypes = context.getParser().getSupportedTypes(new ParseContext());
+        }
+
+        /**
+         * Get the text of a binary submitted for extraction. If the extraction
+         * did not start yet, it is cancelled and the editor extracts the text
+         * itself. Otherwise waits for the extraction to complete, at most until
+         * the timeout has passed since it started.
+         *
+         * @return the extracted text, or {@code null} if the binary was not
+         *         submitted for extraction or its extraction did not start
+         */
+        @CheckForNull
+        String getText(Blob blob) {
+            String id = blob.getContentIdentity();
+            if (id == null || !pending.remove(id)) {
+                return null;
+            }
+            Extraction extraction = extractions.get(id);
+            if (extraction == null) {
+                return null;
+            }
+            try {
+                if (extraction.cancel()) {
+                    return null;
+                }
+                long started = extraction.getStartMillis();
+                if (started < 0) {
+                    // Cancelled by another session
+                    return null;
+                }
+                long remaining = started + timeoutMillis - System.currentTimeMillis();
+                return extraction.text.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Don't interrupt the extraction, as the blob may be read from
+                // a file channel which would be closed by an interrupt
+                extraction.text.cancel(false);
+                extractedTextCache.recordTimeout(extraction.mimeType);
+                log.warn("[{}] Text extraction of {} ({}) did not complete within {} ms",
+                        context.getDefinition().getIndexName(), extraction.path, extraction.mimeType, timeoutMillis);
+                return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+            } catch (CancellationException e) {
+                // Timed out for another session
+                return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+            } catch (ExecutionException e) {
+                log.debug("[{}] Text extraction of {} failed", context.getDefinition().getIndexName(),
+                        extraction.path, e.getCause());
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                release(id, extraction);
+            }
+        }
+
+        /**
+         * Stops the traversal and drops the text not taken by the editor.
+         * Extractions not started yet are cancelled unless another session
+         * still needs them. Extractions already running are completed, their
+         * text is still added to the {@link ExtractedTextCache}.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            if (scan != null) {
+                scan.cancel(false);
+            }
+            for (String id : pending) {
+                Extraction extraction = extractions.get(id);
+                if (pending.remove(id) && extraction != null) {
+                    release(id, extraction);
+                }
+            }
+        }
+
+        int getPendingCount() {
+            return pending.size();
+        }
+
+        private Runnable newScan(final NodeState before, final NodeState after) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    EditorDiff.process(VisibleEditor.wrap(new Scanner(null, ROOT_PATH)), before, after);
+                }
+            };
+        }
+
+        private void submit(final String path, final Blob blob, final String mimeType, final String encoding)
+                throws CommitFailedException {
+            String id = blob.getContentIdentity();
+            if (id == null || pending.contains(id) || extractedTextCache.isCached(blob)) {
+                return;
+            }
+            Extraction existing = extractions.get(id);
+            if (existing != null) {
+                if (existing.join()) {
+                    pending.add(id);
+                }
+                return;
+            }
+            if (!awaitRoom()) {
+                throw new CommitFailedException("Lucene", 8, "Text extraction stopped");
+            }
+            Callable<String> task = new Callable<String>() {
+                @Override
+                public String call() {
+                    Metadata metadata = new Metadata();
+                    metadata.set(Metadata.CONTENT_TYPE, mimeType);
+                    if (encoding != null) {
+                        metadata.set(Metadata.CONTENT_ENCODING, encoding);
+                    }
+                    extractedTextCache.recordAsyncExtraction();
+                    return LuceneIndexEditor.extractText(context, blob, metadata, path);
+                }
+            };
+            Extraction extraction = new Extraction(path, blob, mimeType, task, inFlight);
+            existing = extractions.putIfAbsent(id, extraction);
+            if (existing != null) {
+                // Submitted concurrently by another session
+                inFlight.release();
+                if (existing.join()) {
+                    pending.add(id);
+                }
+                return;
+            }
+            pending.add(id);
+            try {
+                extractors.execute(extraction.text);
+            } catch (RejectedExecutionException e) {
+                pending.remove(id);
+                extraction.cancel();
+                extractions.remove(id, extraction);
+                throw new CommitFailedException("Lucene", 8, "Text extraction stopped", e);
+            }
+        }
+
+        /**
+         * Waits until another binary can be submitted. Gives up if the
+         * session is closed or the editor does not take any text within the
+         * timeout, which happens if the indexing failed. The editor then
+         * extracts the text of the remaining binaries itself.
+         */
+        private boolean awaitRoom() {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try {
+                while (!closed && System.currentTimeMillis() < deadline) {
+                    if (pending.size() < threads * PENDING_PER_THREAD || evictCached()) {
+                        if (inFlight.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                            return true;
+                        }
+                    } else {
+                        Thread.sleep(POLL_MILLIS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.debug("[{}] Stopping text extraction ahead of the editor, {} binaries pending",
+                    context.getDefinition().getIndexName(), pending.size());
+            return false;
+        }
+
+        /**
+         * Drops the completed extractions whose text is in the
+         * {@link ExtractedTextCache}, as the editor reads the text from the
+         * cache and would not take them.
+         */
+        private boolean evictCached() {
+            boolean evicted = false;
+            for (String id : pending) {
+                Extraction extraction = extractions.get(id);
+                if (extraction != null && extraction.text.isDone()
+                        && extractedTextCache.isCached(extraction.blob) && pending.remove(id)) {
+                    release(id, extraction);
+                    evicted = true;
+                }
+            }
+            return evicted;
+        }
+
+        /**
+         * Editor traversing the diff in the same order as the
+         * {@link LuceneIndexEditor}, submitting the binaries of nodes which
+         * got added or changed.
+         */
+        private class Scanner extends DefaultEditor {
+
+            private final Scanner parent;
+
+            private final String path;
+
+            private NodeState state;
+
+            private boolean changed;
+
+            Scanner(Scanner parent, String path) {
+                this.parent = parent;
+                this.path = path;
+            }
+
+            @Override
+            public void enter(NodeState before, NodeState after) throws CommitFailedException {
+                if (closed) {
+                    throw new CommitFailedException("Lucene", 8, "Text extraction stopped");
+                }
+                state = after;
+                changed = !before.exists();
+            }
+
+            @Override
+            public void leave(NodeState before, NodeState after) throws CommitFailedException {
+                if (changed && parent != null && isIncluded(path)) {
+                    submitBinaries();
+                }
+            }
+
+            @Override
+            public void propertyAdded(PropertyState after) {
+                changed = true;
+            }
+
+            @Override
+            public void propertyChanged(PropertyState before, PropertyState after) {
+                changed = true;
+            }
+
+            @Override
+            public void propertyDeleted(PropertyState before) {
+                changed = true;
+            }
+
+            @Override
+            public Editor childNodeAdded(String name, NodeState after) {
+                return newChild(name);
+            }
+
+            @Override
+            public Editor childNodeChanged(String name, NodeState before, NodeState after) {
+                return newChild(name);
+            }
+
+            private Editor newChild(String name) {
+                String childPath = concat(path, name);
+                if (context.getDefinition().getPathFilter().filter(childPath) == PathFilter.Result.EXCLUDE) {
+                    return null;
+                }
+                return new Scanner(this, childPath);
+            }
+
+            private boolean isIncluded(String path) {
+                return context.getDefinition().getPathFilter().filter(path) == PathFilter.Result.INCLUDE;
+            }
+
+            private void submitBinaries() throws CommitFailedException {
+                String mimeType = state.getString(JcrConstants.JCR_MIMETYPE);
+                if (mimeType == null || !supportedMediaTypes.contains(MediaType.parse(mimeType))) {
+                    return;
+                }
+                //Binaries are indexed for the node itself or aggregated to
+                //the parent node, like jcr:content of a nt:file node
+                IndexDefinition definition = context.getDefinition();
+                if (definition.getApplicableIndexingRule(state) == null
+                        && definition.getApplicableIndexingRule(parent.state) == null) {
+                    return;
+                }
+                for (PropertyState property : state.getProperties()) {
+                    if (property.getType().tag() != Type.BINARY.tag() || property.getName().charAt(0) == ':') {
+                        continue;
+                    }
+                    String encoding = JCR_DATA.equals(property.getName())
+                            ? state.getString(JcrConstants.JCR_ENCODING) : null;
+                    for (Blob blob : property.getValue(Type.BINARIES)) {
+                        submit(path, blob, mimeType, encoding);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases an extraction for a session. The last session releasing it
+     * cancels it if it did not start yet.
+     */
+    private void release(String id, Extraction extraction) {
+        if (extraction.release()) {
+            extraction.cancel();
+            extractions.remove(id, extraction);
+        }
+    }
+
+    /**
+     * Extraction of the text of a binary, shared by the sessions which
+     * submitted it.
+     */
+    private static class Extraction {
+
+        private static final long NOT_STARTED = 0;
+
+        private static final long CANCELLED = -1;
+
+        final String path;
+
+        final Blob blob;
+
+        /**
+         * The declared jcr:mimeType of the binary, which the timeouts are
+         * recorded by, like the extraction times.
+         */
+        final String mimeType;
+
+        final FutureTask<String> text;
+
+        /**
+         * Permit of the submitting session, held until the extraction
+         * completes or is cancelled before it started
+         */
+        private final Semaphore permits;
+
+        /**
+         * Start time of the extraction, {@link #NOT_STARTED} or {@link #CANCELLED}
+         */
+        private final AtomicLong started = new AtomicLong(NOT_STARTED);
+
+        /**
+         * Number of sessions which did not release this extraction yet
+         */
+        private final AtomicInteger sessions = new AtomicInteger(1);
+
+        Extraction(String path, Blob blob, String mimeType, final Callable<String> task, Semaphore permits) {
+            this.path = path;
+            this.blob = blob;
+            this.mimeType = mimeType;
+            this.permits = permits;
+            this.text = new FutureTask<String>(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    if (!started.compareAndSet(NOT_STARTED, System.currentTimeMillis())) {
+                        return null;
+                    }
+                    try {
+                        return task.call();
+                    } finally {
+                        Extraction.this.permits.release();
+                    }
+                }
+            });
+        }
+
+        /**
+         * @return the start time of the extraction, or a negative value if
+         *         it was cancelled before it started
+         */
+        long getStartMillis() {
+            return started.get();
+        }
+
+        /**
+         * Cancels the extraction if it did not start yet.
+         *
+         * @return {@code true} if cancelled by this call
+         */
+        boolean cancel() {
+            if (started.compareAndSet(NOT_STARTED, CANCELLED)) {
+                text.cancel(false);
+                permits.release();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Adds a session to this extraction.
+         *
+         * @return {@code false} if the extraction was already released by all
+         *         sessions
+         */
+        boolean join() {
+            while (true) {
+                int count = sessions.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (sessions.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Removes a session from this extraction.
+         *
+         * @return {@code true} if this was the last session
+         */
+        boolean release() {
+            return sessions.decrementAndGet() == 0;
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(@Nonnull Runnable r) {
+            Thread thread = new Thread(r, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import javax.management.openmbean.TabularData;
+
 import aQute.bnd.annotation.ProviderType;
 
 @ProviderType
@@ -38,4 +40,21 @@ public interface TextExtractionStatsMBean {
     String getExtractedTextSize();
 
     String getBytesRead();
+
+    /**
+     * @return number of binaries for which the text extraction got started
+     *         ahead of the index editor by the text extraction worker pool
+     */
+    long getAsyncExtractionCount();
+
+    /**
+     * @return number of binaries whose text was not extracted by the worker
+     *         pool within the configured timeout
+     */
+    long getTimeoutCount();
+
+    /**
+     * @return histogram of the text extraction times per media type
+     */
+    TabularData getExtractionTimeHistogram();
 }
@@ -89,6 +89,12 @@ class DefaultIndexWriter implements LuceneIndexWriter {
         getWriter().deleteAll();
     }
 
+    void addIndexes(Directory... directories) throws IOException {
+        final long start = PERF_LOGGER.start();
+        getWriter().addIndexes(directories);
+        PERF_LOGGER.end(start, -1, "Added {} partition indexes to directory {}", directories.length, definition);
+    }
+
     @Override
     public boolean close(long timestamp) throws IOException {
         //If reindex or fresh index and write is null on close
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene.writer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.plugins.index.lucene.IndexDefinition;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.writer.IndexWriterUtils.getIndexWriterConfig;
+import static org.apache.lucene.store.NoLockFactory.getNoLockFactory;
+
+/**
+ * Writer for one partition of a parallel reindex. The documents are written
+ * to a temporary index in the local file system, which is merged into the
+ * index written by a {@link DefaultIndexWriter} once all partitions are done.
+ */
+public class IndexPartitionWriter implements LuceneIndexWriter {
+    private static final Logger log = LoggerFactory.getLogger(IndexPartitionWriter.class);
+
+    private final IndexDefinition definition;
+    private File dir;
+    private Directory directory;
+    private IndexWriter writer;
+
+    public IndexPartitionWriter(IndexDefinition definition) {
+        this.definition = definition;
+    }
+
+    /**
+     * @return true if partitions can be merged into the given writer
+     */
+    public static boolean canMergeInto(LuceneIndexWriter writer) {
+        return writer instanceof DefaultIndexWriter;
+    }
+
+    /**
+     * Adds the documents of the closed partition writers to the given writer.
+     */
+    public static void mergeInto(LuceneIndexWriter writer, List<IndexPartitionWriter> partitions)
+            throws IOException {
+        List<Directory> directories = Lists.newArrayList();
+        for (IndexPartitionWriter partition : partitions) {
+            if (partition.directory != null) {
+                directories.add(partition.directory);
+            }
+        }
+        if (!directories.isEmpty()) {
+            ((DefaultIndexWriter) writer).addIndexes(directories.toArray(new Directory[directories.size()]));
+        }
+    }
+
+    @Override
+    public void updateDocument(String path, Iterable<? extends IndexableField> doc) throws IOException {
+        getWriter().updateDocument(newPathTerm(path), doc);
+    }
+
+    @Override
+    public void deleteDocuments(String path) throws IOException {
+        getWriter().deleteDocuments(newPathTerm(path));
+        getWriter().deleteDocuments(new PrefixQuery(newPathTerm(path + "/")));
+    }
+
+    @Override
+    public boolean close(long timestamp) throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the writer if still open and deletes the temporary index.
+     */
+    public void discard() {
+        try {
+            if (writer != null) {
+                writer.close();
+            }
+            if (directory != null) {
+                directory.close();
+            }
+        } catch (IOException e) {
+            log.debug("[{}] Failed to close partition index in {}", definition.getIndexName(), dir, e);
+        } finally {
+            writer = null;
+            directory = null;
+            if (dir != null && !FileUtils.deleteQuietly(dir)) {
+                log.warn("[{}] Failed to delete partition index in {}", definition.getIndexName(), dir);
+            }
+        }
+    }
+
+    //~----------------------------------------< internal >
+
+    private IndexWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (directory == null) {
+                dir = Files.createTempDir();
+                directory = FSDirectory.open(dir, getNoLockFactory());
+            }
+            writer = new IndexWriter(directory, getIndexWriterConfig(definition, false));
+        }
+        return writer;
+    }
+}
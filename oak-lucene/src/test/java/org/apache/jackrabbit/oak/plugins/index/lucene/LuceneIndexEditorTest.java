@@ -50,19 +50,23 @@ import javax.annotation.Nonnull;
 
 import com.google.common.base.StandardSystemProperty;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.CompositeIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdate;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.ParallelReindex;
 import org.apache.jackrabbit.oak.plugins.index.lucene.writer.MultiplexersLucene;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.multiplex.SimpleMountInfoProvider;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
 import org.apache.jackrabbit.oak.spi.commit.EditorHook;
 import org.apache.jackrabbit.oak.spi.mount.Mount;
 import org.apache.jackrabbit.oak.spi.mount.MountInfoProvider;
@@ -186,6 +190,34 @@ public class LuceneIndexEditorTest {
         assertEquals(2, getSearcher().getIndexReader().numDocs());
     }
 
+    @Test
+    public void parallelReindex() throws Exception{
+        newLucenePropertyIndex("lucene", "foo");
+        for (int i = 0; i < 4; i++) {
+            NodeBuilder child = builder.child("c" + i);
+            for (int j = 0; j < 25; j++) {
+                child.child("n" + j).setProperty("foo", "bar");
+            }
+        }
+        builder.child("c2").child("n3").setProperty("foo", "fox");
+        NodeState after = builder.getNodeState();
+
+        NodeBuilder indexed = after.builder();
+        IndexUpdate update = new IndexUpdate(new LuceneIndexEditorProvider(), null, after, indexed,
+                new IndexUpdateCallback() {
+                    @Override
+                    public void indexUpdate() {
+                    }
+                }).withParallelReindex(new ParallelReindex(2));
+        assertNull(EditorDiff.process(update, EMPTY_NODE, after));
+        tracker.update(indexed.getNodeState());
+
+        assertEquals(100, getSearcher().getIndexReader().numDocs());
+        assertEquals("/c2/n3", getPath(new TermQuery(new Term("foo", "fox"))));
+        assertEquals(100, indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("lucene")
+                .getChildNode(":status").getProperty("indexedNodes").getValue(Type.LONG).longValue());
+    }
+
     @Test
     public void saveDirectoryListing() throws Exception{
         NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Test;
+
+import static com.google.common.collect.ImmutableSet.of;
+import static javax.jcr.PropertyType.TYPENAME_BINARY;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TestUtil.newLuceneIndexDefinitionV2;
+import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextExtractionPrefetcherTest {
+
+    private final ExtractedTextCache cache = new ExtractedTextCache(10 * FileUtils.ONE_MB, 100);
+
+    private final TextExtractionStatsMBean stats = cache.getStatsMBean();
+
+    private final IndexTracker tracker = new IndexTracker();
+
+    private NodeBuilder builder = INITIAL_CONTENT.builder();
+
+    private TextExtractionPrefetcher prefetcher;
+
+    private IndexNode indexNode;
+
+    @After
+    public void close() {
+        if (indexNode != null) {
+            indexNode.release();
+        }
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+    }
+
+    @Test
+    public void extractAhead() throws Exception {
+        prefetcher = new TextExtractionPrefetcher(2, 60, cache);
+        newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME), "lucene", of(TYPENAME_BINARY));
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < 50; i++) {
+            addFile("test" + i, new IdBlob("fox" + i, "id" + i));
+        }
+        tracker.update(commit(before, builder.getNodeState()));
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(1, getSearcher().search(new TermQuery(new Term(FieldNames.FULLTEXT, "fox" + i)), 1).totalHits);
+        }
+        assertTrue(stats.getAsyncExtractionCount() > 0);
+        assertEquals(0, stats.getTimeoutCount());
+        assertEquals(1, stats.getExtractionTimeHistogram().size());
+    }
+
+    @Test
+    public void timeout() throws Exception {
+        prefetcher = new TextExtractionPrefetcher(2, 1, cache);
+        newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME), "lucene", of(TYPENAME_BINARY));
+        NodeState before = builder.getNodeState();
+        CountDownLatch latch = new CountDownLatch(1);
+        addFile("slow", new BlockingBlob("tortoise", "slow", latch));
+        addFile("fast", new IdBlob("hare", "fast"));
+        try {
+            tracker.update(commit(before, builder.getNodeState()));
+        } finally {
+            latch.countDown();
+        }
+
+        assertEquals(1, stats.getTimeoutCount());
+        assertEquals(1, getSearcher().search(new TermQuery(new Term(FieldNames.FULLTEXT, "hare")), 1).totalHits);
+        assertEquals(0, getSearcher().search(new TermQuery(new Term(FieldNames.FULLTEXT, "tortoise")), 1).totalHits);
+        assertTrue(stats.getAsyncExtractionCount() >= 1);
+    }
+
+    @Test
+    public void timeoutStartsWithExtraction() throws Exception {
+        prefetcher = new TextExtractionPrefetcher(1, 1, cache);
+        newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME), "lucene", of(TYPENAME_BINARY));
+        NodeState before = builder.getNodeState();
+        addFile("slow", new SlowBlob("tortoise", "slow", 3000));
+        for (int i = 0; i < 5; i++) {
+            addFile("fast" + i, new IdBlob("hare" + i, "fast" + i));
+        }
+        tracker.update(commit(before, builder.getNodeState()));
+
+        // Binaries queued behind the slow one are not timed out
+        assertTrue(stats.getTimeoutCount() <= 1);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1, getSearcher().search(new TermQuery(new Term(FieldNames.FULLTEXT, "hare" + i)), 1).totalHits);
+        }
+    }
+
+    @Test
+    public void sharedBetweenIndexes() throws Exception {
+        prefetcher = new TextExtractionPrefetcher(2, 60, cache);
+        newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME), "lucene", of(TYPENAME_BINARY));
+        newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME), "lucene2", of(TYPENAME_BINARY));
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < 20; i++) {
+            addFile("test" + i, new IdBlob("fox" + i, "id" + i));
+        }
+        tracker.update(commit(before, builder.getNodeState()));
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(1, getSearcher().search(new TermQuery(new Term(FieldNames.FULLTEXT, "fox" + i)), 1).totalHits);
+        }
+        // Each binary is extracted at most once ahead of the editors
+        assertTrue(stats.getAsyncExtractionCount() <= 20);
+    }
+
+    private void addFile(String name, Blob blob) {
+        NodeBuilder file = builder.child(name);
+        file.setProperty(JcrConstants.JCR_MIMETYPE, "text/plain");
+        file.setProperty(JcrConstants.JCR_DATA, blob);
+    }
+
+    private NodeState commit(NodeState before, NodeState after) throws Exception {
+        LuceneIndexEditorProvider provider = new LuceneIndexEditorProvider(null, cache);
+        provider.setTextExtractionPrefetcher(prefetcher);
+        return new EditorHook(new IndexUpdateProvider(provider)).processCommit(before, after, CommitInfo.EMPTY);
+    }
+
+    private IndexSearcher getSearcher() {
+        if (indexNode == null) {
+            indexNode = tracker.acquireIndexNode("/oak:index/lucene");
+        }
+        return indexNode.getSearcher();
+    }
+
+    private static class IdBlob extends ArrayBasedBlob {
+        final String id;
+
+        IdBlob(String value, String id) {
+            super(value.getBytes());
+            this.id = id;
+        }
+
+        @Override
+        public String getContentIdentity() {
+            return id;
+        }
+    }
+
+    private static class SlowBlob extends IdBlob {
+        final long delayMillis;
+
+        SlowBlob(String value, String id, long delayMillis) {
+            super(value, id);
+            this.delayMillis = delayMillis;
+        }
+
+        @Nonnull
+        @Override
+        public InputStream getNewStream() {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return super.getNewStream();
+        }
+    }
+
+    private static class BlockingBlob extends IdBlob {
+        final CountDownLatch latch;
+
+        BlockingBlob(String value, String id, CountDownLatch latch) {
+            super(value, id);
+            this.latch = latch;
+        }
+
+        @Nonnull
+        @Override
+        public InputStream getNewStream() {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return super.getNewStream();
+        }
+    }
+}
@@ -266,6 +266,8 @@ public class BenchmarkRunner {
             new ObservationTest(),
             new RevisionGCTest(),
             new ContinuousRevisionGCTest(),
+            new CommitQueueContentionTest(),
+            new PersistentCacheFormatTest(),
             new XmlImportTest(),
             new FlatTreeWithAceForSamePrincipalTest(),
             new ReadDeepTreeTest(
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Measures the commit throughput of a {@code DocumentNodeStore} on a
+ * {@code MemoryDocumentStore} with many concurrent writers. Each writer
+ * repeatedly merges a small change to its own node, so throughput is mostly
+ * limited by the commit queue. The benchmark compares the default commit
+ * queue with the lock-free commit queue and does not use the repository
+ * fixtures.
+ * <p>
+ * The run time per concurrency level and queue type in seconds can be set
+ * with the system property {@code runtime} (default: 10).
+ */
+public class CommitQueueContentionTest extends Benchmark {
+
+    private static final int RUNTIME = Integer.getInteger("runtime", 10);
+
+    private static final List<Integer> DEFAULT_CONCURRENCY_LEVELS =
+            ImmutableList.of(1, 10, 50, 200);
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        run(fixtures, null);
+    }
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures,
+                    List<Integer> concurrencyLevels) {
+        if (concurrencyLevels == null || concurrencyLevels.isEmpty()) {
+            concurrencyLevels = DEFAULT_CONCURRENCY_LEVELS;
+        }
+        System.out.format("# %-26.26s   C    commits/s%n", toString());
+        for (int concurrency : concurrencyLevels) {
+            for (boolean lockFree : new boolean[]{false, true}) {
+                try {
+                    double rate = run(concurrency, lockFree);
+                    System.out.format("%-28.28s %4d %12.1f%n",
+                            lockFree ? "LockFreeCommitQueue" : "DefaultCommitQueue",
+                            concurrency, rate);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static double run(int concurrency, boolean lockFree)
+            throws Exception {
+        final DocumentNodeStore ns = new DocumentMK.Builder()
+                .setDocumentStore(new MemoryDocumentStore())
+                .setLockFreeCommitQueue(lockFree)
+                .setAsyncDelay(0).getNodeStore();
+        try {
+            NodeBuilder builder = ns.getRoot().builder();
+            for (int i = 0; i < concurrency; i++) {
+                builder.child("node-" + i);
+            }
+            ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final AtomicLong numCommits = new AtomicLong();
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> writers = Lists.newArrayList();
+            for (int i = 0; i < concurrency; i++) {
+                final String name = "node-" + i;
+                Thread t = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (long count = 0; running.get(); count++) {
+                                NodeBuilder b = ns.getRoot().builder();
+                                b.child(name).setProperty("count", count);
+                                ns.merge(b, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                                numCommits.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+                t.start();
+                writers.add(t);
+            }
+            long time = System.nanoTime();
+            start.countDown();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(RUNTIME));
+            running.set(false);
+            for (Thread t : writers) {
+                t.join();
+            }
+            time = System.nanoTime() - time;
+            return numCommits.get() * (double) TimeUnit.SECONDS.toNanos(1) / time;
+        } finally {
+            ns.dispose();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.fixture.RepositoryFixture;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.BinaryCodec;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.h2.mvstore.WriteBuffer;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Compares the read throughput of node states in the persistent cache
+ * with the string format used before and the binary format. Each
+ * iteration decodes a set of serialized node states with typical JCR
+ * properties. The benchmark does not use the repository fixtures and
+ * does not include the compression of the persistent cache, which
+ * applies to both formats.
+ * <p>
+ * The run time per format in seconds can be set with the system property
+ * {@code runtime} (default: 10).
+ */
+public class PersistentCacheFormatTest extends Benchmark {
+
+    private static final int RUNTIME = Integer.getInteger("runtime", 10);
+
+    private static final int NUM_NODES = 1000;
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures) {
+        run(fixtures, null);
+    }
+
+    @Override
+    public void run(Iterable<RepositoryFixture> fixtures,
+                    List<Integer> concurrencyLevels) {
+        DocumentNodeStore ns = new DocumentMK.Builder().getNodeStore();
+        try {
+            List<DocumentNodeState> states = createNodeStates(ns);
+            List<String> strings = Lists.newArrayList();
+            List<byte[]> binaries = Lists.newArrayList();
+            long stringBytes = 0;
+            long binaryBytes = 0;
+            for (DocumentNodeState state : states) {
+                String s = CacheType.NODE.valueToString(state);
+                strings.add(s);
+                WriteBuffer buffer = new WriteBuffer();
+                BinaryCodec.writeString(buffer, s);
+                stringBytes += buffer.position();
+
+                buffer = new WriteBuffer();
+                CacheType.NODE.writeValue(buffer, state);
+                ByteBuffer b = buffer.getBuffer();
+                b.flip();
+                byte[] data = new byte[b.remaining()];
+                b.get(data);
+                binaries.add(data);
+                binaryBytes += data.length;
+            }
+
+            System.out.format("# %-26.26s   bytes/node    nodes/s%n", toString());
+            System.out.format("%-28.28s %12d %10.1f%n", "String",
+                    stringBytes / states.size(), readStrings(ns, strings));
+            System.out.format("%-28.28s %12d %10.1f%n", "Binary",
+                    binaryBytes / states.size(), readBinaries(ns, binaries));
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            ns.dispose();
+        }
+    }
+
+    private static List<DocumentNodeState> createNodeStates(DocumentNodeStore ns)
+            throws Exception {
+        NodeBuilder builder = ns.getRoot().builder();
+        NodeBuilder test = builder.child("test");
+        for (int i = 0; i < NUM_NODES; i++) {
+            NodeBuilder child = test.child("node-" + i);
+            child.setProperty("jcr:primaryType", "nt:unstructured", Type.NAME);
+            child.setProperty("jcr:mixinTypes", asList("mix:referenceable"), Type.NAMES);
+            child.setProperty("jcr:uuid", "uuid-" + i);
+            child.setProperty("jcr:created", "2016-10-01T00:00:00.000Z", Type.DATE);
+            child.setProperty("jcr:lastModified", "2016-10-01T00:00:00.000Z", Type.DATE);
+            child.setProperty("sling:resourceType", "app/components/page");
+            child.setProperty("jcr:title", "Title " + i);
+            child.setProperty("count", (long) i);
+            child.child("child");
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        List<DocumentNodeState> states = Lists.newArrayList();
+        for (ChildNodeEntry e : ns.getRoot().getChildNode("test").getChildNodeEntries()) {
+            states.add((DocumentNodeState) e.getNodeState());
+        }
+        return states;
+    }
+
+    private static double readStrings(DocumentNodeStore ns, List<String> strings) {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(RUNTIME);
+        long time = System.nanoTime();
+        long count = 0;
+        while (System.nanoTime() < end) {
+            for (String s : strings) {
+                CacheType.NODE.valueFromString(ns, null, s);
+            }
+            count += strings.size();
+        }
+        time = System.nanoTime() - time;
+        return count * (double) TimeUnit.SECONDS.toNanos(1) / time;
+    }
+
+    private static double readBinaries(DocumentNodeStore ns, List<byte[]> binaries) {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(RUNTIME);
+        long time = System.nanoTime();
+        long count = 0;
+        while (System.nanoTime() < end) {
+            for (byte[] data : binaries) {
+                CacheType.NODE.readValue(ns, null, ByteBuffer.wrap(data));
+            }
+            count += binaries.size();
+        }
+        time = System.nanoTime() - time;
+        return count * (double) TimeUnit.SECONDS.toNanos(1) / time;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.run;
+
+import static java.util.Arrays.asList;
+
+import java.io.File;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.google.common.collect.ImmutableMap;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoURI;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.mongo.MongoDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDataSourceFactory;
+import org.apache.jackrabbit.oak.plugins.document.rdb.RDBDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.DocumentStoreExporter;
+import org.apache.jackrabbit.oak.plugins.document.util.DocumentStoreImporter;
+import org.apache.jackrabbit.oak.plugins.document.util.MongoConnection;
+
+/**
+ * Exports the collections of a DocumentStore to a directory or imports
+ * them from a directory, using the binary dump format of
+ * {@link DocumentStoreExporter}.
+ */
+class DocumentDumpCommand implements Command {
+
+    private static final ImmutableMap<String, Collection<?>> COLLECTIONS =
+            ImmutableMap.<String, Collection<?>>of(
+                    Collection.NODES.toString(), Collection.NODES,
+                    Collection.JOURNAL.toString(), Collection.JOURNAL,
+                    Collection.SETTINGS.toString(), Collection.SETTINGS);
+
+    @Override
+    public void execute(String... args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<Integer> threads = parser.accepts("threads",
+                "number of files exported or imported in parallel")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(4);
+        OptionSpec<Integer> chunkSize = parser.accepts("chunkSize",
+                "number of documents per chunk on export")
+                .withRequiredArg().ofType(Integer.class).defaultsTo(1000);
+        OptionSpec<String> collections = parser.accepts("collections",
+                "comma separated list of collections")
+                .withRequiredArg().withValuesSeparatedBy(',')
+                .defaultsTo("nodes", "journal", "settings");
+        OptionSpec<String> rdbjdbcuser = parser.accepts("rdbjdbcuser", "RDB JDBC user")
+                .withOptionalArg().defaultsTo("");
+        OptionSpec<String> rdbjdbcpasswd = parser.accepts("rdbjdbcpasswd", "RDB JDBC password")
+                .withOptionalArg().defaultsTo("");
+        OptionSpec<?> help = parser.acceptsAll(asList("h", "?", "help"),
+                "show help").forHelp();
+        OptionSpec<String> nonOption = parser.nonOptions(
+                "docdump {export|import} {<mongodb-uri>|<jdbc-uri>} <directory>");
+
+        OptionSet options = parser.parse(args);
+        List<String> nonOptions = nonOption.values(options);
+
+        if (options.has(help)) {
+            parser.printHelpOn(System.out);
+            System.exit(0);
+        }
+        if (nonOptions.size() != 3
+                || !asList("export", "import").contains(nonOptions.get(0))) {
+            parser.printHelpOn(System.err);
+            System.exit(1);
+        }
+        boolean export = nonOptions.get(0).equals("export");
+        String uri = nonOptions.get(1);
+        File dir = new File(nonOptions.get(2));
+
+        MongoConnection mongo = null;
+        DocumentStore store;
+        if (uri.startsWith(MongoURI.MONGODB_PREFIX)) {
+            MongoClientURI mongoURI = new MongoClientURI(uri);
+            if (mongoURI.getDatabase() == null) {
+                System.err.println("Database missing in MongoDB URI: " + mongoURI.getURI());
+                System.exit(1);
+            }
+            mongo = new MongoConnection(mongoURI.getURI());
+            store = new MongoDocumentStore(mongo.getDB(), new DocumentMK.Builder());
+        } else if (uri.startsWith("jdbc")) {
+            DataSource ds = RDBDataSourceFactory.forJdbcUrl(uri,
+                    rdbjdbcuser.value(options), rdbjdbcpasswd.value(options));
+            store = new RDBDocumentStore(ds, new DocumentMK.Builder());
+        } else {
+            System.err.println("Unsupported DocumentStore URI: " + uri);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            for (String name : collections.values(options)) {
+                Collection<?> c = COLLECTIONS.get(name);
+                if (c == null) {
+                    System.err.println("Unknown collection: " + name);
+                    System.exit(1);
+                }
+                long count;
+                if (export) {
+                    count = new DocumentStoreExporter(store, dir)
+                            .setThreads(threads.value(options))
+                            .setChunkSize(chunkSize.value(options))
+                            .export(c);
+                } else {
+                    count = new DocumentStoreImporter(store, dir)
+                            .setThreads(threads.value(options))
+                            .importCollection(c);
+                }
+                System.out.println((export ? "Exported " : "Imported ") +
+                        count + " documents of " + name);
+            }
+        } finally {
+            store.dispose();
+            if (mongo != null) {
+                mongo.close();
+            }
+        }
+    }
+}
@@ -42,6 +42,7 @@ enum Mode {
     DUMPDATASTOREREFS("dumpdatastorerefs", new DataStoreCheckCommand()),
     RESETCLUSTERID("resetclusterid", new ResetClusterIdCommand()),
     PERSISTENTCACHE("persistentcache", new PersistentCacheCommand()),
+    DOCDUMP("docdump", new DocumentDumpCommand()),
     THREADDUMP("threaddump", new ThreadDumpCommand()),
     HELP("help", new HelpCommand());
 
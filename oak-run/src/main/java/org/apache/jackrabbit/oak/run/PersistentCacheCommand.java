@@ -22,12 +22,19 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
 import org.h2.mvstore.type.StringDataType;
 
 import joptsimple.OptionParser;
@@ -97,6 +104,10 @@ public class PersistentCacheCommand implements Command {
          MVStore s = new MVStore.Builder().readOnly().
                  fileName(fileName).open();
          Map<String, String> meta = s.getMetaMap();
+         // files with a format version use the binary format for
+         // the maps of the document node store caches
+         boolean binary = s.hasMap(PersistentCache.FORMAT_MAP);
+         DocumentNodeStore ns = null;
          boolean statsOnly = "".equalsIgnoreCase(map) && 
                  "".equals(revision) && 
                  "".equals(path);
@@ -115,10 +126,22 @@ public class PersistentCacheCommand implements Command {
                  if (map.length() > 0 && !map.equalsIgnoreCase(mapName)) {
                      continue;
                  }
+                 if (PersistentCache.FORMAT_MAP.equals(mapName)) {
+                     continue;
+                 }
+                 DataType keyType = StringDataType.INSTANCE;
+                 DataType valueType = StringDataType.INSTANCE;
+                 CacheType type = binary ? getCacheType(mapName) : null;
+                 if (type != null) {
+                     if (ns == null) {
+                         ns = new DocumentMK.Builder().getNodeStore();
+                     }
+                     keyType = new BinaryDataType(type, ns, true);
+                     valueType = new BinaryDataType(type, ns, false);
+                 }
                  MVMap.Builder<String, String> b = 
                          new MVMap.Builder<String, String>().
-                         keyType(StringDataType.INSTANCE).valueType(
-                                 StringDataType.INSTANCE);
+                         keyType(keyType).valueType(valueType);
                  MVMap<String, String> m = s.openMap(mapName, b);
                  if (statsOnly) {
                      statistics(write, m);
@@ -130,6 +153,18 @@ public class PersistentCacheCommand implements Command {
              }
          }
          s.close();        
+         if (ns != null) {
+             ns.dispose();
+         }
+    }
+
+    private static CacheType getCacheType(String mapName) {
+        for (CacheType type : CacheType.values()) {
+            if (type.name().equals(mapName)) {
+                return type;
+            }
+        }
+        return null;
     }
 
     static void statistics(PrintWriter write, MVMap<String, String> m) {
@@ -199,6 +234,59 @@ public class PersistentCacheCommand implements Command {
             key = key.replace(',', '#');
             write.println(mapName + "," + key + "," + rev + "," + r2 + "," + v);
         }
-    }    
+    }
+
+    /**
+     * Reads the binary keys or values of a cache map and converts them to
+     * their string representation.
+     */
+    private static class BinaryDataType implements DataType {
+
+        private final CacheType type;
+        private final DocumentNodeStore store;
+        private final boolean key;
+
+        BinaryDataType(CacheType type, DocumentNodeStore store, boolean key) {
+            this.type = type;
+            this.store = store;
+            this.key = key;
+        }
+
+        @Override
+        public int compare(Object a, Object b) {
+            return StringDataType.INSTANCE.compare(a, b);
+        }
+
+        @Override
+        public int getMemory(Object obj) {
+            return StringDataType.INSTANCE.getMemory(obj);
+        }
+
+        @Override
+        public void write(WriteBuffer buff, Object obj) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object read(ByteBuffer buff) {
+            if (key) {
+                return type.keyToString(type.readKey(buff));
+            }
+            return type.valueToString(type.readValue(
+                    store, store.getDocumentStore(), buff));
+        }
+
+        @Override
+        public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
+            for (int i = 0; i < len; i++) {
+                obj[i] = read(buff);
+            }
+        }
+    }
 
 }
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The gc generation of the segments written by a {@link SegmentBufferWriter}.
+ * <p>
+ * Each compaction starts a new {@link #getGeneration() generation}. A full
+ * compaction additionally increments the {@link #getFullGeneration() full
+ * generation}, while a tail compaction keeps the full generation of the state
+ * it compacts onto. Segments written by compaction are flagged as
+ * {@link #isCompacted() compacted}. Records in compacted segments of the
+ * current full generation are part of the compacted state, which tail
+ * compaction references instead of copying it.
+ * <p>
+ * Segments written before the full generation was recorded, as well as
+ * segments of writers only given a plain generation, have a full generation
+ * of 0 and are not flagged as compacted.
+ */
+public final class GCGeneration {
+
+    private final int generation;
+
+    private final int fullGeneration;
+
+    private final boolean compacted;
+
+    public GCGeneration(int generation, int fullGeneration, boolean compacted) {
+        this.generation = generation;
+        this.fullGeneration = fullGeneration;
+        this.compacted = compacted;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public int getFullGeneration() {
+        return fullGeneration;
+    }
+
+    public boolean isCompacted() {
+        return compacted;
+    }
+
+    /**
+     * @return  the generation of the segments written by a full compaction
+     *          of a state of this generation.
+     */
+    @Nonnull
+    public GCGeneration nextFull() {
+        return new GCGeneration(generation + 1, fullGeneration + 1, true);
+    }
+
+    /**
+     * @return  the generation of the segments written by a tail compaction
+     *          of a state of this generation.
+     */
+    @Nonnull
+    public GCGeneration nextTail() {
+        return new GCGeneration(generation + 1, fullGeneration, true);
+    }
+
+    /**
+     * @return  the generation of the segments written by regular (i.e. not
+     *          compacting) writers on top of a state of this generation.
+     */
+    @Nonnull
+    public GCGeneration nonGC() {
+        return new GCGeneration(generation, fullGeneration, false);
+    }
+
+    /**
+     * Determine whether a record in a segment of the passed generation needs
+     * to be copied when written by a writer of this generation. This is the
+     * case if it is from an older generation, unless it is part of the state
+     * compacted since the last full compaction.
+     *
+     * @param generation     generation of the segment of the record
+     * @param fullGeneration full generation of the segment of the record
+     * @param compacted      whether the segment of the record was written by compaction
+     * @return  {@code true} if the record is from an old generation
+     */
+    public boolean isOld(int generation, int fullGeneration, boolean compacted) {
+        return generation < this.generation
+                && !(compacted && fullGeneration == this.fullGeneration);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        GCGeneration that = (GCGeneration) other;
+        return generation == that.generation
+                && fullGeneration == that.fullGeneration
+                && compacted == that.compacted;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * generation + fullGeneration) + (compacted ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "GCGeneration{" +
+                "generation=" + generation +
+                ",fullGeneration=" + fullGeneration +
+                ",compacted=" + compacted + '}';
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.cache.RemovalCause;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+
+/**
+ * A {@link SegmentCache} keeping the data of the cached segments off heap and
+ * using the scan resistant LIRS replacement policy of {@link CacheLIRS}.
+ * <p>
+ * Segments loaded into or put into this cache are copied to direct byte buffers unless
+ * their data is already off heap (e.g. memory mapped). The maximum weight of
+ * the cache thus bounds the direct memory used for segments, which should be
+ * taken into account when configuring {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * Segments seen for the first time are admitted as cold entries. They only
+ * become hot if they are loaded again while still tracked by the cache, such
+ * that a single traversal over many segments does not evict the working set.
+ */
+public class OffHeapSegmentCache extends SegmentCache {
+
+    /**
+     * Create a new off heap segment cache of the given size.
+     * @param cacheSizeMB  size of the cache in megabytes.
+     */
+    public OffHeapSegmentCache(long cacheSizeMB) {
+        super(cacheSizeMB * 1024 * 1024, CacheLIRS.<SegmentId, Segment>newBuilder()
+                .module("OffHeapSegmentCache")
+                .recordStats()
+                .maximumWeight(cacheSizeMB * 1024 * 1024)
+                .averageWeight(256 * 1024)
+                .segmentCount(16)
+                .weigher(WEIGHER)
+                .evictionCallback(new EvictionCallback<SegmentId, Segment>() {
+                    @Override
+                    public void evicted(@Nonnull SegmentId id, @Nullable Segment segment,
+                                        @Nonnull RemovalCause cause) {
+                        // non resident entries have no segment to unload
+                        if (segment != null) {
+                            id.unloaded();
+                        }
+                    }
+                })
+                .build());
+    }
+
+    @Nonnull
+    @Override
+    protected Segment load(@Nonnull Callable<Segment> loader) throws Exception {
+        return super.load(loader).toOffHeap();
+    }
+
+    @Override
+    public void putSegment(@Nonnull Segment segment) {
+        super.putSegment(segment.toOffHeap());
+    }
+}
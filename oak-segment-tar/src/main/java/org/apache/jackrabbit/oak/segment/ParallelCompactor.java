@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Supplier;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Compacts a node state by concurrently compacting independent subtrees of it.
+ * <p>
+ * The tree is split into subtrees at the shallowest depth providing enough
+ * subtrees to keep all threads busy. Each thread compacts subtrees through its
+ * own {@link WriteOperationHandler}, sharing the de-duplication caches of the
+ * {@link SegmentWriter} passed to the constructor. Finally the node state itself
+ * is compacted on the calling thread. As the compacted subtrees are looked up
+ * by the stable id of their uncompacted counterparts, this last step only needs
+ * to rewrite the nodes above the subtrees.
+ * <p>
+ * Subtrees sharing their stable id (e.g. unchanged subtrees in checkpoints) are
+ * only compacted once.
+ */
+public class ParallelCompactor {
+
+    /**
+     * Maximum depth down to which the tree is split into subtrees.
+     */
+    private static final int MAX_SPLIT_DEPTH = 4;
+
+    /**
+     * Number of subtrees per thread to aim for when splitting the tree.
+     */
+    private static final int SUBTREES_PER_THREAD = 8;
+
+    /**
+     * Maximum number of subtrees per thread. Splitting stops before a level
+     * of the tree exceeding this number.
+     */
+    private static final int MAX_SUBTREES_PER_THREAD = 64;
+
+    @Nonnull
+    private final SegmentStore store;
+
+    @Nonnull
+    private final SegmentReader reader;
+
+    @Nullable
+    private final BlobStore blobStore;
+
+    @Nonnull
+    private final SegmentWriter writer;
+
+    @Nonnull
+    private final WriterCacheManager cacheManager;
+
+    @Nonnull
+    private final List<? extends WriteOperationHandler> handlers;
+
+    @Nonnull
+    private final GCMonitor monitor;
+
+    @Nonnull
+    private final String logPrefix;
+
+    /**
+     * Create a new instance compacting with as many threads as there are
+     * {@code handlers}.
+     *
+     * @param store        store to write to
+     * @param reader       segment reader for the {@code store}
+     * @param blobStore    the blob store or {@code null} for inlined blobs
+     * @param writer       writer for compacting the subtrees
+     * @param cacheManager cache manager of the de-duplication caches used by
+     *                     {@code writer}
+     * @param handlers     one write operation handler per thread
+     * @param monitor      monitor receiving the progress of the threads
+     * @param logPrefix    prefix for the messages sent to {@code monitor}
+     */
+    public ParallelCompactor(
+            @Nonnull SegmentStore store,
+            @Nonnull SegmentReader reader,
+            @Nullable BlobStore blobStore,
+            @Nonnull SegmentWriter writer,
+            @Nonnull WriterCacheManager cacheManager,
+            @Nonnull List<? extends WriteOperationHandler> handlers,
+            @Nonnull GCMonitor monitor,
+            @Nonnull String logPrefix) {
+        checkArgument(!handlers.isEmpty());
+        this.store = checkNotNull(store);
+        this.reader = checkNotNull(reader);
+        this.blobStore = blobStore;
+        this.writer = checkNotNull(writer);
+        this.cacheManager = checkNotNull(cacheManager);
+        this.handlers = handlers;
+        this.monitor = checkNotNull(monitor);
+        this.logPrefix = checkNotNull(logPrefix);
+    }
+
+    /**
+     * Compact a node state, unless cancelled.
+     *
+     * @param state   node state to compact
+     * @param handler write operation handler for compacting the nodes above
+     *                the subtrees
+     * @param cancel  supplier to signal cancellation of the compaction
+     * @return compacted node state equal to {@code state} or {@code null} if
+     * cancelled.
+     * @throws IOException
+     */
+    @CheckForNull
+    public SegmentNodeState compact(
+            @Nonnull NodeState state,
+            @Nonnull WriteOperationHandler handler,
+            @Nonnull final Supplier<Boolean> cancel)
+    throws IOException {
+        if (!(state instanceof SegmentNodeState)) {
+            // Only persisted node states can be split into subtrees
+            return writer.writeNode(state, handler, cancel);
+        }
+
+        final Queue<Subtree> subtrees = new ConcurrentLinkedQueue<>(split((SegmentNodeState) state));
+        final int count = subtrees.size();
+        final Map<String, RecordId> compacted = new ConcurrentHashMap<>();
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        final Supplier<Boolean> stop = new Supplier<Boolean>() {
+            @Override
+            public Boolean get() {
+                return failed.get() || cancel.get();
+            }
+        };
+
+        monitor.info(logPrefix + ": compacting {} subtrees with {} threads", count, handlers.size());
+
+        ExecutorService executor = newFixedThreadPool(handlers.size(), new CompactionThreadFactory());
+        try {
+            List<Future<Void>> futures = newArrayList();
+            for (int i = 0; i < handlers.size(); i++) {
+                final int thread = i + 1;
+                final WriteOperationHandler threadHandler = handlers.get(i);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (Subtree subtree = subtrees.poll(); subtree != null; subtree = subtrees.poll()) {
+                            long start = nanoTime();
+                            SegmentNodeState after = writer.writeNode(subtree.state, threadHandler, stop);
+                            if (after == null) {
+                                failed.set(true);
+                                return null;
+                            }
+                            compacted.put(subtree.state.getStableId(), after.getRecordId());
+                            monitor.info(logPrefix + ": compaction thread {} compacted {} in {} ms ({} of {} subtrees)",
+                                    thread, subtree.path, NANOSECONDS.toMillis(nanoTime() - start),
+                                    done.incrementAndGet(), count);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            IOException failure = null;
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failed.set(true);
+                    if (failure == null) {
+                        failure = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause()
+                                : new IOException(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            failed.set(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compacting subtrees");
+        } finally {
+            executor.shutdown();
+        }
+
+        if (stop.get()) {
+            return null;
+        }
+
+        SegmentNodeState after = new SegmentWriter(store, reader, blobStore,
+                new CompactedSubtrees(cacheManager, compacted), handler)
+                .writeNode(state, handler, cancel);
+
+        if (after == null) {
+            return null;
+        }
+
+        return new SegmentNodeState(reader, writer, after.getRecordId());
+    }
+
+    /**
+     * Split the tree rooted at {@code state} into subtrees, at the shallowest
+     * depth providing enough subtrees for all threads.
+     */
+    @Nonnull
+    private List<Subtree> split(@Nonnull SegmentNodeState state) {
+        int target = handlers.size() * SUBTREES_PER_THREAD;
+        int max = handlers.size() * MAX_SUBTREES_PER_THREAD;
+
+        List<Subtree> level = newArrayList(new Subtree("/", state));
+        for (int depth = 0; depth < MAX_SPLIT_DEPTH && level.size() < target; depth++) {
+            List<Subtree> next = expand(level, max);
+            if (next == null || next.isEmpty()) {
+                break;
+            }
+            level = next;
+        }
+
+        Map<String, Subtree> unique = newLinkedHashMap();
+        for (Subtree subtree : level) {
+            String stableId = subtree.state.getStableId();
+            if (!unique.containsKey(stableId)) {
+                unique.put(stableId, subtree);
+            }
+        }
+        return newArrayList(unique.values());
+    }
+
+    /**
+     * @return  the child nodes of the subtrees in {@code level} or {@code null}
+     * if there are more than {@code max} of them.
+     */
+    @CheckForNull
+    private static List<Subtree> expand(@Nonnull List<Subtree> level, int max) {
+        List<Subtree> next = newArrayList();
+        for (Subtree subtree : level) {
+            for (ChildNodeEntry child : subtree.state.getChildNodeEntries()) {
+                if (next.size() == max) {
+                    return null;
+                }
+                NodeState childState = child.getNodeState();
+                if (childState instanceof SegmentNodeState) {
+                    next.add(new Subtree(concat(subtree.path, child.getName()), (SegmentNodeState) childState));
+                }
+            }
+        }
+        return next;
+    }
+
+    private static class Subtree {
+
+        @Nonnull
+        private final String path;
+
+        @Nonnull
+        private final SegmentNodeState state;
+
+        Subtree(@Nonnull String path, @Nonnull SegmentNodeState state) {
+            this.path = path;
+            this.state = state;
+        }
+    }
+
+    /**
+     * {@link WriterCacheManager} resolving the compacted subtrees before
+     * falling back to the node cache of the wrapped cache manager.
+     */
+    private static class CompactedSubtrees extends WriterCacheManager {
+
+        @Nonnull
+        private final WriterCacheManager delegate;
+
+        @Nonnull
+        private final Map<String, RecordId> compacted;
+
+        CompactedSubtrees(@Nonnull WriterCacheManager delegate, @Nonnull Map<String, RecordId> compacted) {
+            this.delegate = delegate;
+            this.compacted = compacted;
+        }
+
+        @Nonnull
+        @Override
+        public RecordCache<String> getStringCache(int generation) {
+            return delegate.getStringCache(generation);
+        }
+
+        @Nonnull
+        @Override
+        public RecordCache<Template> getTemplateCache(int generation) {
+            return delegate.getTemplateCache(generation);
+        }
+
+        @Nonnull
+        @Override
+        public NodeCache getNodeCache(int generation) {
+            final NodeCache nodeCache = delegate.getNodeCache(generation);
+            return new NodeCache() {
+                @Override
+                public void put(@Nonnull String stableId, @Nonnull RecordId recordId, byte cost) {
+                    nodeCache.put(stableId, recordId, cost);
+                }
+
+                @CheckForNull
+                @Override
+                public RecordId get(@Nonnull String stableId) {
+                    RecordId recordId = compacted.get(stableId);
+                    return recordId != null ? recordId : nodeCache.get(stableId);
+                }
+            };
+        }
+    }
+
+    private static class CompactionThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "TarMK compaction thread " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
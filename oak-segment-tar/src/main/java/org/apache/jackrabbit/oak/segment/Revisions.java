@@ -90,6 +90,13 @@ public interface Revisions {
     boolean setHead(@Nonnull Function<RecordId, RecordId> newHead,
                     @Nonnull Option... options)
     throws InterruptedException;
+
+    /**
+     * Wait until the current head state is persisted according to the
+     * durability guarantees of the implementation. Implementations not
+     * giving any such guarantees return immediately.
+     */
+    void awaitPersisted();
 }
 
 
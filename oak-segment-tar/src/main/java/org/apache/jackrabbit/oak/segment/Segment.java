@@ -26,6 +26,7 @@ import static com.google.common.collect.Maps.newLinkedHashMap;
 import static org.apache.jackrabbit.oak.commons.IOUtils.closeQuietly;
 import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
 import static org.apache.jackrabbit.oak.segment.SegmentVersion.LATEST_VERSION;
+import static org.apache.jackrabbit.oak.segment.SegmentVersion.V_13;
 import static org.apache.jackrabbit.oak.segment.SegmentVersion.isValid;
 import static org.apache.jackrabbit.oak.segment.SegmentWriter.BLOCK_SIZE;
 
@@ -136,6 +137,14 @@ public class Segment {
 
     public static final int RECORD_NUMBER_COUNT_OFFSET = 18;
 
+    /**
+     * Offset of the full gc generation. Its most significant bit flags
+     * segments written by compaction.
+     */
+    public static final int GC_FULL_GENERATION_OFFSET = 22;
+
+    private static final int COMPACTED_MASK = 0x80000000;
+
     @Nonnull
     private final SegmentStore store;
 
@@ -384,6 +393,86 @@ public class Segment {
         return getGcGeneration(data, id.asUUID());
     }
 
+    /**
+     * Determine whether a data segment records its full gc generation and its
+     * compacted flag. Segments of versions before {@link SegmentVersion#V_13}
+     * have those header bytes reserved.
+     */
+    private static boolean hasFullGeneration(ByteBuffer data) {
+        byte version = data.get(3);
+        return isValid(version) && SegmentVersion.fromByte(version).onOrAfter(V_13);
+    }
+
+    /**
+     * Determine the full gc generation a segment from its data. Note that bulk
+     * segments and segments written before the full generation was recorded
+     * don't have full generations (i.e. stay at 0).
+     *
+     * @param data         the date of the segment
+     * @param segmentId    the id of the segment
+     * @return  the full gc generation of this segment or 0 if this is bulk segment.
+     */
+    public static int getGcFullGeneration(ByteBuffer data, UUID segmentId) {
+        return isDataSegmentId(segmentId.getLeastSignificantBits()) && hasFullGeneration(data)
+            ? data.getInt(GC_FULL_GENERATION_OFFSET) & ~COMPACTED_MASK
+            : 0;
+    }
+
+    /**
+     * Determine whether a segment has been written by compaction from its data.
+     *
+     * @param data         the date of the segment
+     * @param segmentId    the id of the segment
+     * @return  {@code true} iff this is a data segment written by compaction.
+     */
+    public static boolean isCompacted(ByteBuffer data, UUID segmentId) {
+        return isDataSegmentId(segmentId.getLeastSignificantBits())
+            && hasFullGeneration(data)
+            && (data.getInt(GC_FULL_GENERATION_OFFSET) & COMPACTED_MASK) != 0;
+    }
+
+    /**
+     * Determine the gc generation, full gc generation and compacted flag of a
+     * segment from its data.
+     *
+     * @param data         the date of the segment
+     * @param segmentId    the id of the segment
+     * @return  the gc generation of this segment
+     */
+    @Nonnull
+    public static GCGeneration getGCGeneration(ByteBuffer data, UUID segmentId) {
+        return new GCGeneration(
+                getGcGeneration(data, segmentId),
+                getGcFullGeneration(data, segmentId),
+                isCompacted(data, segmentId));
+    }
+
+    /**
+     * Encode the full gc generation and compacted flag of a segment as stored
+     * at {@link #GC_FULL_GENERATION_OFFSET}.
+     */
+    static int encodeFullGeneration(@Nonnull GCGeneration generation) {
+        return generation.isCompacted()
+            ? generation.getFullGeneration() | COMPACTED_MASK
+            : generation.getFullGeneration();
+    }
+
+    /**
+     * Determine the full gc generation of this segment. Note that bulk segments don't have
+     * full generations (i.e. stay at 0).
+     * @return  the full gc generation of this segment or 0 if this is bulk segment.
+     */
+    public int getGcFullGeneration() {
+        return getGcFullGeneration(data, id.asUUID());
+    }
+
+    /**
+     * @return  {@code true} iff this is a data segment written by compaction.
+     */
+    public boolean isCompacted() {
+        return isCompacted(data, id.asUUID());
+    }
+
     private volatile String info;
 
     /**
@@ -413,6 +502,22 @@ public class Segment {
         return data.remaining();
     }
 
+    /**
+     * Copy this segment to a segment whose data is kept off heap.
+     * @return  this segment if its data is not on the heap (e.g. memory mapped),
+     *          a copy backed by a direct byte buffer otherwise.
+     */
+    @Nonnull
+    Segment toOffHeap() {
+        if (data.isDirect()) {
+            return this;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.remaining());
+        buffer.put(data.duplicate());
+        buffer.flip();
+        return new Segment(store, reader, id, buffer);
+    }
+
     byte readByte(int recordNumber) {
         return readByte(recordNumber, 0);
     }
@@ -622,7 +727,8 @@ public class Segment {
             writer.format("Segment %s (%d bytes)%n", id, length);
             String segmentInfo = getSegmentInfo();
             if (segmentInfo != null) {
-                writer.format("Info: %s, Generation: %d%n", segmentInfo, getGcGeneration());
+                writer.format("Info: %s, Generation: %d, Full generation: %d, Compacted: %b%n",
+                        segmentInfo, getGcGeneration(), getGcFullGeneration(), isCompacted());
             }
             if (id.isDataSegmentId()) {
                 writer.println("--------------------------------------------------------------------------");
@@ -674,6 +780,16 @@ public class Segment {
         }
     }
 
+    /**
+     * Read-only view of the data of this segment. For memory mapped segments
+     * the returned buffer shares the mapped region, so no copy is made.
+     * @return  a read-only buffer positioned at the start of the segment
+     */
+    @Nonnull
+    public ByteBuffer asReadOnlyBuffer() {
+        return data.asReadOnlyBuffer();
+    }
+
     public void writeTo(OutputStream stream) throws IOException {
         ByteBuffer buffer = data.duplicate();
         WritableByteChannel channel = Channels.newChannel(stream);
@@ -27,6 +27,7 @@ import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.System.arraycopy;
 import static java.lang.System.currentTimeMillis;
 import static java.lang.System.identityHashCode;
+import static org.apache.jackrabbit.oak.segment.Segment.GC_FULL_GENERATION_OFFSET;
 import static org.apache.jackrabbit.oak.segment.Segment.GC_GENERATION_OFFSET;
 import static org.apache.jackrabbit.oak.segment.Segment.HEADER_SIZE;
 import static org.apache.jackrabbit.oak.segment.Segment.RECORD_ID_BYTES;
@@ -126,7 +127,8 @@ public class SegmentBufferWriter implements WriteOperationHandler {
     @Nonnull
     private final String wid;
 
-    private final int generation;
+    @Nonnull
+    private final GCGeneration generation;
 
     /**
      * The segment write buffer, filled from the end to the beginning
@@ -161,6 +163,14 @@ public class SegmentBufferWriter implements WriteOperationHandler {
                                @Nonnull SegmentReader reader,
                                @CheckForNull String wid,
                                int generation) {
+        this(store, tracker, reader, wid, new GCGeneration(generation, 0, false));
+    }
+
+    public SegmentBufferWriter(@Nonnull SegmentStore store,
+                               @Nonnull SegmentTracker tracker,
+                               @Nonnull SegmentReader reader,
+                               @CheckForNull String wid,
+                               @Nonnull GCGeneration generation) {
         this.store = checkNotNull(store);
         this.tracker = checkNotNull(tracker);
         this.reader = checkNotNull(reader);
@@ -168,7 +178,7 @@ public class SegmentBufferWriter implements WriteOperationHandler {
                 ? "w-" + identityHashCode(this)
                 : wid);
 
-        this.generation = generation;
+        this.generation = checkNotNull(generation);
         this.statistics = new Statistics();
         newSegment();
     }
@@ -179,9 +189,23 @@ public class SegmentBufferWriter implements WriteOperationHandler {
     }
 
     int getGeneration() {
+        return generation.getGeneration();
+    }
+
+    @Nonnull
+    GCGeneration getGCGeneration() {
         return generation;
     }
 
+    /**
+     * Determine whether records of the segment with the given {@code id}
+     * need to be copied when referenced from segments written by this writer.
+     * @see GCGeneration#isOld(int, int, boolean)
+     */
+    boolean isOldGeneration(@Nonnull SegmentId id) {
+        return generation.isOld(id.getGcGeneration(), id.getGcFullGeneration(), id.isCompacted());
+    }
+
     /**
      * Allocate a new segment and write the segment meta data.
      * The segment meta data is a string of the format {@code "{wid=W,sno=S,t=T}"}
@@ -203,10 +227,12 @@ public class SegmentBufferWriter implements WriteOperationHandler {
         buffer[4] = 0; // reserved
         buffer[5] = 0; // refcount
 
-        buffer[GC_GENERATION_OFFSET] = (byte) (generation >> 24);
-        buffer[GC_GENERATION_OFFSET + 1] = (byte) (generation >> 16);
-        buffer[GC_GENERATION_OFFSET + 2] = (byte) (generation >> 8);
-        buffer[GC_GENERATION_OFFSET + 3] = (byte) generation;
+        int gen = generation.getGeneration();
+        buffer[GC_GENERATION_OFFSET] = (byte) (gen >> 24);
+        buffer[GC_GENERATION_OFFSET + 1] = (byte) (gen >> 16);
+        buffer[GC_GENERATION_OFFSET + 2] = (byte) (gen >> 8);
+        buffer[GC_GENERATION_OFFSET + 3] = (byte) gen;
+        BinaryUtils.writeInt(buffer, GC_FULL_GENERATION_OFFSET, Segment.encodeFullGeneration(generation));
         length = 0;
         position = buffer.length;
         recordNumbers = new MutableRecordNumbers();
@@ -307,7 +333,7 @@ public class SegmentBufferWriter implements WriteOperationHandler {
         if (ENABLE_GENERATION_CHECK) {
             try {
                 if (isDataSegmentId(id.getLeastSignificantBits())) {
-                    if (id.getGcGeneration() < generation) {
+                    if (isOldGeneration(id)) {
                         LOG.warn("Detected reference from {} to segment {} from a previous gc generation.",
                                 info(this.segment), info(id.getSegment()), new Exception());
                     }
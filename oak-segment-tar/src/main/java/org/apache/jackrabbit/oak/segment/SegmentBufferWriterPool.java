@@ -78,7 +78,7 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
     private final SegmentReader reader;
 
     @Nonnull
-    private final Supplier<Integer> gcGeneration;
+    private final Supplier<GCGeneration> gcGeneration;
 
     @Nonnull
     private final String wid;
@@ -90,7 +90,7 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
             @Nonnull SegmentTracker tracker,
             @Nonnull SegmentReader reader,
             @Nonnull String wid,
-            @Nonnull Supplier<Integer> gcGeneration) {
+            @Nonnull Supplier<GCGeneration> gcGeneration) {
         this.store = checkNotNull(store);
         this.tracker = checkNotNull(tracker);
         this.reader = checkNotNull(reader);
@@ -196,7 +196,7 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
                         getWriterId(wid),
                         gcGeneration.get()
                 );
-            } else if (writer.getGeneration() != gcGeneration.get()) {
+            } else if (!writer.getGCGeneration().equals(gcGeneration.get())) {
                 disposed.add(writer);
                 writer = new SegmentBufferWriter(
                         store,
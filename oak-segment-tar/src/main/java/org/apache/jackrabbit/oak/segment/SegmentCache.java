@@ -43,17 +43,48 @@ import org.apache.jackrabbit.oak.cache.CacheStats;
  * which are then loaded through the loader passed to {@link #getSegment(SegmentId, Callable)}.
  * This behaviour is eventually reflected in the cache statistics (see {@link #getCacheStats()}),
  * which always reports a {@link CacheStats#getHitRate()} () miss rate} of 1.
+ * <p>
+ * Segments loaded without promotion (see {@link #getSegment(SegmentId, Callable, boolean)}
+ * and {@link #withoutPromotion(Callable)}) are kept in a small separate cache instead, such
+ * that bulk traversals do not evict the working set of this cache. That cache has its own
+ * statistics (see {@link #getScanCacheStats()}).
  */
 public class SegmentCache {
     public static final int DEFAULT_SEGMENT_CACHE_MB = 256;
 
-    private final Weigher<SegmentId, Segment> weigher = new Weigher<SegmentId, Segment>() {
+    /**
+     * Fraction of the maximum weight of this cache used for segments loaded without
+     * promotion.
+     */
+    private static final int SCAN_CACHE_FRACTION = 16;
+
+    /**
+     * Whether segments loaded by the current thread are promoted into this cache.
+     */
+    private static final ThreadLocal<Boolean> PROMOTE = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return true;
+        }
+    };
+
+    static final Weigher<SegmentId, Segment> WEIGHER = new Weigher<SegmentId, Segment>() {
         @Override
         public int weigh(@Nonnull SegmentId id, @Nonnull Segment segment) {
             return 224 + segment.size();
         }
     };
 
+    private static final RemovalListener<SegmentId, Segment> UNLOAD = new RemovalListener<SegmentId, Segment>() {
+        @Override
+        public void onRemoval(@Nonnull RemovalNotification<SegmentId, Segment> notification) {
+            SegmentId id = notification.getKey();
+            if (id != null) {
+                id.unloaded();
+            }
+        }
+    };
+
     private final long maximumWeight;
 
     /**
@@ -62,30 +93,84 @@ public class SegmentCache {
     @Nonnull
     private final Cache<SegmentId, Segment> cache;
 
+    /**
+     * Cache of segments loaded without promotion
+     */
+    @Nonnull
+    private final Cache<SegmentId, Segment> scanCache;
+
     /**
      * Create a new segment cache of the given size.
      * @param cacheSizeMB  size of the cache in megabytes.
      */
     public SegmentCache(long cacheSizeMB) {
-        this.maximumWeight = cacheSizeMB * 1024 * 1024;
-        this.cache = CacheBuilder.newBuilder()
+        this(cacheSizeMB * 1024 * 1024, CacheBuilder.newBuilder()
+                .concurrencyLevel(16)
+                .recordStats()
+                .maximumWeight(cacheSizeMB * 1024 * 1024)
+                .weigher(WEIGHER)
+                .removalListener(UNLOAD)
+                .<SegmentId, Segment>build());
+    }
+
+    /**
+     * Create a new segment cache backed by the given cache. Implementations
+     * must call {@link SegmentId#unloaded()} for every segment evicted from
+     * {@code cache}.
+     * @param maximumWeight  maximum weight of {@code cache} in bytes.
+     * @param cache          the cache for recently accessed segments.
+     */
+    protected SegmentCache(long maximumWeight, @Nonnull Cache<SegmentId, Segment> cache) {
+        this.maximumWeight = maximumWeight;
+        this.cache = cache;
+        this.scanCache = CacheBuilder.newBuilder()
                 .concurrencyLevel(16)
                 .recordStats()
-                .maximumWeight(maximumWeight)
-                .weigher(weigher)
+                .maximumWeight(maximumWeight / SCAN_CACHE_FRACTION)
+                .weigher(WEIGHER)
                 .removalListener(new RemovalListener<SegmentId, Segment>() {
                     @Override
                     public void onRemoval(@Nonnull RemovalNotification<SegmentId, Segment> notification) {
+                        // Segments promoted in the meantime stay loaded
                         SegmentId id = notification.getKey();
-                        if (id != null) {
+                        if (id != null && !SegmentCache.this.cache.asMap().containsKey(id)) {
                             id.unloaded();
                         }
                     }
-                }).build();
+                })
+                .<SegmentId, Segment>build();
+    }
+
+    /**
+     * Run {@code task} with promotion disabled for the segments loaded by the
+     * current thread. Bulk traversals should use this method to avoid evicting
+     * the working set of the segment cache.
+     * @param task  the task to run
+     * @return      the result of {@code task}
+     * @throws Exception  when {@code task} failed
+     * @see #getSegment(SegmentId, Callable, boolean)
+     */
+    public static <T> T withoutPromotion(@Nonnull Callable<T> task) throws Exception {
+        Boolean promote = PROMOTE.get();
+        PROMOTE.set(false);
+        try {
+            return task.call();
+        } finally {
+            PROMOTE.set(promote);
+        }
+    }
+
+    /**
+     * @return  {@code false} while the current thread runs a task passed to
+     *          {@link #withoutPromotion(Callable)}, {@code true} otherwise.
+     */
+    public static boolean isPromoting() {
+        return PROMOTE.get();
     }
 
     /**
      * Retrieve an segment from the cache or load it and cache it if not yet in the cache.
+     * Promotion is determined by {@link #isPromoting()}.
      * @param id        the id of the segment
      * @param loader    the loader to load the segment if not yet in the cache
      * @return          the segment identified by {@code id}
@@ -93,10 +178,31 @@ public class SegmentCache {
      */
     @Nonnull
     public Segment getSegment(@Nonnull final SegmentId id, @Nonnull final Callable<Segment> loader)
+    throws ExecutionException {
+        return getSegment(id, loader, isPromoting());
+    }
+
+    /**
+     * Retrieve an segment from the cache or load it and cache it if not yet in the cache.
+     * @param id        the id of the segment
+     * @param loader    the loader to load the segment if not yet in the cache
+     * @param promote   {@code false} to keep the segment out of the cache of recently
+     *                  accessed segments. Such segments are only kept in a small
+     *                  separate cache.
+     * @return          the segment identified by {@code id}
+     * @throws ExecutionException  when {@code loader} failed to load an segment
+     */
+    @Nonnull
+    public Segment getSegment(@Nonnull final SegmentId id, @Nonnull final Callable<Segment> loader,
+                              boolean promote)
     throws ExecutionException {
         try {
-            Segment segment = loader.call();
-            cache.put(id, segment);
+            Segment segment = load(loader);
+            if (promote) {
+                cache.put(id, segment);
+            } else {
+                scanCache.put(id, segment);
+            }
             id.loaded(segment);
             return segment;
         } catch (Exception e) {
@@ -104,6 +210,18 @@ public class SegmentCache {
         }
     }
 
+    /**
+     * Load a segment through the given {@code loader}. Subclasses may override
+     * this method to change the representation of the loaded segment.
+     * @param loader  the loader
+     * @return        the loaded segment
+     * @throws Exception  when {@code loader} failed
+     */
+    @Nonnull
+    protected Segment load(@Nonnull Callable<Segment> loader) throws Exception {
+        return loader.call();
+    }
+
     /**
      * Put a segment into the cache
      * @param segment  the segment to cache
@@ -119,6 +237,7 @@ public class SegmentCache {
      */
     public void clear() {
         cache.invalidateAll();
+        scanCache.invalidateAll();
     }
 
     /**
@@ -127,6 +246,18 @@ public class SegmentCache {
      */
     @Nonnull
     public CacheStats getCacheStats() {
-        return new CacheStats(cache, "Segment Cache", weigher, maximumWeight);
+        return new CacheStats(cache, "Segment Cache", WEIGHER, maximumWeight);
+    }
+
+    /**
+     * Like the statistics of this cache, the statistics of the segments loaded without
+     * promotion do not report any hits. Their evictions show how much of a bulk
+     * traversal the separate cache keeps.
+     * @return  statistics for the cache of segments loaded without promotion.
+     */
+    @Nonnull
+    public CacheStats getScanCacheStats() {
+        return new CacheStats(scanCache, "Segment Scan Cache", WEIGHER,
+                maximumWeight / SCAN_CACHE_FRACTION);
     }
 }
\ No newline at end of file
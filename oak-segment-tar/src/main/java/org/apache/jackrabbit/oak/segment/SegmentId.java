@@ -59,6 +59,16 @@ public class SegmentId implements Comparable<SegmentId> {
      */
     private int gcGeneration = -1;
 
+    /**
+     * The full gc generation of this segment or -1 if unknown.
+     */
+    private int gcFullGeneration = -1;
+
+    /**
+     * Whether this segment has been written by compaction.
+     */
+    private boolean compacted;
+
     /**
      * The gc info of this segment if it has been reclaimed or {@code null} otherwise.
      */
@@ -161,6 +171,14 @@ public class SegmentId implements Comparable<SegmentId> {
         this.gcInfo = gcInfo;
     }
 
+    /**
+     * @return  {@code true} if the segment of this id is currently memoised,
+     *          in which case {@link #getSegment()} does not go to the store.
+     */
+    public boolean isLoaded() {
+        return segment != null;
+    }
+
     /**
      * This method should only be called from lower level caches to notify this instance that the
      * passed {@code segment} has been loaded and should be memoised.
@@ -170,6 +188,8 @@ public class SegmentId implements Comparable<SegmentId> {
      */
     void loaded(@Nonnull Segment segment) {
         this.segment = segment;
+        this.compacted = segment.isCompacted();
+        this.gcFullGeneration = segment.getGcFullGeneration();
         this.gcGeneration = segment.getGcGeneration();
     }
 
@@ -215,6 +235,40 @@ public class SegmentId implements Comparable<SegmentId> {
         return gcGeneration;
     }
 
+    /**
+     * Get the underlying segment's full gc generation. Might cause the segment to
+     * get loaded if the generation info is missing
+     * @return the segment's full gc generation
+     */
+    public int getGcFullGeneration() {
+        if (gcFullGeneration < 0) {
+            getSegment();
+        }
+        return gcFullGeneration;
+    }
+
+    /**
+     * Determine whether the underlying segment has been written by compaction.
+     * Might cause the segment to get loaded if the generation info is missing
+     * @return {@code true} iff the segment has been written by compaction
+     */
+    public boolean isCompacted() {
+        if (gcFullGeneration < 0) {
+            getSegment();
+        }
+        return compacted;
+    }
+
+    /**
+     * Get the underlying segment's gc generation, full gc generation and compacted
+     * flag. Might cause the segment to get loaded if the generation info is missing
+     * @return the segment's gc generation
+     */
+    @Nonnull
+    public GCGeneration getGCGeneration() {
+        return new GCGeneration(getGcGeneration(), getGcFullGeneration(), isCompacted());
+    }
+
     // --------------------------------------------------------< Comparable >--
 
     @Override
@@ -283,15 +283,19 @@ public class SegmentNodeStore implements NodeStore, Observable {
         checkNotNull(commitHook);
 
         try {
+            NodeState merged;
             commitSemaphore.acquire();
             try {
                 Commit commit = new Commit(snb, commitHook, info);
-                NodeState merged = commit.execute();
+                merged = commit.execute();
                 snb.reset(merged);
-                return merged;
             } finally {
                 commitSemaphore.release();
             }
+            // Wait outside of the commit lock such that concurrent
+            // commits can share the flush persisting them
+            revisions.awaitPersisted();
+            return merged;
         } catch (InterruptedException e) {
             currentThread().interrupt();
             throw new CommitFailedException(
@@ -24,8 +24,10 @@ import static org.apache.jackrabbit.oak.commons.PropertiesUtil.toBoolean;
 import static org.apache.jackrabbit.oak.commons.PropertiesUtil.toInteger;
 import static org.apache.jackrabbit.oak.commons.PropertiesUtil.toLong;
 import static org.apache.jackrabbit.oak.osgi.OsgiUtil.lookupConfigurationThenFramework;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.COMPACTION_THREADS_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.FORCE_TIMEOUT_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GAIN_THRESHOLD_DEFAULT;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GC_TYPE_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.PAUSE_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.RETRY_COUNT_DEFAULT;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.SIZE_DELTA_ESTIMATION_DEFAULT;
@@ -50,6 +52,7 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Property;
+import org.apache.felix.scr.annotations.PropertyOption;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.ReferencePolicy;
@@ -71,6 +74,7 @@ import org.apache.jackrabbit.oak.plugins.blob.datastore.SharedDataStoreUtils;
 import org.apache.jackrabbit.oak.plugins.blob.datastore.SharedDataStoreUtils.SharedStoreRecordType;
 import org.apache.jackrabbit.oak.plugins.identifier.ClusterRepositoryInfo;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentRevisionGC;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentRevisionGCMBean;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
@@ -78,6 +82,7 @@ import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
 import org.apache.jackrabbit.oak.segment.file.FileStoreGCMonitor;
 import org.apache.jackrabbit.oak.segment.file.FileStoreStatsMBean;
 import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.file.TarRevisions.Durability;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
 import org.apache.jackrabbit.oak.spi.commit.Observable;
@@ -144,6 +149,22 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     )
     public static final String SEGMENT_CACHE_SIZE = "segmentCache.size";
 
+    @Property(
+            boolValue = false,
+            label = "Off heap segment cache",
+            description = "Keep cached segments off heap and use a scan resistant replacement " +
+                    "policy for the segment cache"
+    )
+    public static final String SEGMENT_CACHE_OFF_HEAP = "segmentCache.offHeap";
+
+    @Property(
+            intValue = 0,
+            label = "Segment prefetch threads",
+            description = "Number of threads prefetching the segments referenced by segments " +
+                    "read from disk. 0 disables prefetching"
+    )
+    public static final String SEGMENT_PREFETCH_THREADS = "segmentCache.prefetchThreads";
+
     @Property(
             intValue = 256,
             label = "String cache size (MB)",
@@ -220,6 +241,41 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     )
     public static final String COMPACTION_SIZE_DELTA_ESTIMATION = "compaction.sizeDeltaEstimation";
 
+    @Property(
+            intValue = COMPACTION_THREADS_DEFAULT,
+            label = "Compaction Threads",
+            description = "Number of threads used by online compaction. With more than one thread " +
+                    "independent subtrees of the repository are compacted concurrently."
+    )
+    public static final String COMPACTION_THREADS = "compaction.threads";
+
+    @Property(
+            value = "FULL",
+            label = "Compaction Type",
+            description = "Type of online compaction. FULL compacts the whole repository into a new " +
+                    "generation. TAIL only compacts the changes since the last compaction and " +
+                    "reclaims the segments no longer referenced.",
+            options = {
+                    @PropertyOption(name = "FULL", value = "FULL"),
+                    @PropertyOption(name = "TAIL", value = "TAIL")
+            }
+    )
+    public static final String COMPACTION_GC_TYPE = "compaction.gcType";
+
+    @Property(
+            value = "TIMED",
+            label = "Commit Durability",
+            description = "Durability of commits. TIMED persists commits with a periodic background " +
+                    "flush. GROUPED and COMMIT let commits wait until they are synced to disk, where " +
+                    "GROUPED waits briefly for concurrent commits to share a single sync.",
+            options = {
+                    @PropertyOption(name = "TIMED", value = "TIMED"),
+                    @PropertyOption(name = "GROUPED", value = "GROUPED"),
+                    @PropertyOption(name = "COMMIT", value = "COMMIT")
+            }
+    )
+    public static final String DURABILITY = "durability";
+
     @Property(
             boolValue = false,
             label = "Standby Mode",
@@ -366,6 +422,8 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         // Build the FileStore
         FileStoreBuilder builder = fileStoreBuilder(getDirectory())
                 .withSegmentCacheSize(getSegmentCacheSize())
+                .withSegmentCacheOffHeap(toBoolean(property(SEGMENT_CACHE_OFF_HEAP), false))
+                .withSegmentPrefetchThreads(toInteger(property(SEGMENT_PREFETCH_THREADS), 0))
                 .withStringCacheSize(getStringCacheSize())
                 .withTemplateCacheSize(getTemplateCacheSize())
                 .withStringDeduplicationCacheSize(getStringDeduplicationCacheSize())
@@ -377,6 +435,11 @@ public class SegmentNodeStoreService extends ProxyNodeStore
                 .withStatisticsProvider(statisticsProvider)
                 .withGCOptions(gcOptions);
 
+        String durability = property(DURABILITY);
+        if (durability != null) {
+            builder.withDurability(Durability.valueOf(durability));
+        }
+
         if (customBlobStore) {
             log.info("Initializing SegmentNodeStore with BlobStore [{}]", blobStore);
             builder.withBlobStore(blobStore);
@@ -400,6 +463,15 @@ public class SegmentNodeStoreService extends ProxyNodeStore
                 segmentCacheStats.getName()
         ));
 
+        CacheStatsMBean segmentScanCacheStats = store.getSegmentScanCacheStats();
+        registrations.add(registerMBean(
+                whiteboard,
+                CacheStatsMBean.class,
+                segmentScanCacheStats,
+                CacheStats.TYPE,
+                segmentScanCacheStats.getName()
+        ));
+
         // Expose stats about the string and template caches
 
         CacheStatsMBean stringCacheStats = store.getStringCacheStats();
@@ -589,9 +661,13 @@ public class SegmentNodeStoreService extends ProxyNodeStore
 
         byte gainThreshold = getGainThreshold();
         long sizeDeltaEstimation = toLong(property(COMPACTION_SIZE_DELTA_ESTIMATION), SIZE_DELTA_ESTIMATION_DEFAULT);
+        int compactionThreads = toInteger(property(COMPACTION_THREADS), COMPACTION_THREADS_DEFAULT);
+        String gcType = property(COMPACTION_GC_TYPE);
 
         return new SegmentGCOptions(pauseCompaction, gainThreshold, retryCount, forceTimeout)
-                .setGcSizeDeltaEstimation(sizeDeltaEstimation);
+                .setGcSizeDeltaEstimation(sizeDeltaEstimation)
+                .setCompactionThreads(compactionThreads)
+                .setGCType(gcType == null ? GC_TYPE_DEFAULT : GCType.valueOf(gcType));
     }
 
     private void unregisterNodeStore() {
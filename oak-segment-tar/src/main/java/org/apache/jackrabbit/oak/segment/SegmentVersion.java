@@ -32,6 +32,8 @@ import com.google.common.primitives.UnsignedBytes;
  * <li>10 = all Oak versions previous to 11</li>
  * <li>11 = all Oak versions starting from 1.0.12, 1.1.7 and 1.2</li>
  * <li>12 = all oak-segment-tar versions</li>
+ * <li>13 = oak-segment-tar versions recording the full gc generation and the
+ *          compacted flag in the segment header</li>
  * </ul>
  */
 public enum SegmentVersion {
@@ -48,7 +50,15 @@ public enum SegmentVersion {
     @Deprecated
     V_11((byte) 11),
 
-    V_12((byte) 12);
+    V_12((byte) 12),
+
+    /**
+     * Segments of this version record their full gc generation and whether
+     * they have been written by compaction. Older versions of oak-segment-tar
+     * reject them as they would reclaim compacted segments still referenced by
+     * tail compacted states.
+     */
+    V_13((byte) 13);
 
     /**
      * Latest segment version
@@ -76,7 +86,9 @@ public enum SegmentVersion {
     }
 
     public static SegmentVersion fromByte(byte v) {
-        if (v == V_12.version) {
+        if (v == V_13.version) {
+            return V_13;
+        } else if (v == V_12.version) {
             return V_12;
         } else if (v == V_11.version) {
             return V_11;
@@ -88,7 +100,7 @@ public enum SegmentVersion {
     }
 
     public static boolean isValid(byte v) {
-        return v == V_12.version;
+        return v == V_12.version || v == V_13.version;
     }
 
     public static boolean isValid(SegmentVersion version) {
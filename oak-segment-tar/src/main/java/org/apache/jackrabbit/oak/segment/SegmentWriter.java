@@ -1216,9 +1216,7 @@ public class SegmentWriter {
 
         private boolean isOldGeneration(RecordId id) {
             try {
-                int thatGen = id.getSegmentId().getGcGeneration();
-                int thisGen = writer.getGeneration();
-                return thatGen < thisGen;
+                return writer.isOldGeneration(id.getSegmentId());
             } catch (SegmentNotFoundException snfe) {
                 // This SNFE means a defer compacted node state is too far
                 // in the past. It has been gc'ed already and cannot be
@@ -23,6 +23,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import javax.annotation.Nonnull;
 
+import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager.Empty;
@@ -50,14 +51,23 @@ import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
  */
 public final class SegmentWriterBuilder {
 
+    /**
+     * Whether {@link #withWriterPool()} uses a {@link ThreadAffineSegmentBufferWriterPool}
+     * instead of a {@link SegmentBufferWriterPool}.
+     */
+    private static final boolean THREAD_AFFINE_POOL_DEFAULT =
+            Boolean.getBoolean("oak.segment.writerPool.threadAffine");
+
     @Nonnull
     private final String name;
 
     @Nonnull
-    private Supplier<Integer> generation = Suppliers.ofInstance(0);
+    private Supplier<GCGeneration> generation = Suppliers.ofInstance(new GCGeneration(0, 0, false));
 
     private boolean pooled = false;
 
+    private boolean threadAffine = THREAD_AFFINE_POOL_DEFAULT;
+
     @Nonnull
     private WriterCacheManager cacheManager = new WriterCacheManager.Default();
 
@@ -85,7 +95,12 @@ public final class SegmentWriterBuilder {
      */
     @Nonnull
     public SegmentWriterBuilder withGeneration(@Nonnull Supplier<Integer> generation) {
-        this.generation = checkNotNull(generation);
+        this.generation = Suppliers.compose(new Function<Integer, GCGeneration>() {
+            @Override
+            public GCGeneration apply(Integer gen) {
+                return new GCGeneration(gen, 0, false);
+            }
+        }, checkNotNull(generation));
         return this;
     }
 
@@ -95,13 +110,27 @@ public final class SegmentWriterBuilder {
      */
     @Nonnull
     public SegmentWriterBuilder withGeneration(int generation) {
-        this.generation = Suppliers.ofInstance(generation);
+        this.generation = Suppliers.ofInstance(new GCGeneration(generation, 0, false));
+        return this;
+    }
+
+    /**
+     * Specify the {@code generation} including the full generation and the
+     * compacted flag for the segments written by the returned segment writer.
+     * Otherwise behaves like {@link #withGeneration(Supplier)}.
+     */
+    @Nonnull
+    public SegmentWriterBuilder withGCGeneration(@Nonnull Supplier<GCGeneration> generation) {
+        this.generation = checkNotNull(generation);
         return this;
     }
 
     /**
      * Create a {@code SegmentWriter} backed by a {@link SegmentBufferWriterPool}.
      * The returned instance is thread safe.
+     * <p>
+     * A {@link ThreadAffineSegmentBufferWriterPool} is used instead if the
+     * {@code oak.segment.writerPool.threadAffine} system property is set.
      */
     @Nonnull
     public SegmentWriterBuilder withWriterPool() {
@@ -109,6 +138,17 @@ public final class SegmentWriterBuilder {
         return this;
     }
 
+    /**
+     * Create a {@code SegmentWriter} backed by a {@link ThreadAffineSegmentBufferWriterPool}.
+     * The returned instance is thread safe.
+     */
+    @Nonnull
+    public SegmentWriterBuilder withThreadAffineWriterPool() {
+        this.pooled = true;
+        this.threadAffine = true;
+        return this;
+    }
+
     /**
      * Create a {@code SegmentWriter} backed by a {@link SegmentBufferWriter}.
      * The returned instance is <em>not</em> thread safe.
@@ -182,7 +222,15 @@ public final class SegmentWriterBuilder {
 
     @Nonnull
     private WriteOperationHandler createWriter(@Nonnull FileStore store, boolean pooled) {
-        if (pooled) {
+        if (pooled && threadAffine) {
+            return new ThreadAffineSegmentBufferWriterPool(
+                    store,
+                    store.getTracker(),
+                    store.getReader(),
+                    name,
+                    generation
+            );
+        } else if (pooled) {
             return new SegmentBufferWriterPool(
                     store,
                     store.getTracker(),
@@ -203,7 +251,15 @@ public final class SegmentWriterBuilder {
 
     @Nonnull
     private WriteOperationHandler createWriter(@Nonnull MemoryStore store, boolean pooled) {
-        if (pooled) {
+        if (pooled && threadAffine) {
+            return new ThreadAffineSegmentBufferWriterPool(
+                    store,
+                    store.getTracker(),
+                    store.getReader(),
+                    name,
+                    generation
+            );
+        } else if (pooled) {
             return new SegmentBufferWriterPool(
                     store,
                     store.getTracker(),
@@ -224,7 +280,15 @@ public final class SegmentWriterBuilder {
 
     @Nonnull
     private WriteOperationHandler createWriter(@Nonnull HttpStore store, boolean pooled) {
-        if (pooled) {
+        if (pooled && threadAffine) {
+            return new ThreadAffineSegmentBufferWriterPool(
+                    store,
+                    store.getTracker(),
+                    store.getReader(),
+                    name,
+                    generation
+            );
+        } else if (pooled) {
             return new SegmentBufferWriterPool(
                     store,
                     store.getTracker(),
@@ -0,0 +1,292 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.lang.Thread.currentThread;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Supplier;
+
+/**
+ * This {@link WriteOperationHandler} uses a {@link SegmentBufferWriter} per
+ * thread, which it passes to its {@link #execute(WriteOperation) execute}
+ * method.
+ * <p>
+ * In contrast to {@link SegmentBufferWriterPool} no lock is acquired for
+ * executing a write operation. Each thread owns a slot holding its current
+ * writer and a counter of the write operations it started and completed.
+ * {@link #flush()} retires the writers by taking them out of the slots and
+ * then waits for the write operations in progress on the retired writers
+ * to complete before flushing them. The next write operation of a thread
+ * whose writer was retired uses a fresh writer.
+ * <p>
+ * Instances of this class are thread safe. See also the class comment of
+ * {@link SegmentWriter}.
+ */
+public class ThreadAffineSegmentBufferWriterPool implements WriteOperationHandler {
+
+    /**
+     * Time in nanoseconds {@link #flush()} parks while waiting for a write
+     * operation to complete.
+     */
+    private static final long FLUSH_WAIT_NANOS = 10000;
+
+    /**
+     * The slots of all threads that executed a write operation on this pool.
+     * Slots of threads that died are removed on {@link #flush()}.
+     */
+    private final Queue<Slot> slots = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Writers replaced because of a change of the gc generation that have
+     * not yet been flushed.
+     */
+    private final Queue<SegmentBufferWriter> disposed = new ConcurrentLinkedQueue<>();
+
+    private final ThreadLocal<Slot> slot = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            Slot slot = new Slot(currentThread());
+            slots.add(slot);
+            return slot;
+        }
+    };
+
+    @Nonnull
+    private final SegmentStore store;
+
+    @Nonnull
+    private final SegmentTracker tracker;
+
+    @Nonnull
+    private final SegmentReader reader;
+
+    @Nonnull
+    private final Supplier<GCGeneration> gcGeneration;
+
+    @Nonnull
+    private final String wid;
+
+    private final AtomicInteger writerId = new AtomicInteger(-1);
+
+    public ThreadAffineSegmentBufferWriterPool(
+            @Nonnull SegmentStore store,
+            @Nonnull SegmentTracker tracker,
+            @Nonnull SegmentReader reader,
+            @Nonnull String wid,
+            @Nonnull Supplier<GCGeneration> gcGeneration) {
+        this.store = checkNotNull(store);
+        this.tracker = checkNotNull(tracker);
+        this.reader = checkNotNull(reader);
+        this.wid = checkNotNull(wid);
+        this.gcGeneration = checkNotNull(gcGeneration);
+    }
+
+    @Override
+    public RecordId execute(WriteOperation writeOperation) throws IOException {
+        Slot slot = this.slot.get();
+        if (slot.inProgress()) {
+            // Nested write operation: keep using the writer of the
+            // enclosing operation, which cannot be flushed before the
+            // enclosing operation completes.
+            return writeOperation.execute(slot.current);
+        }
+
+        slot.begin();
+        try {
+            slot.current = getWriter(slot);
+            return writeOperation.execute(slot.current);
+        } finally {
+            slot.current = null;
+            slot.end();
+        }
+    }
+
+    /**
+     * Get the current writer of the passed {@code slot} creating a new one
+     * if the writer was retired or belongs to an outdated gc generation.
+     * Must only be called from the thread owning {@code slot}.
+     */
+    @Nonnull
+    private SegmentBufferWriter getWriter(Slot slot) {
+        SegmentBufferWriter writer = slot.writer.get();
+        GCGeneration generation = gcGeneration.get();
+        if (writer != null && writer.getGCGeneration().equals(generation)) {
+            return writer;
+        }
+
+        SegmentBufferWriter newWriter = new SegmentBufferWriter(
+                store,
+                tracker,
+                reader,
+                getWriterId(wid),
+                generation
+        );
+        if (writer == null) {
+            slot.writer.set(newWriter);
+        } else {
+            // Dispose the outdated writer before replacing it such that a
+            // concurrent flush always finds it in one of both places
+            disposed.add(writer);
+            if (!slot.writer.compareAndSet(writer, newWriter)) {
+                // The writer was retired by a concurrent flush
+                disposed.remove(writer);
+                slot.writer.set(newWriter);
+            }
+        }
+        return newWriter;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        List<SegmentBufferWriter> toFlush = newArrayList();
+
+        // Retire the current writers and wait for the write operations
+        // that might still use them to complete.
+        Iterator<Slot> iterator = slots.iterator();
+        while (iterator.hasNext()) {
+            Slot slot = iterator.next();
+            SegmentBufferWriter writer = slot.writer.getAndSet(null);
+            if (writer != null) {
+                if (!awaitCompletion(slot)) {
+                    // Interrupted: return the writer so it will be flushed later.
+                    // If the owner already installed a new writer, it completed
+                    // the write operation using the retired one. Dispose the writer
+                    // first such that a concurrent flush always finds it.
+                    disposed.add(writer);
+                    if (slot.writer.compareAndSet(null, writer)) {
+                        disposed.remove(writer);
+                    }
+                    break;
+                }
+                toFlush.add(writer);
+            }
+            if (slot.isDead() && slot.writer.get() == null) {
+                iterator.remove();
+            }
+        }
+
+        // Writers disposed after the retiring loop are flushed by the next
+        // call to flush
+        SegmentBufferWriter writer = disposed.poll();
+        while (writer != null) {
+            toFlush.add(writer);
+            writer = disposed.poll();
+        }
+
+        for (SegmentBufferWriter w : toFlush) {
+            w.flush();
+        }
+    }
+
+    /**
+     * Wait for the write operation of {@code slot} in progress, if any.
+     * @return {@code false} if interrupted while waiting, {@code true} otherwise.
+     */
+    private static boolean awaitCompletion(Slot slot) {
+        long ops = slot.ops;
+        while (isInProgress(ops) && slot.ops == ops) {
+            LockSupport.parkNanos(FLUSH_WAIT_NANOS);
+            if (Thread.interrupted()) {
+                currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInProgress(long ops) {
+        return (ops & 1) != 0;
+    }
+
+    private String getWriterId(String wid) {
+        int id = writerId.incrementAndGet() % 10000;
+        // Manual padding seems to be fastest here
+        if (id < 10) {
+            return wid + ".000" + id;
+        } else if (id < 100) {
+            return wid + ".00" + id;
+        } else if (id < 1000) {
+            return wid + ".0" + id;
+        } else {
+            return wid + "." + id;
+        }
+    }
+
+    /**
+     * The writer of a single thread together with a counter of the write
+     * operations of that thread. The counter is odd while a write operation
+     * is in progress. Only the owning thread increments it, such that it
+     * can be waited for without acquiring a lock.
+     */
+    private static class Slot {
+        @Nonnull
+        private final WeakReference<Thread> owner;
+
+        @Nonnull
+        final AtomicReference<SegmentBufferWriter> writer = new AtomicReference<>();
+
+        /**
+         * The writer used by the write operation in progress. Only accessed
+         * by the owning thread.
+         */
+        SegmentBufferWriter current;
+
+        volatile long ops;
+
+        Slot(@Nonnull Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean inProgress() {
+            return isInProgress(ops);
+        }
+
+        @SuppressWarnings("NonAtomicOperationOnVolatileField")
+        void begin() {
+            // Written before reading the writer, such that a concurrent
+            // flush retiring the writer sees this operation in progress.
+            ops++;
+        }
+
+        @SuppressWarnings("NonAtomicOperationOnVolatileField")
+        void end() {
+            ops++;
+        }
+
+        boolean isDead() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+}
@@ -123,6 +123,13 @@ public abstract class WriterCacheManager {
     @CheckForNull
     public String getNodeCacheOccupancyInfo() { return null; }
 
+    /**
+     * Remove all cached records of the given {@code generation}. This
+     * implementation does nothing.
+     * @param generation
+     */
+    public void evictGeneration(int generation) { }
+
     /**
      * This implementation of {@link WriterCacheManager} returns empty caches
      * of size 0.
@@ -359,6 +366,16 @@ public abstract class WriterCacheManager {
             return nodeCache.get().toString();
         }
 
+        @Override
+        public void evictGeneration(final int generation) {
+            evictCaches(new Predicate<Integer>() {
+                @Override
+                public boolean apply(Integer cacheGeneration) {
+                    return cacheGeneration == generation;
+                }
+            });
+        }
+
         /**
          * Remove all cache generations matching the passed {@code generations} predicate.
          * @param generations
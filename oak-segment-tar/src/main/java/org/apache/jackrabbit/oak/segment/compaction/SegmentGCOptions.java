@@ -20,12 +20,35 @@
 package org.apache.jackrabbit.oak.segment.compaction;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.Nonnull;
 
 /**
  * This class holds configuration options for segment store revision gc.
  */
 public class SegmentGCOptions {
 
+    /**
+     * The type of compaction run by revision gc.
+     */
+    public enum GCType {
+
+        /**
+         * Compact the whole head state into a new generation.
+         */
+        FULL,
+
+        /**
+         * Compact only the changes since the last compaction on top of the
+         * root compacted by that compaction into a new generation. The rest
+         * of the compacted state is referenced as is. Its segments are retained
+         * until the last full compaction it stems from is older than the
+         * retained generations.
+         */
+        TAIL
+    }
+
     /**
      * Default value for {@link #isPaused()}
      */
@@ -56,6 +79,16 @@ public class SegmentGCOptions {
      */
     public static final long SIZE_DELTA_ESTIMATION_DEFAULT = -1;
 
+    /**
+     * Default value for {@link #getCompactionThreads()}
+     */
+    public static final int COMPACTION_THREADS_DEFAULT = 1;
+
+    /**
+     * Default value for {@link #getGCType()}
+     */
+    public static final GCType GC_TYPE_DEFAULT = GCType.FULL;
+
     private boolean paused = PAUSE_DEFAULT;
 
     private int gainThreshold = GAIN_THRESHOLD_DEFAULT;
@@ -79,6 +112,14 @@ public class SegmentGCOptions {
             "oak.segment.compaction.gcSizeDeltaEstimation",
             SIZE_DELTA_ESTIMATION_DEFAULT);
 
+    private int compactionThreads = Integer.getInteger(
+            "oak.segment.compaction.threads",
+            COMPACTION_THREADS_DEFAULT);
+
+    private GCType gcType = GCType.valueOf(System.getProperty(
+            "oak.segment.compaction.gcType",
+            GC_TYPE_DEFAULT.name()));
+
     public SegmentGCOptions(boolean paused, int gainThreshold, int retryCount, int forceTimeout) {
         this.paused = paused;
         this.gainThreshold = gainThreshold;
@@ -217,7 +258,9 @@ public class SegmentGCOptions {
                     ", retryCount=" + retryCount +
                     ", forceTimeout=" + forceTimeout +
                     ", retainedGenerations=" + retainedGenerations +
-                    ", gcSizeDeltaEstimation=" + gcSizeDeltaEstimation + "}";
+                    ", gcSizeDeltaEstimation=" + gcSizeDeltaEstimation +
+                    ", compactionThreads=" + compactionThreads +
+                    ", gcType=" + gcType + "}";
         }
     }
 
@@ -294,4 +337,46 @@ public class SegmentGCOptions {
         return this;
     }
 
+    /**
+     * Number of threads used by online compaction. With more than one thread
+     * independent subtrees are compacted concurrently.
+     * @return  number of compaction threads
+     */
+    public int getCompactionThreads() {
+        return compactionThreads;
+    }
+
+    /**
+     * Set the number of threads used by online compaction.
+     * @param compactionThreads  number of compaction threads. Must be at least 1.
+     * @return this instance
+     */
+    public SegmentGCOptions setCompactionThreads(int compactionThreads) {
+        checkArgument(compactionThreads > 0,
+                "CompactionThreads must be at least 1. Got %s", compactionThreads);
+        this.compactionThreads = compactionThreads;
+        return this;
+    }
+
+    /**
+     * Type of compaction run by online revision gc. Offline compaction always
+     * runs a full compaction.
+     * @return  the compaction type
+     */
+    public GCType getGCType() {
+        return gcType;
+    }
+
+    /**
+     * Set the type of compaction run by online revision gc. Tail compaction
+     * falls back to full compaction when the root compacted by the last
+     * compaction is not available.
+     * @param gcType  the compaction type
+     * @return this instance
+     */
+    public SegmentGCOptions setGCType(@Nonnull GCType gcType) {
+        this.gcType = checkNotNull(gcType);
+        return this;
+    }
+
 }
@@ -39,6 +39,7 @@ import javax.annotation.Nonnull;
 
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.segment.CachingSegmentReader;
+import org.apache.jackrabbit.oak.segment.OffHeapSegmentCache;
 import org.apache.jackrabbit.oak.segment.RecordType;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.Segment;
@@ -77,8 +78,18 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
      * The store version is an always incrementing number, strictly greater than
      * zero, that is changed every time there is a backwards incompatible
      * modification to the format of the segment store.
+     * <p>
+     * Version 2 stores segments of {@link org.apache.jackrabbit.oak.segment.SegmentVersion#V_13},
+     * which record the full gc generation needed to clean up after tail compaction.
      */
-    static final int CURRENT_STORE_VERSION = 1;
+    static final int CURRENT_STORE_VERSION = 2;
+
+    /**
+     * The lowest store version this implementation can open. Stores of a lower
+     * version than {@link #CURRENT_STORE_VERSION} are upgraded when opened for
+     * writing. Older implementations reject upgraded stores.
+     */
+    static final int MIN_STORE_VERSION = 1;
 
     private static final Pattern FILE_NAME_PATTERN =
             Pattern.compile("(data|bulk)((0|[1-9][0-9]*)[0-9]{4})([a-z])?.tar");
@@ -124,7 +135,9 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         this.directory = builder.getDirectory();
         this.tracker = new SegmentTracker();
         this.blobStore = builder.getBlobStore();
-        this.segmentCache = new SegmentCache(builder.getSegmentCacheSize());
+        this.segmentCache = builder.getSegmentCacheOffHeap()
+                ? new OffHeapSegmentCache(builder.getSegmentCacheSize())
+                : new SegmentCache(builder.getSegmentCacheSize());
         this.segmentReader = new CachingSegmentReader(new Supplier<SegmentWriter>() {
             @Override
             public SegmentWriter get() {
@@ -163,7 +176,7 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
             throw new IllegalStateException("Invalid store version");
         }
 
-        if (storeVersion < CURRENT_STORE_VERSION) {
+        if (storeVersion < MIN_STORE_VERSION) {
             throw new InvalidFileStoreVersionException("Using a too recent version of oak-segment-tar");
         }
 
@@ -179,6 +192,11 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return segmentCache.getCacheStats();
     }
 
+    @Nonnull
+    public CacheStatsMBean getSegmentScanCacheStats() {
+        return segmentCache.getScanCacheStats();
+    }
+
     @Nonnull
     public CacheStatsMBean getStringCacheStats() {
         return segmentReader.getStringCacheStats();
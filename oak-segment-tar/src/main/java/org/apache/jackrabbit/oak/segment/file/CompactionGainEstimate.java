@@ -39,7 +39,7 @@ import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 
 class CompactionGainEstimate implements TarEntryVisitor, GCEstimation {
 
-    private static final Funnel<UUID> UUID_FUNNEL = new Funnel<UUID>() {
+    static final Funnel<UUID> UUID_FUNNEL = new Funnel<UUID>() {
         @Override
         public void funnel(UUID from, PrimitiveSink into) {
             into.putLong(from.getMostSignificantBits());
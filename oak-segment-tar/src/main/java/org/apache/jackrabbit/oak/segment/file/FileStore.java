@@ -34,6 +34,7 @@ import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
 import static org.apache.jackrabbit.oak.segment.SegmentWriterBuilder.segmentWriterBuilder;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType.TAIL;
 import static org.apache.jackrabbit.oak.segment.file.GCListener.Status.FAILURE;
 import static org.apache.jackrabbit.oak.segment.file.GCListener.Status.SUCCESS;
 import static org.apache.jackrabbit.oak.segment.file.TarRevisions.EXPEDITE_OPTION;
@@ -75,6 +76,8 @@ import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
 import org.apache.jackrabbit.oak.segment.Compactor;
+import org.apache.jackrabbit.oak.segment.GCGeneration;
+import org.apache.jackrabbit.oak.segment.ParallelCompactor;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.RecordType;
 import org.apache.jackrabbit.oak.segment.Segment;
@@ -86,8 +89,10 @@ import org.apache.jackrabbit.oak.segment.SegmentIdTable;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
 import org.apache.jackrabbit.oak.segment.SegmentWriter;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager.Default;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.file.GCJournal.GCJournalEntry;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -113,6 +118,12 @@ public class FileStore extends AbstractFileStore {
     @Nonnull
     private final SegmentWriter segmentWriter;
 
+    /**
+     * The de-duplication caches of {@link #segmentWriter}.
+     */
+    @Nonnull
+    private final WriterCacheManager cacheManager;
+
     private final int maxFileSize;
 
     @Nonnull
@@ -120,6 +131,19 @@ public class FileStore extends AbstractFileStore {
 
     private volatile List<TarReader> readers;
 
+    /**
+     * Index from segment ids to the {@link #readers} containing them. Updated
+     * while holding the write lock of {@link #fileStoreLock}.
+     */
+    private final SegmentIndex segmentIndex = new SegmentIndex();
+
+    /**
+     * Prefetcher for the segments referenced by segments loaded from disk or
+     * {@code null} if prefetching is disabled.
+     */
+    @CheckForNull
+    private final SegmentPrefetcher prefetcher;
+
     private volatile TarWriter tarWriter;
 
     private final RandomAccessFile lockFile;
@@ -166,25 +190,47 @@ public class FileStore extends AbstractFileStore {
                     + " is in use by another store.", ex);
         }
 
+        this.cacheManager = builder.getCacheManager();
         this.segmentWriter = segmentWriterBuilder("sys")
-                .withGeneration(new Supplier<Integer>() {
+                .withGCGeneration(new Supplier<GCGeneration>() {
                     @Override
-                    public Integer get() {
-                        return getGcGeneration();
+                    public GCGeneration get() {
+                        return getGCGeneration().nonGC();
                     }
                 })
                 .withWriterPool()
-                .with(builder.getCacheManager())
+                .with(cacheManager)
                 .build(this);
         this.maxFileSize = builder.getMaxFileSize() * MB;
         this.garbageCollector = new GarbageCollector(builder.getGcOptions(), builder.getGcListener(), new GCJournal(directory));
 
+        int prefetchThreads = builder.getSegmentPrefetchThreads();
+        if (prefetchThreads > 0) {
+            this.prefetcher = new SegmentPrefetcher(this,
+                    new Function<SegmentId, Segment>() {
+                        @Override
+                        public Segment apply(SegmentId id) {
+                            return loadSegment(id);
+                        }
+                    },
+                    prefetchThreads, SegmentPrefetcher.DEFAULT_MAX_DEPTH,
+                    builder.getSegmentCacheSize() * (long) MB / 16);
+        } else {
+            this.prefetcher = null;
+        }
+
         Map<Integer, Map<Character, File>> map = collectFiles(directory);
 
         Manifest manifest = Manifest.empty();
 
         if (map.size() > 0) {
             manifest = checkManifest(openManifest());
+            int storeVersion = manifest.getStoreVersion(CURRENT_STORE_VERSION);
+            if (storeVersion < CURRENT_STORE_VERSION) {
+                log.info("Upgrading TarMK at {} from store version {} to {}. " +
+                        "Older versions of oak-segment-tar can no longer open it.",
+                        directory, storeVersion, CURRENT_STORE_VERSION);
+            }
         }
 
         saveManifest(manifest);
@@ -195,6 +241,7 @@ public class FileStore extends AbstractFileStore {
         for (int i = indices.length - 1; i >= 0; i--) {
             readers.add(TarReader.open(map.get(indices[i]), memoryMapping, recovery));
         }
+        segmentIndex.rebuild(readers);
         this.stats = new FileStoreStats(builder.getStatsProvider(), this, size());
 
         int writeNumber = 0;
@@ -240,7 +287,7 @@ public class FileStore extends AbstractFileStore {
 
     FileStore bind(TarRevisions revisions) throws IOException {
         this.revisions = revisions;
-        this.revisions.bind(this, initialNode());
+        this.revisions.bind(this, initialNode(), persisted(), stats);
         return this;
     }
 
@@ -274,6 +321,11 @@ public class FileStore extends AbstractFileStore {
         return revisions.getHead().getSegmentId().getGcGeneration();
     }
 
+    @Nonnull
+    private GCGeneration getGCGeneration() {
+        return revisions.getHead().getSegmentId().getGCGeneration();
+    }
+
     @CheckForNull
     public CacheStatsMBean getStringDeduplicationCacheStats() {
         return segmentWriter.getStringCacheStats();
@@ -367,7 +419,16 @@ public class FileStore extends AbstractFileStore {
         if (revisions == null) {
             return;
         }
-        revisions.flush(new Callable<Void>() {
+        revisions.flush(persisted());
+    }
+
+    /**
+     * @return  call back flushing pending segments to disk before their
+     *          head is written to the journal.
+     */
+    @Nonnull
+    private Callable<Void> persisted() {
+        return new Callable<Void>() {
             @Override
             public Void call() throws Exception {
                 segmentWriter.flush();
@@ -376,7 +437,7 @@ public class FileStore extends AbstractFileStore {
 
                 return null;
             }
-        });
+        };
     }
 
     /**
@@ -460,6 +521,9 @@ public class FileStore extends AbstractFileStore {
         // avoid deadlocks by closing (and joining) the background
         // thread before acquiring the synchronization lock
         fileStoreScheduler.close();
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
 
         try {
             flush();
@@ -470,6 +534,7 @@ public class FileStore extends AbstractFileStore {
 
                 List<TarReader> list = readers;
                 readers = newArrayList();
+                segmentIndex.clear();
                 for (TarReader reader : list) {
                     closeAndLogOnFail(reader);
                 }
@@ -501,6 +566,11 @@ public class FileStore extends AbstractFileStore {
     }
 
     private boolean containsSegment(long msb, long lsb) {
+        SegmentIndex.Entry entry = segmentIndex.get(msb, lsb);
+        if (entry != null && !entry.getReader().isClosed()) {
+            return true;
+        }
+
         for (TarReader reader : readers) {
             if (reader.containsEntry(msb, lsb)) {
                 return true;
@@ -536,64 +606,15 @@ public class FileStore extends AbstractFileStore {
             return segmentCache.getSegment(id, new Callable<Segment>() {
                 @Override
                 public Segment call() throws Exception {
-                    long msb = id.getMostSignificantBits();
-                    long lsb = id.getLeastSignificantBits();
-
-                    for (TarReader reader : readers) {
-                        try {
-                            if (reader.isClosed()) {
-                                // Cleanup might already have closed the file.
-                                // The segment should be available from another file.
-                                log.debug("Skipping closed tar file {}", reader);
-                                continue;
-                            }
-
-                            ByteBuffer buffer = reader.readEntry(msb, lsb);
-                            if (buffer != null) {
-                                return new Segment(FileStore.this, segmentReader, id, buffer);
-                            }
-                        } catch (IOException e) {
-                            log.warn("Failed to read from tar file {}", reader, e);
-                        }
+                    if (prefetcher == null) {
+                        return loadSegment(id);
                     }
-
-                    if (tarWriter != null) {
-                        fileStoreLock.readLock().lock();
-                        try {
-                            try {
-                                ByteBuffer buffer = tarWriter.readEntry(msb, lsb);
-                                if (buffer != null) {
-                                    return new Segment(FileStore.this, segmentReader, id, buffer);
-                                }
-                            } catch (IOException e) {
-                                log.warn("Failed to read from tar file {}", tarWriter, e);
-                            }
-                        } finally {
-                            fileStoreLock.readLock().unlock();
-                        }
+                    Segment segment = prefetcher.take(id);
+                    if (segment == null) {
+                        segment = loadSegment(id);
                     }
-
-                    // the writer might have switched to a new file,
-                    // so we need to re-check the readers
-                    for (TarReader reader : readers) {
-                        try {
-                            if (reader.isClosed()) {
-                                // Cleanup might already have closed the file.
-                                // The segment should be available from another file.
-                                log.info("Skipping closed tar file {}", reader);
-                                continue;
-                            }
-
-                            ByteBuffer buffer = reader.readEntry(msb, lsb);
-                            if (buffer != null) {
-                                return new Segment(FileStore.this, segmentReader, id, buffer);
-                            }
-                        } catch (IOException e) {
-                            log.warn("Failed to read from tar file {}", reader, e);
-                        }
-                    }
-
-                    throw new SegmentNotFoundException(id);
+                    prefetcher.prefetch(segment);
+                    return segment;
                 }
             });
         } catch (ExecutionException e) {
@@ -603,6 +624,125 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    /**
+     * Load a segment from the tar files, bypassing the segment cache.
+     *
+     * @throws SegmentNotFoundException if no tar file contains the segment
+     */
+    @Nonnull
+    private Segment loadSegment(SegmentId id) {
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+
+        ByteBuffer indexed = readIndexedEntry(msb, lsb);
+        if (indexed != null) {
+            return new Segment(this, segmentReader, id, indexed);
+        }
+
+        for (TarReader reader : readers) {
+            try {
+                if (reader.isClosed()) {
+                    // Cleanup might already have closed the file.
+                    // The segment should be available from another file.
+                    log.debug("Skipping closed tar file {}", reader);
+                    continue;
+                }
+
+                ByteBuffer buffer = reader.readEntry(msb, lsb);
+                if (buffer != null) {
+                    return new Segment(this, segmentReader, id, buffer);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read from tar file {}", reader, e);
+            }
+        }
+
+        if (tarWriter != null) {
+            fileStoreLock.readLock().lock();
+            try {
+                try {
+                    ByteBuffer buffer = tarWriter.readEntry(msb, lsb);
+                    if (buffer != null) {
+                        return new Segment(this, segmentReader, id, buffer);
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to read from tar file {}", tarWriter, e);
+                }
+            } finally {
+                fileStoreLock.readLock().unlock();
+            }
+        }
+
+        // the writer might have switched to a new file,
+        // so we need to re-check the readers
+        for (TarReader reader : readers) {
+            try {
+                if (reader.isClosed()) {
+                    // Cleanup might already have closed the file.
+                    // The segment should be available from another file.
+                    log.info("Skipping closed tar file {}", reader);
+                    continue;
+                }
+
+                ByteBuffer buffer = reader.readEntry(msb, lsb);
+                if (buffer != null) {
+                    return new Segment(this, segmentReader, id, buffer);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read from tar file {}", reader, e);
+            }
+        }
+
+        throw new SegmentNotFoundException(id);
+    }
+
+    /**
+     * Read a segment through the {@link #segmentIndex}.
+     *
+     * @return the byte buffer of the segment or {@code null} if the index
+     *          does not point to an open tar file containing the segment.
+     */
+    @CheckForNull
+    private ByteBuffer readIndexedEntry(long msb, long lsb) {
+        long start = System.nanoTime();
+        SegmentIndex.Entry entry = segmentIndex.get(msb, lsb);
+        stats.segmentIndexLookup(System.nanoTime() - start, entry != null);
+        if (entry == null) {
+            return null;
+        }
+        TarReader reader = entry.getReader();
+        try {
+            if (!reader.isClosed()) {
+                return reader.readEntry(msb, lsb, entry.getPosition());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to read from tar file {}", reader, e);
+        }
+        return null;
+    }
+
+    /**
+     * @return the segment prefetcher or {@code null} if prefetching is disabled.
+     */
+    @CheckForNull
+    SegmentPrefetcher getSegmentPrefetcher() {
+        return prefetcher;
+    }
+
+    /**
+     * @return the number of segments in the segment index.
+     */
+    int getSegmentIndexSize() {
+        return segmentIndex.size();
+    }
+
+    /**
+     * @return the estimated memory used by the segment index in bytes.
+     */
+    long getSegmentIndexMemory() {
+        return segmentIndex.estimateMemoryUsage();
+    }
+
     @Override
     public void writeSegment(SegmentId id, byte[] buffer, int offset, int length) throws IOException {
         Segment segment = null;
@@ -673,10 +813,12 @@ public class FileStore extends AbstractFileStore {
         TarWriter newWriter = tarWriter.createNextGeneration();
         if (newWriter != tarWriter) {
             File writeFile = tarWriter.getFile();
+            TarReader reader = TarReader.open(writeFile, memoryMapping);
             List<TarReader> list =
                     newArrayListWithCapacity(1 + readers.size());
-            list.add(TarReader.open(writeFile, memoryMapping));
+            list.add(reader);
             list.addAll(readers);
+            segmentIndex.add(reader);
             readers = list;
             tarWriter = newWriter;
         }
@@ -716,6 +858,13 @@ public class FileStore extends AbstractFileStore {
 
         private volatile boolean cancelled;
 
+        /**
+         * Root compacted by the last successful compaction or {@code null} if
+         * there was none since this store has been opened.
+         */
+        @CheckForNull
+        private volatile RecordId compactedRoot;
+
         GarbageCollector(@Nonnull SegmentGCOptions gcOptions,
                          @Nonnull GCListener gcListener,
                          @Nonnull GCJournal gcJournal) {
@@ -842,10 +991,28 @@ public class FileStore extends AbstractFileStore {
                 gcListener.info("TarMK GC #{}: compaction started, gc options={}", GC_COUNT, gcOptions);
 
                 SegmentNodeState before = getHead();
-                final int newGeneration = getGcGeneration() + 1;
-                SegmentBufferWriter bufferWriter = new SegmentBufferWriter(FileStore.this, tracker, segmentReader, "c", newGeneration);
+                SegmentNodeState tailBase = getTailCompactionBase();
+                boolean tailCompacted = tailBase != null;
+
+                // Tail compaction keeps the full generation of the compacted state
+                // it compacts onto. Records of this state are referenced as they are.
+                GCGeneration generation = tailCompacted
+                        ? tailBase.getRecordId().getSegmentId().getGCGeneration().nextTail()
+                        : getGCGeneration().nextFull();
+                final int newGeneration = generation.getGeneration();
+                SegmentBufferWriter bufferWriter = new SegmentBufferWriter(FileStore.this, tracker, segmentReader, "c", generation);
+                List<SegmentBufferWriter> threadWriters = tailCompacted
+                        ? ImmutableList.<SegmentBufferWriter>of()
+                        : newThreadWriters(generation);
                 Supplier<Boolean> cancel = new CancelCompactionSupplier(FileStore.this);
-                SegmentNodeState after = compact(bufferWriter, before, cancel);
+                SegmentNodeState after;
+                if (tailCompacted) {
+                    gcListener.info("TarMK GC #{}: tail compacting changes since {} into {}",
+                            GC_COUNT, tailBase.getRecordId(), generation);
+                    after = compactTail(bufferWriter, tailBase, before, tailBase, cancel);
+                } else {
+                    after = compact(bufferWriter, threadWriters, before, cancel);
+                }
                 if (after == null) {
                     gcListener.info("TarMK GC #{}: compaction cancelled: {}.", GC_COUNT, cancel);
                     return 0;
@@ -866,7 +1033,9 @@ public class FileStore extends AbstractFileStore {
                                     "Compacting these commits. Cycle {} of {}",
                             GC_COUNT, cycles, gcOptions.getRetryCount());
                     SegmentNodeState head = getHead();
-                    after = compact(bufferWriter, head, cancel);
+                    after = tailCompacted
+                            ? compactTail(bufferWriter, before, head, after, cancel)
+                            : compact(bufferWriter, threadWriters, head, cancel);
                     if (after == null) {
                         gcListener.info("TarMK GC #{}: compaction cancelled: {}.", GC_COUNT, cancel);
                         return 0;
@@ -885,8 +1054,14 @@ public class FileStore extends AbstractFileStore {
                         gcListener.info("TarMK GC #{}: trying to force compact remaining commits for {} seconds",
                                 GC_COUNT, forceTimeout);
                         cycles++;
-                        success = forceCompact(bufferWriter, or(cancel, timeOut(forceTimeout, SECONDS)));
-                        if (!success) {
+                        success = forceCompact(bufferWriter, threadWriters,
+                                tailCompacted ? before : null, tailCompacted ? after : null,
+                                or(cancel, timeOut(forceTimeout, SECONDS)));
+                        if (success) {
+                            // The forcibly compacted head or a state committed on top
+                            // of it. Either is a valid base for the next tail compaction.
+                            after = getHead();
+                        } else {
                             if (cancel.get()) {
                                 gcListener.warn("TarMK GC #{}: compaction failed to force compact remaining commits. " +
                                         "Compaction was cancelled: {}.", GC_COUNT, cancel);
@@ -899,6 +1074,7 @@ public class FileStore extends AbstractFileStore {
                 }
 
                 if (success) {
+                    compactedRoot = after.getRecordId();
                     gcListener.compacted(SUCCESS, newGeneration);
                     gcListener.info("TarMK GC #{}: compaction succeeded in {} ({} ms), after {} cycles",
                             GC_COUNT, watch, watch.elapsed(MILLISECONDS), cycles);
@@ -919,6 +1095,94 @@ public class FileStore extends AbstractFileStore {
             }
         }
 
+        /**
+         * @return  the root compacted by the last compaction if tail compaction is
+         * configured and that root belongs to the current generation, {@code null}
+         * otherwise.
+         */
+        @CheckForNull
+        private SegmentNodeState getTailCompactionBase() {
+            if (gcOptions.isOffline() || gcOptions.getGCType() != TAIL) {
+                return null;
+            }
+            RecordId root = getCompactedRoot();
+            if (root == null) {
+                gcListener.info("TarMK GC #{}: no compacted root found for tail compaction, " +
+                        "running full compaction", GC_COUNT);
+                return null;
+            }
+            return segmentReader.readNode(root);
+        }
+
+        /**
+         * @return  the root compacted by the last successful compaction if it belongs
+         * to the current gc generation and has been written by a compaction recording
+         * its full generation, {@code null} otherwise. Falls back to the root
+         * recorded in the gc journal if no compaction ran since this store has been opened.
+         */
+        @CheckForNull
+        private RecordId getCompactedRoot() {
+            RecordId root = compactedRoot;
+            int gcGeneration = getGcGeneration();
+            if (root == null) {
+                GCJournalEntry entry = gcJournal.read();
+                if (entry.getRoot() != null && entry.getGcGeneration() == gcGeneration) {
+                    try {
+                        root = RecordId.fromString(FileStore.this, entry.getRoot());
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Invalid compacted root in gc journal: {}", entry.getRoot());
+                    }
+                }
+            }
+            try {
+                if (root != null
+                        && root.getSegmentId().getGcGeneration() == gcGeneration
+                        && root.getSegmentId().isCompacted()) {
+                    return root;
+                }
+            } catch (SegmentNotFoundException e) {
+                log.warn("Compacted root {} not found", root);
+            }
+            return null;
+        }
+
+        /**
+         * Compact the changes between {@code before} and {@code after} on top of the
+         * already compacted {@code onto} state. The records of these changes are
+         * copied into the generation of {@code bufferWriter}. The parts of {@code onto}
+         * not affected by these changes are referenced as they are, as they belong
+         * to the same full generation.
+         * @return  the compacted state or {@code null} if compaction was cancelled.
+         */
+        @CheckForNull
+        private SegmentNodeState compactTail(SegmentBufferWriter bufferWriter, NodeState before,
+                                             NodeState after, NodeState onto,
+                                             Supplier<Boolean> cancel)
+        throws IOException {
+            BlobStore blobStore = getBlobStore();
+            SegmentWriter writer = new SegmentWriter(FileStore.this, segmentReader, blobStore, cacheManager, bufferWriter);
+            SegmentNodeState compacted = new Compactor(segmentReader, writer, blobStore, cancel, gcOptions)
+                    .compact(before, after, onto);
+
+            // A cancelled compactor returns a partially compacted state
+            return cancel.get() ? null : compacted;
+        }
+
+        /**
+         * @param generation  generation of the compacted segments
+         * @return  one buffer writer per compaction thread if online compaction
+         * is configured to run on more than one thread, an empty list otherwise.
+         */
+        private List<SegmentBufferWriter> newThreadWriters(GCGeneration generation) {
+            List<SegmentBufferWriter> writers = newArrayList();
+            if (!gcOptions.isOffline() && gcOptions.getCompactionThreads() > 1) {
+                for (int i = 1; i <= gcOptions.getCompactionThreads(); i++) {
+                    writers.add(new SegmentBufferWriter(FileStore.this, tracker, segmentReader, "c." + i, generation));
+                }
+            }
+            return writers;
+        }
+
         /**
          * @param duration
          * @param unit
@@ -951,7 +1215,8 @@ public class FileStore extends AbstractFileStore {
             }
         }
 
-        private SegmentNodeState compact(SegmentBufferWriter bufferWriter, NodeState head,
+        private SegmentNodeState compact(SegmentBufferWriter bufferWriter,
+                                         List<SegmentBufferWriter> threadWriters, NodeState head,
                                          Supplier<Boolean> cancel)
         throws IOException {
             if (gcOptions.isOffline()) {
@@ -959,12 +1224,26 @@ public class FileStore extends AbstractFileStore {
                 SegmentWriter writer = new SegmentWriter(FileStore.this, segmentReader, blobStore, new Default(), bufferWriter);
                 return new Compactor(segmentReader, writer, blobStore, cancel, gcOptions)
                         .compact(EMPTY_NODE, head, EMPTY_NODE);
+            } else if (!threadWriters.isEmpty()) {
+                return new ParallelCompactor(FileStore.this, segmentReader, getBlobStore(), segmentWriter,
+                        cacheManager, threadWriters, gcListener, "TarMK GC #" + GC_COUNT)
+                        .compact(head, bufferWriter, cancel);
             } else {
                 return segmentWriter.writeNode(head, bufferWriter, cancel);
             }
         }
 
+        /**
+         * Compact the head while holding exclusive access to the store.
+         * @param tailBefore  the head already tail compacted onto {@code tailOnto}
+         *                    or {@code null} for a full compaction.
+         * @param tailOnto    the tail compacted state or {@code null} for a full
+         *                    compaction.
+         */
         private boolean forceCompact(@Nonnull final SegmentBufferWriter bufferWriter,
+                                     @Nonnull final List<SegmentBufferWriter> threadWriters,
+                                     @Nullable final NodeState tailBefore,
+                                     @Nullable final NodeState tailOnto,
                                      @Nonnull final Supplier<Boolean> cancel)
         throws InterruptedException {
             return revisions.
@@ -974,8 +1253,10 @@ public class FileStore extends AbstractFileStore {
                                 public RecordId apply(RecordId base) {
                                     try {
                                         long t0 = currentTimeMillis();
-                                        SegmentNodeState after = compact(bufferWriter,
-                                                segmentReader.readNode(base), cancel);
+                                        SegmentNodeState head = segmentReader.readNode(base);
+                                        SegmentNodeState after = tailOnto == null
+                                                ? compact(bufferWriter, threadWriters, head, cancel)
+                                                : compactTail(bufferWriter, tailBefore, head, tailOnto, cancel);
                                         if (after == null) {
                                             gcListener.info("TarMK GC #{}: compaction cancelled after {} seconds",
                                                     GC_COUNT, (currentTimeMillis() - t0) / 1000);
@@ -999,12 +1280,15 @@ public class FileStore extends AbstractFileStore {
         /**
          * Cleanup segments that are from an old generation. That segments whose generation
          * is {@code gcGeneration - SegmentGCOptions.getRetainedGenerations()} or older.
+         * Segments written by compaction are retained as long as their full generation is
+         * not older than that, as tail compacted states keep referencing them.
          * @param gcGeneration
          * @return list of files to be removed
          * @throws IOException
          */
         private List<File> cleanupOldGenerations(int gcGeneration) throws IOException {
             final int reclaimGeneration = gcGeneration - gcOptions.getRetainedGenerations();
+            final int reclaimFullGeneration = getGCGeneration().getFullGeneration() - gcOptions.getRetainedGenerations();
 
             Predicate<Integer> reclaimPredicate = new Predicate<Integer>() {
                 @Override
@@ -1012,26 +1296,38 @@ public class FileStore extends AbstractFileStore {
                     return generation <= reclaimGeneration;
                 }
             };
-            return cleanup(reclaimPredicate,
+            Predicate<Integer> retainPredicate = new Predicate<Integer>() {
+                @Override
+                public boolean apply(Integer fullGeneration) {
+                    return fullGeneration > reclaimFullGeneration;
+                }
+            };
+            return cleanup(reclaimPredicate, retainPredicate,
                     "gc-count=" + GC_COUNT +
                             ",gc-status=success" +
                             ",store-generation=" + gcGeneration +
-                            ",reclaim-predicate=(generation<=" + reclaimGeneration + ")");
+                            ",reclaim-predicate=(generation<=" + reclaimGeneration +
+                            ",compacted&&full-generation<=" + reclaimFullGeneration + ")");
         }
 
         /**
          * Cleanup segments whose generation matches the {@code reclaimGeneration} predicate.
          * @param reclaimGeneration
+         * @param retainCompacted  predicate on the full generations of the segments written by
+         *                         compaction to retain regardless of their generation or
+         *                         {@code null} to not retain any.
          * @param gcInfo  gc information to be passed to {@link SegmentIdTable#clearSegmentIdTables(Set, String)}
          * @return list of files to be removed
          * @throws IOException
          */
         private List<File> cleanup(
                 @Nonnull Predicate<Integer> reclaimGeneration,
+                @Nullable Predicate<Integer> retainCompacted,
                 @Nonnull String gcInfo)
         throws IOException {
             Stopwatch watch = Stopwatch.createStarted();
             Set<UUID> bulkRefs = newHashSet();
+            RecordId root = getCompactedRoot();
             Map<TarReader, TarReader> cleaned = newLinkedHashMap();
 
             long initialSize = 0;
@@ -1041,6 +1337,9 @@ public class FileStore extends AbstractFileStore {
 
                 newWriter();
                 segmentCache.clear();
+                if (prefetcher != null) {
+                    prefetcher.clear();
+                }
 
                 // Suggest to the JVM that now would be a good time
                 // to clear stale weak references in the SegmentTracker
@@ -1061,7 +1360,7 @@ public class FileStore extends AbstractFileStore {
 
             Set<UUID> reclaim = newHashSet();
             for (TarReader reader : cleaned.keySet()) {
-                reader.mark(bulkRefs, reclaim, reclaimGeneration);
+                reader.mark(bulkRefs, reclaim, reclaimGeneration, retainCompacted);
                 log.info("{}: size of bulk references/reclaim set {}/{}",
                         reader, bulkRefs.size(), reclaim.size());
                 if (shutdown) {
@@ -1102,6 +1401,7 @@ public class FileStore extends AbstractFileStore {
                         sweptReaders.add(reader);
                     }
                 }
+                segmentIndex.rebuild(sweptReaders);
                 readers = sweptReaders;
             } finally {
                 fileStoreLock.writeLock().unlock();
@@ -1121,7 +1421,8 @@ public class FileStore extends AbstractFileStore {
             long finalSize = size();
             long reclaimedSize = initialSize - afterCleanupSize;
             stats.reclaimed(reclaimedSize);
-            gcJournal.persist(reclaimedSize, finalSize);
+            gcJournal.persist(reclaimedSize, finalSize, getGcGeneration(),
+                    root == null ? null : root.toString());
             gcListener.cleaned(reclaimedSize, finalSize);
             gcListener.info("TarMK GC #{}: cleanup completed in {} ({} ms). Post cleanup size is {} ({} bytes)" +
                             " and space reclaimed {} ({} bytes).",
@@ -1157,7 +1458,7 @@ public class FileStore extends AbstractFileStore {
                     return generation == gcGeneration;
                 }
             };
-            return cleanup(cleanupPredicate,
+            return cleanup(cleanupPredicate, null,
                     "gc-count=" + GC_COUNT +
                             ",gc-status=failed" +
                             ",store-generation=" + (gcGeneration - 1) +
@@ -1188,8 +1489,15 @@ public class FileStore extends AbstractFileStore {
             }
 
             int minGeneration = getGcGeneration() - gcOptions.getRetainedGenerations() + 1;
+            final int minFullGeneration = getGCGeneration().getFullGeneration() - gcOptions.getRetainedGenerations() + 1;
+            Predicate<Integer> retainCompacted = new Predicate<Integer>() {
+                @Override
+                public boolean apply(Integer fullGeneration) {
+                    return fullGeneration >= minFullGeneration;
+                }
+            };
             for (TarReader tarReader : tarReaders) {
-                tarReader.collectBlobReferences(collector, minGeneration);
+                tarReader.collectBlobReferences(collector, minGeneration, retainCompacted);
             }
         }
 
@@ -19,6 +19,7 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_STRING_CACHE_MB;
@@ -37,12 +38,14 @@ import javax.annotation.Nonnull;
 
 import com.google.common.base.Predicate;
 
+import org.apache.jackrabbit.oak.segment.OffHeapSegmentCache;
 import org.apache.jackrabbit.oak.segment.RecordCache;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.Template;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.compaction.LoggingGCMonitor;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.file.TarRevisions.Durability;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.gc.DelegatingGCMonitor;
 import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
@@ -59,6 +62,12 @@ public class FileStoreBuilder {
     private static final boolean MEMORY_MAPPING_DEFAULT =
             "64".equals(System.getProperty("sun.arch.data.model", "32"));
 
+    private static final Durability DURABILITY_DEFAULT = Durability.valueOf(
+            System.getProperty("oak.segment.durability", Durability.TIMED.name()));
+
+    private static final int SEGMENT_PREFETCH_THREADS_DEFAULT =
+            Integer.getInteger("oak.segment.prefetch.threads", 0);
+
     @Nonnull
     private final File directory;
 
@@ -69,6 +78,10 @@ public class FileStoreBuilder {
 
     private int segmentCacheSize = DEFAULT_SEGMENT_CACHE_MB;
 
+    private boolean segmentCacheOffHeap;
+
+    private int segmentPrefetchThreads = SEGMENT_PREFETCH_THREADS_DEFAULT;
+
     private int stringCacheSize = DEFAULT_STRING_CACHE_MB;
 
     private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_MB;
@@ -81,6 +94,9 @@ public class FileStoreBuilder {
 
     private boolean memoryMapping = MEMORY_MAPPING_DEFAULT;
 
+    @Nonnull
+    private Durability durability = DURABILITY_DEFAULT;
+
     @Nonnull
     private StatisticsProvider statsProvider = StatisticsProvider.NOOP;
 
@@ -194,6 +210,32 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Keep the data of cached segments off heap and use a scan resistant
+     * replacement policy for the segment cache.
+     * @param segmentCacheOffHeap  {@code true} to use an {@link OffHeapSegmentCache}
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withSegmentCacheOffHeap(boolean segmentCacheOffHeap) {
+        this.segmentCacheOffHeap = segmentCacheOffHeap;
+        return this;
+    }
+
+    /**
+     * Number of threads prefetching the segments referenced by segments
+     * loaded from disk. The prefetched segments are kept in a staging
+     * cache of 1/16th of the size of the segment cache.
+     * @param segmentPrefetchThreads  number of threads, {@code 0} to disable prefetching
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withSegmentPrefetchThreads(int segmentPrefetchThreads) {
+        checkArgument(segmentPrefetchThreads >= 0);
+        this.segmentPrefetchThreads = segmentPrefetchThreads;
+        return this;
+    }
+
     /**
      * Size of the string cache in MB.
      * @param stringCacheSize  None negative cache size
@@ -303,6 +345,17 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * {@link Durability} of the commits to the store
+     * @param durability
+     * @return this instance
+     */
+    @Nonnull
+    public FileStoreBuilder withDurability(@Nonnull Durability durability) {
+        this.durability = checkNotNull(durability);
+        return this;
+    }
+
     /**
      * Create a new {@link FileStore} instance with the settings specified in this
      * builder. If none of the {@code with} methods have been called before calling
@@ -311,10 +364,12 @@ public class FileStoreBuilder {
      * <li>blob store: inline</li>
      * <li>max file size: 256MB</li>
      * <li>cache size: 256MB</li>
+     * <li>segment prefetching: off</li>
      * <li>memory mapping: on for 64 bit JVMs off otherwise</li>
      * <li>whiteboard: none. No {@link GCMonitor} tracking</li>
      * <li>statsProvider: {@link StatisticsProvider#NOOP}</li>
      * <li>GC options: {@link SegmentGCOptions#defaultGCOptions()}</li>
+     * <li>durability: {@link Durability#TIMED}</li>
      * </ul>
      *
      * @return a new file store instance
@@ -325,7 +380,7 @@ public class FileStoreBuilder {
         checkState(!built, "Cannot re-use builder");
         built = true;
         directory.mkdirs();
-        TarRevisions revisions = new TarRevisions(directory);
+        TarRevisions revisions = new TarRevisions(directory, durability);
         LOG.info("Creating file store {}", this);
         return new FileStore(this).bind(revisions);
     }
@@ -375,6 +430,14 @@ public class FileStoreBuilder {
         return segmentCacheSize;
     }
 
+    boolean getSegmentCacheOffHeap() {
+        return segmentCacheOffHeap;
+    }
+
+    int getSegmentPrefetchThreads() {
+        return segmentPrefetchThreads;
+    }
+
     int getStringCacheSize() {
         return stringCacheSize;
     }
@@ -418,6 +481,8 @@ public class FileStoreBuilder {
                 ", blobStore=" + blobStore +
                 ", maxFileSize=" + maxFileSize +
                 ", segmentCacheSize=" + segmentCacheSize +
+                ", segmentCacheOffHeap=" + segmentCacheOffHeap +
+                ", segmentPrefetchThreads=" + segmentPrefetchThreads +
                 ", stringCacheSize=" + stringCacheSize +
                 ", templateCacheSize=" + templateCacheSize +
                 ", stringDeduplicationCacheSize=" + stringDeduplicationCacheSize +
@@ -425,6 +490,7 @@ public class FileStoreBuilder {
                 ", nodeDeduplicationCacheSize=" + nodeDeduplicationCacheSize +
                 ", memoryMapping=" + memoryMapping +
                 ", gcOptions=" + gcOptions +
+                ", durability=" + durability +
                 '}';
     }
 
@@ -443,14 +509,5 @@ public class FileStoreBuilder {
                 }
             });
         }
-
-        void evictGeneration(final int newGeneration) {
-            evictCaches(new Predicate<Integer>() {
-                @Override
-                public boolean apply(Integer generation) {
-                    return generation == newGeneration;
-                }
-            });
-        }
     }
 }
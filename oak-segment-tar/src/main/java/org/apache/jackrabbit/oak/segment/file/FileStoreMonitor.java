@@ -39,6 +39,11 @@ interface FileStoreMonitor {
         public void flushed() {
             
         }
+
+        @Override
+        public void synced(long commits) {
+
+        }
     };
 
     /**
@@ -59,4 +64,11 @@ interface FileStoreMonitor {
      * Notifies the monitor when journal data is flushed to disk.
      */
     void flushed();
+
+    /**
+     * Notifies the monitor when the journal is synced to disk.
+     *
+     * @param commits number of heads persisted by this sync
+     */
+    void synced(long commits);
 }
@@ -21,26 +21,40 @@ package org.apache.jackrabbit.oak.segment.file;
 
 import static org.apache.jackrabbit.stats.TimeSeriesStatsUtil.asCompositeData;
 
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.Nonnull;
 import javax.management.openmbean.CompositeData;
 
 import org.apache.jackrabbit.api.stats.TimeSeries;
 import org.apache.jackrabbit.oak.commons.IOUtils;
 import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
 
 public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
     public static final String SEGMENT_REPO_SIZE = "SEGMENT_REPO_SIZE";
     public static final String SEGMENT_WRITES = "SEGMENT_WRITES";
     public static final String JOURNAL_WRITES = "JOURNAL_WRITES";
+    public static final String SEGMENT_INDEX_LOOKUP = "SEGMENT_INDEX_LOOKUP";
+    public static final String SEGMENT_INDEX_MISSES = "SEGMENT_INDEX_MISSES";
+    public static final String JOURNAL_SYNCS = "JOURNAL_SYNCS";
+    public static final String JOURNAL_SYNC_BATCH = "JOURNAL_SYNC_BATCH";
+    public static final String JOURNAL_SYNCED_COMMITS = "JOURNAL_SYNCED_COMMITS";
     
     private final StatisticsProvider statisticsProvider;
     private final FileStore store;
     private final MeterStats writeStats;
     private final CounterStats repoSize;
     private final MeterStats journalWriteStats;
+    private final TimerStats segmentIndexLookup;
+    private final MeterStats segmentIndexMisses;
+    private final MeterStats journalSyncs;
+    private final HistogramStats journalSyncBatch;
+    private final MeterStats journalSyncedCommits;
     
     public FileStoreStats(StatisticsProvider statisticsProvider, FileStore store, long initialSize) {
         this.statisticsProvider = statisticsProvider;
@@ -48,6 +62,11 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         this.writeStats = statisticsProvider.getMeter(SEGMENT_WRITES, StatsOptions.DEFAULT);
         this.repoSize = statisticsProvider.getCounterStats(SEGMENT_REPO_SIZE, StatsOptions.DEFAULT);
         this.journalWriteStats = statisticsProvider.getMeter(JOURNAL_WRITES, StatsOptions.DEFAULT);
+        this.segmentIndexLookup = statisticsProvider.getTimer(SEGMENT_INDEX_LOOKUP, StatsOptions.METRICS_ONLY);
+        this.segmentIndexMisses = statisticsProvider.getMeter(SEGMENT_INDEX_MISSES, StatsOptions.METRICS_ONLY);
+        this.journalSyncs = statisticsProvider.getMeter(JOURNAL_SYNCS, StatsOptions.DEFAULT);
+        this.journalSyncBatch = statisticsProvider.getHistogram(JOURNAL_SYNC_BATCH, StatsOptions.METRICS_ONLY);
+        this.journalSyncedCommits = statisticsProvider.getMeter(JOURNAL_SYNCED_COMMITS, StatsOptions.METRICS_ONLY);
         repoSize.inc(initialSize);
     }
 
@@ -69,6 +88,26 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         journalWriteStats.mark();
     }
 
+    @Override
+    public void synced(long commits) {
+        journalSyncs.mark();
+        journalSyncBatch.update(commits);
+        journalSyncedCommits.mark(commits);
+    }
+
+    /**
+     * Notifies the stats about a lookup in the segment index.
+     *
+     * @param nanos the duration of the lookup in nanoseconds
+     * @param found whether the index had an entry for the segment
+     */
+    void segmentIndexLookup(long nanos, boolean found) {
+        segmentIndexLookup.update(nanos, TimeUnit.NANOSECONDS);
+        if (!found) {
+            segmentIndexMisses.mark();
+        }
+    }
+
     //~--------------------------------< FileStoreStatsMBean >
 
     @Override
@@ -93,12 +132,60 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         return asCompositeData(getTimeSeries(SEGMENT_REPO_SIZE), SEGMENT_REPO_SIZE);
     }
 
+    @Override
+    public int getSegmentIndexSize() {
+        return store.getSegmentIndexSize();
+    }
+
+    @Override
+    public long getSegmentIndexMemory() {
+        return store.getSegmentIndexMemory();
+    }
+
+    @Override
+    public long getSegmentIndexMissCount() {
+        return segmentIndexMisses.getCount();
+    }
+
+    @Override
+    public int getSegmentPrefetchDepth() {
+        SegmentPrefetcher prefetcher = store.getSegmentPrefetcher();
+        return prefetcher == null ? 0 : prefetcher.getDepth();
+    }
+
+    @Override
+    public long getSegmentPrefetchCount() {
+        SegmentPrefetcher prefetcher = store.getSegmentPrefetcher();
+        return prefetcher == null ? 0 : prefetcher.getIssuedCount();
+    }
+
+    @Override
+    public long getSegmentPrefetchDroppedCount() {
+        SegmentPrefetcher prefetcher = store.getSegmentPrefetcher();
+        return prefetcher == null ? 0 : prefetcher.getDroppedCount();
+    }
+
+    @Override
+    public long getSegmentPrefetchUsefulCount() {
+        SegmentPrefetcher prefetcher = store.getSegmentPrefetcher();
+        return prefetcher == null ? 0 : prefetcher.getUsefulCount();
+    }
+
+    @Override
+    public long getSegmentPrefetchWastedCount() {
+        SegmentPrefetcher prefetcher = store.getSegmentPrefetcher();
+        return prefetcher == null ? 0 : prefetcher.getWastedCount();
+    }
+
     @Override
     public String fileStoreInfoAsString() {
         return String.format("Segment store size : %s%n" +
-                "Number of tar files : %d",
+                "Number of tar files : %d%n" +
+                "Segment index : %d entries, %s",
                 IOUtils.humanReadableByteCount(getApproximateSize()),
-                getTarFileCount());
+                getTarFileCount(),
+                getSegmentIndexSize(),
+                IOUtils.humanReadableByteCount(getSegmentIndexMemory()));
     }
     
     @Override
@@ -111,6 +198,22 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         return asCompositeData(getTimeSeries(JOURNAL_WRITES), JOURNAL_WRITES);
     }
 
+    @Override
+    public long getJournalSyncCount() {
+        return journalSyncs.getCount();
+    }
+
+    @Override
+    public CompositeData getJournalSyncStatsAsCompositeData() {
+        return asCompositeData(getTimeSeries(JOURNAL_SYNCS), JOURNAL_SYNCS);
+    }
+
+    @Override
+    public double getJournalSyncBatchSize() {
+        long syncs = journalSyncs.getCount();
+        return syncs == 0 ? 0 : (double) journalSyncedCommits.getCount() / syncs;
+    }
+
     private TimeSeries getTimeSeries(String name) {
         return statisticsProvider.getStats().getTimeSeries(name, true);
     }
@@ -39,6 +39,46 @@ public interface FileStoreStatsMBean {
      */
     CompositeData getRepositorySize();
 
+    /**
+     * @return  number of segments in the segment index
+     */
+    int getSegmentIndexSize();
+
+    /**
+     * @return  estimated memory used by the segment index in bytes
+     */
+    long getSegmentIndexMemory();
+
+    /**
+     * @return  count of segment lookups not found in the segment index
+     */
+    long getSegmentIndexMissCount();
+
+    /**
+     * @return  current depth of segment prefetching, 0 if prefetching is disabled
+     */
+    int getSegmentPrefetchDepth();
+
+    /**
+     * @return  count of segments scheduled for prefetching
+     */
+    long getSegmentPrefetchCount();
+
+    /**
+     * @return  count of segments not prefetched because the prefetch queue was full
+     */
+    long getSegmentPrefetchDroppedCount();
+
+    /**
+     * @return  count of prefetched segments that were subsequently read
+     */
+    long getSegmentPrefetchUsefulCount();
+
+    /**
+     * @return  count of prefetched segments evicted without being read
+     */
+    long getSegmentPrefetchWastedCount();
+
     String fileStoreInfoAsString();
     
     /**
@@ -50,4 +90,19 @@ public interface FileStoreStatsMBean {
      * @return  time series of the writes to journal
      */
     CompositeData getJournalWriteStatsAsCompositeData();
+
+    /**
+     * @return  count of the syncs of the journal to disk
+     */
+    long getJournalSyncCount();
+
+    /**
+     * @return  time series of the syncs of the journal to disk
+     */
+    CompositeData getJournalSyncStatsAsCompositeData();
+
+    /**
+     * @return  average number of commits persisted by a sync of the journal
+     */
+    double getJournalSyncBatchSize();
 }
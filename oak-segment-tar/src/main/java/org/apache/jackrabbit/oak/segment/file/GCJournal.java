@@ -35,7 +35,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +45,8 @@ import org.slf4j.LoggerFactory;
 /**
  * Persists the repository size and the reclaimed size following a cleanup operation in the
  * {@link #GC_JOURNAL gc journal} file with the format: 'repoSize, reclaimedSize, timestamp'.
+ * Entries may additionally carry the gc generation and the root record id compacted by
+ * the last compaction: 'repoSize, reclaimedSize, timestamp, gcGeneration, root'.
  */
 public class GCJournal {
 
@@ -60,7 +64,21 @@ public class GCJournal {
     }
 
     public synchronized void persist(long reclaimedSize, long repoSize) {
-        latest = new GCJournalEntry(repoSize, reclaimedSize, System.currentTimeMillis());
+        persist(reclaimedSize, repoSize, -1, null);
+    }
+
+    /**
+     * Persist an entry recording the root compacted by the last compaction.
+     * @param reclaimedSize  size reclaimed by the cleanup
+     * @param repoSize       repository size after the cleanup
+     * @param gcGeneration   gc generation of the store after the cleanup
+     * @param root           record id of the root compacted by the last compaction
+     *                       or {@code null} if not known.
+     */
+    public synchronized void persist(long reclaimedSize, long repoSize,
+                                     int gcGeneration, @Nullable String root) {
+        latest = new GCJournalEntry(repoSize, reclaimedSize, System.currentTimeMillis(),
+                gcGeneration, root);
         Path path = new File(directory, GC_JOURNAL).toPath();
         try {
             try (BufferedWriter w = newBufferedWriter(path, UTF_8, WRITE,
@@ -113,24 +131,40 @@ public class GCJournal {
         private final long repoSize;
         private final long reclaimedSize;
         private final long ts;
+        private final int gcGeneration;
+        private final String root;
 
         public GCJournalEntry(long repoSize, long reclaimedSize, long ts) {
+            this(repoSize, reclaimedSize, ts, -1, null);
+        }
+
+        public GCJournalEntry(long repoSize, long reclaimedSize, long ts,
+                              int gcGeneration, @Nullable String root) {
             this.repoSize = repoSize;
             this.reclaimedSize = reclaimedSize;
             this.ts = ts;
+            this.gcGeneration = gcGeneration;
+            this.root = root;
         }
 
         @Override
         public String toString() {
-            return  repoSize + "," + reclaimedSize + "," + ts;
+            if (root == null) {
+                return  repoSize + "," + reclaimedSize + "," + ts;
+            }
+            return  repoSize + "," + reclaimedSize + "," + ts + "," + gcGeneration + "," + root;
         }
 
         static GCJournalEntry fromString(String in) {
             String[] items = in.split(",");
-            if (items.length == 3) {
+            if (items.length == 3 || items.length == 5) {
                 long repoSize = safeParse(items[0]);
                 long reclaimedSize = safeParse(items[1]);
                 long ts = safeParse(items[2]);
+                if (items.length == 5) {
+                    int gcGeneration = (int) safeParse(items[3]);
+                    return new GCJournalEntry(repoSize, reclaimedSize, ts, gcGeneration, items[4]);
+                }
                 return new GCJournalEntry(repoSize, reclaimedSize, ts);
             }
             return GCJournalEntry.EMPTY;
@@ -157,6 +191,23 @@ public class GCJournal {
             return ts;
         }
 
+        /**
+         * @return  the gc generation of the store when this entry was written
+         * or {@code -1} if not known.
+         */
+        public int getGcGeneration() {
+            return gcGeneration;
+        }
+
+        /**
+         * @return  the record id of the root compacted by the last compaction
+         * or {@code null} if not known.
+         */
+        @CheckForNull
+        public String getRoot() {
+            return root;
+        }
+
         @Override
         public int hashCode() {
             final int prime = 31;
@@ -164,6 +215,8 @@ public class GCJournal {
             result = prime * result + (int) (reclaimedSize ^ (reclaimedSize >>> 32));
             result = prime * result + (int) (repoSize ^ (repoSize >>> 32));
             result = prime * result + (int) (ts ^ (ts >>> 32));
+            result = prime * result + gcGeneration;
+            result = prime * result + (root == null ? 0 : root.hashCode());
             return result;
         }
 
@@ -182,6 +235,10 @@ public class GCJournal {
                 return false;
             if (ts != other.ts)
                 return false;
+            if (gcGeneration != other.gcGeneration)
+                return false;
+            if (root == null ? other.root != null : !root.equals(other.root))
+                return false;
             return true;
         }
     }
@@ -125,6 +125,11 @@ public class ReadOnlyRevisions implements Revisions, Closeable {
         throw new UnsupportedOperationException("ReadOnly Revisions");
     }
 
+    @Override
+    public void awaitPersisted() {
+        // Nothing to persist
+    }
+
     /**
      * Close the underlying journal file.
      * 
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.collect.Lists.reverse;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * Index from segment ids to the tar files containing them. The index is an
+ * open addressing hash table keyed on the most and least significant bits
+ * of the segment id. The value of an entry packs the tar reader and the
+ * position of the segment in the index of that tar reader. Each entry takes
+ * 24 bytes.
+ * <p>
+ * The index is only a hint. Lookups are done without synchronization and
+ * may see an entry that is in the process of being updated or that refers
+ * to a tar file that was closed in the meantime. Callers must therefore
+ * verify the result by reading the entry from the returned tar reader and
+ * fall back to searching all tar files if that fails. Updates must be
+ * serialized by the caller.
+ */
+class SegmentIndex {
+
+    private static final int MIN_CAPACITY = 1024;
+
+    /**
+     * An entry of the index.
+     */
+    static final class Entry {
+
+        private final TarReader reader;
+
+        private final int position;
+
+        Entry(TarReader reader, int position) {
+            this.reader = reader;
+            this.position = position;
+        }
+
+        @Nonnull
+        TarReader getReader() {
+            return reader;
+        }
+
+        /**
+         * @return the position of the segment in the index of the tar file.
+         */
+        int getPosition() {
+            return position;
+        }
+    }
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+
+    /**
+     * Replaces the content of this index with the entries of the given tar
+     * readers. Where a segment is contained in more than one tar file, the
+     * reader that comes first in the list wins.
+     *
+     * @param readers the tar readers, newest first.
+     */
+    void rebuild(@Nonnull List<TarReader> readers) {
+        int count = 0;
+        for (TarReader reader : readers) {
+            count += reader.count();
+        }
+        Table t = new Table(capacityFor(count));
+        for (TarReader reader : reverse(readers)) {
+            reader.addTo(t);
+        }
+        table = t;
+    }
+
+    /**
+     * Adds the entries of a new tar reader to this index. Existing entries
+     * for the same segments are replaced.
+     *
+     * @param reader the new tar reader.
+     */
+    void add(@Nonnull TarReader reader) {
+        Table t = table;
+        int required = t.size + reader.count();
+        if (required > t.capacity() / 2) {
+            Table grown = new Table(capacityFor(required));
+            t.copyTo(grown);
+            t = grown;
+        }
+        reader.addTo(t);
+        table = t;
+    }
+
+    /**
+     * Removes all entries from this index.
+     */
+    void clear() {
+        table = new Table(MIN_CAPACITY);
+    }
+
+    /**
+     * Looks up the tar reader for the given segment.
+     *
+     * @return the entry for the segment or {@code null} if not found.
+     */
+    @CheckForNull
+    Entry get(long msb, long lsb) {
+        return table.get(msb, lsb);
+    }
+
+    /**
+     * @return the number of entries in this index.
+     */
+    int size() {
+        return table.size;
+    }
+
+    /**
+     * @return the estimated memory used by this index in bytes.
+     */
+    long estimateMemoryUsage() {
+        Table t = table;
+        return 24L * t.capacity() + 4L * t.readers.length;
+    }
+
+    private static int capacityFor(int count) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2L * count) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * The hash table. Keys are stored interleaved in {@code keys}, the
+     * values in {@code values}. A value is the reader number plus one in the
+     * upper 32 bits and the position in the lower 32 bits. A value of zero
+     * marks an empty slot.
+     */
+    static final class Table {
+
+        private final long[] keys;
+
+        private final long[] values;
+
+        private final int mask;
+
+        private TarReader[] readers = new TarReader[16];
+
+        private int numReaders;
+
+        private int size;
+
+        Table(int capacity) {
+            keys = new long[capacity * 2];
+            values = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        /**
+         * @return the reader number to use for entries of the given reader.
+         */
+        int addReader(TarReader reader) {
+            if (numReaders == readers.length) {
+                readers = Arrays.copyOf(readers, readers.length * 2);
+            }
+            readers[numReaders] = reader;
+            return numReaders++;
+        }
+
+        void put(long msb, long lsb, int readerNumber, int position) {
+            long value = ((readerNumber + 1L) << 32) | (position & 0xffffffffL);
+            int slot = hash(msb, lsb) & mask;
+            for (;;) {
+                if (values[slot] == 0) {
+                    keys[2 * slot] = msb;
+                    keys[2 * slot + 1] = lsb;
+                    values[slot] = value;
+                    size++;
+                    return;
+                }
+                if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        Entry get(long msb, long lsb) {
+            int slot = hash(msb, lsb) & mask;
+            for (int i = 0; i <= mask; i++) {
+                long value = values[slot];
+                if (value == 0) {
+                    return null;
+                }
+                if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb) {
+                    TarReader[] r = readers;
+                    int readerNumber = (int) (value >>> 32) - 1;
+                    if (readerNumber < 0 || readerNumber >= r.length || r[readerNumber] == null) {
+                        return null;
+                    }
+                    return new Entry(r[readerNumber], (int) value);
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        void copyTo(Table other) {
+            int[] numbers = new int[numReaders];
+            for (int i = 0; i < numReaders; i++) {
+                numbers[i] = other.addReader(readers[i]);
+            }
+            for (int slot = 0; slot < values.length; slot++) {
+                long value = values[slot];
+                if (value != 0) {
+                    int readerNumber = (int) (value >>> 32) - 1;
+                    other.put(keys[2 * slot], keys[2 * slot + 1],
+                            numbers[readerNumber], (int) value);
+                }
+            }
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = msb ^ lsb;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.newSetFromMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous prefetcher for the segments referenced by a segment that was
+ * just loaded from disk. Traversing a tree usually follows the record ids
+ * from one segment into the segments it references, so loading these ahead
+ * of time hides the latency of reading them one after the other.
+ * <p>
+ * Prefetched segments are kept in a small staging cache and only handed to
+ * the segment cache through {@link #take(SegmentId)} once they are actually
+ * requested. This keeps speculative reads from evicting the working set of
+ * the segment cache. A prefetched segment that is taken counts as useful,
+ * one evicted from the staging cache before that counts as wasted.
+ * <p>
+ * Prefetching follows the references of the prefetched segments up to the
+ * current depth. The depth starts at 1 and is adjusted between 1 and the
+ * maximum depth passed to the constructor: it is increased while most
+ * prefetches turn out useful and decreased while most are wasted.
+ */
+class SegmentPrefetcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentPrefetcher.class);
+
+    /**
+     * Default maximum depth of the references followed from a loaded segment.
+     */
+    static final int DEFAULT_MAX_DEPTH = Integer.getInteger("oak.segment.prefetch.maxDepth", 4);
+
+    /**
+     * Number of prefetches with a known outcome after which the depth is adjusted.
+     */
+    static final int ADAPT_INTERVAL = 256;
+
+    /**
+     * Number of pending prefetches per thread. Further prefetches are dropped.
+     */
+    private static final int QUEUE_SIZE_PER_THREAD = 256;
+
+    /**
+     * Time after which a prefetched segment that was not taken is considered wasted.
+     */
+    private static final long STAGING_EXPIRY_SECONDS = 60;
+
+    private static final Weigher<SegmentId, Segment> WEIGHER = new Weigher<SegmentId, Segment>() {
+        @Override
+        public int weigh(@Nonnull SegmentId id, @Nonnull Segment segment) {
+            return segment.size();
+        }
+    };
+
+    @Nonnull
+    private final SegmentStore store;
+
+    @Nonnull
+    private final Function<SegmentId, Segment> loader;
+
+    private final int maxDepth;
+
+    @Nonnull
+    private final ThreadPoolExecutor executor;
+
+    @Nonnull
+    private final Cache<SegmentId, Segment> staged;
+
+    /**
+     * Ids of the segments currently queued or being loaded.
+     */
+    private final Set<SegmentId> pending = newSetFromMap(new ConcurrentHashMap<SegmentId, Boolean>());
+
+    private final AtomicLong issued = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong useful = new AtomicLong();
+
+    private final AtomicLong wasted = new AtomicLong();
+
+    private volatile int depth = 1;
+
+    /**
+     * Outcomes in the current adaptation interval. Guarded by {@code this}.
+     */
+    private int windowUseful;
+
+    private int windowWasted;
+
+    /**
+     * Create a new prefetcher.
+     * @param store      the store used to resolve referenced segment ids
+     * @param loader     the function loading a segment from disk, bypassing the segment cache
+     * @param threads    number of threads loading segments in the background
+     * @param maxDepth   maximum depth of the references followed from a loaded segment
+     * @param maxWeight  maximum size in bytes of the segments held in the staging cache
+     */
+    SegmentPrefetcher(
+            @Nonnull SegmentStore store,
+            @Nonnull Function<SegmentId, Segment> loader,
+            int threads, int maxDepth, long maxWeight) {
+        checkArgument(threads > 0, "threads must be positive");
+        checkArgument(maxDepth > 0, "maxDepth must be positive");
+        this.store = store;
+        this.loader = loader;
+        this.maxDepth = maxDepth;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUE_SIZE_PER_THREAD),
+                new PrefetchThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.staged = CacheBuilder.newBuilder()
+                .concurrencyLevel(threads)
+                .maximumWeight(maxWeight)
+                .weigher(WEIGHER)
+                .expireAfterWrite(STAGING_EXPIRY_SECONDS, SECONDS)
+                .removalListener(new RemovalListener<SegmentId, Segment>() {
+                    @Override
+                    public void onRemoval(@Nonnull RemovalNotification<SegmentId, Segment> notification) {
+                        if (notification.wasEvicted()) {
+                            wasted.incrementAndGet();
+                            adapt(false);
+                        }
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Schedule the segments referenced by {@code segment} for prefetching.
+     * Segments already in memory or already scheduled are skipped.
+     * @param segment  a segment that was just loaded
+     */
+    void prefetch(@Nonnull Segment segment) {
+        prefetch(segment, depth);
+    }
+
+    private void prefetch(Segment segment, int depth) {
+        if (depth <= 0 || executor.isShutdown() || !segment.getSegmentId().isDataSegmentId()) {
+            return;
+        }
+
+        int count = segment.getReferencedSegmentIdCount();
+        for (int i = 0; i < count; i++) {
+            UUID uuid = segment.getReferencedSegmentId(i);
+            SegmentId id = store.newSegmentId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (id.isLoaded() || staged.getIfPresent(id) != null || !pending.add(id)) {
+                continue;
+            }
+            try {
+                executor.execute(new PrefetchTask(id, depth - 1));
+                issued.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                pending.remove(id);
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove a prefetched segment from the staging cache.
+     * @param id  the id of the segment
+     * @return    the prefetched segment or {@code null} if the segment was
+     *            not prefetched or has been evicted in the meantime
+     */
+    @CheckForNull
+    Segment take(@Nonnull SegmentId id) {
+        Segment segment = staged.asMap().remove(id);
+        if (segment != null) {
+            useful.incrementAndGet();
+            adapt(true);
+        }
+        return segment;
+    }
+
+    /**
+     * Discard all prefetched segments. The discarded segments are not counted
+     * as wasted.
+     */
+    void clear() {
+        staged.invalidateAll();
+    }
+
+    private synchronized void adapt(boolean wasUseful) {
+        if (wasUseful) {
+            windowUseful++;
+        } else {
+            windowWasted++;
+        }
+
+        int outcomes = windowUseful + windowWasted;
+        if (outcomes >= ADAPT_INTERVAL) {
+            if (4 * windowUseful >= 3 * outcomes && depth < maxDepth) {
+                depth++;
+            } else if (4 * windowUseful < outcomes && depth > 1) {
+                depth--;
+            }
+            windowUseful = 0;
+            windowWasted = 0;
+        }
+    }
+
+    /**
+     * @return  the current prefetch depth
+     */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return  number of prefetched segments currently in the staging cache
+     */
+    long getStagedCount() {
+        return staged.size();
+    }
+
+    /**
+     * @return  number of segments scheduled for prefetching
+     */
+    long getIssuedCount() {
+        return issued.get();
+    }
+
+    /**
+     * @return  number of segments not scheduled for prefetching because the queue was full
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return  number of prefetched segments that were subsequently requested
+     */
+    long getUsefulCount() {
+        return useful.get();
+    }
+
+    /**
+     * @return  number of prefetched segments evicted without being requested
+     */
+    long getWastedCount() {
+        return wasted.get();
+    }
+
+    @Override
+    public void close() {
+        // Don't interrupt running prefetches: interrupting a thread blocked
+        // on a file channel closes that channel for all readers of the tar file.
+        executor.getQueue().clear();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, SECONDS)) {
+                log.warn("Timed out waiting for segment prefetches to complete");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.clear();
+        staged.invalidateAll();
+    }
+
+    private class PrefetchTask implements Runnable {
+
+        private final SegmentId id;
+
+        private final int depth;
+
+        PrefetchTask(SegmentId id, int depth) {
+            this.id = id;
+            this.depth = depth;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (id.isLoaded()) {
+                    return;
+                }
+                Segment segment = loader.apply(id);
+                if (!id.isLoaded()) {
+                    staged.put(id, segment);
+                }
+                prefetch(segment, depth);
+            } catch (RuntimeException e) {
+                log.debug("Failed to prefetch segment {}", id, e);
+            } finally {
+                pending.remove(id);
+            }
+        }
+
+    }
+
+    private static class PrefetchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            Thread thread = new Thread(runnable, "TarMK segment prefetch thread " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -29,7 +29,9 @@ import static com.google.common.collect.Sets.newHashSet;
 import static com.google.common.collect.Sets.newHashSetWithExpectedSize;
 import static java.nio.ByteBuffer.wrap;
 import static java.util.Collections.singletonList;
+import static org.apache.jackrabbit.oak.segment.Segment.GC_FULL_GENERATION_OFFSET;
 import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+import static org.apache.jackrabbit.oak.segment.file.CompactionGainEstimate.UUID_FUNNEL;
 import static org.apache.jackrabbit.oak.segment.file.TarWriter.BINARY_REFERENCES_MAGIC;
 import static org.apache.jackrabbit.oak.segment.file.TarWriter.GRAPH_MAGIC;
 
@@ -52,12 +54,15 @@ import java.util.regex.Pattern;
 import java.util.zip.CRC32;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Sets;
+import com.google.common.hash.BloomFilter;
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
+import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.SegmentGraph.SegmentGraphVisitor;
 import org.apache.jackrabbit.oak.segment.SegmentId;
 import org.slf4j.Logger;
@@ -82,6 +87,15 @@ class TarReader implements Closeable {
     /** The tar file block size. */
     private static final int BLOCK_SIZE = TarWriter.BLOCK_SIZE;
 
+    /** False positive probability of the {@link #segmentIds} filter. */
+    private static final double SEGMENT_ID_FPP = 0.01;
+
+    /** Marks full generations not read from the segment header yet. */
+    private static final int UNKNOWN_FULL_GENERATION = -2;
+
+    /** Full generation of segments not written by compaction. */
+    private static final int NOT_COMPACTED = -1;
+
     static int getEntrySize(int size) {
         return BLOCK_SIZE + size + TarWriter.getPaddingSize(size);
     }
@@ -504,10 +518,56 @@ class TarReader implements Closeable {
 
     private volatile boolean hasGraph;
 
+    /**
+     * Bloom filter of the ids of the segments in this file. It is derived from
+     * the {@link #index} such that lookups of segments not contained in this
+     * file can mostly be answered without touching the index or the graph.
+     */
+    private final BloomFilter<UUID> segmentIds;
+
+    /**
+     * Full generations of the segments in this file as read from their headers,
+     * in the order of the {@link #index}. See {@link #getCompactedFullGeneration(int)}.
+     */
+    private final int[] compactedFullGenerations;
+
     private TarReader(File file, FileAccess access, ByteBuffer index) {
         this.file = file;
         this.access = access;
         this.index = index;
+        this.segmentIds = newSegmentIdFilter(index);
+        this.compactedFullGenerations = new int[index.remaining() / TarEntry.SIZE];
+        Arrays.fill(compactedFullGenerations, UNKNOWN_FULL_GENERATION);
+    }
+
+    private static BloomFilter<UUID> newSegmentIdFilter(ByteBuffer index) {
+        BloomFilter<UUID> filter = BloomFilter.create(UUID_FUNNEL,
+                Math.max(1, index.remaining() / TarEntry.SIZE), SEGMENT_ID_FPP);
+        int position = index.position();
+        while (position < index.limit()) {
+            filter.put(new UUID(
+                    index.getLong(position),
+                    index.getLong(position + 8)));
+            position += TarEntry.SIZE;
+        }
+        return filter;
+    }
+
+    /**
+     * @return  {@code false} if this file does not contain the given segment,
+     *          {@code true} if it might contain it.
+     */
+    private boolean mightContain(long msb, long lsb) {
+        return segmentIds.mightContain(new UUID(msb, lsb));
+    }
+
+    private boolean mightContainAny(Set<UUID> ids) {
+        for (UUID id : ids) {
+            if (segmentIds.mightContain(id)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     long size() {
@@ -555,7 +615,7 @@ class TarReader implements Closeable {
     }
 
     boolean containsEntry(long msb, long lsb) {
-        return findEntry(msb, lsb) != -1;
+        return mightContain(msb, lsb) && findEntry(msb, lsb) != -1;
     }
 
     /**
@@ -570,6 +630,9 @@ class TarReader implements Closeable {
      * @return the byte buffer, or null if not in this file
      */
     ByteBuffer readEntry(long msb, long lsb) throws IOException {
+        if (!mightContain(msb, lsb)) {
+            return null;
+        }
         int position = findEntry(msb, lsb);
         if (position != -1) {
             return access.read(
@@ -580,6 +643,48 @@ class TarReader implements Closeable {
         }
     }
 
+    /**
+     * Get the byte buffer that allows reading the given segment, if it is
+     * at the given position of the index of this tar file.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @param position the position of the segment in the index, as
+     *                 recorded in a {@link SegmentIndex}
+     * @return the byte buffer, or null if the segment is not at the position
+     */
+    ByteBuffer readEntry(long msb, long lsb, int position) throws IOException {
+        if (position >= index.position()
+                && position <= index.limit() - TarEntry.SIZE
+                && (position - index.position()) % TarEntry.SIZE == 0
+                && index.getLong(position) == msb
+                && index.getLong(position + 8) == lsb) {
+            return access.read(
+                    index.getInt(position + 16),
+                    index.getInt(position + 20));
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Adds all entries of this tar file to the given index table.
+     *
+     * @param table the table of a {@link SegmentIndex}
+     */
+    void addTo(SegmentIndex.Table table) {
+        int readerNumber = table.addReader(this);
+        int position = index.position();
+        while (position < index.limit()) {
+            table.put(
+                    index.getLong(position),
+                    index.getLong(position + 8),
+                    readerNumber,
+                    position);
+            position += TarEntry.SIZE;
+        }
+    }
+
     /**
      * Find the position of the given segment in the tar file.
      * It uses the tar index if available.
@@ -700,6 +805,11 @@ class TarReader implements Closeable {
      * @throws IOException
      */
     void calculateForwardReferences(Set<UUID> referencedIds) throws IOException {
+        if (!mightContainAny(referencedIds)) {
+            // None of the referenced segments is in this file: avoid
+            // loading its graph
+            return;
+        }
         Map<UUID, List<UUID>> graph = getGraph(false);
         TarEntry[] entries = getEntries();
         for (int i = entries.length - 1; i >= 0; i--) {
@@ -715,11 +825,16 @@ class TarReader implements Closeable {
 
     /**
      * Collect the references of those blobs that are reachable from any segment with a
-     * generation at or above {@code minGeneration}.
+     * generation at or above {@code minGeneration} or from any segment written by
+     * compaction whose full generation matches {@code retainCompacted}.
      * @param collector
      * @param minGeneration
+     * @param retainCompacted  predicate on the full generations of the retained segments
+     *                         written by compaction or {@code null} if there are none.
      */
-    void collectBlobReferences(@Nonnull ReferenceCollector collector, int minGeneration) {
+    void collectBlobReferences(@Nonnull ReferenceCollector collector, int minGeneration,
+                               @Nullable Predicate<Integer> retainCompacted)
+    throws IOException {
         Map<Integer, Map<UUID, Set<String>>> generations = getBinaryReferences();
 
         if (generations == null) {
@@ -727,31 +842,83 @@ class TarReader implements Closeable {
         }
 
         for (Entry<Integer, Map<UUID, Set<String>>> entry : generations.entrySet()) {
-            if (entry.getKey() < minGeneration) {
+            if (entry.getKey() < minGeneration && retainCompacted == null) {
                 continue;
             }
 
-            for (Set<String> references : entry.getValue().values()) {
-                for (String reference : references) {
+            for (Entry<UUID, Set<String>> segment : entry.getValue().entrySet()) {
+                if (entry.getKey() < minGeneration
+                        && !isRetainedCompacted(segment.getKey(), retainCompacted)) {
+                    continue;
+                }
+                for (String reference : segment.getValue()) {
                     collector.addReference(reference, null);
                 }
             }
         }
     }
 
+    /**
+     * Determine whether the given segment of this file has been written by
+     * compaction and its full generation matches {@code retainCompacted}.
+     */
+    private boolean isRetainedCompacted(UUID id, @Nonnull Predicate<Integer> retainCompacted)
+    throws IOException {
+        int position = findEntry(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (position == -1) {
+            return false;
+        }
+        int fullGeneration = getCompactedFullGeneration(position);
+        return fullGeneration != NOT_COMPACTED && retainCompacted.apply(fullGeneration);
+    }
+
+    /**
+     * Get the full generation of the segment at the given position of the index if it
+     * has been written by compaction. As the index does not record full generations,
+     * it is read from the segment header on first access and remembered afterwards:
+     * this file is immutable, so repeated cleanups only need to read the headers of
+     * segments in new files.
+     *
+     * @param position  the position of the segment in the index
+     * @return  the full generation or {@link #NOT_COMPACTED}.
+     */
+    private int getCompactedFullGeneration(int position) throws IOException {
+        int i = (position - index.position()) / TarEntry.SIZE;
+        int fullGeneration = compactedFullGenerations[i];
+        if (fullGeneration == UNKNOWN_FULL_GENERATION) {
+            long lsb = index.getLong(position + 8);
+            UUID id = new UUID(index.getLong(position), lsb);
+            fullGeneration = NOT_COMPACTED;
+            if (isDataSegmentId(lsb)) {
+                ByteBuffer header = access.read(index.getInt(position + 16), GC_FULL_GENERATION_OFFSET + 4);
+                if (Segment.isCompacted(header, id)) {
+                    fullGeneration = Segment.getGcFullGeneration(header, id);
+                }
+            }
+            compactedFullGenerations[i] = fullGeneration;
+        }
+        return fullGeneration;
+    }
+
     /**
      * Collect reclaimable segments.
      * A data segment is reclaimable iff its generation is in the {@code reclaimGeneration}
-     * predicate.
+     * predicate, unless it has been written by compaction and its full generation is in
+     * the {@code retainCompacted} predicate. The latter are kept as tail compacted states
+     * reference them. Their full generations are only read for segments of a reclaimable
+     * generation.
      * A bulk segment is reclaimable if it is not in {@code bulkRefs} or if it is transitively
      * reachable through a non reclaimable data segment.
      *
      * @param bulkRefs  bulk segment gc roots
      * @param reclaim   reclaimable segments
      * @param reclaimGeneration  reclaim generation predicate for data segments
+     * @param retainCompacted  retain full generation predicate for data segments written
+     *                         by compaction or {@code null} to not retain any.
      * @throws IOException
      */
-    void mark(Set<UUID> bulkRefs, Set<UUID> reclaim, Predicate<Integer> reclaimGeneration)
+    void mark(Set<UUID> bulkRefs, Set<UUID> reclaim, Predicate<Integer> reclaimGeneration,
+              @Nullable Predicate<Integer> retainCompacted)
     throws IOException {
         Map<UUID, List<UUID>> graph = getGraph(true);
         TarEntry[] entries = getEntries();
@@ -764,7 +931,8 @@ class TarReader implements Closeable {
             TarEntry entry = entries[i];
             UUID id = new UUID(entry.msb(), entry.lsb());
             if ((!isDataSegmentId(entry.lsb()) && !bulkRefs.remove(id)) ||
-                (isDataSegmentId(entry.lsb()) && reclaimGeneration.apply(entry.generation()))) {
+                (isDataSegmentId(entry.lsb()) && reclaimGeneration.apply(entry.generation())
+                    && (retainCompacted == null || !isRetainedCompacted(id, retainCompacted)))) {
                 // non referenced bulk segment or old data segment
                 reclaim.add(id);
             } else {
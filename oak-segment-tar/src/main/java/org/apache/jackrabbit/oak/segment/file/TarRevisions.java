@@ -25,6 +25,7 @@ import static com.google.common.base.Throwables.propagate;
 import static com.google.common.base.Throwables.propagateIfInstanceOf;
 import static java.lang.Long.MAX_VALUE;
 import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 
 import java.io.Closeable;
 import java.io.File;
@@ -32,8 +33,10 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -59,12 +62,51 @@ import org.slf4j.LoggerFactory;
  * <p>
  * Instance of this class must be {@link #bind(SegmentStore, Supplier) bound} to
  * a {@code SegmentStore} otherwise its method throw {@code IllegalStateException}s.
+ * <p>
+ * The {@link Durability} passed at construction determines whether
+ * {@link #awaitPersisted()} returns right away, leaving the current head to
+ * be persisted by the next call to {@code flush}, or only once a flush
+ * covering the current head completed.
  */
 public class TarRevisions implements Revisions, Closeable {
     private static final Logger LOG = LoggerFactory.getLogger(TarRevisions.class);
 
     public static final String JOURNAL_FILE_NAME = "journal.log";
 
+    /**
+     * Time in microseconds a {@link Durability#GROUPED grouped} flush waits
+     * for further commits to join it before persisting them.
+     */
+    static final long GROUP_COMMIT_WINDOW = Long.getLong("oak.segment.groupCommitWindow", 500);
+
+    /**
+     * Durability guarantees given by {@link #awaitPersisted()} for the heads
+     * set on this instance.
+     */
+    public enum Durability {
+
+        /**
+         * Heads are persisted by the next call to {@link #flush(Callable)},
+         * usually issued periodically by the store. A crash may lose the
+         * commits of the last flush interval.
+         */
+        TIMED,
+
+        /**
+         * {@code awaitPersisted} returns once a flush covering the current
+         * head completed. Concurrent commits reaching the journal within a
+         * small window share a single flush of the tar writer and the journal.
+         */
+        GROUPED,
+
+        /**
+         * {@code awaitPersisted} returns once a flush covering the current
+         * head completed. The flush is started right away, commits only share
+         * a flush if they arrive while another flush is in progress.
+         */
+        COMMIT
+    }
+
     @Nonnull
     private final AtomicReference<RecordId> head;
 
@@ -84,6 +126,30 @@ public class TarRevisions implements Revisions, Closeable {
     @Nonnull
     private final ReadWriteLock rwLock = new ReentrantReadWriteLock(true);
 
+    @Nonnull
+    private final Durability durability;
+
+    /**
+     * Number of times the head has been set, used to determine whether a
+     * head has been covered by a flush.
+     */
+    private final AtomicLong headCount = new AtomicLong();
+
+    /**
+     * Value of {@link #headCount} at the time of the last flush.
+     */
+    private volatile long persistedCount;
+
+    /**
+     * Call back passed to the flushes issued by {@link #awaitPersisted()}.
+     * Only set for {@link Durability#GROUPED} and {@link Durability#COMMIT}.
+     */
+    @CheckForNull
+    private volatile Callable<Void> persisted;
+
+    @Nonnull
+    private volatile FileStoreMonitor monitor = FileStoreMonitor.DEFAULT;
+
     private static class TimeOutOption implements Option {
         private final long time;
 
@@ -135,7 +201,20 @@ public class TarRevisions implements Revisions, Closeable {
      * @throws IOException
      */
     public TarRevisions(@Nonnull File directory) throws IOException {
+        this(directory, Durability.TIMED);
+    }
+
+    /**
+     * Create a new instance placing the journal log file into the passed
+     * {@code directory}.
+     * @param directory     directory of the journal file
+     * @param durability    durability of the heads set on this instance
+     * @throws IOException
+     */
+    public TarRevisions(@Nonnull File directory, @Nonnull Durability durability)
+    throws IOException {
         this.directory = checkNotNull(directory);
+        this.durability = checkNotNull(durability);
         this.journalFile = new RandomAccessFile(new File(directory,
                 JOURNAL_FILE_NAME), "rw");
         this.journalFile.seek(journalFile.length());
@@ -179,6 +258,33 @@ public class TarRevisions implements Revisions, Closeable {
         }
     }
 
+    /**
+     * Bind this instance to a store.
+     * @param store              store to bind to
+     * @param writeInitialNode   provider for the initial node in case the journal is empty.
+     * @param persisted          call back passed to the flushes issued from
+     *                           {@link #awaitPersisted()} unless the durability
+     *                           is {@link Durability#TIMED}.
+     * @param monitor            monitor notified of the journal syncs
+     * @throws IOException
+     */
+    synchronized void bind(@Nonnull SegmentStore store,
+                           @Nonnull Supplier<RecordId> writeInitialNode,
+                           @Nonnull Callable<Void> persisted,
+                           @Nonnull FileStoreMonitor monitor)
+    throws IOException {
+        this.monitor = checkNotNull(monitor);
+        if (durability != Durability.TIMED) {
+            this.persisted = checkNotNull(persisted);
+        }
+        bind(store, writeInitialNode);
+    }
+
+    @Nonnull
+    Durability getDurability() {
+        return durability;
+    }
+
     private void checkBound() {
         checkState(head.get() != null, "Revisions not bound to a store");
     }
@@ -200,19 +306,61 @@ public class TarRevisions implements Revisions, Closeable {
         }
         if (flushLock.tryLock()) {
             try {
-                RecordId before = persistedHead.get();
-                RecordId after = getHead();
-                if (!after.equals(before)) {
-                    persisted.call();
-
-                    LOG.debug("TarMK journal update {} -> {}", before, after);
-                    journalFile.writeBytes(after.toString10() + " root " + System.currentTimeMillis() + "\n");
-                    journalFile.getChannel().force(false);
-                    persistedHead.set(after);
+                doFlush(persisted);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    private void doFlush(@Nonnull Callable<Void> persisted) throws IOException {
+        try {
+            // The head is read after the count such that it covers at
+            // least as many heads as the count indicates
+            long count = headCount.get();
+            RecordId before = persistedHead.get();
+            RecordId after = getHead();
+            if (!after.equals(before)) {
+                persisted.call();
+
+                LOG.debug("TarMK journal update {} -> {}", before, after);
+                journalFile.writeBytes(after.toString10() + " root " + System.currentTimeMillis() + "\n");
+                journalFile.getChannel().force(false);
+                persistedHead.set(after);
+                monitor.synced(count - persistedCount);
+            }
+            persistedCount = count;
+        } catch (Exception e) {
+            propagateIfInstanceOf(e, IOException.class);
+            propagate(e);
+        }
+    }
+
+    /**
+     * This implementation returns immediately for {@link Durability#TIMED}.
+     * Otherwise the first waiting caller flushes on behalf of all callers
+     * waiting for the flush lock, which thus share that flush.
+     */
+    @Override
+    public void awaitPersisted() {
+        Callable<Void> persisted = this.persisted;
+        if (persisted == null) {
+            return;
+        }
+        long count = headCount.get();
+        while (persistedCount < count) {
+            flushLock.lock();
+            try {
+                if (persistedCount < count) {
+                    if (durability == Durability.GROUPED) {
+                        LockSupport.parkNanos(MICROSECONDS.toNanos(GROUP_COMMIT_WINDOW));
+                    }
+                    doFlush(persisted);
                 }
-            } catch (Exception e) {
-                propagateIfInstanceOf(e, IOException.class);
-                propagate(e);
+            } catch (IOException e) {
+                String msg = "Failed to persist head";
+                LOG.error(msg, e);
+                throw new IllegalStateException(msg, e);
             } finally {
                 flushLock.unlock();
             }
@@ -251,7 +399,12 @@ public class TarRevisions implements Revisions, Closeable {
         lock.lock();
         try {
             RecordId id = this.head.get();
-            return id.equals(expected) && this.head.compareAndSet(id, head);
+            if (id.equals(expected) && this.head.compareAndSet(id, head)) {
+                headCount.incrementAndGet();
+                return true;
+            } else {
+                return false;
+            }
         } finally {
             lock.unlock();
         }
@@ -282,6 +435,7 @@ public class TarRevisions implements Revisions, Closeable {
                 RecordId after = newHead.apply(getHead());
                 if (after != null) {
                     head.set(after);
+                    headCount.incrementAndGet();
                     return true;
                 } else {
                     return false;
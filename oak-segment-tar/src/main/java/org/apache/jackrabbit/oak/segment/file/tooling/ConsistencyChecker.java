@@ -27,6 +27,7 @@ import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
 import static org.apache.jackrabbit.oak.commons.PathUtils.denotesRoot;
 import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
 import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
+import static org.apache.jackrabbit.oak.segment.SegmentCache.withoutPromotion;
 import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
 import static org.apache.jackrabbit.oak.spi.state.NodeStateUtils.getNode;
 
@@ -35,6 +36,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
@@ -169,16 +171,23 @@ public class ConsistencyChecker implements Closeable {
      * @param revision  revision to travers
      * @param binLen    number of bytes to read from binary properties. -1 for all.
      */
-    public String traverse(String revision, long binLen) {
+    public String traverse(String revision, final long binLen) {
         try {
             store.setRevision(revision);
             nodeCount = 0;
             propertyCount = 0;
-            String result = traverse(SegmentNodeStoreBuilders.builder(store).build()
-                    .getRoot(), "/", true, binLen);
+            // a full traversal touches every segment once, keep it from
+            // evicting the working set of the segment cache
+            String result = withoutPromotion(new Callable<String>() {
+                @Override
+                public String call() {
+                    return traverse(SegmentNodeStoreBuilders.builder(store).build()
+                            .getRoot(), "/", true, binLen);
+                }
+            });
             print("Traversed {} nodes and {} properties", nodeCount, propertyCount);
             return result;
-        } catch (RuntimeException e) {
+        } catch (Exception e) {
             print("Error while traversing {}", revision, e.getMessage());
             return "/";
         }
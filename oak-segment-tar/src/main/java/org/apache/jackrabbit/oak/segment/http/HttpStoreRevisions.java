@@ -87,4 +87,9 @@ public class HttpStoreRevisions implements Revisions {
             @Nonnull Option... options) throws InterruptedException {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void awaitPersisted() {
+        // Nothing to persist
+    }
 }
@@ -84,4 +84,9 @@ public class MemoryStoreRevisions implements Revisions {
             @Nonnull Option... options) throws InterruptedException {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public void awaitPersisted() {
+        // Nothing to persist
+    }
 }
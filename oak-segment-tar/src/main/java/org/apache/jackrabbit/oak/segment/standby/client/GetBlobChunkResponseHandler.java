@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.client;
+
+import java.util.concurrent.BlockingQueue;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunkResponse;
+
+/**
+ * Queues the received blob chunks for the client. Reading from the channel is
+ * suspended when too many chunks are queued, such that the memory used for a
+ * blob transfer stays bounded if the chunks arrive faster than the client can
+ * persist them. The client resumes reading once it caught up.
+ */
+class GetBlobChunkResponseHandler extends SimpleChannelInboundHandler<GetBlobChunkResponse> {
+
+    private final BlockingQueue<GetBlobChunkResponse> queue;
+
+    private final int maxQueuedChunks;
+
+    GetBlobChunkResponseHandler(BlockingQueue<GetBlobChunkResponse> queue, int maxQueuedChunks) {
+        this.queue = queue;
+        this.maxQueuedChunks = maxQueuedChunks;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, GetBlobChunkResponse msg) throws Exception {
+        queue.offer(msg);
+
+        if (queue.size() >= maxQueuedChunks) {
+            ctx.channel().config().setAutoRead(false);
+
+            // The client might have drained the queue before reading was
+            // suspended, in which case it would never resume reading.
+
+            if (queue.isEmpty()) {
+                ctx.channel().config().setAutoRead(true);
+            }
+        }
+    }
+
+}
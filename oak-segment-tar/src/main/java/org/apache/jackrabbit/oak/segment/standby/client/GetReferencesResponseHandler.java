@@ -17,23 +17,28 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
-import java.util.Queue;
+import java.util.Map;
 
+import com.google.common.util.concurrent.SettableFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
 
 class GetReferencesResponseHandler extends SimpleChannelInboundHandler<GetReferencesResponse> {
 
-    private final Queue<GetReferencesResponse> queue;
+    private final Map<String, SettableFuture<Iterable<String>>> requests;
 
-    GetReferencesResponseHandler(Queue<GetReferencesResponse> queue) {
-        this.queue = queue;
+    GetReferencesResponseHandler(Map<String, SettableFuture<Iterable<String>>> requests) {
+        this.requests = requests;
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, GetReferencesResponse msg) throws Exception {
-        queue.offer(msg);
+        SettableFuture<Iterable<String>> request = requests.get(msg.getSegmentId());
+
+        if (request != null) {
+            request.set(msg.getReferences());
+        }
     }
 
 }
@@ -17,23 +17,28 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.Map;
 
+import com.google.common.util.concurrent.SettableFuture;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
 
 class GetSegmentResponseHandler extends SimpleChannelInboundHandler<GetSegmentResponse> {
 
-    private final BlockingQueue<GetSegmentResponse> queue;
+    private final Map<String, SettableFuture<byte[]>> requests;
 
-    GetSegmentResponseHandler(BlockingQueue<GetSegmentResponse> queue) {
-        this.queue = queue;
+    GetSegmentResponseHandler(Map<String, SettableFuture<byte[]>> requests) {
+        this.requests = requests;
     }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, GetSegmentResponse msg) throws Exception {
-        queue.offer(msg);
+        SettableFuture<byte[]> request = requests.get(msg.getSegmentId());
+
+        if (request != null) {
+            request.set(msg.getSegmentData());
+        }
     }
 
 }
@@ -17,10 +17,21 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.SettableFuture;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
@@ -37,6 +48,9 @@ import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.util.CharsetUtil;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunkResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunksRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunksRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobResponse;
@@ -45,10 +59,8 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesRequestEncoder;
-import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequestEncoder;
-import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.ResponseDecoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,26 +71,60 @@ class StandbyClient implements AutoCloseable {
 
     private final BlockingQueue<GetHeadResponse> headQueue = new LinkedBlockingDeque<>();
 
-    private final BlockingQueue<GetSegmentResponse> segmentQueue = new LinkedBlockingDeque<>();
-
-    private final BlockingQueue<GetBlobResponse> blobQueue = new LinkedBlockingDeque<>();
-
-    private final BlockingQueue<GetReferencesResponse> referencesQueue = new LinkedBlockingDeque<>();
+    /**
+     * Segment requests in flight by segment id. Responses carry the id of
+     * the segment, which allows to have many requests in flight and to match
+     * responses to requests independent of their order.
+     */
+    private final ConcurrentMap<String, SettableFuture<byte[]>> segmentRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Maximum number of blob chunks received but not yet persisted by the
+     * client, before reading from the channel is suspended.
+     */
+    private static final int MAX_QUEUED_CHUNKS = 16;
+
+    private final BlockingQueue<GetBlobChunkResponse> blobQueue = new LinkedBlockingDeque<>();
+
+    /**
+     * Blobs sent in one message by primaries not supporting chunks.
+     */
+    private final BlockingQueue<GetBlobResponse> singleBlobQueue = new LinkedBlockingDeque<>();
+
+    /**
+     * Whether the primary sends blobs in chunks, or {@code null} as long as
+     * this is not known. See {@link #getBlob(String)}.
+     */
+    private volatile Boolean chunkedBlobs;
+
+    /**
+     * References requests in flight by segment id.
+     */
+    private final ConcurrentMap<String, SettableFuture<Iterable<String>>> referencesRequests = new ConcurrentHashMap<>();
 
     private final boolean secure;
 
     private final int readTimeoutMs;
 
+    private final File spoolFolder;
+
     private String clientId;
 
     private NioEventLoopGroup group;
 
     private Channel channel;
 
-    StandbyClient(String clientId, boolean secure, int readTimeoutMs) {
+    /**
+     * @param spoolFolder folder where blobs are downloaded to. Partially
+     *                    downloaded blobs are kept there, such that a later
+     *                    download of the same blob can resume where the
+     *                    previous one stopped.
+     */
+    StandbyClient(String clientId, boolean secure, int readTimeoutMs, File spoolFolder) {
         this.clientId = clientId;
         this.secure = secure;
         this.readTimeoutMs = readTimeoutMs;
+        this.spoolFolder = spoolFolder;
     }
 
     void connect(String host, int port) throws Exception {
@@ -115,10 +161,10 @@ class StandbyClient implements AutoCloseable {
 
                         p.addLast(new SnappyFramedDecoder(true));
 
-                        // Such a big max frame length is needed because blob
-                        // values are sent in one big message. In future
-                        // versions of the protocol, sending binaries in chunks
-                        // should be considered instead.
+                        // Blobs are requested in chunks of limited size. Such a
+                        // big max frame length is still needed for primaries of
+                        // earlier versions, which send each blob in one big
+                        // message.
 
                         p.addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4));
                         p.addLast(new ResponseDecoder());
@@ -128,15 +174,17 @@ class StandbyClient implements AutoCloseable {
                         p.addLast(new StringEncoder(CharsetUtil.UTF_8));
                         p.addLast(new GetHeadRequestEncoder());
                         p.addLast(new GetSegmentRequestEncoder());
+                        p.addLast(new GetBlobChunksRequestEncoder());
                         p.addLast(new GetBlobRequestEncoder());
                         p.addLast(new GetReferencesRequestEncoder());
 
                         // Handlers
 
                         p.addLast(new GetHeadResponseHandler(headQueue));
-                        p.addLast(new GetSegmentResponseHandler(segmentQueue));
-                        p.addLast(new GetBlobResponseHandler(blobQueue));
-                        p.addLast(new GetReferencesResponseHandler(referencesQueue));
+                        p.addLast(new GetSegmentResponseHandler(segmentRequests));
+                        p.addLast(new GetBlobChunkResponseHandler(blobQueue, MAX_QUEUED_CHUNKS));
+                        p.addLast(new GetBlobResponseHandler(singleBlobQueue));
+                        p.addLast(new GetReferencesResponseHandler(referencesRequests));
                     }
 
                 });
@@ -185,39 +233,196 @@ class StandbyClient implements AutoCloseable {
     }
 
     byte[] getSegment(String segmentId) throws InterruptedException {
+        return await(segmentRequests, segmentId, requestSegment(segmentId));
+    }
+
+    /**
+     * Send a request for the given segment without waiting for the response.
+     * A subsequent call to {@link #getSegment(String)} for the same segment
+     * returns the response of this request.
+     */
+    void prefetchSegment(String segmentId) {
+        requestSegment(segmentId);
+    }
+
+    private SettableFuture<byte[]> requestSegment(String segmentId) {
+        SettableFuture<byte[]> request = SettableFuture.create();
+        SettableFuture<byte[]> inFlight = segmentRequests.putIfAbsent(segmentId, request);
+
+        if (inFlight != null) {
+            return inFlight;
+        }
+
         channel.writeAndFlush(new GetSegmentRequest(clientId, segmentId));
+        return request;
+    }
 
-        GetSegmentResponse response = segmentQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+    /**
+     * Download a blob to a file in the spool folder. The blob is transferred
+     * in chunks, each of them verified by its own checksum. If a previous
+     * download of the same blob was interrupted, e.g. because the connection
+     * dropped, the transfer resumes from where the previous one stopped.
+     * <p>
+     * Primaries of earlier versions drop requests for chunks without any
+     * answer and only send blobs in one message. Primaries supporting chunks
+     * answer every request for chunks, even if they can't serve it, before
+     * they answer the next request. As long as it is not known which kind of
+     * primary this client is connected to, the request for chunks is
+     * therefore followed by a request for the head. If the head arrives
+     * without any chunk, the primary does not support chunks and blobs are
+     * requested in one message from then on. A slow primary answering
+     * neither doesn't change how blobs are requested.
+     *
+     * @param blobId the identifier of the blob.
+     * @return the file containing the blob or {@code null} if the blob could
+     * not be downloaded completely. The partial content is kept in the latter
+     * case, unless the primary could not serve the requested offset.
+     */
+    File getBlob(String blobId) throws InterruptedException, IOException {
+        File file = new File(spoolFolder, Hashing.sha1().hashString(blobId, Charsets.UTF_8).toString());
+
+        if (chunkedBlobs == Boolean.FALSE) {
+            return getBlobInOneMessage(blobId, file);
+        }
 
-        if (response == null) {
-            return null;
+        long offset = file.length();
+
+        boolean probe = chunkedBlobs == null;
+
+        blobQueue.clear();
+        channel.config().setAutoRead(true);
+        channel.writeAndFlush(new GetBlobChunksRequest(clientId, blobId, offset));
+
+        if (probe) {
+            headQueue.clear();
+            channel.writeAndFlush(new GetHeadRequest(clientId));
         }
 
-        return response.getSegmentData();
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            while (true) {
+                GetBlobChunkResponse response = blobQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+
+                if (blobQueue.size() < MAX_QUEUED_CHUNKS / 2) {
+                    channel.config().setAutoRead(true);
+                }
+
+                if (response == null) {
+                    if (probe && !headQueue.isEmpty()) {
+                        log.warn("Primary does not send blobs in chunks, probably because it runs an earlier version. " +
+                                "Blobs are requested in one message from now on.");
+                        chunkedBlobs = false;
+                        out.close();
+                        return getBlobInOneMessage(blobId, file);
+                    }
+
+                    log.debug("Timeout while waiting for chunk at offset {} of blob {}", offset, blobId);
+                    return null;
+                }
+
+                if (probe) {
+                    chunkedBlobs = true;
+                    probe = false;
+                }
+
+                if (!blobId.equals(response.getBlobId()) || response.getOffset() != offset) {
+                    log.debug("Unexpected chunk at offset {} of blob {}, expected offset {} of blob {}",
+                            response.getOffset(), response.getBlobId(), offset, blobId);
+                    return null;
+                }
+
+                if (response.getBlobLength() < 0) {
+                    log.debug("Primary can't serve blob {} from offset {}", blobId, offset);
+
+                    // Start from scratch next time in case the partial
+                    // content is the reason for this.
+
+                    out.close();
+                    file.delete();
+                    return null;
+                }
+
+                out.write(response.getChunkData());
+                offset += response.getChunkData().length;
+
+                if (offset >= response.getBlobLength()) {
+                    return file;
+                }
+            }
+        }
     }
 
-    byte[] getBlob(String blobId) throws InterruptedException {
+    /**
+     * Download a blob sent in one message, replacing any partial content of
+     * the given file.
+     *
+     * @return the file containing the blob or {@code null} if the blob was not
+     * received.
+     */
+    private File getBlobInOneMessage(String blobId, File file) throws InterruptedException, IOException {
+        // Chunks still queued for an earlier request must not suspend reading
+        // the response
+
+        blobQueue.clear();
+        channel.config().setAutoRead(true);
+
+        singleBlobQueue.clear();
         channel.writeAndFlush(new GetBlobRequest(clientId, blobId));
 
-        GetBlobResponse response = blobQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+        GetBlobResponse response = singleBlobQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
 
         if (response == null) {
+            log.debug("Timeout while waiting for blob {}", blobId);
             return null;
         }
 
-        return response.getBlobData();
+        if (!blobId.equals(response.getBlobId())) {
+            log.debug("Unexpected blob {}, expected blob {}", response.getBlobId(), blobId);
+            return null;
+        }
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(response.getBlobData());
+        }
+
+        return file;
     }
 
     Iterable<String> getReferences(String segmentId) throws InterruptedException {
-        channel.writeAndFlush(new GetReferencesRequest(clientId, segmentId));
+        return await(referencesRequests, segmentId, requestReferences(segmentId));
+    }
 
-        GetReferencesResponse response = referencesQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+    /**
+     * Send a request for the references of the given segment without waiting
+     * for the response. A subsequent call to {@link #getReferences(String)}
+     * for the same segment returns the response of this request.
+     */
+    void prefetchReferences(String segmentId) {
+        requestReferences(segmentId);
+    }
 
-        if (response == null) {
-            return null;
+    private SettableFuture<Iterable<String>> requestReferences(String segmentId) {
+        SettableFuture<Iterable<String>> request = SettableFuture.create();
+        SettableFuture<Iterable<String>> inFlight = referencesRequests.putIfAbsent(segmentId, request);
+
+        if (inFlight != null) {
+            return inFlight;
         }
 
-        return response.getReferences();
+        channel.writeAndFlush(new GetReferencesRequest(clientId, segmentId));
+        return request;
+    }
+
+    private <T> T await(ConcurrentMap<String, SettableFuture<T>> requests, String id, SettableFuture<T> request) throws InterruptedException {
+        try {
+            return request.get(readTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return null;
+        } catch (ExecutionException e) {
+            log.debug("Request for {} failed", id, e.getCause());
+            return null;
+        } finally {
+            requests.remove(id, request);
+        }
     }
 
 }
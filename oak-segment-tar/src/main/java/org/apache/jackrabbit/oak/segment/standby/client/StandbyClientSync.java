@@ -22,6 +22,7 @@ package org.apache.jackrabbit.oak.segment.standby.client;
 import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.UUID;
@@ -33,6 +34,8 @@ import javax.management.StandardMBean;
 import javax.net.ssl.SSLException;
 
 import com.google.common.base.Supplier;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.standby.jmx.ClientStandbyStatusMBean;
 import org.apache.jackrabbit.oak.segment.standby.jmx.StandbyStatusMBean;
@@ -58,6 +61,8 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
     private final boolean secure;
 
+    private final int maxInFlight;
+
     private boolean active = false;
 
     private int failedRequests;
@@ -70,6 +75,12 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
     private final FileStore fileStore;
 
+    /**
+     * Folder for downloading blobs. It is kept across sync cycles, such that
+     * interrupted blob downloads can be resumed by the next cycle.
+     */
+    private final File spoolFolder = Files.createTempDir();
+
     private final AtomicBoolean running = new AtomicBoolean(true);
 
     private long syncStartTimestamp;
@@ -77,6 +88,16 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
     private long syncEndTimestamp;
 
     public StandbyClientSync(String host, int port, FileStore store, boolean secure, int readTimeoutMs, boolean autoClean) throws SSLException {
+        this(host, port, store, secure, readTimeoutMs, autoClean, 1);
+    }
+
+    /**
+     * @param maxInFlight maximum number of segment and references requests
+     *                    sent to the primary without waiting for their
+     *                    responses. A value of 1 synchronizes one segment at
+     *                    a time.
+     */
+    public StandbyClientSync(String host, int port, FileStore store, boolean secure, int readTimeoutMs, boolean autoClean, int maxInFlight) throws SSLException {
         this.state = STATUS_INITIALIZING;
         this.lastSuccessfulRequest = -1;
         this.syncStartTimestamp = -1;
@@ -87,6 +108,7 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
         this.secure = secure;
         this.readTimeoutMs = readTimeoutMs;
         this.autoClean = autoClean;
+        this.maxInFlight = maxInFlight;
         this.fileStore = store;
         String s = System.getProperty(CLIENT_ID_PROPERTY_NAME);
         this.observer = new CommunicationObserver((s == null || s.length() == 0) ? UUID.randomUUID().toString() : s);
@@ -114,6 +136,7 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
             log.error("can unregister standby status mbean", e);
         }
         observer.unregister();
+        FileUtils.deleteQuietly(spoolFolder);
         state = STATUS_CLOSED;
     }
 
@@ -136,11 +159,11 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
         try {
             long startTimestamp = System.currentTimeMillis();
-            try (StandbyClient client = new StandbyClient(observer.getID(), secure, readTimeoutMs)) {
+            try (StandbyClient client = new StandbyClient(observer.getID(), secure, readTimeoutMs, spoolFolder)) {
                 client.connect(host, port);
 
                 long sizeBefore = fileStore.getStats().getApproximateSize();
-                new StandbyClientSyncExecution(fileStore, client, newRunningSupplier()).execute();
+                new StandbyClientSyncExecution(fileStore, client, newRunningSupplier(), maxInFlight).execute();
                 long sizeAfter = fileStore.getStats().getApproximateSize();
 
                 if (autoClean && sizeAfter > 1.25 * sizeBefore) {
@@ -17,10 +17,13 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import static com.google.common.collect.Iterables.concat;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -54,10 +57,16 @@ class StandbyClientSyncExecution {
 
     private final Map<UUID, Segment> cache = newHashMap();
 
-    StandbyClientSyncExecution(FileStore store, StandbyClient client, Supplier<Boolean> running) {
+    /**
+     * Maximum number of segment and references requests in flight.
+     */
+    private final int maxInFlight;
+
+    StandbyClientSyncExecution(FileStore store, StandbyClient client, Supplier<Boolean> running, int maxInFlight) {
         this.store = store;
         this.client = client;
         this.running = running;
+        this.maxInFlight = Math.max(1, maxInFlight);
     }
 
     void execute() throws Exception {
@@ -108,25 +117,40 @@ class StandbyClientSyncExecution {
         Set<UUID> queued = new HashSet<>();
         Set<UUID> local = new HashSet<>();
 
-        while (batch.size() > 0) {
-            UUID current = batch.remove();
+        // Data segments whose references were requested from the primary,
+        // in the order of the requests. Keeping up to 'maxInFlight' requests
+        // in flight hides the latency of the round trips to the primary.
 
-            log.debug("Inspecting segment {}", current);
-            visited.add(current);
+        LinkedList<UUID> inFlight = new LinkedList<>();
 
-            // Add the current segment ID at the beginning of the respective
-            // list, depending on its type. This allows to process those
-            // segments in an optimal topological order later on. If the current
-            // segment is a bulk segment, we can skip the rest of the loop,
-            // since bulk segments don't reference any other segment.
+        while (batch.size() > 0 || inFlight.size() > 0) {
+            while (batch.size() > 0 && inFlight.size() < maxInFlight) {
+                UUID next = batch.remove();
 
-            if (SegmentId.isDataSegmentId(current.getLeastSignificantBits())) {
-                data.addFirst(current);
-            } else {
-                bulk.addFirst(current);
+                log.debug("Inspecting segment {}", next);
+                visited.add(next);
+
+                // Add the segment ID at the beginning of the respective list,
+                // depending on its type. This allows to process those segments
+                // in an optimal topological order later on. Bulk segments
+                // don't reference any other segment, so there is no need to
+                // request their references.
+
+                if (SegmentId.isDataSegmentId(next.getLeastSignificantBits())) {
+                    data.addFirst(next);
+                    client.prefetchReferences(next.toString());
+                    inFlight.add(next);
+                } else {
+                    bulk.addFirst(next);
+                }
+            }
+
+            if (inFlight.isEmpty()) {
                 continue;
             }
 
+            UUID current = inFlight.remove();
+
             for (String s : readReferences(current)) {
                 UUID referenced = UUID.fromString(s);
 
@@ -177,13 +201,29 @@ class StandbyClientSyncExecution {
             }
         }
 
-        for (UUID id : bulk) {
-            log.info("Copying bulk segment {} from primary", id);
-            copySegmentFromPrimary(id);
-        }
+        // Segments are written in order, while the following segments are
+        // already requested from the primary.
+
+        List<UUID> ids = newArrayList(concat(bulk, data));
+        int prefetched = 0;
+
+        for (int i = 0; i < ids.size(); i++) {
+            while (prefetched < ids.size() && prefetched < i + maxInFlight) {
+                UUID next = ids.get(prefetched++);
+
+                if (!cache.containsKey(next)) {
+                    client.prefetchSegment(next.toString());
+                }
+            }
+
+            UUID id = ids.get(i);
+
+            if (SegmentId.isDataSegmentId(id.getLeastSignificantBits())) {
+                log.info("Copying data segment {} from primary", id);
+            } else {
+                log.info("Copying bulk segment {} from primary", id);
+            }
 
-        for (UUID id : data) {
-            log.info("Copying data segment {} from primary", id);
             copySegmentFromPrimary(id);
         }
 
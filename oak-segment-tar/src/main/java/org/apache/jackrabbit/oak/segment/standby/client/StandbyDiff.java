@@ -22,8 +22,10 @@ package org.apache.jackrabbit.oak.segment.standby.client;
 import static org.apache.jackrabbit.oak.api.Type.BINARIES;
 import static org.apache.jackrabbit.oak.api.Type.BINARY;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import com.google.common.base.Supplier;
 import org.apache.jackrabbit.oak.api.Blob;
@@ -163,17 +165,27 @@ class StandbyDiff implements NodeStateDiff {
     }
 
     private void readBlob(String blobId, String pName) throws InterruptedException {
-        byte[] data = client.getBlob(blobId);
+        File file;
 
-        if (data == null) {
+        try {
+            file = client.getBlob(blobId);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load remote blob " + blobId + " at " + path + "#" + pName, e);
+        }
+
+        if (file == null) {
             throw new IllegalStateException("Unable to load remote blob " + blobId + " at " + path + "#" + pName);
         }
 
-        try {
-            store.getBlobStore().writeBlob(new ByteArrayInputStream(data));
+        try (InputStream in = new FileInputStream(file)) {
+            store.getBlobStore().writeBlob(in);
         } catch (IOException f) {
             throw new IllegalStateException("Unable to persist blob " + blobId + " at " + path + "#" + pName, f);
         }
+
+        if (!file.delete()) {
+            log.debug("Unable to delete downloaded blob {}", file);
+        }
     }
 
     @Override
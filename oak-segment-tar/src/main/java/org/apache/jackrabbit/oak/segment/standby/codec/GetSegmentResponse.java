@@ -17,15 +17,21 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import java.nio.ByteBuffer;
+
 public class GetSegmentResponse {
 
     private final String clientId;
 
     private final String segmentId;
 
-    private final byte[] segmentData;
+    private final ByteBuffer segmentData;
 
     public GetSegmentResponse(String clientId, String segmentId, byte[] segmentData) {
+        this(clientId, segmentId, ByteBuffer.wrap(segmentData));
+    }
+
+    public GetSegmentResponse(String clientId, String segmentId, ByteBuffer segmentData) {
         this.clientId = clientId;
         this.segmentId = segmentId;
         this.segmentData = segmentData;
@@ -39,8 +45,34 @@ public class GetSegmentResponse {
         return segmentId;
     }
 
+    /**
+     * The segment data as an array. This only copies if the response was
+     * created from a buffer not backed by an array of the exact size, which
+     * is the case on the server side, where the encoder uses
+     * {@link #getSegmentBuffer()} instead.
+     */
     public byte[] getSegmentData() {
-        return segmentData;
+        if (segmentData.hasArray()
+                && segmentData.arrayOffset() == 0
+                && segmentData.position() == 0
+                && segmentData.remaining() == segmentData.array().length) {
+            return segmentData.array();
+        }
+        byte[] data = new byte[segmentData.remaining()];
+        segmentData.duplicate().get(data);
+        return data;
+    }
+
+    /**
+     * @return  a view of the segment data that can be consumed independently
+     *          of this response.
+     */
+    public ByteBuffer getSegmentBuffer() {
+        return segmentData.duplicate();
+    }
+
+    public int getSegmentSize() {
+        return segmentData.remaining();
     }
 
 }
@@ -17,20 +17,29 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.lang.Math.min;
+
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.UUID;
 
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Encodes a 'get segment' response.
+ * Encodes a {@link GetSegmentResponse} without copying the segment data. The
+ * header is written to a small buffer, which is composed with a buffer
+ * wrapping the segment data as returned by the segment reader. For memory
+ * mapped tar files this means the segment goes from the mapped region to the
+ * next handler in the pipeline without an intermediate copy on the heap.
  */
-public class GetSegmentResponseEncoder extends MessageToByteEncoder<GetSegmentResponse> {
+public class GetSegmentResponseEncoder extends MessageToMessageEncoder<GetSegmentResponse> {
 
     private static final Logger log = LoggerFactory.getLogger(GetSegmentResponseEncoder.class);
 
@@ -38,25 +47,44 @@ public class GetSegmentResponseEncoder extends MessageToByteEncoder<GetSegmentRe
 
     private static final int EXTRA_HEADERS_WO_SIZE = EXTRA_HEADERS_LEN - 4;
 
+    /**
+     * Size of the scratch array used to hash segment data that is not backed
+     * by an accessible array.
+     */
+    private static final int HASH_CHUNK_SIZE = 8192;
+
     @Override
-    protected void encode(ChannelHandlerContext ctx, GetSegmentResponse msg, ByteBuf out) throws Exception {
+    protected void encode(ChannelHandlerContext ctx, GetSegmentResponse msg, List<Object> out) throws Exception {
         log.debug("Sending segment {} to client {}", msg.getSegmentId(), msg.getClientId());
-        encode(msg.getSegmentId(), msg.getSegmentData(), out);
+        out.add(encode(msg.getSegmentId(), msg.getSegmentBuffer()));
     }
 
-    private void encode(String segmentId, byte[] data, ByteBuf out) throws Exception {
+    private static ByteBuf encode(String segmentId, ByteBuffer data) {
         UUID id = UUID.fromString(segmentId);
 
+        ByteBuf header = Unpooled.buffer(EXTRA_HEADERS_LEN);
+        header.writeInt(data.remaining() + EXTRA_HEADERS_WO_SIZE);
+        header.writeByte(Messages.HEADER_SEGMENT);
+        header.writeLong(id.getMostSignificantBits());
+        header.writeLong(id.getLeastSignificantBits());
+        header.writeLong(hash(data));
+        return Unpooled.wrappedBuffer(header, Unpooled.wrappedBuffer(data));
+    }
+
+    private static long hash(ByteBuffer data) {
         Hasher hasher = Hashing.murmur3_32().newHasher();
-        long hash = hasher.putBytes(data).hash().padToLong();
-
-        int len = data.length + EXTRA_HEADERS_WO_SIZE;
-        out.writeInt(len);
-        out.writeByte(Messages.HEADER_SEGMENT);
-        out.writeLong(id.getMostSignificantBits());
-        out.writeLong(id.getLeastSignificantBits());
-        out.writeLong(hash);
-        out.writeBytes(data);
+        if (data.hasArray()) {
+            hasher.putBytes(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        } else {
+            ByteBuffer buffer = data.duplicate();
+            byte[] chunk = new byte[min(HASH_CHUNK_SIZE, buffer.remaining())];
+            while (buffer.hasRemaining()) {
+                int n = min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                hasher.putBytes(chunk, 0, n);
+            }
+        }
+        return hasher.hash().padToLong();
     }
 
 }
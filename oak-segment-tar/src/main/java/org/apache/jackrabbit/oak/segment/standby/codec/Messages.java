@@ -29,6 +29,8 @@ class Messages {
 
     static final byte HEADER_REFERENCES = 0x03;
 
+    static final byte HEADER_BLOB_CHUNK = 0x04;
+
     static final String GET_HEAD = "h";
 
     static final String GET_SEGMENT = "s.";
@@ -37,6 +39,8 @@ class Messages {
 
     static final String GET_REFERENCES = "r.";
 
+    static final String GET_BLOB_CHUNKS = "c.";
+
     private static final String MAGIC = "Standby-CMD@";
 
     private static final String SEPARATOR = ":";
@@ -90,6 +94,14 @@ class Messages {
         return newGetBlobRequest(clientId, blobId, true);
     }
 
+    static String newGetBlobChunksRequest(String clientId, String blobId, long offset, boolean delimited) {
+        return newRequest(clientId, GET_BLOB_CHUNKS + offset + "." + blobId, delimited);
+    }
+
+    static String newGetBlobChunksRequest(String clientId, String blobId, long offset) {
+        return newGetBlobChunksRequest(clientId, blobId, offset, true);
+    }
+
     static String extractMessageFrom(String payload) {
         if (payload.startsWith(MAGIC) && payload.length() > MAGIC.length()) {
             int i = payload.indexOf(SEPARATOR);
@@ -47,9 +47,33 @@ public class RequestDecoder extends MessageToMessageDecoder<String> {
         } else if (request.startsWith(Messages.GET_REFERENCES)) {
             log.debug("Parsed 'get references' message");
             out.add(new GetReferencesRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_REFERENCES.length())));
+        } else if (request.startsWith(Messages.GET_BLOB_CHUNKS)) {
+            log.debug("Parsed 'get blob chunks' message");
+            decodeGetBlobChunksRequest(msg, request.substring(Messages.GET_BLOB_CHUNKS.length()), out);
         } else {
             log.debug("Received unrecognizable message {}, dropping", msg);
         }
     }
 
+    private static void decodeGetBlobChunksRequest(String msg, String body, List<Object> out) {
+        int dot = body.indexOf('.');
+
+        long offset = -1;
+
+        if (dot > 0) {
+            try {
+                offset = Long.parseLong(body.substring(0, dot));
+            } catch (NumberFormatException e) {
+                offset = -1;
+            }
+        }
+
+        if (offset < 0) {
+            log.debug("Received invalid 'get blob chunks' message {}, dropping", msg);
+            return;
+        }
+
+        out.add(new GetBlobChunksRequest(Messages.extractClientFrom(msg), body.substring(dot + 1), offset));
+    }
+
 }
@@ -56,6 +56,10 @@ public class ResponseDecoder extends ByteToMessageDecoder {
                 log.debug("Decoding 'get references' response");
                 decodeGetReferencesResponse(length, in, out);
                 break;
+            case Messages.HEADER_BLOB_CHUNK:
+                log.debug("Decoding 'get blob chunk' response");
+                decodeGetBlobChunkResponse(length, in, out);
+                break;
             default:
                 log.debug("Invalid type, dropping message");
         }
@@ -108,6 +112,29 @@ public class ResponseDecoder extends ByteToMessageDecoder {
         out.add(new GetBlobResponse(null, blobId, blobData));
     }
 
+    private void decodeGetBlobChunkResponse(int length, ByteBuf in, List<Object> out) {
+        int blobIdLength = in.readInt();
+
+        byte[] blobIdBytes = new byte[blobIdLength];
+        in.readBytes(blobIdBytes);
+
+        String blobId = new String(blobIdBytes, Charsets.UTF_8);
+
+        long offset = in.readLong();
+        long blobLength = in.readLong();
+        long hash = in.readLong();
+
+        byte[] chunkData = new byte[length - 1 - 4 - blobIdBytes.length - 8 - 8 - 8];
+        in.readBytes(chunkData);
+
+        if (hash(chunkData) != hash) {
+            log.debug("Invalid checksum, discarding chunk at offset {} of blob {}", offset, blobId);
+            return;
+        }
+
+        out.add(new GetBlobChunkResponse(null, blobId, offset, blobLength, chunkData));
+    }
+
     private void decodeGetReferencesResponse(int length, ByteBuf in, List<Object> out) {
         byte[] data = new byte[length - 1];
 
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import java.io.InputStream;
+
+import com.google.common.io.ByteStreams;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunkResponse;
+
+/**
+ * Reads the content of a blob in chunks of bounded size. Chunks are only read
+ * when the channel is ready to accept more data, which bounds the memory used
+ * for sending a blob independently of its size.
+ */
+class ChunkedBlobInput implements ChunkedInput<GetBlobChunkResponse> {
+
+    private final String clientId;
+
+    private final String blobId;
+
+    private final InputStream stream;
+
+    private final long blobLength;
+
+    private final int chunkSize;
+
+    private long offset;
+
+    private boolean sent;
+
+    /**
+     * @param stream     stream to the content of the blob, already positioned
+     *                   at {@code offset}.
+     * @param offset     the position of the first chunk to send.
+     * @param blobLength the length of the blob.
+     * @param chunkSize  the maximum size of a chunk.
+     */
+    ChunkedBlobInput(String clientId, String blobId, InputStream stream, long offset, long blobLength, int chunkSize) {
+        this.clientId = clientId;
+        this.blobId = blobId;
+        this.stream = stream;
+        this.offset = offset;
+        this.blobLength = blobLength;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public boolean isEndOfInput() throws Exception {
+        // Always send at least one chunk, even for empty blobs, to let the
+        // client know about the length of the blob.
+        return sent && offset >= blobLength;
+    }
+
+    @Override
+    public void close() throws Exception {
+        stream.close();
+    }
+
+    @Override
+    public GetBlobChunkResponse readChunk(ChannelHandlerContext ctx) throws Exception {
+        if (isEndOfInput()) {
+            return null;
+        }
+
+        byte[] data = new byte[(int) Math.min(chunkSize, blobLength - offset)];
+
+        int n = ByteStreams.read(stream, data, 0, data.length);
+
+        if (n < data.length) {
+            throw new IllegalStateException("Unexpected end of blob " + blobId + " at offset " + (offset + n));
+        }
+
+        GetBlobChunkResponse chunk = new GetBlobChunkResponse(clientId, blobId, offset, blobLength, data);
+        offset += n;
+        sent = true;
+        return chunk;
+    }
+
+}
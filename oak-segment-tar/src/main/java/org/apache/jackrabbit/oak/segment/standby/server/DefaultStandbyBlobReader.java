@@ -56,4 +56,38 @@ class DefaultStandbyBlobReader implements StandbyBlobReader {
         return bytes;
     }
 
+    @Override
+    public InputStream readBlobStream(String blobId) {
+        BlobStore blobStore = store.getBlobStore();
+
+        if (blobStore == null) {
+            return null;
+        }
+
+        try {
+            return blobStore.getInputStream(blobId);
+        } catch (IOException e) {
+            log.warn("Error while opening blob content", e);
+        }
+
+        return null;
+    }
+
+    @Override
+    public long getBlobLength(String blobId) {
+        BlobStore blobStore = store.getBlobStore();
+
+        if (blobStore == null) {
+            return -1;
+        }
+
+        try {
+            return blobStore.getBlobLength(blobId);
+        } catch (IOException e) {
+            log.warn("Error while reading blob length", e);
+        }
+
+        return -1;
+    }
+
 }
@@ -19,19 +19,14 @@ package org.apache.jackrabbit.oak.segment.standby.server;
 
 import static org.apache.jackrabbit.oak.segment.standby.server.FileStoreUtil.readSegmentWithRetry;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 class DefaultStandbySegmentReader implements StandbySegmentReader {
 
-    private static final Logger log = LoggerFactory.getLogger(DefaultStandbySegmentReader.class);
-
     private final FileStore store;
 
     DefaultStandbySegmentReader(FileStore store) {
@@ -39,7 +34,7 @@ class DefaultStandbySegmentReader implements StandbySegmentReader {
     }
 
     @Override
-    public byte[] readSegment(String segmentId) {
+    public ByteBuffer readSegment(String segmentId) {
         UUID uuid = UUID.fromString(segmentId);
         long msb = uuid.getMostSignificantBits();
         long lsb = uuid.getLeastSignificantBits();
@@ -50,13 +45,9 @@ class DefaultStandbySegmentReader implements StandbySegmentReader {
             return null;
         }
 
-        try (ByteArrayOutputStream stream = new ByteArrayOutputStream()) {
-            segment.writeTo(stream);
-            return stream.toByteArray();
-        } catch (IOException e) {
-            log.warn("Error while reading segment content", e);
-            return null;
-        }
+        // Hand out a view of the segment data instead of copying it. For
+        // memory mapped tar files this is a slice of the mapped region.
+        return segment.asReadOnlyBuffer();
     }
 
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.common.io.ByteStreams;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunkResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunksRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a blob to the client in chunks of bounded size, starting from the
+ * offset given in the request. The chunks are written through a {@link
+ * io.netty.handler.stream.ChunkedWriteHandler}, which must be part of the
+ * pipeline. Requests that can't be served are answered with a chunk without
+ * data and a negative blob length, such that clients can tell them apart
+ * from requests dropped by primaries not supporting chunks.
+ */
+class GetBlobChunksRequestHandler extends SimpleChannelInboundHandler<GetBlobChunksRequest> {
+
+    private static final Logger log = LoggerFactory.getLogger(GetBlobChunksRequestHandler.class);
+
+    /**
+     * Default maximum size of a chunk: 1 MB.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final StandbyBlobReader reader;
+
+    private final int chunkSize;
+
+    GetBlobChunksRequestHandler(StandbyBlobReader reader) {
+        this(reader, Integer.getInteger("oak.standby.blobChunkSize", DEFAULT_CHUNK_SIZE));
+    }
+
+    GetBlobChunksRequestHandler(StandbyBlobReader reader, int chunkSize) {
+        this.reader = reader;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, GetBlobChunksRequest msg) throws Exception {
+        log.debug("Reading blob {} from offset {} for client {}", msg.getBlobId(), msg.getOffset(), msg.getClientId());
+
+        long length = reader.getBlobLength(msg.getBlobId());
+
+        if (length < 0) {
+            log.debug("Blob {} not found, rejecting request from client {}", msg.getBlobId(), msg.getClientId());
+            reject(ctx, msg);
+            return;
+        }
+
+        if (msg.getOffset() > length) {
+            log.debug("Offset {} beyond length of blob {}, rejecting request from client {}", msg.getOffset(), msg.getBlobId(), msg.getClientId());
+            reject(ctx, msg);
+            return;
+        }
+
+        InputStream stream = reader.readBlobStream(msg.getBlobId());
+
+        if (stream == null) {
+            log.debug("Blob {} not found, rejecting request from client {}", msg.getBlobId(), msg.getClientId());
+            reject(ctx, msg);
+            return;
+        }
+
+        try {
+            ByteStreams.skipFully(stream, msg.getOffset());
+        } catch (IOException e) {
+            stream.close();
+            throw e;
+        }
+
+        ctx.writeAndFlush(new ChunkedBlobInput(msg.getClientId(), msg.getBlobId(), stream, msg.getOffset(), length, chunkSize));
+    }
+
+    private static void reject(ChannelHandlerContext ctx, GetBlobChunksRequest msg) {
+        ctx.writeAndFlush(new GetBlobChunkResponse(msg.getClientId(), msg.getBlobId(), msg.getOffset(), -1, new byte[0]));
+    }
+
+}
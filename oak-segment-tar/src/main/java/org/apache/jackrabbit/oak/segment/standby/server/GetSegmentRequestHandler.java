@@ -17,6 +17,8 @@
 
 package org.apache.jackrabbit.oak.segment.standby.server;
 
+import java.nio.ByteBuffer;
+
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.apache.jackrabbit.oak.segment.Segment;
@@ -39,7 +41,7 @@ class GetSegmentRequestHandler extends SimpleChannelInboundHandler<GetSegmentReq
     protected void channelRead0(ChannelHandlerContext ctx, GetSegmentRequest msg) throws Exception {
         log.debug("Reading segment {} for client {}", msg.getSegmentId(), msg.getClientId());
 
-        byte[] data = reader.readSegment(msg.getSegmentId());
+        ByteBuffer data = reader.readSegment(msg.getSegmentId());
 
         if (data == null) {
             log.debug("Segment {} not found, discarding request from client {}", msg.getSegmentId(), msg.getClientId());
@@ -20,12 +20,14 @@ package org.apache.jackrabbit.oak.segment.standby.server;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunkResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
 import org.apache.jackrabbit.oak.segment.standby.store.CommunicationObserver;
 
 /**
- * Notifies an observer when a 'get segment' or 'get blob' response is sent
+ * Notifies an observer when a 'get segment', 'get blob' or 'get blob chunk'
+ * response is sent
  * from this server.
  */
 class ResponseObserverHandler extends ChannelOutboundHandlerAdapter {
@@ -42,17 +44,23 @@ class ResponseObserverHandler extends ChannelOutboundHandlerAdapter {
             onGetSegmentResponse((GetSegmentResponse) msg);
         } else if (msg instanceof GetBlobResponse) {
             onGetBlobResponse((GetBlobResponse) msg);
+        } else if (msg instanceof GetBlobChunkResponse) {
+            onGetBlobChunkResponse((GetBlobChunkResponse) msg);
         }
 
         ctx.write(msg, promise);
     }
 
     private void onGetSegmentResponse(GetSegmentResponse response) {
-        observer.didSendSegmentBytes(response.getClientId(), response.getSegmentData().length);
+        observer.didSendSegmentBytes(response.getClientId(), response.getSegmentSize());
     }
 
     private void onGetBlobResponse(GetBlobResponse response) {
         observer.didSendBinariesBytes(response.getClientId(), (int) Math.max(0, response.getBlobData().length));
     }
 
+    private void onGetBlobChunkResponse(GetBlobChunkResponse response) {
+        observer.didSendBinariesBytes(response.getClientId(), response.getChunkData().length);
+    }
+
 }
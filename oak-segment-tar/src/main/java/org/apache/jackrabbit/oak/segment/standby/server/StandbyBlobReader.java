@@ -17,8 +17,28 @@
 
 package org.apache.jackrabbit.oak.segment.standby.server;
 
+import java.io.InputStream;
+
 interface StandbyBlobReader {
 
     byte[] readBlob(String blobId);
 
+    /**
+     * Open a stream to the content of a blob.
+     *
+     * @param blobId the identifier of the blob.
+     * @return a new stream to the content of the blob or {@code null} if the
+     * blob could not be found.
+     */
+    InputStream readBlobStream(String blobId);
+
+    /**
+     * Return the length of a blob.
+     *
+     * @param blobId the identifier of the blob.
+     * @return the length of the blob or {@code -1} if the blob could not be
+     * found.
+     */
+    long getBlobLength(String blobId);
+
 }
@@ -17,8 +17,10 @@
 
 package org.apache.jackrabbit.oak.segment.standby.server;
 
+import java.nio.ByteBuffer;
+
 interface StandbySegmentReader {
 
-    byte[] readSegment(String segmentId);
+    ByteBuffer readSegment(String segmentId);
 
 }
@@ -39,8 +39,10 @@ import io.netty.handler.codec.string.StringDecoder;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.util.CharsetUtil;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunkResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponseEncoder;
@@ -165,8 +167,14 @@ class StandbyServer implements AutoCloseable {
                 p.addLast(new GetSegmentResponseEncoder());
                 p.addLast(new GetBlobResponseEncoder());
                 p.addLast(new GetReferencesResponseEncoder());
+                p.addLast(new GetBlobChunkResponseEncoder());
                 p.addLast(new ResponseObserverHandler(builder.observer));
 
+                // Blobs are streamed in chunks, which are only read when
+                // the channel is writable.
+
+                p.addLast(new ChunkedWriteHandler());
+
                 // Handlers
 
                 FileStore store = builder.storeProvider.provideStore();
@@ -174,6 +182,7 @@ class StandbyServer implements AutoCloseable {
                 p.addLast(new GetHeadRequestHandler(new DefaultStandbyHeadReader(store)));
                 p.addLast(new GetSegmentRequestHandler(new DefaultStandbySegmentReader(store)));
                 p.addLast(new GetBlobRequestHandler(new DefaultStandbyBlobReader(store)));
+                p.addLast(new GetBlobChunksRequestHandler(new DefaultStandbyBlobReader(store)));
                 p.addLast(new GetReferencesRequestHandler(new DefaultStandbyReferencesReader(store)));
             }
         });
@@ -89,6 +89,11 @@ public class StandbyStoreService {
     @Property(boolValue = AUTO_CLEAN_DEFAULT)
     public static final String AUTO_CLEAN = "standby.autoclean";
 
+    public static final int MAX_IN_FLIGHT_DEFAULT = 1;
+
+    @Property(intValue = MAX_IN_FLIGHT_DEFAULT)
+    public static final String MAX_IN_FLIGHT = "standby.maxinflight";
+
     @Reference(policy = STATIC, policyOption = GREEDY)
     private SegmentStoreProvider storeProvider = null;
 
@@ -159,8 +164,9 @@ public class StandbyStoreService {
         boolean secure = PropertiesUtil.toBoolean(props.get(SECURE), SECURE_DEFAULT);
         int readTimeout = PropertiesUtil.toInteger(props.get(READ_TIMEOUT), READ_TIMEOUT_DEFAULT);
         boolean clean = PropertiesUtil.toBoolean(props.get(AUTO_CLEAN), AUTO_CLEAN_DEFAULT);
+        int maxInFlight = PropertiesUtil.toInteger(props.get(MAX_IN_FLIGHT), MAX_IN_FLIGHT_DEFAULT);
 
-        clientSync = new StandbyClientSync(host, port, fileStore, secure, readTimeout, clean);
+        clientSync = new StandbyClientSync(host, port, fileStore, secure, readTimeout, clean, maxInFlight);
         Dictionary<Object, Object> dictionary = new Hashtable<Object, Object>();
         dictionary.put("scheduler.period", interval);
         dictionary.put("scheduler.concurrent", false);
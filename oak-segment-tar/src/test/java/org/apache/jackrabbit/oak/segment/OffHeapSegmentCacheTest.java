@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OffHeapSegmentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void offHeap() throws Exception {
+        File directory = folder.newFolder();
+        FileStore store = fileStoreBuilder(directory).withMemoryMapping(false).build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 100; i++) {
+                builder.child("c" + i).setProperty("p", "v" + i);
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        } finally {
+            store.close();
+        }
+
+        store = fileStoreBuilder(directory)
+                .withMemoryMapping(false)
+                .withSegmentCacheOffHeap(true)
+                .build();
+        try {
+            CacheStatsMBean stats = store.getSegmentCacheStats();
+            assertEquals(0, stats.getElementCount());
+
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 100; i++) {
+                assertEquals("v" + i, nodeStore.getRoot().getChildNode("c" + i)
+                        .getString("p"));
+            }
+            assertTrue(stats.getElementCount() > 0);
+            assertTrue(stats.estimateCurrentWeight() > 0);
+
+            Segment segment = store.getHead().getRecordId().getSegment();
+            assertSame(segment, segment.toOffHeap());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void toOffHeap() throws Exception {
+        File directory = folder.newFolder();
+        FileStore store = fileStoreBuilder(directory).withMemoryMapping(false).build();
+        try {
+            Segment segment = store.getHead().getRecordId().getSegment();
+            Segment copy = segment.toOffHeap();
+            assertNotSame(segment, copy);
+            assertSame(copy, copy.toOffHeap());
+            assertEquals(segment.getSegmentId(), copy.getSegmentId());
+            assertEquals(segment.size(), copy.size());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void putOffHeap() throws Exception {
+        File directory = folder.newFolder();
+        FileStore store = fileStoreBuilder(directory)
+                .withMemoryMapping(false)
+                .withSegmentCacheOffHeap(true)
+                .build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            builder.child("c").setProperty("p", "v");
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            store.flush();
+
+            // Written segments are cached off heap as well
+            Segment segment = store.getHead().getRecordId().getSegment();
+            assertSame(segment, segment.toOffHeap());
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defaultGCOptions;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelCompactorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void parallelCompaction() throws Exception {
+        FileStore store = fileStoreBuilder(folder.newFolder())
+                .withGCOptions(defaultGCOptions().setCompactionThreads(4))
+                .build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder a = builder.child("a" + i);
+                for (int j = 0; j < 10; j++) {
+                    NodeBuilder b = a.child("b" + j);
+                    for (int k = 0; k < 10; k++) {
+                        b.child("c" + k).setProperty("p", i + "-" + j + "-" + k);
+                    }
+                }
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            String checkpoint = nodeStore.checkpoint(Long.MAX_VALUE, Collections.<String, String>emptyMap());
+
+            builder = nodeStore.getRoot().builder();
+            builder.child("a0").child("b0").child("c0").setProperty("p", "changed");
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+            SegmentNodeState before = store.getHead();
+            int generation = before.getRecordId().getSegmentId().getGcGeneration();
+            assertTrue(store.compact());
+
+            SegmentNodeState after = store.getHead();
+            assertEquals(before, after);
+            assertNewGeneration(after, generation + 1);
+
+            NodeState root = nodeStore.getRoot();
+            assertEquals("changed", root.getChildNode("a0").getChildNode("b0").getChildNode("c0")
+                    .getString("p"));
+            assertEquals("9-9-9", root.getChildNode("a9").getChildNode("b9").getChildNode("c9")
+                    .getString("p"));
+
+            NodeState retrieved = nodeStore.retrieve(checkpoint);
+            assertNotNull(retrieved);
+            assertEquals("0-0-0", retrieved.getChildNode("a0").getChildNode("b0").getChildNode("c0")
+                    .getProperty("p").getValue(Type.STRING));
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void assertNewGeneration(NodeState state, int generation) {
+        assertEquals(generation, ((SegmentNodeState) state).getRecordId().getSegmentId().getGcGeneration());
+        for (ChildNodeEntry child : state.getChildNodeEntries()) {
+            assertNewGeneration(child.getNodeState(), generation);
+        }
+    }
+
+}
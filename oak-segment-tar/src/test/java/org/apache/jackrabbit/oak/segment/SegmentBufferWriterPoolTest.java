@@ -55,7 +55,7 @@ public class SegmentBufferWriterPoolTest {
             store.getTracker(),
             store.getReader(),
             "",
-            Suppliers.ofInstance(0)
+            Suppliers.ofInstance(new GCGeneration(0, 0, false))
     );
 
     private final ExecutorService[] executors = new ExecutorService[] {
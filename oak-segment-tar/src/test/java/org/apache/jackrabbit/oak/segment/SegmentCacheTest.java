@@ -18,7 +18,11 @@
  */
 package org.apache.jackrabbit.oak.segment;
 
+import static org.apache.jackrabbit.oak.segment.SegmentCache.isPromoting;
+import static org.apache.jackrabbit.oak.segment.SegmentCache.withoutPromotion;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -111,4 +115,71 @@ public class SegmentCacheTest {
         assertEquals(0, stats.getRequestCount());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void noPromotionTest() throws Exception {
+        final Segment segment1 = mock(Segment.class);
+        Segment segment2 = mock(Segment.class);
+        SegmentStore store = mock(SegmentStore.class);
+        final SegmentId id = new SegmentId(store, -1, -1);
+        final SegmentCache cache = new SegmentCache(1);
+        CacheStats stats = cache.getCacheStats();
+        CacheStats scanStats = cache.getScanCacheStats();
+        final Callable<Segment> loader = new Callable<Segment>() {
+            @Override
+            public Segment call() throws Exception {
+                return segment1;
+            }
+        };
+
+        assertTrue(isPromoting());
+        Segment segment = withoutPromotion(new Callable<Segment>() {
+            @Override
+            public Segment call() throws Exception {
+                assertFalse(isPromoting());
+                return cache.getSegment(id, loader);
+            }
+        });
+        assertTrue(isPromoting());
+        assertEquals(segment1, segment);
+        assertEquals(segment1, id.getSegment());
+        assertEquals(0, stats.getElementCount());
+        assertEquals(1, scanStats.getElementCount());
+
+        // Clearing the cache also unloads segments loaded without promotion
+        cache.clear();
+        when(store.readSegment(id)).thenReturn(segment2);
+        assertEquals(segment2, id.getSegment());
+
+        cache.getSegment(id, loader, true);
+        assertEquals(1, stats.getElementCount());
+        assertEquals(0, scanStats.getElementCount());
+    }
+
+    @Test
+    public void scanEvictionKeepsPromotedSegment() throws Exception {
+        final Segment segment1 = mock(Segment.class);
+        Segment segment2 = mock(Segment.class);
+        SegmentStore store = mock(SegmentStore.class);
+        final SegmentId id = new SegmentId(store, -1, -1);
+        final SegmentCache cache = new SegmentCache(1);
+        Callable<Segment> loader = new Callable<Segment>() {
+            @Override
+            public Segment call() throws Exception {
+                return segment1;
+            }
+        };
+
+        cache.getSegment(id, loader, false);
+        cache.getSegment(id, loader, true);
+
+        // Evict id from the cache of segments loaded without promotion
+        for (int i = 0; i < 1000; i++) {
+            cache.getSegment(new SegmentId(store, i, -1), loader, false);
+        }
+        assertTrue(cache.getScanCacheStats().getEvictionCount() > 0);
+
+        when(store.readSegment(id)).thenReturn(segment2);
+        assertEquals(segment1, id.getSegment());
+    }
+
+}
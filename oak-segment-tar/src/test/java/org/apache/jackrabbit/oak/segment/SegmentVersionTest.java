@@ -20,7 +20,7 @@
 package org.apache.jackrabbit.oak.segment;
 
 import static org.apache.jackrabbit.oak.segment.SegmentVersion.LATEST_VERSION;
-import static org.apache.jackrabbit.oak.segment.SegmentVersion.V_12;
+import static org.apache.jackrabbit.oak.segment.SegmentVersion.V_13;
 import static org.junit.Assert.assertEquals;
 
 import java.io.File;
@@ -42,7 +42,7 @@ public class SegmentVersionTest {
 
     @Test
     public void latestVersion() {
-        assertEquals(V_12, LATEST_VERSION);
+        assertEquals(V_13, LATEST_VERSION);
     }
 
 }
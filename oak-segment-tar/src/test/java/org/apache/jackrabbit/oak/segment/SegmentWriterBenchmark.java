@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.segment.SegmentWriterBuilder.segmentWriterBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Measures the throughput of {@link SegmentWriter#writeNode} for the
+ * {@link SegmentBufferWriterPool} and the {@link ThreadAffineSegmentBufferWriterPool}
+ * across different numbers of writer threads. A concurrent thread flushes the
+ * writer every 5 seconds mimicking the flush thread of the file store.
+ */
+public class SegmentWriterBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private static final long DURATION = TimeUnit.SECONDS.toNanos(10);
+
+    public static void main(String... args) throws Exception {
+        for (int threads : THREADS) {
+            // warm up
+            test(false, threads);
+            test(true, threads);
+
+            System.out.printf("%2d threads: SegmentBufferWriterPool %8d nodes/s, " +
+                    "ThreadAffineSegmentBufferWriterPool %8d nodes/s%n",
+                    threads, test(false, threads), test(true, threads));
+        }
+    }
+
+    private static long test(boolean threadAffine, int threads) throws Exception {
+        MemoryStore store = new MemoryStore();
+        SegmentWriterBuilder builder = segmentWriterBuilder("b");
+        final SegmentWriter writer = threadAffine
+                ? builder.withThreadAffineWriterPool().build(store)
+                : builder.withWriterPool().build(store);
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = newFixedThreadPool(threads + 1);
+        try {
+            List<Future<Long>> counts = Lists.newArrayList();
+            for (int i = 0; i < threads; i++) {
+                final int thread = i;
+                counts.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        start.await();
+                        long count = 0;
+                        while (!done.get()) {
+                            NodeBuilder node = EMPTY_NODE.builder();
+                            node.setProperty("thread", thread);
+                            node.setProperty("count", count);
+                            node.child("child").setProperty("name", "n" + count);
+                            writer.writeNode(node.getNodeState());
+                            count++;
+                        }
+                        return count;
+                    }
+                }));
+            }
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    while (!done.get()) {
+                        TimeUnit.SECONDS.sleep(5);
+                        flush(writer);
+                    }
+                    return null;
+                }
+            });
+
+            long t0 = System.nanoTime();
+            start.countDown();
+            TimeUnit.NANOSECONDS.sleep(DURATION);
+            done.set(true);
+
+            long total = 0;
+            for (Future<Long> count : counts) {
+                total += count.get();
+            }
+            long elapsed = System.nanoTime() - t0;
+            return total * TimeUnit.SECONDS.toNanos(1) / elapsed;
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void flush(SegmentWriter writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.GCType.TAIL;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defaultGCOptions;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TailCompactionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void tailCompaction() throws Exception {
+        File directory = folder.newFolder();
+        ReclaimedSize reclaimed = new ReclaimedSize();
+        FileStore store = newFileStore(directory, reclaimed);
+        String checkpoint;
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder a = builder.child("a" + i);
+                for (int j = 0; j < 100; j++) {
+                    a.child("b" + j).setProperty("p", i + "-" + j);
+                }
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            checkpoint = nodeStore.checkpoint(Long.MAX_VALUE, Collections.<String, String>emptyMap());
+
+            // No compacted root yet: falls back to full compaction
+            int generation = getGeneration(store.getHead());
+            assertTrue(store.compact());
+            store.cleanup();
+            assertEquals(generation + 1, getGeneration(store.getHead()));
+            RecordId compactedA9 = getRecordId(store.getHead().getChildNode("root").getChildNode("a9"));
+
+            createGarbage(store, nodeStore);
+            builder = nodeStore.getRoot().builder();
+            builder.child("a0").child("b0").setProperty("p", "changed");
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+            SegmentNodeState before = store.getHead();
+            assertTrue(store.compact());
+            SegmentNodeState after = store.getHead();
+            assertEquals(before, after);
+            assertEquals(generation + 2, getGeneration(after));
+
+            // Unchanged subtrees of the previously compacted head are referenced as is
+            assertEquals(compactedA9, getRecordId(after.getChildNode("root").getChildNode("a9")));
+
+            store.cleanup();
+            assertTrue(reclaimed.size > 0);
+            assertContent(nodeStore, checkpoint);
+        } finally {
+            store.close();
+        }
+
+        // The compacted root is picked up from the gc journal
+        store = newFileStore(directory, reclaimed);
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            assertContent(nodeStore, checkpoint);
+            int generation = getGeneration(store.getHead());
+            RecordId compactedA9 = getRecordId(store.getHead().getChildNode("root").getChildNode("a9"));
+
+            createGarbage(store, nodeStore);
+            reclaimed.size = 0;
+            assertTrue(store.compact());
+            store.cleanup();
+            assertTrue(reclaimed.size > 0);
+            assertEquals(generation + 1, getGeneration(store.getHead()));
+            assertEquals(compactedA9, getRecordId(store.getHead().getChildNode("root").getChildNode("a9")));
+            assertContent(nodeStore, checkpoint);
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void tailCompactionCopiesChanges() throws Exception {
+        File directory = folder.newFolder();
+        ReclaimedSize reclaimed = new ReclaimedSize();
+        FileStore store = newFileStore(directory, reclaimed);
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder a = builder.child("a" + i);
+                for (int j = 0; j < 100; j++) {
+                    a.child("b" + j).setProperty("p", i + "-" + j);
+                }
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            assertTrue(store.compact());
+            store.cleanup();
+            int generation = getGeneration(store.getHead());
+            RecordId compactedB1 = getRecordId(getB(store.getHead(), 9, 1));
+
+            // Spread the tail over many segments
+            for (int i = 0; i < 10; i++) {
+                builder = nodeStore.getRoot().builder();
+                builder.child("a" + i).child("b0").setProperty("p", "changed");
+                nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+            Set<SegmentId> tailBefore = getTailSegments(store.getHead());
+            for (SegmentId id : tailBefore) {
+                assertEquals(generation, id.getGcGeneration());
+                assertFalse(id.isCompacted());
+            }
+
+            assertTrue(store.compact());
+            SegmentNodeState after = store.getHead();
+            assertEquals(generation + 1, getGeneration(after));
+
+            // The changes are copied into fewer, new segments
+            Set<SegmentId> tailAfter = getTailSegments(after);
+            assertTrue(tailAfter.size() < tailBefore.size());
+            for (SegmentId id : tailAfter) {
+                assertFalse(tailBefore.contains(id));
+                assertEquals(generation + 1, id.getGcGeneration());
+                assertTrue(id.isCompacted());
+            }
+
+            // Unchanged records are referenced as they are
+            assertEquals(compactedB1, getRecordId(getB(after, 9, 1)));
+
+            store.cleanup();
+            assertTrue(reclaimed.size > 0);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("changed", getB(store.getHead(), i, 0).getString("p"));
+                assertEquals(i + "-1", getB(store.getHead(), i, 1).getString("p"));
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private static NodeState getB(NodeState head, int a, int b) {
+        return head.getChildNode("root").getChildNode("a" + a).getChildNode("b" + b);
+    }
+
+    /**
+     * @return  the segments containing the records of the nodes changed
+     *          by {@link #tailCompactionCopiesChanges()}
+     */
+    private static Set<SegmentId> getTailSegments(SegmentNodeState head) {
+        Set<SegmentId> segments = newHashSet();
+        for (int i = 0; i < 10; i++) {
+            segments.add(getRecordId(head.getChildNode("root").getChildNode("a" + i)).getSegmentId());
+            segments.add(getRecordId(getB(head, i, 0)).getSegmentId());
+        }
+        return segments;
+    }
+
+    private static FileStore newFileStore(File directory, GCMonitor gcMonitor) throws Exception {
+        return fileStoreBuilder(directory)
+                .withMaxFileSize(1)
+                .withGCMonitor(gcMonitor)
+                .withGCOptions(defaultGCOptions().setGCType(TAIL))
+                .build();
+    }
+
+    private static void createGarbage(FileStore store, SegmentNodeStore nodeStore) throws Exception {
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            NodeBuilder garbage = builder.child("garbage");
+            for (int j = 0; j < 100; j++) {
+                garbage.child("g" + j).setProperty("p", i + "-" + j + "-" + new String(new char[1000]));
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            store.flush();
+            builder = nodeStore.getRoot().builder();
+            builder.getChildNode("garbage").remove();
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            store.flush();
+        }
+    }
+
+    private static void assertContent(SegmentNodeStore nodeStore, String checkpoint) {
+        NodeState root = nodeStore.getRoot();
+        assertEquals("changed", root.getChildNode("a0").getChildNode("b0").getString("p"));
+        assertEquals("9-99", root.getChildNode("a9").getChildNode("b99").getString("p"));
+        NodeState retrieved = nodeStore.retrieve(checkpoint);
+        assertNotNull(retrieved);
+        assertEquals("0-0", retrieved.getChildNode("a0").getChildNode("b0").getString("p"));
+    }
+
+    private static class ReclaimedSize extends GCMonitor.Empty {
+        long size;
+
+        @Override
+        public void cleaned(long reclaimedSize, long currentSize) {
+            size = reclaimedSize;
+        }
+    }
+
+    private static RecordId getRecordId(NodeState state) {
+        return ((SegmentNodeState) state).getRecordId();
+    }
+
+    private static int getGeneration(NodeState state) {
+        return getRecordId(state).getSegmentId().getGcGeneration();
+    }
+
+}
@@ -32,6 +32,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.TarRevisions.Durability;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -118,4 +119,28 @@ public class FileStoreStatsTest {
 
         assertEquals(10, stats.getJournalWriteStatsAsCount());
     }
+
+    @Test
+    public void testJournalSyncStats() throws Exception {
+        StatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+        FileStore fileStore = fileStoreBuilder(segmentFolder.newFolder())
+                .withStatisticsProvider(statsProvider)
+                .withDurability(Durability.COMMIT)
+                .build();
+        try {
+            FileStoreStats stats = fileStore.getStats();
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder root = nodeStore.getRoot().builder();
+                root.setProperty("count", i);
+                nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            }
+
+            assertEquals(10, stats.getJournalSyncCount());
+            assertEquals(1.0, stats.getJournalSyncBatchSize(), 0);
+        } finally {
+            fileStore.close();
+        }
+    }
 }
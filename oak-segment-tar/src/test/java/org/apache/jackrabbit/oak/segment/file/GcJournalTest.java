@@ -20,7 +20,9 @@
 package org.apache.jackrabbit.oak.segment.file;
 
 import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Lists.newArrayList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -67,4 +69,30 @@ public class GcJournalTest {
         List<String> allLines = Files.readAllLines(file.toPath(), UTF_8);
         assertEquals(allLines.size(), 3);
     }
+
+    @Test
+    public void compactedRoot() throws Exception {
+        File directory = segmentFolder.newFolder();
+        GCJournal gc = new GCJournal(directory);
+
+        gc.persist(0, 100);
+        GCJournalEntry e0 = gc.read();
+        assertEquals(-1, e0.getGcGeneration());
+        assertNull(e0.getRoot());
+
+        String root = "f8ebf9e1-a3e9-4b02-b8b1-c4b2e5c12e29.00000d97";
+        gc.persist(50, 200, 3, root);
+        GCJournalEntry e1 = gc.read();
+        assertEquals(200, e1.getRepoSize());
+        assertEquals(50, e1.getReclaimedSize());
+        assertEquals(3, e1.getGcGeneration());
+        assertEquals(root, e1.getRoot());
+
+        // entries with and without compacted root can be read back
+        List<GCJournalEntry> all = newArrayList(new GCJournal(directory).readAll());
+        assertEquals(2, all.size());
+        assertEquals(e0, all.get(0));
+        assertEquals(e1, all.get(1));
+        assertEquals(e1, new GCJournal(directory).read());
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.api.Type.STRING;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void rebuildAndAdd() throws IOException {
+        List<UUID> ids1 = newArrayList();
+        List<UUID> ids2 = newArrayList();
+        // more entries than the minimum capacity of the index
+        UUID shared = newId();
+        TarReader reader1 = newTarReader(folder.newFile(), 1500, ids1, shared, "one");
+        TarReader reader2 = newTarReader(folder.newFile(), 1500, ids2, shared, "two");
+        try {
+            SegmentIndex index = new SegmentIndex();
+            index.rebuild(newArrayList(reader1));
+            assertEquals(1501, index.size());
+            assertEntries(index, reader1, ids1);
+            assertNull(index.get(0, 0));
+
+            index.add(reader2);
+            assertEquals(3001, index.size());
+            assertEntries(index, reader1, ids1);
+            assertEntries(index, reader2, ids2);
+            assertEquals("two", readShared(index, shared));
+            assertTrue(index.estimateMemoryUsage() >= 24L * 2 * 3001);
+
+            // readers are passed newest first
+            index.rebuild(newArrayList(reader1, reader2));
+            assertEquals(3001, index.size());
+            assertEquals("one", readShared(index, shared));
+
+            index.clear();
+            assertEquals(0, index.size());
+            assertNull(index.get(shared.getMostSignificantBits(), lsb(shared)));
+        } finally {
+            reader1.close();
+            reader2.close();
+        }
+    }
+
+    @Test
+    public void wrongPosition() throws IOException {
+        List<UUID> ids = newArrayList();
+        TarReader reader = newTarReader(folder.newFile(), 10, ids, newId(), "x");
+        try {
+            SegmentIndex index = new SegmentIndex();
+            index.rebuild(newArrayList(reader));
+            UUID id = ids.get(0);
+            SegmentIndex.Entry entry = index.get(id.getMostSignificantBits(), lsb(id));
+            assertNotNull(entry);
+            long msb = id.getMostSignificantBits();
+            assertNotNull(reader.readEntry(msb, lsb(id), entry.getPosition()));
+            assertNull(reader.readEntry(msb, lsb(id), entry.getPosition() + 1));
+            assertNull(reader.readEntry(msb, lsb(id), -1));
+            assertNull(reader.readEntry(msb, lsb(id), Integer.MAX_VALUE));
+            assertNull(reader.readEntry(msb + 1, lsb(id), entry.getPosition()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void fileStore() throws Exception {
+        File directory = folder.newFolder();
+        FileStore store = fileStoreBuilder(directory).withMaxFileSize(1).build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder builder = nodeStore.getRoot().builder();
+                builder.child("c" + i).setProperty("p", new String(new char[200000]).replace('\0', 'x'));
+                nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+            assertTrue(store.getSegmentIndexSize() > 0);
+            assertTrue(store.getStats().getSegmentIndexMemory() > 0);
+            assertTrue(store.getStats().fileStoreInfoAsString().contains("Segment index"));
+        } finally {
+            store.close();
+        }
+        assertEquals(0, store.getSegmentIndexSize());
+
+        store = fileStoreBuilder(directory).withMaxFileSize(1).build();
+        try {
+            assertTrue(store.getSegmentIndexSize() > 0);
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 10; i++) {
+                String value = nodeStore.getRoot().getChildNode("c" + i)
+                        .getProperty("p").getValue(STRING);
+                assertEquals(200000, value.length());
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void assertEntries(SegmentIndex index, TarReader reader, List<UUID> ids)
+            throws IOException {
+        for (UUID id : ids) {
+            long msb = id.getMostSignificantBits();
+            long lsb = lsb(id);
+            SegmentIndex.Entry entry = index.get(msb, lsb);
+            assertNotNull(entry);
+            assertSame(reader, entry.getReader());
+            ByteBuffer buffer = reader.readEntry(msb, lsb, entry.getPosition());
+            assertEquals(reader.readEntry(msb, lsb), buffer);
+        }
+    }
+
+    private static String readShared(SegmentIndex index, UUID shared) throws IOException {
+        long msb = shared.getMostSignificantBits();
+        long lsb = lsb(shared);
+        SegmentIndex.Entry entry = index.get(msb, lsb);
+        assertNotNull(entry);
+        ByteBuffer buffer = entry.getReader().readEntry(msb, lsb, entry.getPosition());
+        assertNotNull(buffer);
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return new String(data, UTF_8);
+    }
+
+    private static TarReader newTarReader(File file, int count, List<UUID> ids,
+                                          UUID shared, String sharedData)
+            throws IOException {
+        TarWriter writer = new TarWriter(file);
+        try {
+            for (int i = 0; i < count; i++) {
+                UUID id = newId();
+                byte[] data = id.toString().getBytes(UTF_8);
+                writer.writeEntry(id.getMostSignificantBits(), lsb(id), data, 0, data.length, 0);
+                ids.add(id);
+            }
+            byte[] data = sharedData.getBytes(UTF_8);
+            writer.writeEntry(shared.getMostSignificantBits(), lsb(shared), data, 0, data.length, 0);
+        } finally {
+            writer.close();
+        }
+        return TarReader.open(file, false);
+    }
+
+    private static UUID newId() {
+        UUID id = UUID.randomUUID();
+        return new UUID(id.getMostSignificantBits(), lsb(id));
+    }
+
+    private static long lsb(UUID id) {
+        return id.getLeastSignificantBits() & (-1 >>> 4); // OAK-1672
+    }
+}
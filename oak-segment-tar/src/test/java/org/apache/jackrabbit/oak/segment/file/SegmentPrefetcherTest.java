@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentPrefetcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private File createStore() throws Exception {
+        File directory = folder.newFolder();
+        FileStore store = fileStoreBuilder(directory).withMemoryMapping(false).build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder builder = nodeStore.getRoot().builder();
+                builder.child("c" + i).setProperty("p", "v" + i);
+                nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+        } finally {
+            store.close();
+        }
+        return directory;
+    }
+
+    private static void awaitPrefetches(SegmentPrefetcher prefetcher) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (prefetcher.getStagedCount() < prefetcher.getIssuedCount()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        FileStore store = fileStoreBuilder(folder.newFolder()).build();
+        try {
+            assertNull(store.getSegmentPrefetcher());
+            assertEquals(0, store.getStats().getSegmentPrefetchCount());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void prefetchReferencedSegments() throws Exception {
+        FileStore store = fileStoreBuilder(createStore())
+                .withMemoryMapping(false)
+                .withSegmentPrefetchThreads(1)
+                .build();
+        try {
+            SegmentPrefetcher prefetcher = store.getSegmentPrefetcher();
+            assertNotNull(prefetcher);
+
+            Segment head = store.getRevisions().getHead().getSegment();
+            assertTrue(head.getReferencedSegmentIdCount() > 0);
+            awaitPrefetches(prefetcher);
+
+            long issued = prefetcher.getIssuedCount();
+            assertTrue(issued > 0);
+            assertEquals(issued, prefetcher.getStagedCount());
+
+            for (int i = 0; i < head.getReferencedSegmentIdCount(); i++) {
+                UUID uuid = head.getReferencedSegmentId(i);
+                SegmentId id = store.newSegmentId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+                id.getSegment();
+                assertTrue(id.isLoaded());
+            }
+            assertTrue(prefetcher.getUsefulCount() > 0);
+            assertEquals(prefetcher.getUsefulCount(), store.getStats().getSegmentPrefetchUsefulCount());
+            assertEquals(0, prefetcher.getWastedCount());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void clearDoesNotCountAsWasted() throws Exception {
+        FileStore store = fileStoreBuilder(createStore())
+                .withMemoryMapping(false)
+                .withSegmentPrefetchThreads(1)
+                .build();
+        try {
+            SegmentPrefetcher prefetcher = store.getSegmentPrefetcher();
+            store.getRevisions().getHead().getSegment();
+            awaitPrefetches(prefetcher);
+
+            prefetcher.clear();
+            assertEquals(0, prefetcher.getStagedCount());
+            assertEquals(0, prefetcher.getWastedCount());
+            assertEquals(1, prefetcher.getDepth());
+        } finally {
+            store.close();
+        }
+    }
+
+}
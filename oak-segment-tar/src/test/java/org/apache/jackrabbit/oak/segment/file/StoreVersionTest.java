@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.AbstractFileStore.CURRENT_STORE_VERSION;
+import static org.apache.jackrabbit.oak.segment.file.AbstractFileStore.MIN_STORE_VERSION;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StoreVersionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private File manifest;
+
+    @Before
+    public void setup() throws Exception {
+        fileStoreBuilder(folder.getRoot()).build().close();
+        manifest = new File(folder.getRoot(), "manifest");
+    }
+
+    private void setStoreVersion(int version) throws Exception {
+        Manifest m = Manifest.load(manifest);
+        m.setStoreVersion(version);
+        m.save(manifest);
+    }
+
+    @Test
+    public void newStoreHasCurrentVersion() throws Exception {
+        assertEquals(CURRENT_STORE_VERSION, Manifest.load(manifest).getStoreVersion(0));
+    }
+
+    @Test
+    public void olderStoreIsUpgraded() throws Exception {
+        setStoreVersion(MIN_STORE_VERSION);
+        fileStoreBuilder(folder.getRoot()).buildReadOnly().close();
+        assertEquals(MIN_STORE_VERSION, Manifest.load(manifest).getStoreVersion(0));
+
+        fileStoreBuilder(folder.getRoot()).build().close();
+        assertEquals(CURRENT_STORE_VERSION, Manifest.load(manifest).getStoreVersion(0));
+    }
+
+    @Test(expected = InvalidFileStoreVersionException.class)
+    public void newerStoreIsRejected() throws Exception {
+        setStoreVersion(CURRENT_STORE_VERSION + 1);
+        fileStoreBuilder(folder.getRoot()).build();
+    }
+
+}
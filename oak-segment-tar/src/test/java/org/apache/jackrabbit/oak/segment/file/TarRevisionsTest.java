@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.util.concurrent.Futures.allAsList;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -29,6 +31,7 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
@@ -44,7 +47,12 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -223,4 +231,53 @@ public class TarRevisionsTest {
         }
     }
 
+    @Test
+    public void timedDurability() throws Exception {
+        RecordId persisted = revisions.getHead();
+        SegmentNodeState newRoot = addChild(reader.readNode(revisions.getHead()), "a");
+        assertTrue(revisions.setHead(persisted, newRoot.getRecordId()));
+
+        revisions.awaitPersisted();
+        try (JournalReader reader = createJournalReader()) {
+            assertEquals(persisted.toString10(), reader.next());
+        }
+    }
+
+    @Test
+    public void groupedDurability() throws Exception {
+        File directory = folder.newFolder();
+        FileStore store = FileStoreBuilder.fileStoreBuilder(directory)
+                .withDurability(TarRevisions.Durability.GROUPED)
+                .build();
+        ListeningExecutorService executor = listeningDecorator(newFixedThreadPool(4));
+        try {
+            final SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            List<ListenableFuture<?>> commits = newArrayList();
+            for (int i = 0; i < 4; i++) {
+                final String name = "c" + i;
+                commits.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = 0; j < 10; j++) {
+                            NodeBuilder builder = nodeStore.getRoot().builder();
+                            builder.setProperty(name, j);
+                            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            allAsList(commits).get();
+
+            // All commits are persisted without an explicit flush
+            try (JournalReader reader = new JournalReader(new File(directory, TarRevisions.JOURNAL_FILE_NAME))) {
+                assertTrue(reader.hasNext());
+                assertEquals(store.getRevisions().getHead().toString10(), reader.next());
+            }
+        } finally {
+            executor.shutdown();
+            store.close();
+        }
+    }
+
 }
@@ -141,6 +141,35 @@ public class StandbyTestIT extends TestBase {
         }
     }
 
+    @Test
+    public void testPipelinedSync() throws Exception {
+        final int blobSize = 25 * 1024;
+        final int dataNodes = 5000;
+
+        FileStore primary = serverFileStore.fileStore();
+        FileStore secondary = clientFileStore.fileStore();
+
+        NodeStore store = SegmentNodeStoreBuilders.builder(primary).build();
+        try (
+                StandbyServerSync serverSync = new StandbyServerSync(getServerPort(), primary);
+                StandbyClientSync clientSync = new StandbyClientSync(getServerHost(), getServerPort(), secondary, false, getClientTimeout(), false, 16)
+        ) {
+            serverSync.start();
+            addTestContent(store, "server", blobSize, dataNodes);
+            primary.flush();
+
+            clientSync.run();
+            assertEquals(primary.getHead(), secondary.getHead());
+
+            addTestContent(store, "update", blobSize, dataNodes);
+            primary.flush();
+
+            clientSync.run();
+            assertEquals(primary.getHead(), secondary.getHead());
+            assertEquals(0, clientSync.getFailedRequests());
+        }
+    }
+
     private static byte[] addTestContent(NodeStore store, String child, int size, int dataNodes) throws Exception {
         NodeBuilder builder = store.getRoot().builder();
         NodeBuilder content = builder.child(child);
@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.segment.standby.codec;
 import static org.apache.jackrabbit.oak.segment.standby.StandbyTestUtils.hash;
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 import io.netty.buffer.ByteBuf;
@@ -49,4 +50,29 @@ public class GetSegmentResponseEncoderTest {
         assertEquals(expected, buffer);
     }
 
+    @Test
+    public void encodeDirectBufferResponse() throws Exception {
+        UUID uuid = new UUID(1, 2);
+        byte[] data = new byte[] {3, 4, 5};
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data);
+        direct.flip();
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentResponseEncoder());
+        channel.writeOutbound(new GetSegmentResponse("clientId", uuid.toString(), direct.asReadOnlyBuffer()));
+        ByteBuf buffer = (ByteBuf) channel.readOutbound();
+
+        ByteBuf expected = Unpooled.buffer();
+        expected.writeInt(data.length + 25);
+        expected.writeByte(Messages.HEADER_SEGMENT);
+        expected.writeLong(uuid.getMostSignificantBits());
+        expected.writeLong(uuid.getLeastSignificantBits());
+        expected.writeLong(hash(data));
+        expected.writeBytes(data);
+
+        assertEquals(expected, buffer);
+        assertEquals(data.length, direct.remaining());
+    }
+
 }
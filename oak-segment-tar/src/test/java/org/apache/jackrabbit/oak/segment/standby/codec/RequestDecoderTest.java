@@ -60,6 +60,23 @@ public class RequestDecoderTest {
         assertEquals("segmentId", request.getSegmentId());
     }
 
+    @Test
+    public void shouldDecodeValidGetBlobChunksRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newGetBlobChunksRequest("clientId", "blob.Id", 42, false));
+        GetBlobChunksRequest request = (GetBlobChunksRequest) channel.readInbound();
+        assertEquals("clientId", request.getClientId());
+        assertEquals("blob.Id", request.getBlobId());
+        assertEquals(42, request.getOffset());
+    }
+
+    @Test
+    public void shouldDropInvalidGetBlobChunksRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound("Standby-CMD@clientId:c.x.blobId");
+        assertNull(channel.readInbound());
+    }
+
     @Test
     public void shouldDropInvalidMessages() throws Exception {
         EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
@@ -90,6 +90,54 @@ public class ResponseDecoderTest {
         assertNull(channel.readInbound());
     }
 
+    @Test
+    public void shouldDecodeValidGetBlobChunkResponses() throws Exception {
+        byte[] chunkData = new byte[] {1, 2, 3};
+
+        String blobId = "blobId";
+        byte[] blobIdBytes = blobId.getBytes(Charsets.UTF_8);
+
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(1 + 4 + blobIdBytes.length + 8 + 8 + 8 + chunkData.length);
+        buf.writeByte(Messages.HEADER_BLOB_CHUNK);
+        buf.writeInt(blobIdBytes.length);
+        buf.writeBytes(blobIdBytes);
+        buf.writeLong(5);
+        buf.writeLong(8);
+        buf.writeLong(hash(chunkData));
+        buf.writeBytes(chunkData);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseDecoder());
+        channel.writeInbound(buf);
+        GetBlobChunkResponse response = (GetBlobChunkResponse) channel.readInbound();
+        assertEquals("blobId", response.getBlobId());
+        assertEquals(5, response.getOffset());
+        assertEquals(8, response.getBlobLength());
+        assertArrayEquals(chunkData, response.getChunkData());
+    }
+
+    @Test
+    public void shouldDropInvalidGetBlobChunkResponses() throws Exception {
+        byte[] chunkData = new byte[] {1, 2, 3};
+
+        String blobId = "blobId";
+        byte[] blobIdBytes = blobId.getBytes(Charsets.UTF_8);
+
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(1 + 4 + blobIdBytes.length + 8 + 8 + 8 + chunkData.length);
+        buf.writeByte(Messages.HEADER_BLOB_CHUNK);
+        buf.writeInt(blobIdBytes.length);
+        buf.writeBytes(blobIdBytes);
+        buf.writeLong(5);
+        buf.writeLong(8);
+        buf.writeLong(hash(chunkData) + 1);
+        buf.writeBytes(chunkData);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseDecoder());
+        channel.writeInbound(buf);
+        assertNull(channel.readInbound());
+    }
+
     @Test
     public void shouldDecodeValidGetHeadResponses() throws Exception {
         String recordId = "recordId";
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunkResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobChunksRequest;
+import org.junit.Test;
+
+public class GetBlobChunksRequestHandlerTest {
+
+    private static final byte[] BLOB_DATA = new byte[] {99, 114, 97, 112, 112, 121};
+
+    private static StandbyBlobReader newReader(byte[] data) {
+        StandbyBlobReader reader = mock(StandbyBlobReader.class);
+        when(reader.getBlobLength("blobId")).thenReturn((long) data.length);
+        when(reader.readBlobStream("blobId")).thenReturn(new ByteArrayInputStream(data));
+        return reader;
+    }
+
+    private static void assertChunk(EmbeddedChannel channel, long offset, long length, byte[] data) {
+        GetBlobChunkResponse response = (GetBlobChunkResponse) channel.readOutbound();
+        assertEquals("clientId", response.getClientId());
+        assertEquals("blobId", response.getBlobId());
+        assertEquals(offset, response.getOffset());
+        assertEquals(length, response.getBlobLength());
+        assertArrayEquals(data, response.getChunkData());
+    }
+
+    @Test
+    public void blobsShouldBeSentInChunks() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), new GetBlobChunksRequestHandler(newReader(BLOB_DATA), 4));
+        channel.writeInbound(new GetBlobChunksRequest("clientId", "blobId", 0));
+        assertChunk(channel, 0, 6, new byte[] {99, 114, 97, 112});
+        assertChunk(channel, 4, 6, new byte[] {112, 121});
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void chunksShouldStartAtOffset() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), new GetBlobChunksRequestHandler(newReader(BLOB_DATA), 4));
+        channel.writeInbound(new GetBlobChunksRequest("clientId", "blobId", 3));
+        assertChunk(channel, 3, 6, new byte[] {112, 112, 121});
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void emptyBlobsShouldBeSentAsSingleChunk() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), new GetBlobChunksRequestHandler(newReader(new byte[0]), 4));
+        channel.writeInbound(new GetBlobChunksRequest("clientId", "blobId", 0));
+        assertChunk(channel, 0, 0, new byte[0]);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void offsetsBeyondBlobLengthShouldBeRejected() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), new GetBlobChunksRequestHandler(newReader(BLOB_DATA), 4));
+        channel.writeInbound(new GetBlobChunksRequest("clientId", "blobId", 7));
+        assertChunk(channel, 7, -1, new byte[0]);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void unsuccessfulReadsShouldBeRejected() throws Exception {
+        StandbyBlobReader reader = mock(StandbyBlobReader.class);
+        when(reader.getBlobLength("blobId")).thenReturn(-1L);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ChunkedWriteHandler(), new GetBlobChunksRequestHandler(reader, 4));
+        channel.writeInbound(new GetBlobChunksRequest("clientId", "blobId", 0));
+        assertChunk(channel, 0, -1, new byte[0]);
+        assertNull(channel.readOutbound());
+    }
+
+}